@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.swt.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataSearch;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+
+/** Timing of the sample lookup for the cursor
+ *
+ *  <p>Moves a cursor across 50 traces with 1M samples each,
+ *  locating the sample at the cursor for each trace,
+ *  once with a plain binary search and once starting
+ *  from the previous result.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class CursorLookupDemo
+{
+    private static final int TRACES = 50, SAMPLES = 1000000, PIXELS = 1000, RUNS = 20;
+
+    public static void main(final String[] args)
+    {
+        final List<ArrayPlotDataProvider<Double>> traces = new ArrayList<>();
+        for (int t=0; t<TRACES; ++t)
+        {
+            final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+            for (int i=0; i<SAMPLES; ++i)
+                data.add(new SimpleDataItem<Double>(i + 0.1*t, Math.sin(i*0.001 + t)));
+            traces.add(data);
+        }
+        final PlotDataSearch<Double> search = new PlotDataSearch<>();
+        final int[] hints = new int[TRACES];
+
+        for (int run=0; run<RUNS; ++run)
+        {
+            // Move cursor across all pixels of the plot
+            long found = 0;
+            long start = System.nanoTime();
+            for (int x=0; x<PIXELS; ++x)
+                for (ArrayPlotDataProvider<Double> data : traces)
+                    found += search.findSampleLessOrEqual(data, x * (double)SAMPLES / PIXELS);
+            final double binary = (System.nanoTime() - start) / 1e6 / PIXELS;
+
+            start = System.nanoTime();
+            for (int x=0; x<PIXELS; ++x)
+                for (int t=0; t<TRACES; ++t)
+                    found -= hints[t] = search.findSampleLessOrEqual(traces.get(t), x * (double)SAMPLES / PIXELS, hints[t]);
+            final double hinted = (System.nanoTime() - start) / 1e6 / PIXELS;
+
+            System.out.format("Lookup for %d traces: Binary search %.3f ms, from previous sample %.3f ms%s\n",
+                              TRACES, binary, hinted, found == 0 ? "" : " - MISMATCH");
+        }
+    }
+}
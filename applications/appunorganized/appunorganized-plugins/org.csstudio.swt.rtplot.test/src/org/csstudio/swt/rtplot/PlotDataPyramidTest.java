@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.csstudio.swt.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataPyramid;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+import org.junit.Test;
+
+/** JUnit test of the {@link PlotDataPyramid}
+ *  @author agent
+ */
+public class PlotDataPyramidTest
+{
+    /** @return Value range of samples first..last, determined by checking every sample */
+    private static String scan(final List<PlotDataItem<Double>> samples, final int first, final int last)
+    {
+        double min = Double.NaN, max = Double.NaN;
+        int nan = -1;
+        for (int i=first; i<=last; ++i)
+        {
+            final double value = samples.get(i).getValue();
+            if (Double.isNaN(value))
+            {
+                if (nan < 0)
+                    nan = i;
+            }
+            else
+            {
+                if (Double.isNaN(min)  ||  value < min)
+                    min = value;
+                if (Double.isNaN(max)  ||  value > max)
+                    max = value;
+            }
+        }
+        return min + " .. " + max + ", NaN at " + nan;
+    }
+
+    /** @return Value range of samples first..last, determined via pyramid */
+    private static String query(final PlotDataPyramid<Double> pyramid, final int first, final int last)
+    {
+        final int[] min_max = pyramid.findMinMax(first, last);
+        final double min = min_max[0] < 0 ? Double.NaN : pyramid.get(min_max[0]).getValue();
+        final double max = min_max[1] < 0 ? Double.NaN : pyramid.get(min_max[1]).getValue();
+        return min + " .. " + max + ", NaN at " + pyramid.findNaN(first, last);
+    }
+
+    @Test
+    public void testPyramid()
+    {
+        final Random random = new Random(42);
+        final List<PlotDataItem<Double>> samples = new ArrayList<>();
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>(samples);
+        final PlotDataPyramid<Double> pyramid = new PlotDataPyramid<>(data);
+
+        for (int run=0; run<100; ++run)
+        {
+            // Append samples, sometimes update the last sample
+            final int count = random.nextInt(500);
+            if (samples.size() > 0  &&  random.nextBoolean())
+                samples.set(samples.size()-1, new SimpleDataItem<Double>(samples.size()-1.0, random.nextGaussian()));
+            for (int i=0; i<count; ++i)
+                samples.add(new SimpleDataItem<Double>((double) samples.size(),
+                            random.nextInt(2000) == 0 ? Double.NaN : random.nextGaussian()));
+
+            for (int check=0; check<20; ++check)
+            {
+                final int first = random.nextInt(samples.size());
+                final int last = first + random.nextInt(samples.size() - first);
+                assertThat(query(pyramid, first, last), equalTo(scan(samples, first, last)));
+            }
+        }
+
+        // Removing samples results in new summary
+        samples.subList(100, samples.size()).clear();
+        samples.set(50, new SimpleDataItem<Double>(50.0, Double.NaN));
+        pyramid.invalidate();
+        assertThat(query(pyramid, 0, 99), equalTo(scan(samples, 0, 99)));
+    }
+
+    @Test
+    public void testRevision()
+    {
+        final List<PlotDataItem<Double>> samples = new ArrayList<>();
+        for (int i=0; i<1000; ++i)
+            samples.add(new SimpleDataItem<Double>((double) i, (double) i));
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>(samples);
+        final AtomicLong revision = new AtomicLong();
+        final PlotDataPyramid<Double> pyramid = new PlotDataPyramid<>(data, revision::get);
+        assertThat(query(pyramid, 0, 999), equalTo(scan(samples, 0, 999)));
+
+        // Changing a sample in the middle updates the summary once the revision changes
+        samples.set(500, new SimpleDataItem<Double>(500.0, -1.0));
+        revision.incrementAndGet();
+        assertThat(query(pyramid, 0, 999), equalTo(scan(samples, 0, 999)));
+        assertThat(query(pyramid, 0, 999), equalTo("-1.0 .. 999.0, NaN at -1"));
+    }
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.csstudio.swt.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataSearch;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+import org.junit.Test;
+
+/** JUnit test of the {@link PlotDataSearch}
+ *  @author agent
+ */
+public class PlotDataSearchTest
+{
+    @Test
+    public void testSearchWithHint()
+    {
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        for (int i=0; i<1000; ++i)
+            data.add(new SimpleDataItem<Double>(2.0*i, i));
+
+        final PlotDataSearch<Double> search = new PlotDataSearch<>();
+        final Random random = new Random(42);
+        int hint = -1;
+        for (int run=0; run<10000; ++run)
+        {
+            // Mostly small moves, sometimes jumps, including beyond the data
+            final double x = random.nextInt(10) == 0
+                           ? random.nextDouble() * 2200 - 100
+                           : 2.0*Math.max(0, hint) + random.nextGaussian() * 20;
+            final int expected = search.findSampleLessOrEqual(data, x);
+            hint = search.findSampleLessOrEqual(data, x, hint);
+            assertThat(hint, equalTo(expected));
+        }
+
+        // Hint outside of data is ignored
+        assertThat(search.findSampleLessOrEqual(data, 10.0, 5000), equalTo(5));
+        assertThat(search.findSampleLessOrEqual(data, 10.5, -1), equalTo(5));
+        assertThat(search.findSampleLessOrEqual(data, -1.0, 500), equalTo(-1));
+        assertThat(search.findSampleLessOrEqual(data, 5000.0, 500), equalTo(999));
+    }
+}
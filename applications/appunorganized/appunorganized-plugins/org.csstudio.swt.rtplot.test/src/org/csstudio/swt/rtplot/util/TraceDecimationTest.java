@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.csstudio.swt.rtplot.data.ArrayPlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.SimpleDataItem;
+import org.csstudio.swt.rtplot.internal.util.IntList;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
+import org.junit.Test;
+
+/** JUnit test of {@link TraceDecimation}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class TraceDecimationTest
+{
+    /** 10 samples per pixel column */
+    private static int getColumn(final Double position)
+    {
+        return (int) (position / 10);
+    }
+
+    /** @return Summary of each column: first, min, max, last value, breaks */
+    private static String summarize(final ArrayPlotDataProvider<Double> data, final IntList indices)
+    {
+        final StringBuilder buf = new StringBuilder();
+        int column = -1;
+        double min = 0, max = 0, last = 0;
+        for (int i=0; i<indices.size(); ++i)
+        {
+            final PlotDataItem<Double> item = data.get(indices.get(i));
+            final double value = item.getValue();
+            final int x = getColumn(item.getPosition());
+            if (x != column  ||  Double.isNaN(value))
+            {
+                if (column >= 0)
+                    buf.append(min).append(" .. ").append(max).append(" -> ").append(last).append("\n");
+                column = x;
+                if (Double.isNaN(value))
+                {
+                    buf.append("Break\n");
+                    column = -1;
+                    continue;
+                }
+                buf.append(x).append(": ").append(value).append(", ");
+                min = max = value;
+            }
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+        }
+        if (column >= 0)
+            buf.append(min).append(" .. ").append(max).append(" -> ").append(last).append("\n");
+        return buf.toString();
+    }
+
+    @Test
+    public void testDecimation()
+    {
+        final Random random = new Random(42);
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        for (int i=0; i<10000; ++i)
+            data.add(new SimpleDataItem<Double>(i + 0.5,
+                     random.nextInt(100) == 0 ? Double.NaN : random.nextGaussian()));
+
+        final IntList all = new IntList(data.size());
+        for (int i=0; i<data.size(); ++i)
+            all.add(i);
+
+        final TraceDecimation<Double> decimation = new TraceDecimation<>();
+        final IntList decimated = decimation.decimate(data, 0, data.size()-1,
+                                                      TraceDecimationTest::getColumn,
+                                                      item -> Double.isNaN(item.getValue()),
+                                                      PlotDataItem::getValue);
+        // Far fewer samples, but same first, last, min and max per column
+        assertThat(decimated.size() < data.size() / 2, equalTo(true));
+        assertThat(summarize(data, decimated), equalTo(summarize(data, all)));
+    }
+
+    @Test
+    public void testSampleRange()
+    {
+        final ArrayPlotDataProvider<Double> data = new ArrayPlotDataProvider<>();
+        for (int i=0; i<100; ++i)
+            data.add(new SimpleDataItem<Double>(i * 1.0, i));
+
+        final TraceDecimation<Double> decimation = new TraceDecimation<>();
+        // Include samples just outside the range
+        assertThat(decimation.getSampleRange(data, 10.5, 20.5), equalTo(new int[] { 10, 21 }));
+        assertThat(decimation.getSampleRange(data, 20.5, 10.5), equalTo(new int[] { 10, 21 }));
+        assertThat(decimation.getSampleRange(data, -10.0, 200.0), equalTo(new int[] { 0, 99 }));
+    }
+}
@@ -23,6 +23,7 @@ public class ArrayPlotDataProvider<XTYPE extends Comparable<XTYPE>> implements P
 {
     final private ReadWriteLock lock = new ReentrantReadWriteLock();
     final private List<PlotDataItem<XTYPE>> data;
+    private long modifications = 0;
 
     /** Construct with existing data
      *  @param data
@@ -45,6 +46,7 @@ public class ArrayPlotDataProvider<XTYPE extends Comparable<XTYPE>> implements P
         try
         {
             data.add(item);
+            ++modifications;
         }
         finally
         {
@@ -69,4 +71,10 @@ public class ArrayPlotDataProvider<XTYPE extends Comparable<XTYPE>> implements P
     {
         return data.get(index);
     }
+
+    @Override
+    public long getModificationCount()
+    {
+        return modifications;
+    }
 }
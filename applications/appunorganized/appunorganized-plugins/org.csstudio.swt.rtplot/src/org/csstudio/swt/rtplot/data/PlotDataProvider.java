@@ -55,4 +55,22 @@ public interface PlotDataProvider<XTYPE extends Comparable<XTYPE>>
      *  @return The Sample of given index.
      */
     public PlotDataItem<XTYPE> get(int index);
+
+    /** Modification count of the samples
+     *  <p>
+     *  Must change whenever samples are added, removed or changed,
+     *  including changes to samples that remain in place.
+     *  The plot uses this to detect that a trace needs to be redrawn.
+     *  <p>
+     *  Like <code>size()</code> and <code>get()</code>,
+     *  to be called while holding the lock.
+     *
+     *  @return Count that changes with each change of the samples,
+     *          or -1 if changes are not tracked, so the samples
+     *          must always be considered changed.
+     */
+    default public long getModificationCount()
+    {
+        return -1;
+    }
 }
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongSupplier;
+
+/** {@link PlotDataProvider} decorator with a min/max summary of the values
+ *
+ *  <p>Maintains a pyramid of the minimum and maximum values
+ *  and the first <code>NaN</code> for blocks of samples.
+ *  The plot uses it to locate these within a range of samples
+ *  in O(log n) instead of scanning all samples in the range,
+ *  for example to determine the value range for autoscaling
+ *  or the minimum and maximum within a pixel column.
+ *
+ *  <p>The summary is updated when the plot accesses it
+ *  while holding the read lock.
+ *  Samples added to the end of the data are then added
+ *  to the summary.
+ *  The last sample may change, for example to extend a trace
+ *  to the current time.
+ *  When the data shrinks or its first sample changes,
+ *  the summary is re-computed.
+ *  When samples change in any other way,
+ *  {@link #invalidate()} must be called,
+ *  or the data needs to provide a revision that then changes.
+ *
+ *  @param <XTYPE> Data type used for the horizontal axis
+ *  @author agent
+ */
+public class PlotDataPyramid<XTYPE extends Comparable<XTYPE>> implements PlotDataProvider<XTYPE>
+{
+    /** Number of samples in the blocks of the lowest pyramid level */
+    final static int BLOCK = 64;
+
+    /** Level of the pyramid */
+    private static class Level
+    {
+        /** Number of nodes */
+        int count = 0;
+
+        /** Index of sample with minimum, maximum value, or -1 */
+        int[] min = new int[16], max = new int[16];
+
+        /** Minimum, maximum value */
+        double[] min_value = new double[16], max_value = new double[16];
+
+        /** Index of first sample with NaN value, or -1 */
+        int[] nan = new int[16];
+
+        /** @param count New node count */
+        void setCount(final int count)
+        {
+            if (count > min.length)
+            {
+                final int capacity = Math.max(count, min.length * 2);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                min_value = Arrays.copyOf(min_value, capacity);
+                max_value = Arrays.copyOf(max_value, capacity);
+                nan = Arrays.copyOf(nan, capacity);
+            }
+            this.count = count;
+        }
+    }
+
+    /** Result of a range query */
+    private static class Query
+    {
+        int min = -1, max = -1, nan = -1;
+        double min_value, max_value;
+
+        void addSample(final int index, final double value)
+        {
+            if (Double.isNaN(value))
+            {
+                if (nan < 0  ||  index < nan)
+                    nan = index;
+                return;
+            }
+            if (min < 0  ||  value < min_value)
+            {
+                min = index;
+                min_value = value;
+            }
+            if (max < 0  ||  value > max_value)
+            {
+                max = index;
+                max_value = value;
+            }
+        }
+
+        void addNode(final Level level, final int node)
+        {
+            if (level.nan[node] >= 0  &&  (nan < 0  ||  level.nan[node] < nan))
+                nan = level.nan[node];
+            if (level.min[node] >= 0  &&  (min < 0  ||  level.min_value[node] < min_value))
+            {
+                min = level.min[node];
+                min_value = level.min_value[node];
+            }
+            if (level.max[node] >= 0  &&  (max < 0  ||  level.max_value[node] > max_value))
+            {
+                max = level.max[node];
+                max_value = level.max_value[node];
+            }
+        }
+    }
+
+    final private PlotDataProvider<XTYPE> data;
+
+    /** Revision of the data, or <code>null</code> */
+    final private LongSupplier revision;
+
+    /** Pyramid levels, starting with blocks of samples.
+     *  Synchronize on 'this' on access.
+     */
+    final private List<Level> levels = new ArrayList<>();
+
+    /** Number of samples in the summary */
+    private int indexed = 0;
+
+    /** Position of first sample in summary */
+    private XTYPE first_position = null;
+
+    /** Revision of the data in summary */
+    private long indexed_revision = 0;
+
+    /** Does the summary need to be re-computed? */
+    private volatile boolean invalid = false;
+
+    /** @param data Data to summarize */
+    public PlotDataPyramid(final PlotDataProvider<XTYPE> data)
+    {
+        this(data, null);
+    }
+
+    /** @param data Data to summarize
+     *  @param revision Revision of the data that changes whenever samples
+     *                  other than the last one are changed, removed or inserted,
+     *                  or <code>null</code> to rely on {@link #invalidate()}
+     */
+    public PlotDataPyramid(final PlotDataProvider<XTYPE> data, final LongSupplier revision)
+    {
+        this.data = data;
+        this.revision = revision;
+    }
+
+    /** @return Decorated data */
+    public PlotDataProvider<XTYPE> getData()
+    {
+        return data;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Lock getLock()
+    {
+        return data.getLock();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size()
+    {
+        return data.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PlotDataItem<XTYPE> get(final int index)
+    {
+        return data.get(index);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getModificationCount()
+    {
+        return data.getModificationCount();
+    }
+
+    /** Request re-computation of the summary
+     *  because samples changed other than by adding new samples
+     */
+    public void invalidate()
+    {
+        invalid = true;
+    }
+
+    /** Locate sample with <code>NaN</code> value
+     *  @param first Index of first sample to check
+     *  @param last Index of last sample to check
+     *  @return Index of first sample with <code>NaN</code> value, -1 if there is none
+     */
+    public int findNaN(final int first, final int last)
+    {
+        return query(first, last).nan;
+    }
+
+    /** Locate samples with minimum and maximum value
+     *  @param first Index of first sample to check
+     *  @param last Index of last sample to check
+     *  @return <code>{ min, max }</code> index, -1 if all values are <code>NaN</code>
+     */
+    public int[] findMinMax(final int first, final int last)
+    {
+        final Query result = query(first, last);
+        return new int[] { result.min, result.max };
+    }
+
+    /** Caller must hold read lock of the data
+     *  @param first Index of first sample to check
+     *  @param last Index of last sample to check
+     *  @return {@link Query} result
+     */
+    private synchronized Query query(final int first, final int last)
+    {
+        update();
+        final Query result = new Query();
+        final int first_block = first / BLOCK, last_block = last / BLOCK;
+        if (last_block - first_block < 2)
+        {
+            for (int i=first; i<=last; ++i)
+                result.addSample(i, data.get(i).getValue());
+            return result;
+        }
+        // Partial blocks at start and end
+        for (int i=first; i<(first_block+1)*BLOCK; ++i)
+            result.addSample(i, data.get(i).getValue());
+        for (int i=last_block*BLOCK; i<=last; ++i)
+            result.addSample(i, data.get(i).getValue());
+        // Complete blocks in between
+        int low = first_block + 1, high = last_block - 1, l = 0;
+        while (low <= high)
+        {
+            final Level level = levels.get(l);
+            if ((low & 1) == 1)
+                result.addNode(level, low++);
+            if ((high & 1) == 0)
+                result.addNode(level, high--);
+            if (low > high)
+                break;
+            low /= 2;
+            high /= 2;
+            ++l;
+        }
+        return result;
+    }
+
+    /** Update the summary for changed data */
+    private void update()
+    {
+        final int N = data.size();
+        final long current_revision = revision == null ? 0 : revision.getAsLong();
+        if (invalid  ||  N < indexed  ||  current_revision != indexed_revision  ||
+            (indexed > 0  &&  !data.get(0).getPosition().equals(first_position)))
+        {
+            invalid = false;
+            indexed = 0;
+            levels.clear();
+        }
+        indexed_revision = current_revision;
+        if (N <= 0)
+            return;
+        first_position = data.get(0).getPosition();
+
+        // Last sample might have changed, so update from there on
+        int node = Math.max(0, indexed - 1) / BLOCK;
+        indexed = N;
+
+        // Update blocks of samples
+        if (levels.isEmpty())
+            levels.add(new Level());
+        Level level = levels.get(0);
+        level.setCount((N + BLOCK - 1) / BLOCK);
+        for (int b=node; b<level.count; ++b)
+        {
+            final Query block = new Query();
+            final int end = Math.min(N, (b+1)*BLOCK);
+            for (int i=b*BLOCK; i<end; ++i)
+                block.addSample(i, data.get(i).getValue());
+            level.min[b] = block.min;
+            level.max[b] = block.max;
+            level.min_value[b] = block.min_value;
+            level.max_value[b] = block.max_value;
+            level.nan[b] = block.nan;
+        }
+
+        // Update higher levels
+        int l = 0;
+        while (level.count > 1)
+        {
+            if (levels.size() <= l+1)
+                levels.add(new Level());
+            final Level upper = levels.get(l+1);
+            upper.setCount((level.count + 1) / 2);
+            node /= 2;
+            for (int n=node; n<upper.count; ++n)
+            {
+                final Query combined = new Query();
+                combined.addNode(level, 2*n);
+                if (2*n+1 < level.count)
+                    combined.addNode(level, 2*n+1);
+                upper.min[n] = combined.min;
+                upper.max[n] = combined.max;
+                upper.min_value[n] = combined.min_value;
+                upper.max_value[n] = combined.max_value;
+                upper.nan[n] = combined.nan;
+            }
+            level = upper;
+            ++l;
+        }
+    }
+
+    @SuppressWarnings("nls")
+    @Override
+    public String toString()
+    {
+        return "PlotDataPyramid for " + data;
+    }
+}
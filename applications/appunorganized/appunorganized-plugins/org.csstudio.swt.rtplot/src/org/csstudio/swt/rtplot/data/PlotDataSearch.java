@@ -62,6 +62,62 @@ public class PlotDataSearch<XTYPE extends Comparable<XTYPE>>
         return -1;
     }
 
+    /** Find a sample that's smaller or equal to given value,
+     *  starting at the result of a previous search.
+     *
+     *  <p>When the value is close to the one of the previous search,
+     *  for example as the cursor moves across the plot,
+     *  only the samples around the 'hint' are checked,
+     *  then the distance to the result is bisected.
+     *
+     *  @param data Data, must already be locked
+     *  @param x The value to look for.
+     *  @param hint Index of a previous result. Ignored if outside of the data.
+     *  @return Returns index of last sample smaller-or-equal to given x, or -1.
+     */
+    final public int findSampleLessOrEqual(final PlotDataProvider<XTYPE> data, final XTYPE x, final int hint)
+    {
+        final int N = data.size();
+        if (hint < 0  ||  hint >= N)
+            return findSampleLessOrEqual(data, x);
+        // Locate range with sample[low] <= x < sample[high],
+        // where low may be -1 and high may be N,
+        // by searching from the hint with increasing steps
+        int low, high, step = 1;
+        if (data.get(hint).getPosition().compareTo(x) <= 0)
+        {
+            low = hint;
+            high = hint + 1;
+            while (high < N  &&  data.get(high).getPosition().compareTo(x) <= 0)
+            {
+                low = high;
+                step *= 2;
+                high = Math.min(low + step, N);
+            }
+        }
+        else
+        {
+            high = hint;
+            low = hint - 1;
+            while (low >= 0  &&  data.get(low).getPosition().compareTo(x) > 0)
+            {
+                high = low;
+                step *= 2;
+                low = Math.max(high - step, -1);
+            }
+        }
+        // Binary search within that range
+        while (high - low > 1)
+        {
+            final int middle = (low + high) >>> 1;
+            if (data.get(middle).getPosition().compareTo(x) <= 0)
+                low = middle;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
     /** Find a sample that's bigger or equal to given value
      *  @param data Data, must already be locked
      *  @param x The value to look for.
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import org.csstudio.swt.rtplot.Activator;
+import org.csstudio.swt.rtplot.Axis;
+import org.csstudio.swt.rtplot.AxisRange;
+import org.csstudio.swt.rtplot.Trace;
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataSearch;
+
+/** Lookup of samples at the cursor location
+ *
+ *  <p>Mouse moves can arrive faster than the samples
+ *  of all traces can be located.
+ *  Lookups are performed in a background thread,
+ *  and requests that arrive while a lookup is running are coalesced:
+ *  Only the most recent request is handled next.
+ *
+ *  <p>The index of the sample found for each trace is remembered,
+ *  and the next lookup starts from there.
+ *  As the cursor moves, the new sample is then found
+ *  by checking only few samples.
+ *  Labels and markers are re-used while they remain the same.
+ *
+ *  @param <XTYPE> Data type of horizontal {@link Axis}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+class CursorLookup<XTYPE extends Comparable<XTYPE>>
+{
+    /** Handler that executes the latest of the requests which arrive while it's busy */
+    private class LatestRequest<T>
+    {
+        final private AtomicReference<T> pending = new AtomicReference<>();
+        final private Consumer<T> handler;
+
+        LatestRequest(final Consumer<T> handler)
+        {
+            this.handler = handler;
+        }
+
+        void submit(final T request)
+        {
+            // If a pending request was replaced,
+            // the running handler will pick this one up
+            if (pending.getAndSet(request) == null)
+                executor.execute(this::handle);
+        }
+
+        private void handle()
+        {
+            T request = pending.get();
+            while (true)
+            {
+                try
+                {
+                    handler.accept(request);
+                }
+                catch (Throwable ex)
+                {
+                    Activator.getLogger().log(Level.WARNING, "Cursor lookup error", ex);
+                }
+                // Done unless another request arrived meanwhile
+                if (pending.compareAndSet(request, null))
+                    return;
+                request = pending.get();
+            }
+        }
+    }
+
+    /** Request to update the cursor markers */
+    private class CursorRequest
+    {
+        final int cursor_x;
+        final XTYPE location;
+        final Consumer<List<CursorMarker>> callback;
+
+        CursorRequest(final int cursor_x, final XTYPE location, final Consumer<List<CursorMarker>> callback)
+        {
+            this.cursor_x = cursor_x;
+            this.location = location;
+            this.callback = callback;
+        }
+    }
+
+    /** Request to move an annotation */
+    private class AnnotationRequest
+    {
+        final AnnotationImpl<XTYPE> annotation;
+        final XTYPE location;
+
+        AnnotationRequest(final AnnotationImpl<XTYPE> annotation, final XTYPE location)
+        {
+            this.annotation = annotation;
+            this.location = location;
+        }
+    }
+
+    /** Cursor information for a trace */
+    private static class TraceCursor
+    {
+        /** Index of sample at the cursor, -1 if none */
+        int index = -1;
+
+        /** Number of the lookup that last used this info */
+        int lookup;
+
+        /** Value, axis range and units for which the label was formatted */
+        double value;
+        AxisRange<Double> range;
+        String units;
+        String label = null;
+
+        /** Last marker of the trace */
+        CursorMarker marker = null;
+    }
+
+    final private Plot<XTYPE> plot;
+
+    final private Executor executor;
+
+    final private LatestRequest<CursorRequest> cursor_requests = new LatestRequest<>(this::lookupCursor);
+
+    final private LatestRequest<AnnotationRequest> annotation_requests = new LatestRequest<>(this::lookupAnnotation);
+
+    /** Cursor lookup info. Only accessed by lookupCursor() */
+    final private PlotDataSearch<XTYPE> cursor_search = new PlotDataSearch<>();
+    final private Map<Trace<XTYPE>, TraceCursor> cursors = new HashMap<>();
+    private int lookup = 0;
+
+    /** Annotation lookup info. Only accessed by lookupAnnotation() */
+    final private PlotDataSearch<XTYPE> annotation_search = new PlotDataSearch<>();
+    private int annotation_index = -1;
+
+    /** @param plot Plot on which the cursor moves
+     *  @param executor Executor for lookups
+     */
+    CursorLookup(final Plot<XTYPE> plot, final Executor executor)
+    {
+        this.plot = plot;
+        this.executor = executor;
+    }
+
+    /** Request update of cursor markers
+     *
+     *  <p>Updates the 'selected' sample for each trace,
+     *  and sends valid {@link CursorMarker}s to the callback
+     *
+     *  @param cursor_x Pixel location of cursor
+     *  @param location Corresponding position on X axis
+     *  @param callback Will be called with markers for the cursor location
+     */
+    void updateCursorMarkers(final int cursor_x, final XTYPE location, final Consumer<List<CursorMarker>> callback)
+    {
+        cursor_requests.submit(new CursorRequest(cursor_x, location, callback));
+    }
+
+    /** Request moving an annotation to the sample at a location
+     *  @param annotation Annotation to move
+     *  @param location Position on X axis
+     */
+    void updateAnnotation(final AnnotationImpl<XTYPE> annotation, final XTYPE location)
+    {
+        annotation_requests.submit(new AnnotationRequest(annotation, location));
+    }
+
+    private void lookupCursor(final CursorRequest request)
+    {
+        ++lookup;
+        final List<CursorMarker> markers = new ArrayList<>();
+        for (YAxisImpl<XTYPE> axis : plot.getYAxes())
+        {
+            final AxisRange<Double> range = axis.getValueRange();
+            for (TraceImpl<XTYPE> trace : axis.getTraces())
+            {
+                TraceCursor cursor = cursors.get(trace);
+                if (cursor == null)
+                {
+                    cursor = new TraceCursor();
+                    cursors.put(trace, cursor);
+                }
+                cursor.lookup = lookup;
+
+                final PlotDataProvider<XTYPE> data = trace.getData();
+                final PlotDataItem<XTYPE> sample;
+                data.getLock().lock();
+                try
+                {
+                    cursor.index = cursor_search.findSampleLessOrEqual(data, request.location, cursor.index);
+                    sample = cursor.index >= 0 ? data.get(cursor.index) : null;
+                }
+                finally
+                {
+                    data.getLock().unlock();
+                }
+                trace.selectSample(sample);
+                if (sample == null)
+                    continue;
+                final double value = sample.getValue();
+                if (Double.isFinite(value)  &&  range.contains(value))
+                {
+                    final String units = trace.getUnits();
+                    if (cursor.label == null  ||  cursor.value != value  ||
+                        ! range.equals(cursor.range)  ||  ! units.equals(cursor.units))
+                    {
+                        String label = axis.getTicks().formatDetailed(value);
+                        if (! units.isEmpty())
+                            label += " " + units;
+                        cursor.value = value;
+                        cursor.range = range;
+                        cursor.units = units;
+                        cursor.label = label;
+                    }
+                    final int y = axis.getScreenCoord(value);
+                    if (cursor.marker == null  ||
+                        ! cursor.marker.isSame(request.cursor_x, y, trace.getColor(), cursor.label))
+                        cursor.marker = new CursorMarker(request.cursor_x, y, trace.getColor(), cursor.label);
+                    markers.add(cursor.marker);
+                }
+            }
+        }
+        // Forget about traces that have been removed
+        cursors.values().removeIf(cursor -> cursor.lookup != lookup);
+        Collections.sort(markers);
+        request.callback.accept(markers);
+    }
+
+    private void lookupAnnotation(final AnnotationRequest request)
+    {
+        final PlotDataProvider<XTYPE> data = request.annotation.getTrace().getData();
+        XTYPE position;
+        double value;
+        data.getLock().lock();
+        try
+        {
+            annotation_index = annotation_search.findSampleLessOrEqual(data, request.location, annotation_index);
+            if (annotation_index < 0)
+                return;
+            position = data.get(annotation_index).getPosition();
+            value = data.get(annotation_index).getValue();
+        }
+        finally
+        {
+            data.getLock().unlock();
+        }
+        plot.updateAnnotation(request.annotation, position, value, request.annotation.getOffset());
+    }
+}
@@ -52,6 +52,18 @@ class CursorMarker implements Comparable<CursorMarker>
         this.label = label;
     }
 
+    /** @param x Pixel position
+     *  @param y Pixel position
+     *  @param rgb Color
+     *  @param label Label
+     *  @return <code>true</code> if this marker has that position, color and label
+     */
+    boolean isSame(final int x, final int y, final RGB rgb, final String label)
+    {
+        return this.x == x  &&  this.y == y  &&
+               this.rgb.equals(rgb)  &&  this.label.equals(label);
+    }
+
     // Comparable
     @Override
     public int compareTo(final CursorMarker other)
@@ -12,11 +12,14 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Stack;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
@@ -128,12 +131,16 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
     final private AxisPart<XTYPE> x_axis;
     final private List<YAxisImpl<XTYPE>> y_axes = new CopyOnWriteArrayList<>();
     final private PlotPart plot_area;
-    final private TracePainter<XTYPE> trace_painter = new TracePainter<XTYPE>();
     final private List<AnnotationImpl<XTYPE>> annotations = new CopyOnWriteArrayList<>();
     final private LegendPart<XTYPE> legend;
 
     final private PlotProcessor<XTYPE> plot_processor;
 
+    /** Rendered traces, re-used while trace is unchanged.
+     *  Only accessed by updateImageBuffer().
+     */
+    private Map<Trace<XTYPE>, TraceLayer> trace_layers = new HashMap<>();
+
     final private Runnable redraw_runnable = () ->
     {
         if (isDisposed())
@@ -712,12 +719,36 @@ public class Plot<XTYPE extends Comparable<XTYPE>> extends Canvas implements Pai
             y_axis.paint(gc, media, plot_bounds);
         }
 
+        // Render traces in parallel while painting the plot area.
+        // Traces that didn't change keep their previous layer.
+        final List<Trace<XTYPE>> rendered_traces = new ArrayList<>();
+        final List<Future<TraceLayer>> rendering = new ArrayList<>();
+        for (YAxisImpl<XTYPE> y_axis : y_axes)
+            for (Trace<XTYPE> trace : y_axis.getTraces())
+            {
+                rendered_traces.add(trace);
+                rendering.add(plot_processor.renderTrace(trace_layers.get(trace), plot_bounds, opacity, x_transform, y_axis, trace));
+            }
+
         gc.setClipping(plot_bounds);
         plot_area.paint(gc, media);
 
-        for (YAxisImpl<XTYPE> y_axis : y_axes)
-            for (Trace<XTYPE> trace : y_axis.getTraces())
-                trace_painter.paint(gc, media, plot_area.getBounds(), opacity, x_transform, y_axis, trace);
+        // Draw layers in order of traces
+        final Map<Trace<XTYPE>, TraceLayer> layers = new HashMap<>();
+        for (int i=0; i<rendering.size(); ++i)
+        {
+            try
+            {
+                final TraceLayer layer = rendering.get(i).get();
+                layer.draw(gc, media);
+                layers.put(rendered_traces.get(i), layer);
+            }
+            catch (Exception ex)
+            {
+                Activator.getLogger().log(Level.WARNING, "Cannot draw " + rendered_traces.get(i), ex);
+            }
+        }
+        trace_layers = layers;
 
         // Annotations use label font
         gc.setFont(label_font);
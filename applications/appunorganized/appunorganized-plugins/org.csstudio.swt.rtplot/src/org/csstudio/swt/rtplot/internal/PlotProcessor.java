@@ -8,7 +8,6 @@
 package org.csstudio.swt.rtplot.internal;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -22,14 +21,16 @@ import org.csstudio.swt.rtplot.Axis;
 import org.csstudio.swt.rtplot.AxisRange;
 import org.csstudio.swt.rtplot.Messages;
 import org.csstudio.swt.rtplot.Trace;
-import org.csstudio.swt.rtplot.data.PlotDataItem;
 import org.csstudio.swt.rtplot.data.PlotDataProvider;
 import org.csstudio.swt.rtplot.data.PlotDataSearch;
 import org.csstudio.swt.rtplot.data.ValueRange;
 import org.csstudio.swt.rtplot.internal.util.Log10;
+import org.csstudio.swt.rtplot.internal.util.ScreenTransform;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
 import org.csstudio.swt.rtplot.undo.AddAnnotationAction;
 import org.csstudio.swt.rtplot.undo.ChangeAxisRanges;
 import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
 
 /** Helper for processing traces of a plot
  *  in a thread pool to avoid blocking UI thread.
@@ -43,10 +44,13 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
 
     final private Plot<XTYPE> plot;
 
+    final private CursorLookup<XTYPE> cursor_lookup;
+
     /** @param plot Plot on which this processor operates */
     public PlotProcessor(final Plot<XTYPE> plot)
     {
         this.plot = plot;
+        cursor_lookup = new CursorLookup<>(plot, thread_pool);
     }
 
     /** Submit background job to determine value range for y axis for values within the
@@ -62,8 +66,6 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
             @Override
             public ValueRange call() throws Exception
             {
-                double low = Double.MAX_VALUE;
-                double high = -Double.MAX_VALUE;
                 final PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
                 data.getLock().lock();
                 try
@@ -80,24 +82,14 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
                         // If data is completely outside the x_range,
                         // we end up using just data[0]
                         // Check [start .. stop], including stop
-                        for (int i=start; i<=stop; ++i)
-                        {
-                            final PlotDataItem<XTYPE> item = data.get(i);
-                            final double value = item.getValue();
-                            if (! Double.isFinite(value))
-                                continue;
-                            if (value < low)
-                                low = value;
-                            if (value > high)
-                                high = value;
-                        }
+                        return new TraceDecimation<XTYPE>().getValueRange(data, start, stop);
                     }
                 }
                 finally
                 {
                     data.getLock().unlock();
                 }
-                return new ValueRange(low, high);
+                return new ValueRange(Double.MAX_VALUE, -Double.MAX_VALUE);
             }
         });
     }
@@ -135,6 +127,25 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
         });
     }
 
+    /** Submit background job to render a trace
+     *  @param previous Previous layer of the trace or <code>null</code>
+     *  @param bounds Clipping bounds within which to paint
+     *  @param opacity Opacity (0 .. 100 %) of 'area'
+     *  @param x_transform Coordinate transform used by the x axis
+     *  @param y_axis Value axis
+     *  @param trace Trace to render
+     *  @return {@link Future} to {@link TraceLayer}
+     */
+    public Future<TraceLayer> renderTrace(final TraceLayer previous, final Rectangle bounds, final int opacity,
+                                         final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis, final Trace<XTYPE> trace)
+    {
+        // Each job uses its own painter and copies of the transforms,
+        // which the UI thread may change while the job runs
+        final ScreenTransform<XTYPE> transform = x_transform.copy();
+        final ScreenTransform<Double> y_transform = y_axis.getScreenTransform();
+        return thread_pool.submit(() -> new TracePainter<XTYPE>().render(previous, bounds, opacity, transform, y_transform, trace));
+    }
+
     /** Round value range up/down to add a little room above & below the exact range.
      *  This results in "locking" to a nice looking range for a while
      *  until a new sample outside of the rounded range is added.
@@ -252,7 +263,9 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
     /** Compute cursor values for the various traces
      *
      *  <p>Updates the 'selected' sample for each trace,
-     *  and sends valid {@link CursorMarker}s to the {@link Plot}
+     *  and sends valid {@link CursorMarker}s to the {@link Plot}.
+     *  Requests that arrive while a previous one is processed
+     *  are coalesced, see {@link CursorLookup}.
      *
      *  @param cursor_x Pixel location of cursor
      *  @param location Corresponding position on X axis
@@ -260,42 +273,7 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
      */
     public void updateCursorMarkers(final int cursor_x, final XTYPE location, final Consumer<List<CursorMarker>> callback)
     {
-        // Run in thread
-        thread_pool.execute(() ->
-        {
-            final List<CursorMarker> markers = new ArrayList<>();
-            final PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
-            for (YAxisImpl<XTYPE> axis : plot.getYAxes())
-                for (TraceImpl<XTYPE> trace : axis.getTraces())
-                {
-                    final PlotDataProvider<XTYPE> data = trace.getData();
-                    final PlotDataItem<XTYPE> sample;
-                    data.getLock().lock();
-                    try
-                    {
-                        final int index = search.findSampleLessOrEqual(data, location);
-                        sample = index >= 0 ? data.get(index) : null;
-                    }
-                    finally
-                    {
-                        data.getLock().unlock();
-                    }
-                    trace.selectSample(sample);
-                    if (sample == null)
-                        continue;
-                    final double value = sample.getValue();
-                    if (Double.isFinite(value)  &&  axis.getValueRange().contains(value))
-                    {
-                        String label = axis.getTicks().formatDetailed(value);
-                        final String units = trace.getUnits();
-                        if (! units.isEmpty())
-                            label += " " + units;
-                        markers.add(new CursorMarker(cursor_x, axis.getScreenCoord(value), trace.getColor(), label));
-                    }
-                }
-            Collections.sort(markers);
-            callback.accept(markers);
-        });
+        cursor_lookup.updateCursorMarkers(cursor_x, location, callback);
     }
 
     /** @param plot Plot where annotation is added
@@ -335,30 +313,13 @@ public class PlotProcessor<XTYPE extends Comparable<XTYPE>>
         });
     }
 
+    /** Move annotation to the sample at a location
+     *  @param annotation Annotation to move
+     *  @param location Position on X axis
+     */
     public void updateAnnotation(final AnnotationImpl<XTYPE> annotation, final XTYPE location)
     {
-        // Run in thread
-        thread_pool.execute(() ->
-        {
-            final PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
-            final PlotDataProvider<XTYPE> data = annotation.getTrace().getData();
-            XTYPE position;
-            double value;
-            data.getLock().lock();
-            try
-            {
-                final int index = search.findSampleLessOrEqual(data, location);
-                if (index < 0)
-                    return;
-                position = data.get(index).getPosition();
-                value = data.get(index).getValue();
-            }
-            finally
-            {
-                data.getLock().unlock();
-            }
-            plot.updateAnnotation(annotation, position, value, annotation.getOffset());
-        });
+        cursor_lookup.updateAnnotation(annotation, location);
     }
 
     /**
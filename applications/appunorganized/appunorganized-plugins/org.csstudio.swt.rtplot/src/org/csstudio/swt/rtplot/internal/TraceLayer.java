@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.csstudio.swt.rtplot.SWTMediaPool;
+import org.csstudio.swt.rtplot.Trace;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.RGB;
+
+/** Rendered {@link Trace}
+ *
+ *  <p>Holds the drawing operations for a trace
+ *  with decimated samples already transformed into screen coordinates.
+ *  The {@link TracePainter} renders layers for all traces in parallel,
+ *  which includes all access to the trace data.
+ *  The layers are then drawn onto the plot in the order of the traces.
+ *
+ *  <p>The layer remains valid as long as the trace settings,
+ *  axes and data modification count are unchanged, so it can be drawn again
+ *  without rendering the trace.
+ *
+ *  <p>An SWT {@link GC} cannot be used by several threads,
+ *  and images with transparency cannot be portably drawn,
+ *  so instead of an off-screen image for each trace the layer
+ *  is a list of operations that are replayed on the plot's {@link GC}.
+ *
+ *  @author agent
+ */
+public class TraceLayer
+{
+    /** Rendering parameters for which the layer was created, <code>null</code> if unknown */
+    final private Object[] key;
+
+    /** Color of the trace */
+    final private RGB color;
+
+    /** Drawing operations */
+    final private List<Consumer<GC>> operations = new ArrayList<>();
+
+    /** @param key Rendering parameters, <code>null</code> if unknown
+     *  @param color Color of the trace
+     */
+    TraceLayer(final Object[] key, final RGB color)
+    {
+        this.key = key;
+        this.color = color;
+    }
+
+    /** @param key Rendering parameters
+     *  @return <code>true</code> if layer is valid for those parameters
+     */
+    boolean isValidFor(final Object[] key)
+    {
+        return this.key != null  &&  Arrays.equals(this.key, key);
+    }
+
+    /** @param alpha Alpha value for following operations */
+    void setAlpha(final int alpha)
+    {
+        operations.add(gc -> gc.setAlpha(alpha));
+    }
+
+    /** @param width Line width for following operations */
+    void setLineWidth(final int width)
+    {
+        operations.add(gc -> gc.setLineWidth(width));
+    }
+
+    /** @param points Points of poly line */
+    void drawPolyline(final int[] points)
+    {
+        operations.add(gc -> gc.drawPolyline(points));
+    }
+
+    /** @param points Points of polygon */
+    void fillPolygon(final int[] points)
+    {
+        operations.add(gc -> gc.fillPolygon(points));
+    }
+
+    /** Draw line */
+    void drawLine(final int x1, final int y1, final int x2, final int y2)
+    {
+        operations.add(gc -> gc.drawLine(x1, y1, x2, y2));
+    }
+
+    /** Fill rectangle */
+    void fillRectangle(final int x, final int y, final int width, final int height)
+    {
+        operations.add(gc -> gc.fillRectangle(x, y, width, height));
+    }
+
+    /** Fill oval */
+    void fillOval(final int x, final int y, final int width, final int height)
+    {
+        operations.add(gc -> gc.fillOval(x, y, width, height));
+    }
+
+    /** Draw the layer
+     *  @param gc GC
+     *  @param media {@link SWTMediaPool}
+     */
+    public void draw(final GC gc, final SWTMediaPool media)
+    {
+        final Color old_color = gc.getForeground();
+        final Color old_bg = gc.getBackground();
+        final int old_width = gc.getLineWidth();
+        final int old_alpha = gc.getAlpha();
+
+        final Color color = media.get(this.color);
+        gc.setBackground(color);
+        gc.setForeground(color);
+
+        gc.setAdvanced(true);
+        gc.setAntialias(SWT.ON);
+        try
+        {
+            for (Consumer<GC> operation : operations)
+                operation.accept(gc);
+        }
+        finally
+        {
+            gc.setAlpha(old_alpha);
+            gc.setLineWidth(old_width);
+            gc.setBackground(old_bg);
+            gc.setForeground(old_color);
+        }
+    }
+}
@@ -7,6 +7,9 @@
  ******************************************************************************/
 package org.csstudio.swt.rtplot.internal;
 
+import java.util.BitSet;
+import java.util.function.ToIntFunction;
+
 import org.csstudio.swt.rtplot.Axis;
 import org.csstudio.swt.rtplot.PointType;
 import org.csstudio.swt.rtplot.SWTMediaPool;
@@ -16,8 +19,7 @@ import org.csstudio.swt.rtplot.data.PlotDataItem;
 import org.csstudio.swt.rtplot.data.PlotDataProvider;
 import org.csstudio.swt.rtplot.internal.util.IntList;
 import org.csstudio.swt.rtplot.internal.util.ScreenTransform;
-import org.eclipse.swt.SWT;
-import org.eclipse.swt.graphics.Color;
+import org.csstudio.swt.rtplot.internal.util.TraceDecimation;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Rectangle;
 
@@ -32,6 +34,12 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
     // plus it works better when using dashed or wide lines,
     // but it requires an int[] array of varying size.
     // IntList turned out to be about 3x faster than ArrayList<Integer>.
+    //
+    // Only samples within the visible range are drawn,
+    // and those are decimated to the first, last, minimum and maximum
+    // per pixel column. Drawing them results in the same pixels as
+    // drawing all samples, but the number of points handed to
+    // the GC depends on the plot width, not the number of samples.
 
     /** Initial {@link IntList} size */
     private static final int INITIAL_ARRAY_SIZE = 2048;
@@ -48,6 +56,11 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
     final private static int OUTSIDE = 1000;
     private int x_min, x_max, y_min, y_max;
 
+    final private TraceDecimation<XTYPE> decimation = new TraceDecimation<>();
+
+    /** Range of samples to draw */
+    private int first, last;
+
     final private int clipX(final double x)
     {
         if (x < x_min)
@@ -66,86 +79,110 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
         return y;
     }
 
+    /** @param y_transform Coordinate transform used by the value axis
+     *  @param value Value
+     *  @return Rounded, clipped screen coordinate
+     */
+    final private int clipY(final ScreenTransform<Double> y_transform, final double value)
+    {
+        return clipY((int)Math.round(y_transform.transform(value)));
+    }
+
     /** @param gc GC
      *  @param media
      *  @param bounds Clipping bounds within which to paint
      *  @param opacity Opacity (0 .. 100 %) of 'area'
      *  @param x_transform Coordinate transform used by the x axis
+     *  @param y_axis Value axis
      *  @param trace Trace, has reference to its value axis
      */
     final public void paint(final GC gc, final SWTMediaPool media, final Rectangle bounds, final int opacity,
                             final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis, final Trace<XTYPE> trace)
+    {
+        render(null, bounds, opacity, x_transform, y_axis.getScreenTransform(), trace).draw(gc, media);
+    }
+
+    /** Render trace into a layer
+     *
+     *  <p>Only accesses the trace data and axes, not the GC,
+     *  so several traces can be rendered in parallel.
+     *  The transforms must be copies that are not changed while rendering.
+     *
+     *  @param previous Previous layer of the trace or <code>null</code>
+     *  @param bounds Clipping bounds within which to paint
+     *  @param opacity Opacity (0 .. 100 %) of 'area'
+     *  @param x_transform Coordinate transform used by the x axis
+     *  @param y_transform Coordinate transform used by the value axis of the trace
+     *  @param trace Trace, has reference to its value axis
+     *  @return {@link TraceLayer}, <code>previous</code> if that is still valid
+     */
+    final public TraceLayer render(final TraceLayer previous, final Rectangle bounds, final int opacity,
+                                   final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform, final Trace<XTYPE> trace)
     {
         x_min = bounds.x - OUTSIDE;
         x_max = bounds.x + bounds.width + OUTSIDE;
         y_min = bounds.y - OUTSIDE;
         y_max = bounds.y + bounds.height + OUTSIDE;
 
-        final Color old_color = gc.getForeground();
-        final Color old_bg = gc.getBackground();
-        final int old_width = gc.getLineWidth();
-
         final int alpha = (opacity * 255) / 100;
 
-        final Color color = media.get(trace.getColor());
-        gc.setBackground(color);
-        gc.setForeground(color);
-
-        // TODO Use anti-alias?
-        gc.setAdvanced(true);
-        gc.setAntialias(SWT.ON);
-
-        // TODO Optimize drawing
-        //
-        // Determine first sample to draw via PlotDataSearch.findSampleLessOrEqual(),
-        // then end drawing when reaching right end of area.
-        //
-        // Loop only once, performing drawMinMax, drawStdDev, drawValueStaircase in one loop
-        //
-        // For now, main point is that this happens in non-UI thread,
-        // so the slower the better to test UI responsiveness.
         final PlotDataProvider<XTYPE> data = trace.getData();
         data.getLock().lock();
         try
         {
+            final Object[] key = getKey(bounds, opacity, x_transform, y_transform, trace, data);
+            if (previous != null  &&  previous.isValidFor(key))
+                return previous;
+            final TraceLayer layer = new TraceLayer(key, trace.getColor());
+
+            // Samples up to one pixel outside of the bounds
+            // are rounded into the first resp. last pixel column
+            final int[] range = decimation.getSampleRange(data,
+                                                          x_transform.inverse(bounds.x - 1),
+                                                          x_transform.inverse(bounds.x + bounds.width + 1));
+            if (range == null)
+                return layer;
+            first = range[0];
+            last = range[1];
+
             final TraceType type = trace.getType();
             switch (type)
             {
             case NONE:
                 break;
             case AREA:
-                gc.setAlpha(alpha);
-                drawMinMaxArea(gc, x_transform, y_axis, data);
-                gc.setAlpha(255);
-                drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth());
+                layer.setAlpha(alpha);
+                drawMinMaxArea(layer, x_transform, y_transform, data);
+                layer.setAlpha(255);
+                drawStdDevLines(layer, x_transform, y_transform, data, trace.getWidth());
+                drawValueStaircase(layer, x_transform, y_transform, data, trace.getWidth());
                 break;
             case AREA_DIRECT:
-                gc.setAlpha(alpha);
-                drawMinMaxArea(gc, x_transform, y_axis, data);
-                gc.setAlpha(255);
-                drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth());
+                layer.setAlpha(alpha);
+                drawMinMaxArea(layer, x_transform, y_transform, data);
+                layer.setAlpha(255);
+                drawStdDevLines(layer, x_transform, y_transform, data, trace.getWidth());
+                drawValueLines(layer, x_transform, y_transform, data, trace.getWidth());
                 break;
             case LINES:
-                drawMinMaxLines(gc, x_transform, y_axis, data, trace.getWidth());
-                gc.setAlpha(alpha);
-                drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
-                gc.setAlpha(255);
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth());
+                drawMinMaxLines(layer, x_transform, y_transform, data, trace.getWidth());
+                layer.setAlpha(alpha);
+                drawStdDevLines(layer, x_transform, y_transform, data, trace.getWidth());
+                layer.setAlpha(255);
+                drawValueStaircase(layer, x_transform, y_transform, data, trace.getWidth());
                 break;
             case LINES_DIRECT:
-                drawMinMaxLines(gc, x_transform, y_axis, data, trace.getWidth());
-                gc.setAlpha(alpha);
-                drawStdDevLines(gc, x_transform, y_axis, data, trace.getWidth());
-                gc.setAlpha(255);
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth());
+                drawMinMaxLines(layer, x_transform, y_transform, data, trace.getWidth());
+                layer.setAlpha(alpha);
+                drawStdDevLines(layer, x_transform, y_transform, data, trace.getWidth());
+                layer.setAlpha(255);
+                drawValueLines(layer, x_transform, y_transform, data, trace.getWidth());
                 break;
             case SINGLE_LINE:
-                drawValueStaircase(gc, x_transform, y_axis, data, trace.getWidth());
+                drawValueStaircase(layer, x_transform, y_transform, data, trace.getWidth());
                 break;
             case SINGLE_LINE_DIRECT:
-                drawValueLines(gc, x_transform, y_axis, data, trace.getWidth());
+                drawValueLines(layer, x_transform, y_transform, data, trace.getWidth());
                 break;
             }
 
@@ -159,37 +196,91 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             case DIAMONDS:
             case XMARKS:
             case TRIANGLES:
-                drawPoints(gc, x_transform, y_axis, data, point_type, trace.getPointSize());
+                // Points that are centered outside of the bounds
+                // might still be partially visible
+                final int size = trace.getPointSize();
+                final int[] point_range = decimation.getSampleRange(data,
+                                                                    x_transform.inverse(bounds.x - 1 - size),
+                                                                    x_transform.inverse(bounds.x + bounds.width + 1 + size));
+                first = point_range[0];
+                last = point_range[1];
+                drawPoints(layer, x_transform, y_transform, data, point_type, size);
                 break;
             }
+            return layer;
         }
         finally
         {
             data.getLock().unlock();
         }
-        gc.setLineWidth(old_width);
-        gc.setBackground(old_bg);
-        gc.setForeground(old_color);
+    }
+
+    /** Determine the rendering parameters of a trace
+     *
+     *  <p>The rendered trace remains valid while these are unchanged.
+     *  Data is compared by its {@link PlotDataProvider#getModificationCount()}.
+     *
+     *  @param bounds Clipping bounds within which to paint
+     *  @param opacity Opacity (0 .. 100 %) of 'area'
+     *  @param x_transform Coordinate transform used by the x axis
+     *  @param y_transform Coordinate transform used by the value axis
+     *  @param trace Trace
+     *  @param data Data of the trace, must already be locked
+     *  @return Rendering parameters, <code>null</code> if data changes are not tracked
+     */
+    private Object[] getKey(final Rectangle bounds, final int opacity,
+                            final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
+                            final Trace<XTYPE> trace, final PlotDataProvider<XTYPE> data)
+    {
+        final long modifications = data.getModificationCount();
+        if (modifications < 0)
+            return null;
+        return new Object[]
+        {
+            new Rectangle(bounds.x, bounds.y, bounds.width, bounds.height), opacity,
+            trace.getColor(), trace.getType(), trace.getWidth(), trace.getPointType(), trace.getPointSize(),
+            // Axis transformations are identified by their values at start, middle and end
+            x_transform.inverse(bounds.x), x_transform.inverse(bounds.x + bounds.width/2), x_transform.inverse(bounds.x + bounds.width),
+            y_transform.inverse(bounds.y), y_transform.inverse(bounds.y + bounds.height/2), y_transform.inverse(bounds.y + bounds.height),
+            data, modifications
+        };
+    }
+
+    /** @param x_transform Horizontal axis
+     *  @return Function that maps position to rounded, clipped pixel column
+     */
+    final private ToIntFunction<XTYPE> roundedX(final ScreenTransform<XTYPE> x_transform)
+    {
+        return position -> clipX(Math.round(x_transform.transform(position)));
+    }
+
+    /** @param x_transform Horizontal axis
+     *  @return Function that maps position to truncated, clipped pixel column
+     */
+    final private ToIntFunction<XTYPE> truncatedX(final ScreenTransform<XTYPE> x_transform)
+    {
+        return position -> clipX(x_transform.transform(position));
     }
 
     /** Draw values of data as staircase line
-     *  @param gc GC
+     *  @param layer Layer
      *  @param x_transform Horizontal axis
-     *  @param y_axis Value axis
+     *  @param y_transform Coordinate transform used by the value axis
      *  @param data Data
      *  @param line_width
      */
-    final private void drawValueStaircase(final GC gc,
-            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
+    final private void drawValueStaircase(final TraceLayer layer,
+            final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
             final PlotDataProvider<XTYPE> data, final int line_width)
     {
         final IntList value_poly = new IntList(INITIAL_ARRAY_SIZE);
-        final int N = data.size();
+        final IntList samples = decimation.decimateValues(data, first, last, roundedX(x_transform));
+        final int N = samples.size();
         int last_x = -1, last_y = -1;
-        gc.setLineWidth(line_width);
+        layer.setLineWidth(line_width);
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(samples.get(i));
             final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
             final double value = item.getValue();
             if (value_poly.size() > 0  && x != last_x)
@@ -200,12 +291,12 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
             }
             if (Double.isNaN(value))
             {
-                flushPolyLine(gc, value_poly, line_width);
+                flushPolyLine(layer, value_poly, line_width);
                 last_x = last_y = -1;
             }
             else
             {
-                final int y = clipY(y_axis.getScreenCoord(value));
+                final int y = clipY(y_transform, value);
                 if (last_x == x  &&  last_y == y)
                     continue;
                 value_poly.add(x);
@@ -213,37 +304,38 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                 last_y = y;
             }
         }
-        flushPolyLine(gc, value_poly, line_width);
+        flushPolyLine(layer, value_poly, line_width);
     }
 
     /** Draw values of data as direct line
-     *  @param gc GC
+     *  @param layer Layer
      *  @param x_transform Horizontal axis
-     *  @param y_axis Value axis
+     *  @param y_transform Coordinate transform used by the value axis
      *  @param data Data
      *  @param line_width
      */
-    final private void drawValueLines(final GC gc,
-            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
+    final private void drawValueLines(final TraceLayer layer,
+            final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
             final PlotDataProvider<XTYPE> data, final int line_width)
     {
         final IntList value_poly = new IntList(INITIAL_ARRAY_SIZE);
-        final int N = data.size();
-        gc.setLineWidth(line_width);
+        final IntList samples = decimation.decimateValues(data, first, last, roundedX(x_transform));
+        final int N = samples.size();
+        layer.setLineWidth(line_width);
         int last_x = -1, last_y = -1;
         for (int i=0; i<N; ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(samples.get(i));
             final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
             final double value = item.getValue();
             if (Double.isNaN(value))
             {
-                flushPolyLine(gc, value_poly, line_width);
+                flushPolyLine(layer, value_poly, line_width);
                 last_x = last_y = -1;
             }
             else
             {
-                final int y = clipY(y_axis.getScreenCoord(value));
+                final int y = clipY(y_transform, value);
                 if (x == last_x  &&  y == last_y)
                     continue;
                 value_poly.add(x);
@@ -252,163 +344,180 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                 last_y = y;
             }
         }
-        flushPolyLine(gc, value_poly, line_width);
+        flushPolyLine(layer, value_poly, line_width);
     }
 
     /** Draw min/max outline
-     *  @param gc GC
+     *  @param layer Layer
      *  @param x_transform Horizontal axis
-     *  @param y_axis Value axis
+     *  @param y_transform Coordinate transform used by the value axis
      *  @param data Data
      */
-    final private void drawMinMaxArea(final GC gc,
-            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
+    final private void drawMinMaxArea(final TraceLayer layer,
+            final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
             final PlotDataProvider<XTYPE> data)
     {
         final IntList pos = new IntList(INITIAL_ARRAY_SIZE);
         final IntList min = new IntList(INITIAL_ARRAY_SIZE);
         final IntList max = new IntList(INITIAL_ARRAY_SIZE);
 
-        final int N = data.size();
+        final IntList samples = decimation.decimate(data, first, last, truncatedX(x_transform),
+                                                    item -> Double.isNaN(item.getMin())  ||  Double.isNaN(item.getMax()),
+                                                    PlotDataItem::getMin, PlotDataItem::getMax);
+        final int N = samples.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(samples.get(i));
             double ymin = item.getMin();
             double ymax = item.getMax();
             if (Double.isNaN(ymin)  ||  Double.isNaN(ymax))
-                flushPolyFill(gc, pos, min, max);
+                flushPolyFill(layer, pos, min, max);
             else
             {
                 final int x1 = clipX(x_transform.transform(item.getPosition()));
-                final int y1min = clipY(y_axis.getScreenCoord(ymin));
-                final int y1max = clipY(y_axis.getScreenCoord(ymax));
+                final int y1min = clipY(y_transform, ymin);
+                final int y1max = clipY(y_transform, ymax);
                 pos.add(x1);
                 min.add(y1min);
                 max.add(y1max);
             }
         }
-        flushPolyFill(gc, pos, min, max);
+        flushPolyFill(layer, pos, min, max);
     }
 
     /** Draw min/max outline
-     *  @param gc GC
+     *  @param layer Layer
      *  @param x_transform Horizontal axis
-     *  @param y_axis Value axis
+     *  @param y_transform Coordinate transform used by the value axis
      *  @param data Data
      */
-    final private void drawMinMaxLines(final GC gc,
-            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
+    final private void drawMinMaxLines(final TraceLayer layer,
+            final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
             final PlotDataProvider<XTYPE> data, final int line_width)
     {
         final IntList min = new IntList(INITIAL_ARRAY_SIZE);
         final IntList max = new IntList(INITIAL_ARRAY_SIZE);
 
-        final int N = data.size();
+        final IntList samples = decimation.decimate(data, first, last, truncatedX(x_transform),
+                                                    item -> Double.isNaN(item.getMin())  ||  Double.isNaN(item.getMax()),
+                                                    PlotDataItem::getMin, PlotDataItem::getMax);
+        final int N = samples.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(samples.get(i));
             double ymin = item.getMin();
             double ymax = item.getMax();
             if (Double.isNaN(ymin)  ||  Double.isNaN(ymax))
             {
-                flushPolyLine(gc, min, line_width);
-                flushPolyLine(gc, max, line_width);
+                flushPolyLine(layer, min, line_width);
+                flushPolyLine(layer, max, line_width);
             }
             else
             {
                 final int x1 = clipX(x_transform.transform(item.getPosition()));
-                final int y1min = clipY(y_axis.getScreenCoord(ymin));
-                final int y1max = clipY(y_axis.getScreenCoord(ymax));
+                final int y1min = clipY(y_transform, ymin);
+                final int y1max = clipY(y_transform, ymax);
                 min.add(x1);   min.add(y1min);
                 max.add(x1);   max.add(y1max);
             }
         }
-        flushPolyLine(gc, min, line_width);
-        flushPolyLine(gc, max, line_width);
+        flushPolyLine(layer, min, line_width);
+        flushPolyLine(layer, max, line_width);
     }
 
     /** Draw std. deviation outline
-     *  @param gc GC
+     *  @param layer Layer
      *  @param x_transform Horizontal axis
-     *  @param y_axis Value axis
+     *  @param y_transform Coordinate transform used by the value axis
      *  @param data Data
      *  @param line_width
      */
-    final private void drawStdDevLines(final GC gc, final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
+    final private void drawStdDevLines(final TraceLayer layer, final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
             final PlotDataProvider<XTYPE> data, final int line_width)
     {
         final IntList lower_poly = new IntList(INITIAL_ARRAY_SIZE);
         final IntList upper_poly = new IntList(INITIAL_ARRAY_SIZE);
 
-        final int N = data.size();
+        final IntList samples = decimation.decimate(data, first, last, truncatedX(x_transform),
+                                                    item -> Double.isNaN(item.getValue())  ||  ! (item.getStdDev() > 0),
+                                                    item -> item.getValue() - item.getStdDev(),
+                                                    item -> item.getValue() + item.getStdDev());
+        final int N = samples.size();
         for (int i = 0;  i < N;  ++i)
         {
-            final PlotDataItem<XTYPE> item = data.get(i);
+            final PlotDataItem<XTYPE> item = data.get(samples.get(i));
             double value = item.getValue();
             double dev = item.getStdDev();
             if (Double.isNaN(value) ||  ! (dev > 0))
             {
-                flushPolyLine(gc, lower_poly, line_width);
-                flushPolyLine(gc, upper_poly, line_width);
+                flushPolyLine(layer, lower_poly, line_width);
+                flushPolyLine(layer, upper_poly, line_width);
             }
             else
             {
                 final int x = clipX(x_transform.transform(item.getPosition()));
-                final int low_y = clipY(y_axis.getScreenCoord(value - dev));
-                final int upp_y = clipY(y_axis.getScreenCoord(value + dev));
+                final int low_y = clipY(y_transform, value - dev);
+                final int upp_y = clipY(y_transform, value + dev);
                 lower_poly.add(x);  lower_poly.add(low_y);
                 upper_poly.add(x);  upper_poly.add(upp_y);
             }
         }
-        flushPolyLine(gc, lower_poly, line_width);
-        flushPolyLine(gc, upper_poly, line_width);
+        flushPolyLine(layer, lower_poly, line_width);
+        flushPolyLine(layer, upper_poly, line_width);
     }
 
-    /** @param gc GC
+    /** @param layer Layer
      *  @param poly Points of poly line, will be cleared
      *  @param line_width
      */
-    final private void flushPolyLine(final GC gc, final IntList poly, final int line_width)
+    final private void flushPolyLine(final TraceLayer layer, final IntList poly, final int line_width)
     {
         final int N = poly.size();
         if (N == 2)
-            drawPoint(gc, poly.get(0), poly.get(1), line_width);
+            drawPoint(layer, poly.get(0), poly.get(1), line_width);
         else if (N > 1)
-            gc.drawPolyline(poly.toArray());
+            layer.drawPolyline(poly.toArray());
         poly.clear();
     }
 
     /** Draw values of data as direct line
-     *  @param gc GC
+     *  @param layer Layer
      *  @param x_transform Horizontal axis
-     *  @param y_axis Value axis
+     *  @param y_transform Coordinate transform used by the value axis
      *  @param data Data
      *  @param point_type
      *  @param size
      */
-    final private void drawPoints(final GC gc,
-            final ScreenTransform<XTYPE> x_transform, final YAxisImpl<XTYPE> y_axis,
+    final private void drawPoints(final TraceLayer layer,
+            final ScreenTransform<XTYPE> x_transform, final ScreenTransform<Double> y_transform,
             final PlotDataProvider<XTYPE> data, PointType point_type, final int size)
     {
-        final int N = data.size();
-        int last_x = -1, last_y = -1;
-        for (int i=0; i<N; ++i)
+        // Points in the same column are only drawn once for each 'y'
+        final BitSet drawn = new BitSet();
+        int last_x = -1;
+        for (int i=first; i<=last; ++i)
         {
             final PlotDataItem<XTYPE> item = data.get(i);
             final int x = clipX(Math.round(x_transform.transform(item.getPosition())));
             final double value = item.getValue();
             if (!Double.isNaN(value))
             {
-                final int y = clipY(y_axis.getScreenCoord(value));
-                if (x == last_x  &&  y == last_y)
+                final int y = clipY(y_transform, value);
+                if (x != last_x)
+                {
+                    drawn.clear();
+                    last_x = x;
+                }
+                else if (drawn.get(y - y_min))
                     continue;
+                drawn.set(y - y_min);
                 switch (point_type)
                 {
                 case SQUARES:
-                    gc.fillRectangle(x-size/2, y-size/2, size, size);
+                    layer.fillRectangle(x-size/2, y-size/2, size, size);
                     break;
                 case DIAMONDS:
-                    gc.fillPolygon(new int[]
+                    layer.fillPolygon(new int[]
                     {
                         x, y-size/2,
                         x+size/2, y,
@@ -417,11 +526,11 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                     });
                     break;
                 case XMARKS:
-                    gc.drawLine(x-size/2, y-size/2, x+size/2, y+size/2);
-                    gc.drawLine(x-size/2, y+size/2, x+size/2, y-size/2);
+                    layer.drawLine(x-size/2, y-size/2, x+size/2, y+size/2);
+                    layer.drawLine(x-size/2, y+size/2, x+size/2, y-size/2);
                     break;
                 case TRIANGLES:
-                    gc.fillPolygon(new int[]
+                    layer.fillPolygon(new int[]
                     {
                         x, y-size/2,
                         x+size/2, y+size/2,
@@ -430,32 +539,30 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                     break;
                 case CIRCLES:
                 default:
-                    drawPoint(gc, x, y, size);
+                    drawPoint(layer, x, y, size);
                 }
-                last_x = x;
-                last_y = y;
             }
         }
     }
 
-    /** @param gc GC
+    /** @param layer Layer
      *  @param x Coordinate
      *  @param y .. of point on screen
      *  @param size
      */
-    final private void drawPoint(final GC gc, final int x, final int y, final int size)
+    final private void drawPoint(final TraceLayer layer, final int x, final int y, final int size)
     {
-        gc.fillOval(x-size/2, y-size/2, size, size);
+        layer.fillOval(x-size/2, y-size/2, size, size);
     }
 
     /** Fill area. All lists will be cleared.
-     *  @param gc GC
+     *  @param layer Layer
      *  @param pos Horizontal screen positions
      *  @param min Minimum 'y' values in screen coords
      *  @param max .. maximum
      */
     @SuppressWarnings("unused")
-    final private void flushPolyFill(final GC gc, final IntList pos, final IntList min, final IntList max)
+    final private void flushPolyFill(final TraceLayer layer, final IntList pos, final IntList min, final IntList max)
     {
         final int N = pos.size();
         if (N <= 0)
@@ -476,7 +583,7 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                 points[--tail] = max.get(i);
                 points[--tail] = pos.get(i);
             }
-            gc.fillPolygon(points);
+            layer.fillPolygon(points);
         }
         else
         {
@@ -503,7 +610,7 @@ public class TracePainter<XTYPE extends Comparable<XTYPE>>
                 lx = points[p++] = pos.get(i);
                 points[p++] = max.get(i);
             }
-            gc.fillPolygon(points);
+            layer.fillPolygon(points);
         }
 
         pos.clear();
@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.swt.rtplot.internal.util;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+import org.csstudio.swt.rtplot.data.PlotDataItem;
+import org.csstudio.swt.rtplot.data.PlotDataProvider;
+import org.csstudio.swt.rtplot.data.PlotDataPyramid;
+import org.csstudio.swt.rtplot.data.PlotDataSearch;
+import org.csstudio.swt.rtplot.data.ValueRange;
+
+/** Pixel-aware decimation of trace samples
+ *
+ *  <p>Samples that fall into the same pixel column of the plot
+ *  are reduced to the first and last sample of the column
+ *  and the samples with the minimum and maximum values.
+ *  Connecting those samples in their original order draws
+ *  the same pixels as connecting all samples, because the lines
+ *  within a pixel column only span from its minimum to its maximum.
+ *
+ *  <p>Samples must be ordered by position,
+ *  as already assumed by the {@link PlotDataSearch}.
+ *
+ *  <p>For a {@link PlotDataPyramid}, the minimum and maximum
+ *  values are located via its summary instead of
+ *  reading all samples.
+ *
+ *  @param <XTYPE> Data type of horizontal axis
+ *  @author agent
+ */
+public class TraceDecimation<XTYPE extends Comparable<XTYPE>>
+{
+    final private PlotDataSearch<XTYPE> search = new PlotDataSearch<>();
+
+    /** Determine the samples to draw for a horizontal range
+     *
+     *  <p>Includes the samples just outside the range,
+     *  since lines to those samples enter the visible range.
+     *
+     *  @param data Data, must already be locked
+     *  @param low Start of horizontal range
+     *  @param high End of horizontal range
+     *  @return <code>{ first, last }</code> sample index, <code>null</code> if there are no samples
+     */
+    public int[] getSampleRange(final PlotDataProvider<XTYPE> data, final XTYPE low, final XTYPE high)
+    {
+        final int N = data.size();
+        if (N <= 0)
+            return null;
+        // Axis might be inverted
+        final XTYPE start = low.compareTo(high) <= 0 ? low : high;
+        final XTYPE end = low.compareTo(high) <= 0 ? high : low;
+        int first = search.findSampleLessOrEqual(data, start);
+        if (first < 0)
+            first = 0;
+        int last = search.findSampleGreaterOrEqual(data, end);
+        if (last < 0)
+            last = N-1;
+        return new int[] { first, last };
+    }
+
+    /** Reduce samples to those required for drawing
+     *
+     *  @param data Data, must already be locked
+     *  @param first Index of first sample to consider
+     *  @param last Index of last sample to consider
+     *  @param x_pixel Function that maps sample position to pixel column, must be monotonic
+     *  @param is_break Samples for which this returns <code>true</code> are kept,
+     *                  and they separate the samples before and after
+     *                  since they break the line
+     *  @param values Values of samples whose minimum and maximum must be preserved
+     *  @return Indices of the samples to draw
+     */
+    @SafeVarargs
+    final public IntList decimate(final PlotDataProvider<XTYPE> data, final int first, final int last,
+                                  final ToIntFunction<XTYPE> x_pixel,
+                                  final Predicate<PlotDataItem<XTYPE>> is_break,
+                                  final ToDoubleFunction<PlotDataItem<XTYPE>>... values)
+    {
+        final IntList result = new IntList(2048);
+        // Indices of first, last, min and max samples within a column
+        final int[] selected = new int[2 + 2*values.length];
+        int i = first;
+        while (i <= last)
+        {
+            // Locate end of pixel column
+            final int column = x_pixel.applyAsInt(data.get(i).getPosition());
+            final int end = findColumnEnd(data, i, last, column, x_pixel);
+
+            // Handle sections of the column, separated by breaks
+            int section = i;
+            for (int s=i; s<=end; ++s)
+            {
+                if (is_break.test(data.get(s)))
+                {
+                    if (s > section)
+                        addSection(data, section, s-1, values, selected, result);
+                    result.add(s);
+                    section = s+1;
+                }
+            }
+            if (section <= end)
+                addSection(data, section, end, values, selected, result);
+            i = end + 1;
+        }
+        return result;
+    }
+
+    /** Reduce samples to those required for drawing their values
+     *
+     *  <p>Like {@link #decimate}, with <code>NaN</code> values breaking
+     *  the line, but using the summary of a {@link PlotDataPyramid}
+     *  to locate the samples to keep.
+     *
+     *  @param data Data, must already be locked
+     *  @param first Index of first sample to consider
+     *  @param last Index of last sample to consider
+     *  @param x_pixel Function that maps sample position to pixel column, must be monotonic
+     *  @return Indices of the samples to draw
+     */
+    public IntList decimateValues(final PlotDataProvider<XTYPE> data, final int first, final int last,
+                                  final ToIntFunction<XTYPE> x_pixel)
+    {
+        if (! (data instanceof PlotDataPyramid))
+            return decimate(data, first, last, x_pixel,
+                            item -> Double.isNaN(item.getValue()),
+                            PlotDataItem::getValue);
+        final PlotDataPyramid<XTYPE> pyramid = (PlotDataPyramid<XTYPE>) data;
+        final IntList result = new IntList(2048);
+        final int[] selected = new int[4];
+        int i = first;
+        while (i <= last)
+        {
+            final int column = x_pixel.applyAsInt(data.get(i).getPosition());
+            final int end = findColumnEnd(data, i, last, column, x_pixel);
+            int section = i;
+            while (section <= end)
+            {
+                final int nan = pyramid.findNaN(section, end);
+                final int section_end = nan < 0 ? end : nan - 1;
+                if (section_end - section >= 2)
+                {
+                    final int[] min_max = pyramid.findMinMax(section, section_end);
+                    selected[0] = section;
+                    selected[1] = section_end;
+                    selected[2] = min_max[0];
+                    selected[3] = min_max[1];
+                    addSelected(selected, 4, result);
+                }
+                else
+                    for (int s=section; s<=section_end; ++s)
+                        result.add(s);
+                if (nan < 0)
+                    break;
+                result.add(nan);
+                section = nan + 1;
+            }
+            i = end + 1;
+        }
+        return result;
+    }
+
+    /** @param data Data
+     *  @param start Index of sample in column
+     *  @param last Index of last sample to consider
+     *  @param column Pixel column of sample 'start'
+     *  @param x_pixel Function that maps sample position to pixel column
+     *  @return Index of last sample in the same column
+     */
+    private int findColumnEnd(final PlotDataProvider<XTYPE> data, final int start, final int last,
+                              final int column, final ToIntFunction<XTYPE> x_pixel)
+    {
+        // Exponential search for a sample beyond the column..
+        int low = start, step = 1;
+        while (low + step <= last  &&
+               x_pixel.applyAsInt(data.get(low + step).getPosition()) == column)
+        {
+            low += step;
+            step *= 2;
+        }
+        // .. then binary search between 'low' (in column)
+        // and 'high' (beyond column or end of data)
+        int high = Math.min(low + step, last + 1);
+        while (high - low > 1)
+        {
+            final int mid = (low + high) >>> 1;
+            if (x_pixel.applyAsInt(data.get(mid).getPosition()) == column)
+                low = mid;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** Add first, last and samples with min/max values of a section to result
+     *  @param data Data
+     *  @param start First sample of section
+     *  @param end Last sample of section
+     *  @param values Values of samples whose minimum and maximum must be preserved
+     *  @param selected Buffer for selected indices
+     *  @param result Result to update
+     */
+    private void addSection(final PlotDataProvider<XTYPE> data, final int start, final int end,
+                            final ToDoubleFunction<PlotDataItem<XTYPE>>[] values,
+                            final int[] selected, final IntList result)
+    {
+        if (end - start < 2)
+        {   // No need to decimate
+            for (int i=start; i<=end; ++i)
+                result.add(i);
+            return;
+        }
+        int n = 0;
+        selected[n++] = start;
+        selected[n++] = end;
+        for (ToDoubleFunction<PlotDataItem<XTYPE>> value : values)
+        {
+            int min_index = start, max_index = start;
+            double min = Double.NaN, max = Double.NaN;
+            for (int i=start; i<=end; ++i)
+            {
+                final double v = value.applyAsDouble(data.get(i));
+                if (Double.isNaN(v))
+                    continue;
+                if (Double.isNaN(min)  ||  v < min)
+                {
+                    min = v;
+                    min_index = i;
+                }
+                if (Double.isNaN(max)  ||  v > max)
+                {
+                    max = v;
+                    max_index = i;
+                }
+            }
+            selected[n++] = min_index;
+            selected[n++] = max_index;
+        }
+        addSelected(selected, n, result);
+    }
+
+    /** Add selected samples in original order, without duplicates
+     *  @param selected Indices of selected samples, will be sorted
+     *  @param n Number of selected samples
+     *  @param result Result to update
+     */
+    private void addSelected(final int[] selected, final int n, final IntList result)
+    {
+        Arrays.sort(selected, 0, n);
+        int previous = -1;
+        for (int i=0; i<n; ++i)
+            if (selected[i] != previous)
+                result.add(previous = selected[i]);
+    }
+
+    /** Determine range of finite values
+     *  @param data Data, must already be locked
+     *  @param first Index of first sample to consider
+     *  @param last Index of last sample to consider
+     *  @return {@link ValueRange}, low &gt; high if there are no finite values
+     */
+    public ValueRange getValueRange(final PlotDataProvider<XTYPE> data, final int first, final int last)
+    {
+        if (data instanceof PlotDataPyramid)
+        {
+            final int[] min_max = ((PlotDataPyramid<XTYPE>) data).findMinMax(first, last);
+            if (min_max[0] < 0)
+                return new ValueRange(Double.MAX_VALUE, -Double.MAX_VALUE);
+            final double low = data.get(min_max[0]).getValue();
+            final double high = data.get(min_max[1]).getValue();
+            // Summary includes infinite values, which are ignored here
+            if (Double.isFinite(low)  &&  Double.isFinite(high))
+                return new ValueRange(low, high);
+        }
+        double low = Double.MAX_VALUE;
+        double high = -Double.MAX_VALUE;
+        for (int i=first; i<=last; ++i)
+        {
+            final double value = data.get(i).getValue();
+            if (! Double.isFinite(value))
+                continue;
+            if (value < low)
+                low = value;
+            if (value > high)
+                high = value;
+        }
+        return new ValueRange(low, high);
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.apputil.ringbuffer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/** JUnit test of the ConcurrentRingBuffer
+ *  @author agent
+ */
+public class ConcurrentRingBufferUnitTest
+{
+    @Test
+    public void testRingBuffer() throws Exception
+    {
+        final ConcurrentRingBuffer<Integer> ring = new ConcurrentRingBuffer<Integer>(5);
+        assertTrue(ring.isEmpty());
+        assertFalse(ring.isFull());
+
+        // Add/remove one item
+        assertEquals(0, ring.add(1));
+        assertFalse(ring.isEmpty());
+        assertEquals(Integer.valueOf(1), ring.poll());
+        assertNull(ring.poll());
+        assertTrue(ring.isEmpty());
+
+        // Fill
+        for (int i=1; i<=5; ++i)
+            assertTrue(ring.offer(i));
+        assertTrue(ring.isFull());
+        assertFalse(ring.offer(6));
+
+        // Fill to 9, but ring only remembers the last 5 items
+        for (int i=6; i<10; ++i)
+            assertEquals(1, ring.add(i));
+        assertTrue(ring.isFull());
+        assertEquals(5, ring.size());
+
+        // Drain in batches
+        final List<Integer> batch = new ArrayList<>();
+        assertEquals(3, ring.drainTo(batch, 3));
+        assertEquals(2, ring.size());
+        assertEquals(2, ring.drainTo(batch, 3));
+        assertEquals(0, ring.drainTo(batch, 3));
+        assertEquals(5, batch.size());
+        for (int i=0; i<5; ++i)
+            assertEquals(Integer.valueOf(5+i), batch.get(i));
+        assertTrue(ring.isEmpty());
+    }
+
+    /** Several threads add, one removes.
+     *  Every item must be received or counted as dropped,
+     *  and items of each thread must arrive in order.
+     */
+    @Test(timeout=30000)
+    public void testThreads() throws Exception
+    {
+        final int threads = 4, items = 100000;
+        final ConcurrentRingBuffer<int[]> ring = new ConcurrentRingBuffer<int[]>(100);
+        final AtomicInteger dropped = new AtomicInteger();
+        final Thread[] producers = new Thread[threads];
+        for (int t=0; t<threads; ++t)
+        {
+            final int id = t;
+            producers[t] = new Thread(() ->
+            {
+                for (int i=0; i<items; ++i)
+                    dropped.addAndGet(ring.add(new int[] { id, i }));
+            });
+            producers[t].start();
+        }
+
+        final int[] last = new int[threads];
+        Arrays.fill(last, -1);
+        int received = 0;
+        boolean running = true;
+        while (running)
+        {
+            running = false;
+            for (Thread producer : producers)
+                if (producer.isAlive())
+                    running = true;
+            int[] item;
+            while ((item = ring.poll()) != null)
+            {
+                assertTrue(item[1] > last[item[0]]);
+                last[item[0]] = item[1];
+                ++received;
+            }
+        }
+        assertTrue(ring.isEmpty());
+        assertEquals(threads * items, received + dropped.get());
+    }
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.apputil.ringbuffer;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** Lock-free, bounded ring buffer.
+ *  <p>
+ *  Thread-safe alternative to the {@link RingBuffer}
+ *  which does not require callers to synchronize.
+ *  Any number of threads may add and remove items.
+ *  <p>
+ *  Each slot of the ring carries a sequence number
+ *  in a primitive <code>long</code> array which tells
+ *  adding and removing threads if the slot is ready for them,
+ *  so the only contention is a compare-and-set on the
+ *  head or tail position.
+ *  <p>
+ *  Like the {@link RingBuffer}, adding to a full buffer
+ *  drops the oldest element.
+ *
+ *  @author agent
+ *  @param <T> Element type
+ */
+public class ConcurrentRingBuffer<T>
+{
+    //  Positions only increase.
+    //  Position 'pos' uses slot [pos % capacity].
+    //
+    //  Initial: sequence[i] = i, head = tail = 0.
+    //
+    //  sequence[slot] == pos     : Slot is free, can be filled for position 'pos'
+    //  sequence[slot] == pos + 1 : Slot holds the item for position 'pos'
+    //
+    //  Removing the item for 'pos' releases the slot for 'pos + capacity'.
+    private final int capacity;
+    private final AtomicReferenceArray<T> ring;
+    private final AtomicLongArray sequence;
+
+    /** Position of the next item to remove */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Position of the next item to add */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** Initialize
+     *  @param capacity Capacity
+     */
+    public ConcurrentRingBuffer(final int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity); //$NON-NLS-1$
+        this.capacity = capacity;
+        ring = new AtomicReferenceArray<>(capacity);
+        sequence = new AtomicLongArray(capacity);
+        for (int i=0; i<capacity; ++i)
+            sequence.set(i, i);
+    }
+
+    /** @return Maximum number of entries in ring buffer */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** @return Number of valid entries in ring buffer.
+     *          Only a snapshot while other threads access the buffer.
+     */
+    public int size()
+    {
+        // Read head first: Tail can only grow meanwhile,
+        // so result might be too large but never negative
+        final long start = head.get();
+        final long size = tail.get() - start;
+        if (size <= 0)
+            return 0;
+        if (size >= capacity)
+            return capacity;
+        return (int) size;
+    }
+
+    /** @return <code>true</code> if ring buffer is empty */
+    public boolean isEmpty()
+    {
+        return size() <= 0;
+    }
+
+    /** @return <code>true</code> if ring buffer is full,
+     *          i.e. the next addition will override the oldest element
+     */
+    public boolean isFull()
+    {
+        return size() >= capacity;
+    }
+
+    /** Add item to ring buffer unless it is full
+     *  @param item Item to add, must not be <code>null</code>
+     *  @return <code>true</code> if added, <code>false</code> if ring buffer is full
+     */
+    public boolean offer(final T item)
+    {
+        if (item == null)
+            throw new NullPointerException();
+        while (true)
+        {
+            final long pos = tail.get();
+            final int slot = (int) (pos % capacity);
+            final long diff = sequence.get(slot) - pos;
+            if (diff == 0)
+            {   // Slot is free. Try to claim it
+                if (tail.compareAndSet(pos, pos+1))
+                {
+                    ring.lazySet(slot, item);
+                    // Publish the item
+                    sequence.set(slot, pos+1);
+                    return true;
+                }
+            }
+            else if (diff < 0)
+            {   // Slot still holds the item from one round ago.
+                // Is that because the buffer is really full,
+                // or is another thread about to release the slot?
+                if (tail.get() - head.get() >= capacity)
+                    return false;
+            }
+            // else: Another thread added at 'pos', retry with updated tail
+        }
+    }
+
+    /** Add item to ring buffer, dropping oldest items when full
+     *  @param item Item to add, must not be <code>null</code>
+     *  @return Number of older items that were dropped to make room
+     */
+    public int add(final T item)
+    {
+        int dropped = 0;
+        while (! offer(item))
+            if (poll() != null)
+                ++dropped;
+        return dropped;
+    }
+
+    /** Remove the oldest ring buffer element.
+     *  @return Oldest ring buffer element or <code>null</code>
+     */
+    public T poll()
+    {
+        while (true)
+        {
+            final long pos = head.get();
+            final int slot = (int) (pos % capacity);
+            final long diff = sequence.get(slot) - (pos+1);
+            if (diff == 0)
+            {   // Slot holds item for 'pos'. Try to claim it
+                if (head.compareAndSet(pos, pos+1))
+                {
+                    final T item = ring.get(slot);
+                    ring.lazySet(slot, null);
+                    // Release slot for the next round
+                    sequence.set(slot, pos+capacity);
+                    return item;
+                }
+            }
+            else if (diff < 0)
+            {   // Slot not yet filled.
+                // Empty, or is another thread about to publish an item?
+                if (tail.get() <= pos)
+                    return null;
+            }
+            // else: Another thread removed 'pos', retry with updated head
+        }
+    }
+
+    /** Remove the oldest ring buffer elements, adding them to a collection
+     *  @param items Collection to which the removed elements are added
+     *  @param max_items Maximum number of elements to remove
+     *  @return Number of elements that were removed
+     */
+    public int drainTo(final Collection<? super T> items, final int max_items)
+    {
+        int count = 0;
+        T item;
+        while (count < max_items  &&  (item = poll()) != null)
+        {
+            items.add(item);
+            ++count;
+        }
+        return count;
+    }
+
+    /** Remove all ring buffer elements */
+    public void clear()
+    {
+        while (poll() != null)
+            ; // NOP
+    }
+}
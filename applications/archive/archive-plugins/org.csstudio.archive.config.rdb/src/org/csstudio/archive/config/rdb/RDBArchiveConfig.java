@@ -17,7 +17,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.csstudio.archive.config.ArchiveConfig;
 import org.csstudio.archive.config.ChannelConfig;
@@ -42,6 +50,9 @@ import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
 @SuppressWarnings("nls")
 public class RDBArchiveConfig implements ImportableArchiveConfig
 {
+    /** RDB URL, user, password for additional connections */
+    final private String url, user, password;
+
     /** RDB connection */
     private RDBUtil rdb;
 
@@ -79,6 +90,9 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
     public RDBArchiveConfig(final String url, final String user, final String password,
             final String schema) throws Exception
     {
+        this.url = url;
+        this.user = user;
+        this.password = password;
         rdb = RDBUtil.connect(url, user, password, false);
         sql = new SQL(rdb.getDialect(), schema);
         loadSampleModes();
@@ -583,6 +597,14 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
             result.close();
         }
 
+        return sortByName(channels);
+    }
+
+    /** @param channels Channels
+     *  @return Channels sorted by name
+     */
+    private static ChannelConfig[] sortByName(final List<ChannelConfig> channels)
+    {
         final ChannelConfig[] chan_arr = channels.toArray(new ChannelConfig[channels.size()]);
         // Sort by channel name in Java.
         // SQL should already give sorted result, but handling of upper/lowercase
@@ -599,6 +621,122 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
         return chan_arr;
     }
 
+    /** {@inheritDoc}
+     *
+     *  <p>Reads the channels of all groups, including the time of their last sample,
+     *  in one query instead of one query per group and another one per channel.
+     *  With more than one {@link RDBArchivePreferences#CONFIG_THREADS},
+     *  groups are read in parallel, each thread using its own RDB connection.
+     */
+    @Override
+    public ChannelConfig[][] getChannels(final EngineConfig engine, final GroupConfig[] groups,
+                                         final boolean skip_last) throws Exception
+    {
+        final Map<Integer, List<ChannelConfig>> channels = new ConcurrentHashMap<>();
+        final int threads = Math.min(RDBArchivePreferences.getConfigThreads(), groups.length);
+        if (threads > 1  &&  ! skip_last)
+            readChannelsInParallel(groups, threads, channels);
+        else
+            readChannels(rdb.getConnection(),
+                         skip_last ? sql.channel_sel_by_engine_id : sql.channel_sel_with_last_time_by_engine_id,
+                         ((RDBEngineConfig)engine).getId(), ! skip_last, channels);
+
+        final ChannelConfig[][] result = new ChannelConfig[groups.length][];
+        for (int i=0; i<groups.length; ++i)
+        {
+            final List<ChannelConfig> group_channels = channels.get(((RDBGroupConfig)groups[i]).getId());
+            result[i] = group_channels == null
+                      ? new ChannelConfig[0]
+                      : sortByName(group_channels);
+        }
+        return result;
+    }
+
+    /** Read channels of groups in parallel
+     *  @param groups Groups to read
+     *  @param threads Number of threads, each with its own RDB connection
+     *  @param channels Map of group ID to channels that will be updated
+     *  @throws Exception on error
+     */
+    private void readChannelsInParallel(final GroupConfig[] groups, final int threads,
+                                        final Map<Integer, List<ChannelConfig>> channels) throws Exception
+    {
+        final Queue<GroupConfig> queue = new ConcurrentLinkedQueue<>(Arrays.asList(groups));
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<Void>> results = new ArrayList<>();
+            for (int i=0; i<threads; ++i)
+                results.add(pool.submit(() ->
+                {
+                    final RDBUtil group_rdb = RDBUtil.connect(url, user, password, false);
+                    try
+                    {
+                        GroupConfig group;
+                        while ((group = queue.poll()) != null)
+                            readChannels(group_rdb.getConnection(), sql.channel_sel_with_last_time_by_group_id,
+                                         ((RDBGroupConfig)group).getId(), true, channels);
+                    }
+                    finally
+                    {
+                        group_rdb.close();
+                    }
+                    return null;
+                }));
+            // Wait for all, passing the first error on
+            for (Future<Void> result : results)
+                result.get();
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Read channels
+     *  @param connection RDB connection
+     *  @param query Query for grp_id, channel_id, name, smpl_mode_id, smpl_val, smpl_per [, last sample time]
+     *  @param id Engine or group ID for the query
+     *  @param with_last_time Does query return the last sample time?
+     *  @param channels Map of group ID to channels that will be updated
+     *  @throws Exception on error
+     */
+    private void readChannels(final Connection connection, final String query, final int id,
+                              final boolean with_last_time,
+                              final Map<Integer, List<ChannelConfig>> channels) throws Exception
+    {
+        // Most channels share a few sample modes
+        final Map<String, RDBSampleMode> modes = new HashMap<>();
+        try
+        (
+            final PreparedStatement statement = connection.prepareStatement(query);
+        )
+        {
+            statement.setFetchSize(1000);
+            statement.setInt(1, id);
+            final ResultSet result = statement.executeQuery();
+            while (result.next())
+            {   // grp_id, channel_id, name, smpl_mode_id, smpl_val, smpl_per [, last sample time]
+                final int mode_id = result.getInt(4);
+                final double value = result.getDouble(5), period = result.getDouble(6);
+                final String mode_key = mode_id + " " + value + " " + period;
+                RDBSampleMode sample_mode = modes.get(mode_key);
+                if (sample_mode == null)
+                {
+                    sample_mode = getSampleMode(mode_id, value, period);
+                    modes.put(mode_key, sample_mode);
+                }
+                final Instant last_sample_time = with_last_time
+                                               ? toLastSampleTime(result.getTimestamp(7))
+                                               : null;
+                channels.computeIfAbsent(result.getInt(1), grp_id -> new ArrayList<>())
+                        .add(new RDBChannelConfig(result.getInt(2), result.getString(3),
+                                                  sample_mode, last_sample_time));
+            }
+            result.close();
+        }
+    }
+
     /** @param channel_id Channel ID in RDB
      *  @return Name of channel
      *  @throws Exception on error
@@ -639,25 +777,30 @@ public class RDBArchiveConfig implements ImportableArchiveConfig
         )
         {
             if (result.next())
-            {
-                final Timestamp stamp = result.getTimestamp(1);
-                if (stamp == null)
-                    return null;
-
-                if (rdb.getDialect() != Dialect.Oracle)
-                {
-                    // For Oracle, the time stamp is indeed the last time.
-                    // For others, it's only the seconds, not the nanoseconds.
-                    // Since this time stamp is only used to avoid going back in time,
-                    // add a second to assert that we are _after_ the last sample
-                    stamp.setTime(stamp.getTime() + 1000);
-                }
-                return TimestampHelper.fromSQLTimestamp(stamp);
-            }
+                return toLastSampleTime(result.getTimestamp(1));
         }
         return null;
     }
 
+    /** @param stamp Time stamp of last sample read from RDB, may be <code>null</code>
+     *  @return Time stamp to use for last sample or <code>null</code>
+     */
+    private Instant toLastSampleTime(final Timestamp stamp)
+    {
+        if (stamp == null)
+            return null;
+
+        if (rdb.getDialect() != Dialect.Oracle)
+        {
+            // For Oracle, the time stamp is indeed the last time.
+            // For others, it's only the seconds, not the nanoseconds.
+            // Since this time stamp is only used to avoid going back in time,
+            // add a second to assert that we are _after_ the last sample
+            stamp.setTime(stamp.getTime() + 1000);
+        }
+        return TimestampHelper.fromSQLTimestamp(stamp);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void close()
@@ -34,6 +34,9 @@ public class SQL
 
     // 'channel' table
     final public String channel_sel_by_group_id;
+    final public String channel_sel_by_engine_id;
+    final public String channel_sel_with_last_time_by_engine_id;
+    final public String channel_sel_with_last_time_by_group_id;
     final public String channel_sel_by_id;
     final public String channel_sel_by_name;
     final public String channel_clear_grp_for_engine;
@@ -77,6 +80,13 @@ public class SQL
 
         // 'channel' table
         channel_sel_by_group_id = "SELECT channel_id, name, smpl_mode_id, smpl_val, smpl_per FROM " + schema + "channel WHERE grp_id=? ORDER BY name";
+        // Bulk reads of all channels, optionally with the time of their last sample
+        final String channel_columns = "SELECT c.grp_id, c.channel_id, c.name, c.smpl_mode_id, c.smpl_val, c.smpl_per";
+        final String last_time = ", (SELECT MAX(s.smpl_time) FROM " + schema + "sample s WHERE s.channel_id=c.channel_id)";
+        final String by_engine = " FROM " + schema + "channel c JOIN " + schema + "chan_grp g ON c.grp_id = g.grp_id WHERE g.eng_id=?";
+        channel_sel_by_engine_id = channel_columns + by_engine;
+        channel_sel_with_last_time_by_engine_id = channel_columns + last_time + by_engine;
+        channel_sel_with_last_time_by_group_id = channel_columns + last_time + " FROM " + schema + "channel c WHERE c.grp_id=?";
         channel_sel_by_id = "SELECT name FROM " + schema + "channel WHERE channel_id=?";
         channel_sel_by_name = "SELECT channel_id FROM " + schema + "channel WHERE name=?";
         channel_clear_grp_for_engine =
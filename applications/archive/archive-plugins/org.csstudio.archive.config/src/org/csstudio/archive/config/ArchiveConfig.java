@@ -41,6 +41,27 @@ public interface ArchiveConfig
      */
     public ChannelConfig[] getChannels(GroupConfig group, boolean skip_last) throws Exception;
 
+    /** Locate all channels of several groups
+     *
+     *  <p>Implementations may read the channels of all groups at once,
+     *  which can be much faster than calling {@link #getChannels(GroupConfig, boolean)}
+     *  for one group after the other.
+     *
+     *  @param engine Engine of the groups
+     *  @param groups Groups for which to locate channels
+     *  @param skip_last Skip reading last sample time
+     *  @return {@link ChannelConfig} array for each group
+     *  @throws Exception on error, e.g. RDB access problem
+     */
+    default public ChannelConfig[][] getChannels(final EngineConfig engine, final GroupConfig[] groups,
+                                                 final boolean skip_last) throws Exception
+    {
+        final ChannelConfig[][] channels = new ChannelConfig[groups.length][];
+        for (int i=0; i<groups.length; ++i)
+            channels[i] = getChannels(groups[i], skip_last);
+        return channels;
+    }
+
     /** Must be called when configuration is no longer used to release resources */
     public void close();
 }
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.csstudio.apputil.ringbuffer.RingBuffer;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** Benchmark of the lock-free {@link SampleBuffer}
+ *  against the previous, synchronized {@link RingBuffer}.
+ *  <p>
+ *  1, 4, 16 threads add samples, one thread
+ *  removes them like the {@link WriteThread}.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class SampleBufferDemo
+{
+    private static final long RUNTIME = 5 * 1000l;
+
+    private static final int CAPACITY = 1000;
+
+    private static final int BATCH = 500;
+
+    /** Queue API used by the benchmark */
+    private interface Queue
+    {
+        void add(VType value);
+        int drain(List<VType> batch);
+    }
+
+    /** Previous implementation: Lock around RingBuffer */
+    private static class SynchronizedQueue implements Queue
+    {
+        final private RingBuffer<VType> samples = new RingBuffer<VType>(CAPACITY);
+
+        @Override
+        public void add(final VType value)
+        {
+            synchronized (samples)
+            {
+                samples.add(value);
+            }
+        }
+
+        @Override
+        public int drain(final List<VType> batch)
+        {
+            int count = 0;
+            while (count < BATCH)
+            {
+                final VType value;
+                synchronized (samples)
+                {
+                    value = samples.remove();
+                }
+                if (value == null)
+                    break;
+                batch.add(value);
+                ++count;
+            }
+            return count;
+        }
+    }
+
+    /** Current {@link SampleBuffer} */
+    private static class LockFreeQueue implements Queue
+    {
+        final private SampleBuffer samples = new SampleBuffer("Demo", null, CAPACITY);
+
+        @Override
+        public void add(final VType value)
+        {
+            samples.add(value);
+        }
+
+        @Override
+        public int drain(final List<VType> batch)
+        {
+            return samples.drainTo(batch, BATCH);
+        }
+    }
+
+    private void benchmark(final String title, final Queue queue, final int producers) throws Exception
+    {
+        final VType value = TestHelper.newValue(3.14);
+        final AtomicBoolean run = new AtomicBoolean(true);
+        final LongAdder added = new LongAdder();
+        final CountDownLatch done = new CountDownLatch(producers);
+        for (int i=0; i<producers; ++i)
+        {
+            final Thread thread = new Thread(() ->
+            {
+                long count = 0;
+                while (run.get())
+                {
+                    queue.add(value);
+                    ++count;
+                }
+                added.add(count);
+                done.countDown();
+            }, "Producer" + i);
+            thread.start();
+        }
+
+        final List<VType> batch = new ArrayList<>(BATCH);
+        final long start = System.currentTimeMillis();
+        final long end = start + RUNTIME;
+        long removed = 0;
+        while (end > System.currentTimeMillis())
+        {
+            removed += queue.drain(batch);
+            batch.clear();
+        }
+        run.set(false);
+        done.await();
+        final double secs = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.format(
+            "%-14s, %2d producers: %12d added, %12d removed in %.2f sec = %12.1f vals/sec\n",
+            title, producers, added.sum(), removed, secs, removed / secs);
+    }
+
+    @Test
+    public void testSampleBuffers() throws Exception
+    {
+        for (int producers : new int[] { 1, 4, 16 })
+        {
+            benchmark("Synchronized", new SynchronizedQueue(), producers);
+            benchmark("Lock-free", new LockFreeQueue(), producers);
+        }
+    }
+}
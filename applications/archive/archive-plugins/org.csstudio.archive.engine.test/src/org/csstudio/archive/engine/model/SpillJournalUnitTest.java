@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.csstudio.archive.vtype.ArchiveVEnum;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.WriteChannel;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VEnum;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link SpillJournal}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class SpillJournalUnitTest
+{
+    /** {@link ArchiveWriter} that remembers the samples */
+    private static class DemoWriter implements ArchiveWriter
+    {
+        final List<VType> samples = new ArrayList<>();
+
+        @Override
+        public WriteChannel getChannel(final String name) throws Exception
+        {
+            return () -> name;
+        }
+
+        @Override
+        public void addSample(final WriteChannel channel, final VType sample) throws Exception
+        {
+            samples.add(sample);
+        }
+
+        @Override
+        public void flush() throws Exception
+        {
+            // NOP
+        }
+
+        @Override
+        public void close()
+        {
+            // NOP
+        }
+    }
+
+    @Test
+    public void testSpillAndReplay() throws Exception
+    {
+        final File file = File.createTempFile("spill", ".journal");
+        file.delete();
+        file.deleteOnExit();
+
+        final SampleBuffer buffer = new SampleBuffer("Demo", null, 100);
+        SpillJournal journal = new SpillJournal(file, 1024*1024);
+        for (int i=0; i<10; ++i)
+            buffer.add(TestHelper.newValue(i));
+        buffer.add(new ArchiveVString(VTypeHelper.getTimestamp(TestHelper.newValue(0)),
+                                      AlarmSeverity.INVALID, "Disconnected", "Disconnected"));
+        buffer.add(new ArchiveVEnum(VTypeHelper.getTimestamp(TestHelper.newValue(0)),
+                                    AlarmSeverity.MINOR, "Low", Arrays.asList("Off", "On"), 1));
+        assertEquals(12, journal.spill(Arrays.asList(buffer)));
+        assertEquals(0, buffer.getQueueSize());
+        assertEquals(12, journal.getSampleCount());
+
+        // Samples remain in journal after closing and re-opening
+        journal.close();
+        journal = new SpillJournal(file, 1024*1024);
+        assertEquals(12, journal.getSampleCount());
+
+        // Replay limited number of samples
+        final DemoWriter writer = new DemoWriter();
+        assertEquals(5, journal.replay(writer, 5, 2));
+        assertEquals(7, journal.getSampleCount());
+        assertEquals(7, journal.replay(writer, 100, 2));
+        assertEquals(0, journal.getSampleCount());
+        assertEquals(0, journal.getUsedBytes());
+
+        assertEquals(12, writer.samples.size());
+        for (int i=0; i<10; ++i)
+        {
+            final VNumber number = (VNumber) writer.samples.get(i);
+            assertEquals((double) i, number.getValue().doubleValue(), 0.01);
+            assertEquals(TestHelper.display.getUnits(), number.getUnits());
+        }
+        assertEquals("Disconnected", VTypeHelper.getMessage(writer.samples.get(10)));
+        final VEnum enumerated = (VEnum) writer.samples.get(11);
+        assertEquals("On", enumerated.getValue());
+        assertEquals(AlarmSeverity.MINOR, enumerated.getAlarmSeverity());
+        journal.close();
+    }
+
+    @Test
+    public void testOverrun() throws Exception
+    {
+        final File file = File.createTempFile("spill", ".journal");
+        file.delete();
+        file.deleteOnExit();
+
+        // Buffer that overruns moves oldest samples into the journal
+        final SpillJournal journal = new SpillJournal(file, 1024*1024);
+        final SampleBuffer buffer = new SampleBuffer("Demo", null, 10);
+        SampleBuffer.setSpillJournal(journal);
+        try
+        {
+            for (int i=0; i<15; ++i)
+                buffer.add(TestHelper.newValue(i));
+        }
+        finally
+        {
+            SampleBuffer.setSpillJournal(null);
+        }
+        assertEquals(0, buffer.getBufferStats().getOverruns());
+        assertEquals(10, buffer.getQueueSize());
+        assertEquals(5, journal.getSampleCount());
+        assertTrue(journal.getUsedBytes() > 0);
+        assertFalse(journal.getDroppedSamples() > 0);
+        journal.close();
+    }
+
+    /** @param file Journal file
+     *  @param samples Number of samples to spill into the journal
+     *  @throws Exception on error
+     */
+    private void createJournal(final File file, final int samples) throws Exception
+    {
+        final SampleBuffer buffer = new SampleBuffer("Demo", null, 100);
+        final SpillJournal journal = new SpillJournal(file, 1024*1024);
+        for (int i=0; i<samples; ++i)
+            buffer.add(TestHelper.newValue(i));
+        assertEquals(samples, journal.spill(Arrays.asList(buffer)));
+        journal.close();
+    }
+
+    @Test
+    public void testResize() throws Exception
+    {
+        final File file = File.createTempFile("spill", ".journal");
+        file.delete();
+        file.deleteOnExit();
+        createJournal(file, 10);
+
+        // Opening with smaller size keeps the samples until they're replayed
+        final int size = 100;
+        SpillJournal journal = new SpillJournal(file, size);
+        assertEquals(10, journal.getSampleCount());
+        assertTrue(journal.getCapacity() > size);
+        final DemoWriter writer = new DemoWriter();
+        assertEquals(10, journal.replay(writer, 100, 5));
+        assertEquals(10, writer.samples.size());
+        assertEquals(0, journal.getSampleCount());
+        assertEquals(size - 20, journal.getCapacity());
+        journal.close();
+        assertEquals(size, file.length());
+
+        // Opening with larger size grows the journal
+        journal = new SpillJournal(file, 1024*1024);
+        assertEquals(0, journal.getSampleCount());
+        assertEquals(1024*1024 - 20, journal.getCapacity());
+        journal.close();
+    }
+
+    @Test
+    public void testCorruption() throws Exception
+    {
+        final File file = File.createTempFile("spill", ".journal");
+        file.delete();
+        file.deleteOnExit();
+        createJournal(file, 10);
+
+        // Corrupt the length of the third sample
+        try
+        (
+            final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        )
+        {
+            long pos = 20;
+            for (int i=0; i<2; ++i)
+            {
+                raf.seek(pos);
+                pos += 4 + raf.readInt();
+            }
+            raf.seek(pos);
+            raf.writeInt(-42);
+        }
+
+        // Samples before the corrupted one are kept
+        final SpillJournal journal = new SpillJournal(file, 1024*1024);
+        assertEquals(2, journal.getSampleCount());
+        final DemoWriter writer = new DemoWriter();
+        assertEquals(2, journal.replay(writer, 100, 5));
+        assertEquals(0.0, ((VNumber) writer.samples.get(0)).getValue().doubleValue(), 0.01);
+        assertEquals(1.0, ((VNumber) writer.samples.get(1)).getValue().doubleValue(), 0.01);
+        assertEquals(0, journal.getSampleCount());
+        journal.close();
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link WriteRateControl}
+ *  @author agent
+ */
+public class WriteRateControlUnitTest
+{
+    @Test
+    public void testControl()
+    {
+        final WriteRateControl control = new WriteRateControl(30000, 500);
+        assertEquals(30000, control.getPeriod());
+        assertEquals(500, control.getBatchSize());
+
+        // Medium fill level: No change
+        control.update(0.3);
+        assertEquals(30000, control.getPeriod());
+        assertEquals(500, control.getBatchSize());
+
+        // Buffers fill up: Write faster, larger batches
+        control.update(0.8);
+        assertEquals(15000, control.getPeriod());
+        assertEquals(1000, control.getBatchSize());
+
+        // .. but limited
+        for (int i=0; i<10; ++i)
+            control.update(1.0);
+        assertEquals(30000 / WriteRateControl.MAX_FACTOR, control.getPeriod());
+        assertEquals(500 * WriteRateControl.MAX_FACTOR, control.getBatchSize());
+
+        // Back off to configured settings
+        for (int i=0; i<10; ++i)
+            control.update(0.0);
+        assertEquals(30000, control.getPeriod());
+        assertEquals(500, control.getBatchSize());
+
+        // Never faster than minimum period
+        final WriteRateControl fast = new WriteRateControl(5000, 500);
+        for (int i=0; i<10; ++i)
+            fast.update(1.0);
+        assertEquals(WriteRateControl.MIN_PERIOD, fast.getPeriod());
+    }
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link WriteThreads}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class WriteThreadsUnitTest
+{
+    @Test
+    public void testSharding()
+    {
+        final WriteThreads writers = new WriteThreads(4);
+        assertEquals(4, writers.getThreads().size());
+
+        // Same channel always handled by same thread
+        assertSame(writers.getThread("Fred"), writers.getThread("Fred"));
+
+        // Channels are spread over all threads
+        final int[] counts = new int[4];
+        for (int i=0; i<1000; ++i)
+            ++counts[writers.getThreads().indexOf(writers.getThread("Channel" + i))];
+        for (int count : counts)
+            assertTrue(count > 100);
+
+        // At least one thread
+        assertEquals(1, new WriteThreads(0).getThreads().size());
+    }
+}
@@ -11,6 +11,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.csstudio.apputil.time.BenchmarkTimer;
 import org.junit.Test;
 
@@ -198,4 +200,99 @@ public class ScannerUnitTest
 
         System.out.format("Idle: %.2f %%\n", scanner.getIdlePercentage());
     }
+
+    /** Many items, quickly added and removed */
+    @Test
+    public void testManyItems() throws Exception
+    {
+        final Scanner scanner = new Scanner();
+        final int N = 100000;
+        final ScanItem[] items = new ScanItem[N];
+        final BenchmarkTimer timer = new BenchmarkTimer();
+        for (int i=0; i<N; ++i)
+        {
+            items[i] = new ScanItem("Item" + i);
+            scanner.add(items[i], 1.0 + (i % 10));
+        }
+        // Move to other scan list
+        for (int i=0; i<N; i+=2)
+            scanner.add(items[i], 20.0);
+        timer.stop();
+        System.out.format("Added %d items in %.2f secs\n", N, timer.getSeconds());
+        assertTrue(timer.getSeconds() < 5.0);
+        // Lists for 1, 3, 5, .. seconds are now empty, leaving 2, 4, .., 10 and 20
+        assertEquals(6, scanner.size());
+
+        for (int i=0; i<N; ++i)
+            scanner.remove(items[i]);
+        assertFalse(scanner.isDueAtAll());
+    }
+
+    /** Scan in worker threads, slow list does not delay fast list */
+    @Test
+    public void testWorkers() throws Exception
+    {
+        final Scanner scanner = new Scanner(2);
+        final ScanItem item = new ScanItem("Fast");
+        final Runnable slow = () ->
+        {
+            try
+            {
+                Thread.sleep(2500);
+            }
+            catch (InterruptedException ex)
+            {
+                // Ignore
+            }
+        };
+        scanner.add(slow, 0.5);
+        scanner.add(item, fast_period);
+
+        final ScanThread thread = new ScanThread(scanner);
+        thread.start();
+        final BenchmarkTimer timer = new BenchmarkTimer();
+        while (item.scans < 3)
+            Thread.sleep(100);
+        timer.stop();
+        thread.stop();
+        thread.join();
+        System.out.format("Elapsed: %.2f secs, %d late scans\n", timer.getSeconds(), scanner.getLateScans());
+        assertTrue(timer.getSeconds() < 4.0);
+        // Slow list skipped scans
+        assertTrue(scanner.getLateScans() > 0);
+    }
+
+    /** Fast scan list with slow item, scanned by worker thread */
+    @Test
+    public void testBusyWorker() throws Exception
+    {
+        final Scanner scanner = new Scanner(1);
+        final AtomicInteger scans = new AtomicInteger();
+        final Runnable slow = () ->
+        {
+            scans.incrementAndGet();
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException ex)
+            {
+                // Ignore
+            }
+        };
+        scanner.add(slow, 0.1);
+
+        final ScanThread thread = new ScanThread(scanner);
+        thread.start();
+        Thread.sleep(2000);
+        thread.stop();
+        thread.join();
+        System.out.format("%d scans, %d late scans, idle %.2f %%\n",
+                          scans.get(), scanner.getLateScans(), scanner.getIdlePercentage());
+        // Scanned about every 0.1 sec, not only once per idle delay
+        assertTrue(scans.get() >= 15);
+        // Scanner thread only waits for the next due time, not for the busy worker
+        assertTrue(scanner.getIdlePercentage() > 0.0);
+        assertTrue(scanner.getIdlePercentage() < 90.0);
+    }
 }
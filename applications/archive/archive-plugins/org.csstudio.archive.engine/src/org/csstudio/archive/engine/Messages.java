@@ -36,6 +36,7 @@ public class Messages
     final public static String HTTP_CurrentValue = "Current Value";
     final public static String HTTP_LastArchivedValue = "Last Archived Value";
     final public static String HTTP_LastWriteTime = "Last Written";
+    final public static String HTTP_LateScans = "Late Scans";
     final public static String HTTP_MainTitle = "Archive Engine";
     final public static String HTTP_Mechanism = "Mechanism";
     final public static String HTTP_Never = "never";
@@ -45,6 +46,7 @@ public class Messages
     final public static String HTTP_QueueCapacity = "Capacity";
     final public static String HTTP_QueueOverruns = "Overruns";
     final public static String HTTP_ReceivedValues = "Received Values";
+    final public static String HTTP_SpillJournal = "Spill Journal";
     final public static String HTTP_StartTime = "Start Time";
     final public static String HTTP_State = "State";
     final public static String HTTP_Status = "Status";
@@ -57,4 +59,5 @@ public class Messages
     final public static String HTTP_WriteError = "Write Error";
     final public static String HTTP_WritePeriod = "Write Period";
     final public static String HTTP_WriteState = "Write State";
+    final public static String HTTP_WriteThread = "Write Thread";
 }
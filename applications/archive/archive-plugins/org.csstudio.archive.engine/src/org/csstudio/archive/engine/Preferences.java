@@ -49,6 +49,60 @@ public class Preferences
         return prefs.getInt(Activator.ID, "batch_size", batch_size, null);
     }
 
+    public static int getWriteThreads()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int write_threads = 1;
+        if (prefs == null)
+            return write_threads;
+        return prefs.getInt(Activator.ID, "write_threads", write_threads, null);
+    }
+
+    public static int getScanThreads()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int scan_threads = 0;
+        if (prefs == null)
+            return scan_threads;
+        return prefs.getInt(Activator.ID, "scan_threads", scan_threads, null);
+    }
+
+    public static boolean isAdaptiveWrite()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final boolean adaptive_write = false;
+        if (prefs == null)
+            return adaptive_write;
+        return prefs.getBoolean(Activator.ID, "adaptive_write", adaptive_write, null);
+    }
+
+    public static String getSpillDirectory()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final String spill_directory = "";
+        if (prefs == null)
+            return spill_directory;
+        return prefs.getString(Activator.ID, "spill_directory", spill_directory, null).trim();
+    }
+
+    public static int getSpillSize()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int spill_size = 100;
+        if (prefs == null)
+            return spill_size;
+        return prefs.getInt(Activator.ID, "spill_size", spill_size, null);
+    }
+
+    public static int getSpillReplayLimit()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        final int spill_replay_limit = 10000;
+        if (prefs == null)
+            return spill_replay_limit;
+        return prefs.getInt(Activator.ID, "spill_replay_limit", spill_replay_limit, null);
+    }
+
     public static double getBufferReserve()
     {
         final IPreferencesService prefs = Platform.getPreferencesService();
@@ -7,6 +7,8 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.model;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.csstudio.util.stats.Average;
 
 /** Buffer statistics
@@ -18,7 +20,10 @@ public class BufferStats
 
     private Average average_size = new Average();
 
-    private int overruns = 0;
+    /** Overruns are counted by the threads that add samples,
+     *  so this is updated without locking
+     */
+    private final AtomicInteger overruns = new AtomicInteger();
 
     /** @return Maximum queue size so far
      *  @see #reset()
@@ -35,9 +40,9 @@ public class BufferStats
     }
 
     /** @return Number of buffer overruns. */
-    synchronized public final int getOverruns()
+    public final int getOverruns()
     {
-        return overruns;
+        return overruns.get();
     }
 
     /** Reset the statistics. */
@@ -45,7 +50,7 @@ public class BufferStats
     {
         max_size = 0;
         average_size.reset();
-        overruns = 0;
+        overruns.set(0);
     }
 
     /** Update the buffer stats.
@@ -59,8 +64,16 @@ public class BufferStats
     }
 
     /** Add an overrun. */
-    synchronized public void addOverrun()
+    public void addOverrun()
+    {
+        overruns.incrementAndGet();
+    }
+
+    /** Add overruns.
+     *  @param count Number of overruns to add
+     */
+    public void addOverruns(final int count)
     {
-        ++overruns;
+        overruns.addAndGet(count);
     }
 }
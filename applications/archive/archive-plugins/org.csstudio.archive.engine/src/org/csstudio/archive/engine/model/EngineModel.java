@@ -7,6 +7,7 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.model;
 
+import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -40,8 +41,8 @@ public class EngineModel
     /** Name of this model */
     private String name = "Archive Engine";  //$NON-NLS-1$
 
-    /** Thread that writes to the <code>archive</code> */
-    final private WriteThread writer;
+    /** Threads that write to the <code>archive</code> */
+    final private WriteThreads writer;
 
     /** All the channels.
      *  <p>
@@ -62,7 +63,7 @@ public class EngineModel
     final List<ArchiveGroup> groups = new ArrayList<ArchiveGroup>();
 
     /** Scanner for scanned channels */
-    final Scanner scanner = new Scanner();
+    final Scanner scanner = new Scanner(Preferences.getScanThreads());
 
     /** Thread that runs the scanner */
     final ScanThread scan_thread = new ScanThread(scanner);
@@ -97,6 +98,24 @@ public class EngineModel
     /** Write batch size */
     final private static int batch_size = Preferences.getBatchSize();
 
+    /** Number of write threads */
+    final private static int write_threads = Preferences.getWriteThreads();
+
+    /** Directory for spill journal, empty to disable */
+    final private static String spill_directory = Preferences.getSpillDirectory();
+
+    /** Size of spill journal in MB */
+    final private static int spill_size = Preferences.getSpillSize();
+
+    /** Maximum number of samples to replay from spill journal per write run */
+    final private static int spill_replay_limit = Preferences.getSpillReplayLimit();
+
+    /** Journal for samples that cannot be written, or <code>null</code> */
+    private SpillJournal spill = null;
+
+    /** Adapt write period and batch size to buffer fill level? */
+    final private static boolean adaptive_write = Preferences.isAdaptiveWrite();
+
     /** Buffer reserve (N times what's ideally needed) */
     final private static double buffer_reserve = Preferences.getBufferReserve();
 
@@ -106,7 +125,7 @@ public class EngineModel
     /** Construct model that writes to archive */
     public EngineModel()
     {
-        writer = new WriteThread();
+        writer = new WriteThreads(write_threads);
     }
 
     /** @return Name (description) */
@@ -133,6 +152,36 @@ public class EngineModel
         return batch_size;
     }
 
+    /** @return <code>true</code> if write period and batch size adapt to buffer fill level */
+    public boolean isAdaptiveWrite()
+    {
+        return adaptive_write;
+    }
+
+    /** @return Current write period in seconds, may differ from configured period when adaptive */
+    public double getCurrentWritePeriod()
+    {
+        return writer.getWritePeriod();
+    }
+
+    /** @return Current write batch size, may differ from configured size when adaptive */
+    public int getCurrentBatchSize()
+    {
+        return writer.getBatchSize();
+    }
+
+    /** @return Journal for samples that cannot be written, or <code>null</code> */
+    public SpillJournal getSpillJournal()
+    {
+        return spill;
+    }
+
+    /** @return Write threads */
+    public List<WriteThread> getWriteThreads()
+    {
+        return writer.getThreads();
+    }
+
     /** @return Current model state */
     public State getState()
     {
@@ -313,7 +362,13 @@ public class EngineModel
     {
         start_time = Instant.now();
         state = State.RUNNING;
-        writer.start(write_period, batch_size);
+        if (! spill_directory.isEmpty())
+        {
+            final File file = new File(spill_directory, name.replaceAll("[^A-Za-z0-9_.-]", "_") + ".spill"); //$NON-NLS-1$ //$NON-NLS-2$
+            spill = new SpillJournal(file, spill_size * 1024L * 1024L);
+            writer.setSpillJournal(spill, spill_replay_limit);
+        }
+        writer.start(write_period, batch_size, adaptive_write);
         for (ArchiveGroup group : groups)
         {
             group.start();
@@ -350,6 +405,12 @@ public class EngineModel
         return scanner.getIdlePercentage();
     }
 
+    /** @see Scanner#getLateScans() */
+    public int getLateScans()
+    {
+        return scanner.getLateScans();
+    }
+
     /** Ask the model to stop.
      *  Merely updates the model state.
      *  @see #getState()
@@ -399,7 +460,19 @@ public class EngineModel
             group.stop();
         // Flush all values out
         Activator.getLogger().info("Stopping writer");
-        writer.shutdown();
+        try
+        {
+            writer.shutdown();
+        }
+        finally
+        {
+            if (spill != null)
+            {
+                writer.setSpillJournal(null, 0);
+                spill.close();
+                spill = null;
+            }
+        }
         // Update state
         state = State.IDLE;
         start_time = null;
@@ -424,13 +497,15 @@ public class EngineModel
             throw new Exception("Engine running on port " + port +
                 " while configuration requires " + engine.getURL().toString());
 
-        // Get groups
+        // Get groups and their channels
         final GroupConfig[] engine_groups = config.getGroups(engine);
-        for (GroupConfig group_config : engine_groups)
+        final ChannelConfig[][] group_channels = config.getChannels(engine, engine_groups, skip_last);
+        for (int g=0; g<engine_groups.length; ++g)
         {
+            final GroupConfig group_config = engine_groups[g];
             final ArchiveGroup group = addGroup(group_config.getName());
             // Add channels to group
-            final ChannelConfig[] channel_configs = config.getChannels(group_config, skip_last);
+            final ChannelConfig[] channel_configs = group_channels[g];
             for (ChannelConfig channel_config : channel_configs)
             {
                 Enablement enablement = Enablement.Passive;
@@ -7,16 +7,20 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.model;
 
+import java.util.List;
 import java.util.logging.Level;
 
-import org.csstudio.apputil.ringbuffer.RingBuffer;
+import org.csstudio.apputil.ringbuffer.ConcurrentRingBuffer;
 import org.csstudio.archive.engine.ThrottledLogger;
 import org.diirt.vtype.VType;
 
 /** Buffer for the samples of one channel.
  *  <p>
- *  Assumes that one thread adds samples, while a different
+ *  Typically one thread adds samples, while a different
  *  thread removes them.
+ *  Since monitor, scan and write threads for many channels
+ *  all access their buffers at the same time, the buffer
+ *  is lock-free.
  *  When the queue size is reached, older samples get dropped.
  *
  *  @author Kay Kasemir
@@ -34,14 +38,17 @@ public class SampleBuffer
      */
     final private String retention;
 
-    /** The actual samples in a thread-save queue. */
-    final private RingBuffer<VType> samples;
+    /** The actual samples in a lock-free queue. */
+    final private ConcurrentRingBuffer<VType> samples;
 
     /** Statistics */
     final private BufferStats stats = new BufferStats();
 
-    /** Number of overruns when new string of overruns started, or <code>null</code> */
-    private Integer start_of_overruns;
+    /** Number of overruns when new string of overruns started, or -1.
+     *  Only used to log overruns, so updates from concurrent
+     *  'add' calls need not be exact.
+     */
+    private volatile int start_of_overruns = -1;
 
     /** Logger for overrun messages */
     final private static ThrottledLogger overrun_msg =
@@ -52,6 +59,11 @@ public class SampleBuffer
      */
     private static volatile boolean error = false;
 
+    /** Journal for samples that would otherwise be dropped, or <code>null</code>.
+     *  Like the error state, this is global for all buffers.
+     */
+    private static volatile SpillJournal spill = null;
+
     /** Create sample buffer of given capacity
      * @deprecated Use {@link #SampleBuffer(String,String,int)} instead*/
     SampleBuffer(final String channel_name, final int capacity)
@@ -65,7 +77,7 @@ public class SampleBuffer
     {
         this.channel_name = channel_name;
         this.retention = retention;
-        samples = new RingBuffer<VType>(capacity);
+        samples = new ConcurrentRingBuffer<VType>(capacity);
     }
 
     /** @return channel name of this buffer */
@@ -83,19 +95,13 @@ public class SampleBuffer
     /** @return Queue capacity, i.e. maximum queue size. */
     public int getCapacity()
     {
-        synchronized (samples)
-        {
-            return samples.getCapacity();
-        }
+        return samples.getCapacity();
     }
 
     /** @return Current queue size, i.e. number of samples in the queue. */
     public int getQueueSize()
     {
-        synchronized (samples)
-        {
-            return samples.size();
-        }
+        return samples.size();
     }
 
     /** @return <code>true</code> if currently experiencing write errors */
@@ -110,41 +116,76 @@ public class SampleBuffer
         SampleBuffer.error = error;
     }
 
-    /** Add a sample to the queue, maybe dropping older samples */
+    /** @param journal Journal for samples that would otherwise be dropped, or <code>null</code> */
+    static void setSpillJournal(final SpillJournal journal)
+    {
+        spill = journal;
+    }
+
+    /** Add a sample to the queue, maybe dropping older samples
+     *  or moving them to the {@link SpillJournal}
+     */
     @SuppressWarnings("nls")
     void add(final VType value)
     {
-        synchronized (samples)
+        // Try to add without dropping a sample
+        if (samples.offer(value))
         {
-            if (samples.isFull())
-            {   // Note start of overruns, then drop older sample
-                if (start_of_overruns == null)
-                    start_of_overruns = Integer.valueOf(stats.getOverruns());
-                stats.addOverrun();
-            }
-            else if (start_of_overruns != null)
+            final int start = start_of_overruns;
+            if (start >= 0)
             {   // Ending a string of overruns. Maybe log it.
-                final int overruns = stats.getOverruns() - start_of_overruns;
+                start_of_overruns = -1;
+                final int overruns = stats.getOverruns() - start;
                 overrun_msg.log(channel_name + ": " + overruns + " overruns");
-                start_of_overruns = null;
             }
-            samples.add(value);
+            return;
+        }
+        // Make room by moving oldest samples to journal, or dropping them
+        final SpillJournal journal = spill;
+        int dropped = 0;
+        if (journal == null)
+            dropped = samples.add(value);
+        else
+        {
+            while (! samples.offer(value))
+            {
+                final VType oldest = samples.poll();
+                if (oldest != null  &&  !journal.add(this, oldest))
+                    ++dropped;
+            }
+            if (dropped <= 0)
+                return;
         }
+        // Note start of overruns
+        if (start_of_overruns < 0)
+            start_of_overruns = stats.getOverruns();
+        stats.addOverruns(dropped);
     }
 
-    /** @return latest sample in queue or <code>null</code> if empty */
+    /** @return oldest sample in queue or <code>null</code> if empty */
     VType remove()
     {
-        synchronized (samples)
-        {
-            return samples.remove();
-        }
+        return samples.poll();
     }
 
-    /** Update stats with current values */
-    void updateStats()
+    /** Remove samples from the queue
+     *  @param batch List to which the oldest samples are added
+     *  @param max_samples Maximum number of samples to remove
+     *  @return Number of samples that were removed
+     */
+    int drainTo(final List<VType> batch, final int max_samples)
+    {
+        return samples.drainTo(batch, max_samples);
+    }
+
+    /** Update stats with current values
+     *  @return Current queue size
+     */
+    int updateStats()
     {
-        stats.updateSizes(getQueueSize());
+        final int size = getQueueSize();
+        stats.updateSizes(size);
+        return size;
     }
 
     /** @return Buffer statistics. */
@@ -156,7 +197,7 @@ public class SampleBuffer
     /** Reset statistics */
     public void reset()
     {
-        start_of_overruns = null;
+        start_of_overruns = -1;
         stats.reset();
     }
 
@@ -0,0 +1,609 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.csstudio.archive.engine.Activator;
+import org.csstudio.archive.vtype.ArchiveVEnum;
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVNumberArray;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.csstudio.archive.writer.ArchiveWriter;
+import org.csstudio.archive.writer.WriteChannel;
+import org.diirt.util.array.ArrayDouble;
+import org.diirt.util.array.ArrayFloat;
+import org.diirt.util.array.ListNumber;
+import org.diirt.util.text.NumberFormats;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.VEnum;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VNumberArray;
+import org.diirt.vtype.VString;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueFactory;
+
+/** Disk-based journal for samples that cannot be written right now.
+ *  <p>
+ *  While the {@link WriteThread}s cannot reach the archive,
+ *  they move samples from the {@link SampleBuffer}s into this journal,
+ *  and sample buffers that are about to overrun move their oldest
+ *  samples into the journal instead of dropping them.
+ *  Once writing succeeds again, the write threads replay the journal
+ *  in the order in which samples were added, a limited number of
+ *  samples per write run so that live samples are still written.
+ *  <p>
+ *  Replayed samples are thus written after newer live samples.
+ *  They are not sorted by time because the order of writes does not matter:
+ *  The archive readers order samples by time stamp,
+ *  and samples are not checked against the time of previously written samples.
+ *  <p>
+ *  The journal is an append-only, memory-mapped file.
+ *  Its header holds the read and write positions,
+ *  so samples that were not replayed when the engine stopped
+ *  are replayed after the next start.
+ *  The file is forced to disk after each spill of sample buffers,
+ *  after each write run that added or replayed samples, and when closed.
+ *  When all samples have been replayed, the journal starts over
+ *  at the beginning of the file.
+ *  When the journal is full, samples are dropped as before.
+ *  <p>
+ *  An existing journal is opened at its actual size,
+ *  even if the configured size changed,
+ *  and only resized once its samples have been replayed.
+ *  If the journal is corrupted, the samples before the
+ *  first invalid entry are kept.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class SpillJournal
+{
+    /** Marker at start of file */
+    final private static int MAGIC = 0x53504C31; // "SPL1"
+
+    /** Header: MAGIC, write position, read position */
+    final private static int HEADER_SIZE = 4 + 8 + 8;
+
+    final private static int WRITE_POS_OFFSET = 4;
+    final private static int READ_POS_OFFSET = 12;
+
+    /** Sample types in journal */
+    final private static byte DOUBLE = 1, LONG = 2, ENUM = 3, STRING = 4, DOUBLE_ARRAY = 5, LONG_ARRAY = 6;
+
+    /** Journal file */
+    final private File file;
+
+    final private FileChannel channel;
+
+    /** Configured size of the journal file */
+    final private int size;
+
+    /** Memory-mapped journal file.
+     *  Appending and updating the write position: Synchronize on 'this'.
+     *  Reading and updating the read position: Synchronize on 'replay_lock'.
+     *  Resetting both, which may re-map the file: Lock both.
+     */
+    private volatile MappedByteBuffer journal;
+
+    /** Lock for replay */
+    final private Object replay_lock = new Object();
+
+    /** Buffer for encoding a sample, reused while synchronized on 'this' */
+    private ByteBuffer encoded = ByteBuffer.allocate(1024);
+
+    /** Position where the next sample is appended */
+    private int write_pos;
+
+    /** Position of the next sample to replay */
+    private volatile int read_pos;
+
+    /** Number of samples in journal */
+    private volatile int count = 0;
+
+    /** Were samples added since the journal was last forced to disk? */
+    private boolean unforced = false;
+
+    /** Number of samples that could not be added because journal was full */
+    private volatile long dropped = 0;
+
+    /** Open journal file, creating it if it does not exist
+     *  @param file Journal file
+     *  @param size Size of journal in bytes, up to 2GB
+     *  @throws Exception on error
+     */
+    public SpillJournal(final File file, final long size) throws Exception
+    {
+        if (size <= HEADER_SIZE  ||  size > Integer.MAX_VALUE)
+            throw new Exception("Invalid spill journal size " + size);
+        this.file = file;
+        this.size = (int) size;
+        // Map existing file at its actual size, which may differ from the configured size,
+        // to keep samples that have not been replayed
+        final long existing = file.exists() ? file.length() : 0;
+        final boolean existed = existing >= HEADER_SIZE  &&  existing <= Integer.MAX_VALUE;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, existed ? Math.max(existing, size) : size);
+        if (existed  &&  journal.getInt(0) == MAGIC)
+        {
+            write_pos = (int) journal.getLong(WRITE_POS_OFFSET);
+            read_pos = (int) journal.getLong(READ_POS_OFFSET);
+            if (write_pos < HEADER_SIZE  ||  write_pos > journal.capacity()  ||
+                read_pos < HEADER_SIZE   ||  read_pos > write_pos)
+                throw new Exception("Corrupted spill journal " + file);
+            // Count samples that remain to be replayed
+            int pos = read_pos;
+            while (pos < write_pos)
+            {
+                final int length = journal.getInt(pos);
+                if (length < 0  ||  length > write_pos - pos - 4)
+                {   // Keep the valid samples
+                    Activator.getLogger().log(Level.WARNING,
+                        "Corrupted spill journal {0}: Invalid sample length {1} at position {2}, keeping {3} samples",
+                        new Object[] { file, length, pos, count });
+                    write_pos = pos;
+                    journal.putLong(WRITE_POS_OFFSET, write_pos);
+                    break;
+                }
+                pos += 4 + length;
+                ++count;
+            }
+            if (count > 0)
+                Activator.getLogger().log(Level.INFO, "Spill journal {0} holds {1} samples to replay",
+                                          new Object[] { file, count });
+            else
+                reset();
+        }
+        else
+            reset();
+    }
+
+    /** @return Journal file */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /** @return Number of samples in journal */
+    public int getSampleCount()
+    {
+        return count;
+    }
+
+    /** @return Number of bytes used */
+    public int getUsedBytes()
+    {
+        return Math.max(0, getWritePosition() - read_pos);
+    }
+
+    /** @return Journal capacity in bytes */
+    public int getCapacity()
+    {
+        return journal.capacity() - HEADER_SIZE;
+    }
+
+    /** @return Number of samples that were dropped because journal was full */
+    public long getDroppedSamples()
+    {
+        return dropped;
+    }
+
+    private synchronized int getWritePosition()
+    {
+        return write_pos;
+    }
+
+    /** Reset to empty journal.
+     *
+     *  <p>Resizes the journal to the configured size
+     *  if it was opened with a different size.
+     *  Caller must lock 'this' and 'replay_lock'
+     */
+    private void reset()
+    {
+        write_pos = HEADER_SIZE;
+        read_pos = HEADER_SIZE;
+        count = 0;
+        if (journal.capacity() != size)
+        {
+            try
+            {
+                journal.force();
+                final MappedByteBuffer resized = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                journal = resized;
+                channel.truncate(size);
+                Activator.getLogger().log(Level.INFO, "Spill journal {0} resized to {1} bytes",
+                                          new Object[] { file, size });
+            }
+            catch (IOException ex)
+            {   // Keep using the current mapping, or the new one even if the file cannot be truncated
+                Activator.getLogger().log(Level.WARNING, "Cannot resize spill journal " + file, ex);
+            }
+        }
+        journal.putInt(0, MAGIC);
+        journal.putLong(WRITE_POS_OFFSET, write_pos);
+        journal.putLong(READ_POS_OFFSET, read_pos);
+    }
+
+    /** Add sample to journal
+     *  @param buffer {@link SampleBuffer} from which the sample was taken
+     *  @param sample Sample to add
+     *  @return <code>true</code> if added, <code>false</code> if journal was full
+     */
+    public synchronized boolean add(final SampleBuffer buffer, final VType sample)
+    {
+        // Encode, growing the buffer as needed
+        while (true)
+        {
+            try
+            {
+                encoded.clear();
+                encode(encoded, buffer.getChannelName(), buffer.getArchiveDataRetention(), sample);
+                break;
+            }
+            catch (BufferOverflowException ex)
+            {
+                encoded = ByteBuffer.allocate(encoded.capacity() * 2);
+            }
+        }
+        encoded.flip();
+        final int length = encoded.remaining();
+        if (write_pos + 4 + length > journal.capacity())
+        {
+            ++dropped;
+            return false;
+        }
+        final ByteBuffer out = journal.duplicate();
+        out.position(write_pos);
+        out.putInt(length);
+        out.put(encoded);
+        write_pos += 4 + length;
+        journal.putLong(WRITE_POS_OFFSET, write_pos);
+        ++count;
+        unforced = true;
+        return true;
+    }
+
+    /** Write samples that were added to the journal to disk */
+    public synchronized void force()
+    {
+        if (! unforced)
+            return;
+        journal.force();
+        unforced = false;
+    }
+
+    /** Move all samples of sample buffers into the journal
+     *  @param buffers Buffers to empty
+     *  @return Number of samples added to journal
+     */
+    public int spill(final List<SampleBuffer> buffers)
+    {
+        int spilled = 0;
+        for (SampleBuffer buffer : buffers)
+        {
+            VType sample;
+            while ((sample = buffer.remove()) != null)
+                if (add(buffer, sample))
+                    ++spilled;
+                else
+                    buffer.getBufferStats().addOverrun();
+        }
+        force();
+        return spilled;
+    }
+
+    /** Write samples from journal to archive
+     *  <p>
+     *  The read position is only updated after the samples
+     *  were successfully flushed to the archive.
+     *  On error, the samples remain in the journal.
+     *
+     *  @param writer {@link ArchiveWriter}
+     *  @param max_samples Maximum number of samples to write
+     *  @param batch_size Number of samples to batch
+     *  @return Number of samples written
+     *  @throws Exception on error
+     */
+    public int replay(final ArchiveWriter writer, final int max_samples, final int batch_size) throws Exception
+    {
+        synchronized (replay_lock)
+        {
+            final int end = getWritePosition();
+            final ByteBuffer in = journal.duplicate();
+            final Map<String, WriteChannel> channels = new HashMap<>();
+            int pos = read_pos;
+            int written = 0, batched = 0;
+            while (pos < end  &&  written < max_samples)
+            {
+                final int length = in.getInt(pos);
+                in.limit(pos + 4 + length);
+                in.position(pos + 4);
+                final String name = getString(in);
+                final String retention = getString(in);
+                final VType sample = decode(in);
+                WriteChannel channel = channels.get(name);
+                if (channel == null)
+                {
+                    channel = writer.getChannel(name, retention.isEmpty() ? null : retention);
+                    channels.put(name, channel);
+                }
+                writer.addSample(channel, sample);
+                in.limit(in.capacity());
+                pos += 4 + length;
+                ++written;
+                if (++batched >= batch_size)
+                {
+                    writer.flush();
+                    commit(pos, batched);
+                    batched = 0;
+                }
+            }
+            writer.flush();
+            commit(pos, batched);
+            return written;
+        }
+    }
+
+    /** Update read position after samples have been written
+     *  @param pos New read position
+     *  @param samples Number of samples that were written
+     */
+    private void commit(final int pos, final int samples)
+    {   // Caller holds replay_lock
+        // Journal may have been reset by previous commit
+        if (samples <= 0)
+            return;
+        read_pos = pos;
+        journal.putLong(READ_POS_OFFSET, pos);
+        synchronized (this)
+        {
+            unforced = true;
+            count -= samples;
+            // Start over when all samples have been replayed
+            if (read_pos >= write_pos)
+                reset();
+        }
+    }
+
+    /** Close the journal */
+    public void close()
+    {
+        synchronized (replay_lock)
+        {
+            synchronized (this)
+            {
+                journal.force();
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ex)
+                {
+                    Activator.getLogger().log(Level.WARNING, "Cannot close " + file, ex);
+                }
+            }
+        }
+    }
+
+    /** Encode sample
+     *  @param buffer Buffer
+     *  @param name Channel name
+     *  @param retention Retention, may be <code>null</code>
+     *  @param sample Sample
+     *  @throws BufferOverflowException when buffer is too small
+     */
+    static void encode(final ByteBuffer buffer, final String name, final String retention, final VType sample)
+        throws BufferOverflowException
+    {
+        putString(buffer, name);
+        putString(buffer, retention == null ? "" : retention);
+
+        final Instant time = VTypeHelper.getTimestamp(sample);
+        if (sample instanceof VNumber)
+        {
+            final Number number = ((VNumber) sample).getValue();
+            if (number instanceof Double  ||  number instanceof Float)
+            {
+                buffer.put(DOUBLE);
+                putAlarm(buffer, time, sample);
+                buffer.putDouble(number.doubleValue());
+            }
+            else
+            {
+                buffer.put(LONG);
+                putAlarm(buffer, time, sample);
+                buffer.putLong(number.longValue());
+            }
+            putDisplay(buffer, sample);
+        }
+        else if (sample instanceof VNumberArray)
+        {
+            final ListNumber data = ((VNumberArray) sample).getData();
+            final int N = data.size();
+            if (data instanceof ArrayDouble  ||  data instanceof ArrayFloat)
+            {
+                buffer.put(DOUBLE_ARRAY);
+                putAlarm(buffer, time, sample);
+                buffer.putInt(N);
+                for (int i=0; i<N; ++i)
+                    buffer.putDouble(data.getDouble(i));
+            }
+            else
+            {
+                buffer.put(LONG_ARRAY);
+                putAlarm(buffer, time, sample);
+                buffer.putInt(N);
+                for (int i=0; i<N; ++i)
+                    buffer.putLong(data.getLong(i));
+            }
+            putDisplay(buffer, sample);
+        }
+        else if (sample instanceof VEnum)
+        {
+            final VEnum value = (VEnum) sample;
+            buffer.put(ENUM);
+            putAlarm(buffer, time, sample);
+            buffer.putInt(value.getIndex());
+            final List<String> labels = value.getLabels();
+            buffer.putInt(labels.size());
+            for (String label : labels)
+                putString(buffer, label);
+        }
+        else
+        {   // Like the RDB writer, handle other types as strings
+            buffer.put(STRING);
+            putAlarm(buffer, time, sample);
+            putString(buffer, sample instanceof VString
+                              ? ((VString) sample).getValue()
+                              : sample.toString());
+        }
+    }
+
+    /** Decode sample
+     *  @param buffer Buffer positioned after name and retention
+     *  @return Sample
+     */
+    static VType decode(final ByteBuffer buffer)
+    {
+        final byte type = buffer.get();
+        final Instant time = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        final AlarmSeverity severity = AlarmSeverity.values()[buffer.get()];
+        final String status = getString(buffer);
+        switch (type)
+        {
+        case DOUBLE:
+        {
+            final double value = buffer.getDouble();
+            return new ArchiveVNumber(time, severity, status, getDisplay(buffer), value);
+        }
+        case LONG:
+        {
+            final long value = buffer.getLong();
+            return new ArchiveVNumber(time, severity, status, getDisplay(buffer), value);
+        }
+        case DOUBLE_ARRAY:
+        {
+            final double[] data = new double[buffer.getInt()];
+            for (int i=0; i<data.length; ++i)
+                data[i] = buffer.getDouble();
+            return new ArchiveVNumberArray(time, severity, status, getDisplay(buffer), data);
+        }
+        case LONG_ARRAY:
+        {
+            final long[] data = new long[buffer.getInt()];
+            for (int i=0; i<data.length; ++i)
+                data[i] = buffer.getLong();
+            return new ArchiveVNumberArray(time, severity, status, getDisplay(buffer), data);
+        }
+        case ENUM:
+        {
+            final int index = buffer.getInt();
+            final int N = buffer.getInt();
+            final List<String> labels = new ArrayList<>(N);
+            for (int i=0; i<N; ++i)
+                labels.add(getString(buffer));
+            return new ArchiveVEnum(time, severity, status, labels, index);
+        }
+        case STRING:
+            return new ArchiveVString(time, severity, status, getString(buffer));
+        default:
+            throw new IllegalStateException("Unknown sample type " + type);
+        }
+    }
+
+    private static void putAlarm(final ByteBuffer buffer, final Instant time, final VType sample)
+    {
+        buffer.putLong(time.getEpochSecond());
+        buffer.putInt(time.getNano());
+        buffer.put((byte) VTypeHelper.getSeverity(sample).ordinal());
+        putString(buffer, VTypeHelper.getMessage(sample));
+    }
+
+    private static void putDisplay(final ByteBuffer buffer, final VType sample)
+    {
+        if (! (sample instanceof Display))
+        {
+            buffer.put((byte) 0);
+            return;
+        }
+        final Display display = (Display) sample;
+        buffer.put((byte) 1);
+        putDouble(buffer, display.getLowerDisplayLimit());
+        putDouble(buffer, display.getLowerAlarmLimit());
+        putDouble(buffer, display.getLowerWarningLimit());
+        putString(buffer, display.getUnits());
+        buffer.putInt(display.getFormat() == null ? -1 : display.getFormat().getMinimumFractionDigits());
+        putDouble(buffer, display.getUpperWarningLimit());
+        putDouble(buffer, display.getUpperAlarmLimit());
+        putDouble(buffer, display.getUpperDisplayLimit());
+        putDouble(buffer, display.getLowerCtrlLimit());
+        putDouble(buffer, display.getUpperCtrlLimit());
+    }
+
+    private static Display getDisplay(final ByteBuffer buffer)
+    {
+        if (buffer.get() == 0)
+            return null;
+        final Double lower_disp = buffer.getDouble();
+        final Double lower_alarm = buffer.getDouble();
+        final Double lower_warn = buffer.getDouble();
+        final String units = getString(buffer);
+        final int precision = buffer.getInt();
+        final Double upper_warn = buffer.getDouble();
+        final Double upper_alarm = buffer.getDouble();
+        final Double upper_disp = buffer.getDouble();
+        final Double lower_ctrl = buffer.getDouble();
+        final Double upper_ctrl = buffer.getDouble();
+        return ValueFactory.newDisplay(lower_disp, lower_alarm, lower_warn, units,
+                precision < 0 ? NumberFormats.toStringFormat() : NumberFormats.format(precision),
+                upper_warn, upper_alarm, upper_disp, lower_ctrl, upper_ctrl);
+    }
+
+    private static void putDouble(final ByteBuffer buffer, final Double value)
+    {
+        buffer.putDouble(value == null ? Double.NaN : value.doubleValue());
+    }
+
+    private static void putString(final ByteBuffer buffer, final String text)
+    {
+        final byte[] bytes = (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(final ByteBuffer buffer)
+    {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Spill journal %s: %d samples, %d of %d bytes used, %d dropped",
+                             file, count, getUsedBytes(), getCapacity(), dropped);
+    }
+}
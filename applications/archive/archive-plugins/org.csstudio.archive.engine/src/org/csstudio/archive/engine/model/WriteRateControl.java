@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+/** Adaptive control of the {@link WriteThread}'s period and batch size.
+ *  <p>
+ *  When sample buffers fill up, for example because many channels
+ *  change at once, the write period is halved and the batch size doubled
+ *  to avoid overruns.
+ *  When the buffers are almost empty, the controller
+ *  gradually returns to the configured period and batch size.
+ *
+ *  @author agent
+ */
+class WriteRateControl
+{
+    /** Buffer fill level above which to write faster */
+    final static double HIGH_FILL = 0.5;
+
+    /** Buffer fill level below which to back off */
+    final static double LOW_FILL = 0.1;
+
+    /** Factor by which period and batch size may differ from configuration */
+    final static int MAX_FACTOR = 8;
+
+    /** Minimum write period [millisec] */
+    final static long MIN_PERIOD = 1000;
+
+    /** Factor for backing off */
+    final private static double BACK_OFF = 1.5;
+
+    /** Configured period and batch size, which are also the slowest settings */
+    final private long config_period;
+    final private int config_batch;
+
+    /** Fastest permitted settings */
+    final private long min_period;
+    final private int max_batch;
+
+    /** Current period [millisec] and batch size */
+    private volatile long period;
+    private volatile int batch;
+
+    /** @param period Configured write period [millisec]
+     *  @param batch_size Configured batch size
+     */
+    WriteRateControl(final long period, final int batch_size)
+    {
+        config_period = period;
+        config_batch = batch_size;
+        min_period = Math.min(period, Math.max(MIN_PERIOD, period / MAX_FACTOR));
+        max_batch = batch_size * MAX_FACTOR;
+        this.period = period;
+        batch = batch_size;
+    }
+
+    /** @return Current write period [millisec] */
+    long getPeriod()
+    {
+        return period;
+    }
+
+    /** @return Current batch size */
+    int getBatchSize()
+    {
+        return batch;
+    }
+
+    /** Update period and batch size
+     *  @param fill Highest fill level 0..1 of the sample buffers
+     *              at the start of the last write run
+     */
+    void update(final double fill)
+    {
+        if (fill >= HIGH_FILL)
+        {
+            period = Math.max(min_period, period / 2);
+            batch = Math.min(max_batch, batch * 2);
+        }
+        else if (fill <= LOW_FILL)
+        {
+            period = Math.min(config_period, (long) (period * BACK_OFF));
+            batch = Math.max(config_batch, (int) (batch / BACK_OFF));
+        }
+        // else: Keep current settings
+    }
+
+    @SuppressWarnings("nls")
+    @Override
+    public String toString()
+    {
+        return String.format("Write period %.1f sec, batch size %d", period / 1000.0, batch);
+    }
+}
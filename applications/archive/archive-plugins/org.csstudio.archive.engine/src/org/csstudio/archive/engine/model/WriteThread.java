@@ -9,6 +9,8 @@ package org.csstudio.archive.engine.model;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.csstudio.apputil.time.BenchmarkTimer;
@@ -29,6 +31,16 @@ import org.diirt.vtype.VType;
  *  be lost.
  *  The channels that add samples to the sample buffer supposedly notice
  *  the error condition and add a special indicator once we recover.
+ *  <p>
+ *  The engine may use several write threads, see {@link WriteThreads},
+ *  each with its own {@link ArchiveWriter}.
+ *  The sample buffers are in error state while any of them has errors.
+ *  <p>
+ *  With a {@link SpillJournal}, samples are moved from the
+ *  sample buffers into the journal while writing fails,
+ *  and later replayed.
+ *  This includes the samples that were already added to the writer
+ *  but not flushed, unless the writer might have written some of them.
  *
  *  @author Kay Kasemir
  */
@@ -37,6 +49,12 @@ public class WriteThread implements Runnable
     /** Minimum write period [seconds] */
     private static final double MIN_WRITE_PERIOD = 5.0;
 
+    /** Number of write threads that currently have write errors */
+    private static final AtomicInteger threads_in_error = new AtomicInteger();
+
+    /** Name of this thread */
+    final private String name;
+
     /** Server to which this thread writes. */
     private ArchiveWriter writer;
 
@@ -53,10 +71,22 @@ public class WriteThread implements Runnable
     private Object wait_block = new Object();
 
     /** Delay between write runs. */
-    private long millisec_delay = 5000;
+    private volatile long millisec_delay = 5000;
 
     /** Number of values to place into one batch */
-    private int batch_size = 500;
+    private volatile int batch_size = 500;
+
+    /** Adaptive control of delay and batch size, or <code>null</code> */
+    private WriteRateControl rate_control = null;
+
+    /** Journal for samples that cannot be written, or <code>null</code> */
+    private SpillJournal spill = null;
+
+    /** Maximum number of samples to replay from journal per write run */
+    private int replay_limit;
+
+    /** Highest fill level 0..1 of the sample buffers in last write run */
+    private double max_fill = 0.0;
 
     /** Time of end of last write run */
     private Instant last_write_stamp = null;
@@ -70,6 +100,41 @@ public class WriteThread implements Runnable
     /** Thread the executes this.run() */
     private Thread thread;
 
+    /** Samples removed from a buffer, reused for each batch */
+    final private List<VType> batch = new ArrayList<>();
+
+    /** Samples added to the writer since the last successful flush,
+     *  and the buffers from which they were taken
+     */
+    final private List<SampleBuffer> pending_buffers = new ArrayList<>();
+    final private List<VType> pending_samples = new ArrayList<>();
+
+    /** Create write thread */
+    public WriteThread()
+    {
+        this("WriteThread"); //$NON-NLS-1$
+    }
+
+    /** Create write thread
+     *  @param name Thread name
+     */
+    public WriteThread(final String name)
+    {
+        this.name = name;
+    }
+
+    /** @return Name of this thread */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** @return Number of sample buffers written by this thread */
+    public int getBufferCount()
+    {
+        return buffers.size();
+    }
+
     /** Add a channel's buffer that this thread reads */
     public void addChannel(final ArchiveChannel channel)
     {
@@ -82,12 +147,33 @@ public class WriteThread implements Runnable
         buffers.add(buffer);
     }
 
+    /** Use a journal for samples that cannot be written.
+     *  Must be called before <code>start</code>.
+     *  @param journal {@link SpillJournal} or <code>null</code>
+     *  @param replay_limit Maximum number of samples to replay from journal per write run
+     */
+    void setSpillJournal(final SpillJournal journal, final int replay_limit)
+    {
+        spill = journal;
+        this.replay_limit = replay_limit;
+    }
+
     /** Start the write thread.
      *  @param write_period Period between writes in seconds
      *  @param batch_size Number of values to batch
      */
+    public void start(final double write_period, final int batch_size)
+    {
+        start(write_period, batch_size, false);
+    }
+
+    /** Start the write thread.
+     *  @param write_period Period between writes in seconds
+     *  @param batch_size Number of values to batch
+     *  @param adaptive Adjust period and batch size to the buffer fill level?
+     */
     @SuppressWarnings("nls")
-    public void start(double write_period, int batch_size)
+    public void start(double write_period, int batch_size, final boolean adaptive)
     {
         if (write_period < MIN_WRITE_PERIOD)
         {
@@ -97,7 +183,8 @@ public class WriteThread implements Runnable
         }
         millisec_delay = (int)(1000.0 * write_period);
         this.batch_size = batch_size;
-        thread = new Thread(this, "WriteThread");
+        rate_control = adaptive ? new WriteRateControl(millisec_delay, batch_size) : null;
+        thread = new Thread(this, name);
         thread.start();
     }
 
@@ -136,6 +223,20 @@ public class WriteThread implements Runnable
         return write_time.get();
     }
 
+    /** @return Current period between writes in seconds */
+    public double getWritePeriod()
+    {
+        final WriteRateControl control = rate_control;
+        return (control == null ? millisec_delay : control.getPeriod()) / 1000.0;
+    }
+
+    /** @return Current number of values to batch */
+    public int getBatchSize()
+    {
+        final WriteRateControl control = rate_control;
+        return control == null ? batch_size : control.getBatchSize();
+    }
+
     /** 'Main loop' of the write thread.
      *  <p>
      *  Writes all values out, then waits.
@@ -153,9 +254,9 @@ public class WriteThread implements Runnable
     @SuppressWarnings("nls")
     public void run()
     {
-        Activator.getLogger().info("WriteThread starts");
+        Activator.getLogger().info(name + " starts");
         final BenchmarkTimer timer = new BenchmarkTimer();
-        boolean write_error = false;
+        boolean write_error = false, in_error = false;
         do_run = true;
         while (do_run)
         {
@@ -179,22 +280,56 @@ public class WriteThread implements Runnable
                 timer.start();
                 // In case of a network problem, we can hang in here
                 // for a long time...
-                final long written = write();
+                long written = write();
+                // Replay spilled samples, limited to leave time for live samples
+                if (spill != null)
+                {
+                    if (spill.getSampleCount() > 0)
+                        written += spill.replay(writer, replay_limit, batch_size);
+                    // Persist samples that buffers moved to journal when full
+                    spill.force();
+                }
                 timer.stop();
                 last_write_stamp = Instant.now();
                 write_count.update(written);
                 write_time.update(timer.getSeconds());
+                // Adapt to buffer fill level
+                if (rate_control != null)
+                {
+                    rate_control.update(max_fill);
+                    millisec_delay = rate_control.getPeriod();
+                    batch_size = rate_control.getBatchSize();
+                    Activator.getLogger().log(Level.FINE, "{0}: Buffers filled up to {1}%, {2}",
+                        new Object[] { name, (int) (100 * max_fill), rate_control });
+                }
                 // How much of the scheduled delay is left after write()?
                 delay = millisec_delay - timer.getMilliseconds();
             }
             catch (Exception ex)
             {   // Error in write() or the preceding reconnect()...
-                Activator.getLogger().log(Level.WARNING, "Error, will try to reconnect", ex);
+                Activator.getLogger().log(Level.WARNING, name + " error, will try to reconnect", ex);
                 // Use max. delay
                 delay = millisec_delay;
                 write_error = true;
+                // Move samples to journal instead of letting buffers overrun
+                if (spill != null)
+                {
+                    final int spilled = spillPending() + spill.spill(buffers);
+                    Activator.getLogger().log(Level.FINE, "{0} moved {1} samples to {2}",
+                                              new Object[] { name, spilled, spill });
+                }
+                else
+                    clearPending();
+            }
+            // Sample buffers are in error state while any thread has errors
+            if (write_error != in_error)
+            {
+                in_error = write_error;
+                final int errors = in_error
+                    ? threads_in_error.incrementAndGet()
+                    : threads_in_error.decrementAndGet();
+                SampleBuffer.setErrorState(errors > 0);
             }
-            SampleBuffer.setErrorState(write_error);
             // See if there's any time left to wait,
             // or if we already used all that time in the last 'write'
             if (delay > 0)
@@ -212,7 +347,9 @@ public class WriteThread implements Runnable
                 }
             }
         }
-        Activator.getLogger().info("WriteThread exists");
+        if (in_error)
+            SampleBuffer.setErrorState(threads_in_error.decrementAndGet() > 0);
+        Activator.getLogger().info(name + " exits");
     }
 
     /** Stop the write thread, performing a final write. */
@@ -228,6 +365,15 @@ public class WriteThread implements Runnable
         {
             write();
         }
+        catch (Exception ex)
+        {   // Keep samples for the next start
+            if (spill != null)
+            {
+                spillPending();
+                spill.spill(buffers);
+            }
+            throw ex;
+        }
         finally
         {
             if (writer != null)
@@ -245,33 +391,88 @@ public class WriteThread implements Runnable
     {
         int total_count = 0;
         int count = 0;
+        double fill = 0.0;
         for (SampleBuffer buffer : buffers)
         {
             // Update max buffer length etc. before we start to remove samples
-            buffer.updateStats();
+            final int size = buffer.updateStats();
+            fill = Math.max(fill, size / (double) buffer.getCapacity());
             // Write samples for one channel
             final String name = buffer.getChannelName();
             final String retention = buffer.getArchiveDataRetention();
             final WriteChannel channel = writer.getChannel(name, retention);
-            VType sample = buffer.remove();
-            while (sample != null)
-            {   // Write one value
-                writer.addSample(channel, sample);
-                // Note: count across different sample buffers!
-                ++count;
+            // Remove as many samples as fit into the current batch
+            // Note: count across different sample buffers!
+            while (buffer.drainTo(batch, batch_size + 1 - count) > 0)
+            {
+                try
+                {
+                    // Keep samples until they have been flushed
+                    for (VType sample : batch)
+                    {
+                        pending_buffers.add(buffer);
+                        pending_samples.add(sample);
+                    }
+                    for (VType sample : batch)
+                        writer.addSample(channel, sample);
+                    count += batch.size();
+                }
+                finally
+                {
+                    batch.clear();
+                }
                 if (count > batch_size)
                 {
                     total_count += count;
                     count = 0;
-                    writer.flush();
+                    flush();
                 }
-                // next
-                sample = buffer.remove();
             }
         }
+        max_fill = fill;
         // Flush remaining samples (less than batch_size)
-        writer.flush();
+        flush();
         total_count += count;
         return total_count;
     }
+
+    /** Flush the writer, then forget the pending samples */
+    private void flush() throws Exception
+    {
+        writer.flush();
+        clearPending();
+    }
+
+    private void clearPending()
+    {
+        pending_buffers.clear();
+        pending_samples.clear();
+    }
+
+    /** Move samples that were added to the writer since the last
+     *  successful flush into the journal.
+     *  <p>
+     *  Samples are dropped if the writer might already have
+     *  written some of them, because replaying them would
+     *  create duplicate samples.
+     *  @return Number of samples added to journal
+     */
+    @SuppressWarnings("nls")
+    private int spillPending()
+    {
+        int spilled = 0;
+        if (writer == null  ||  writer.isFlushRetrySafe())
+        {
+            for (int i=0; i<pending_samples.size(); ++i)
+                if (spill.add(pending_buffers.get(i), pending_samples.get(i)))
+                    ++spilled;
+                else
+                    pending_buffers.get(i).getBufferStats().addOverrun();
+        }
+        else if (! pending_samples.isEmpty())
+            Activator.getLogger().log(Level.WARNING, "{0} drops {1} samples that might already have been written",
+                                      new Object[] { name, pending_samples.size() });
+        clearPending();
+        return spilled;
+    }
 }
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.engine.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Group of {@link WriteThread}s, each writing a subset of the channels.
+ *  <p>
+ *  Channels are assigned to a write thread based on the hash of their name.
+ *  Each write thread uses its own {@link org.csstudio.archive.writer.ArchiveWriter},
+ *  i.e. its own RDB connection, and writes with its own cadence,
+ *  so a slow write of one subset of channels does not hold up the others.
+ *
+ *  @author agent
+ */
+public class WriteThreads
+{
+    /** The write threads, 'shards' of the overall channel list */
+    final private List<WriteThread> threads;
+
+    /** Create write threads
+     *  @param count Number of threads
+     */
+    @SuppressWarnings("nls")
+    public WriteThreads(final int count)
+    {
+        final int n = Math.max(1, count);
+        final List<WriteThread> threads = new ArrayList<>(n);
+        if (n == 1)
+            threads.add(new WriteThread());
+        else
+            for (int i=0; i<n; ++i)
+                threads.add(new WriteThread("WriteThread " + (i+1)));
+        this.threads = Collections.unmodifiableList(threads);
+    }
+
+    /** @return Write threads */
+    public List<WriteThread> getThreads()
+    {
+        return threads;
+    }
+
+    /** @param name Channel name
+     *  @return Write thread that handles the channel
+     */
+    WriteThread getThread(final String name)
+    {
+        return threads.get(Math.floorMod(name.hashCode(), threads.size()));
+    }
+
+    /** Add a channel's buffer to the write thread for that channel */
+    public void addChannel(final ArchiveChannel channel)
+    {
+        getThread(channel.getName()).addChannel(channel);
+    }
+
+    /** Use a journal for samples that cannot be written.
+     *  Must be called before <code>start</code>.
+     *  @param journal {@link SpillJournal} or <code>null</code>
+     *  @param replay_limit Maximum number of samples to replay from journal per write run
+     */
+    void setSpillJournal(final SpillJournal journal, final int replay_limit)
+    {
+        for (WriteThread thread : threads)
+            thread.setSpillJournal(journal, replay_limit);
+        SampleBuffer.setSpillJournal(journal);
+    }
+
+    /** Start the write threads.
+     *  @param write_period Period between writes in seconds
+     *  @param batch_size Number of values to batch
+     *  @param adaptive Adjust period and batch size to the buffer fill level?
+     */
+    public void start(final double write_period, final int batch_size, final boolean adaptive)
+    {
+        for (WriteThread thread : threads)
+            thread.start(write_period, batch_size, adaptive);
+    }
+
+    /** Reset statistics */
+    public void reset()
+    {
+        for (WriteThread thread : threads)
+            thread.reset();
+    }
+
+    /** @return Timestamp of end of last write run of the thread
+     *          that wrote least recently, <code>null</code> if one never wrote
+     */
+    public Instant getLastWriteTime()
+    {
+        Instant oldest = null;
+        for (WriteThread thread : threads)
+        {
+            final Instant time = thread.getLastWriteTime();
+            if (time == null)
+                return null;
+            if (oldest == null  ||  time.isBefore(oldest))
+                oldest = time;
+        }
+        return oldest;
+    }
+
+    /** @return Average number of values per write run, summed over all threads */
+    public double getWriteCount()
+    {
+        double count = 0.0;
+        for (WriteThread thread : threads)
+            count += thread.getWriteCount();
+        return count;
+    }
+
+    /** @return Average duration of write run in seconds
+     *          of the slowest thread
+     */
+    public double getWriteDuration()
+    {
+        double duration = 0.0;
+        for (WriteThread thread : threads)
+            duration = Math.max(duration, thread.getWriteDuration());
+        return duration;
+    }
+
+    /** @return Current period between writes in seconds
+     *          of the fastest thread
+     */
+    public double getWritePeriod()
+    {
+        double period = Double.MAX_VALUE;
+        for (WriteThread thread : threads)
+            period = Math.min(period, thread.getWritePeriod());
+        return period;
+    }
+
+    /** @return Current number of values to batch
+     *          of the thread with the largest batches
+     */
+    public int getBatchSize()
+    {
+        int batch = 0;
+        for (WriteThread thread : threads)
+            batch = Math.max(batch, thread.getBatchSize());
+        return batch;
+    }
+
+    /** Stop the write threads, performing a final write.
+     *  @throws Exception on error in final write of any thread
+     */
+    public void shutdown() throws Exception
+    {
+        Exception error = null;
+        for (WriteThread thread : threads)
+        {
+            try
+            {
+                thread.shutdown();
+            }
+            catch (Exception ex)
+            {   // Shut down remaining threads, then report first error
+                if (error == null)
+                    error = ex;
+            }
+        }
+        if (error != null)
+            throw error;
+    }
+}
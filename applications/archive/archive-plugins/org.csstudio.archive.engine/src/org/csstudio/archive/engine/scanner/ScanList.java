@@ -7,7 +7,7 @@
  ******************************************************************************/
 package org.csstudio.archive.engine.scanner;
 
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.logging.Level;
 
 import org.csstudio.archive.engine.Activator;
@@ -24,10 +24,18 @@ public class ScanList implements Scheduleable
     /** Scan period in seconds */
     final private long scan_period_millis;
 
-    /** Items to scan */
-    final private ArrayList<Runnable> items = new ArrayList<Runnable>();
+    /** Items to scan.
+     *  <p>
+     *  Set for quick removal of items from large lists,
+     *  linked to keep the order in which they were added.
+     *  Access synchronized on the set.
+     */
+    final private LinkedHashSet<Runnable> items = new LinkedHashSet<Runnable>();
+
+    /** Copy of items for scanning, <code>null</code> after items changed */
+    private Runnable[] scan_items = null;
 
-    private long next_due_time = System.currentTimeMillis();
+    private volatile long next_due_time = System.currentTimeMillis();
 
     /** Construct scan list.
      *  @param scan_period Scan period in seconds
@@ -45,18 +53,24 @@ public class ScanList implements Scheduleable
         return scan_period_millis / 1000.0;
     }
 
+    /** @param time Next due time in system milliseconds */
+    void setNextDueTime(final long time)
+    {
+        next_due_time = time;
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean isDueAtAll()
     {
-        return items.size() > 0;
+        return size() > 0;
     }
 
     /** {@inheritDoc} */
     @Override
     public long getNextDueTime()
     {
-        if (items.size() == 0)
+        if (size() == 0)
             throw new Error(toString() + " never due");
         return next_due_time;
     }
@@ -64,7 +78,11 @@ public class ScanList implements Scheduleable
     /** Add an item to the scan list */
     void add(final Runnable item)
     {
-        items.add(item);
+        synchronized (items)
+        {
+            if (items.add(item))
+                scan_items = null;
+        }
     }
 
     /** Remove an item from the scan list.
@@ -72,19 +90,39 @@ public class ScanList implements Scheduleable
      */
     boolean remove(final Runnable item)
     {
-        return items.remove(item);
+        synchronized (items)
+        {
+            if (! items.remove(item))
+                return false;
+            scan_items = null;
+            return true;
+        }
     }
 
     /** @return Number of items on scan list */
     public int size()
     {
-        return items.size();
+        synchronized (items)
+        {
+            return items.size();
+        }
     }
 
     /** @return Item with given index from the scan list */
     public Runnable get(final int index)
     {
-        return items.get(index);
+        return getItems()[index];
+    }
+
+    /** @return Current items */
+    private Runnable[] getItems()
+    {
+        synchronized (items)
+        {
+            if (scan_items == null)
+                scan_items = items.toArray(new Runnable[items.size()]);
+            return scan_items;
+        }
     }
 
     /** Scan all items on this scan list.
@@ -95,7 +133,7 @@ public class ScanList implements Scheduleable
     {
         final long start = System.currentTimeMillis();
         // Scan all items
-        for (Runnable item : items)
+        for (Runnable item : getItems())
         {
             try
             {
@@ -56,6 +56,15 @@ public class ScanThread implements Runnable
         {
             scanner.scanOnce();
         }
+        // Wait for scans that might still run in worker threads
+        try
+        {
+            scanner.waitForScans();
+        }
+        catch (InterruptedException ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Scan Thread interrupted", ex);
+        }
         Activator.getLogger().info("Scan Thread ends");
     }
 
@@ -8,6 +8,16 @@
 package org.csstudio.archive.engine.scanner;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.csstudio.archive.engine.Activator;
@@ -17,6 +27,19 @@ import org.csstudio.util.stats.Average;
  *  <p>
  *  Places runnable items on scan lists,
  *  determines how long to wait to the scan next.
+ *  <p>
+ *  Scan lists are placed on a hashed timing wheel
+ *  with one slot per {@link #GRANULARITY}, so locating
+ *  the due scan lists only checks the slots that passed
+ *  since the last scan.
+ *  Items are tracked by their scan list, so adding and removing
+ *  an item does not need to search all scan lists.
+ *  <p>
+ *  With worker threads, due scan lists are scanned in parallel,
+ *  so a slow scan list does not delay the others.
+ *  A scan list that is still busy when it is due again
+ *  skips that scan, see {@link #getLateScans()}.
+ *
  *  @author Kay Kasemir
  */
 public class Scanner implements Scheduleable
@@ -24,31 +47,94 @@ public class Scanner implements Scheduleable
     /** Granularity in seconds for the supported lists. */
     final private static double GRANULARITY = 0.1;
 
+    /** Granularity in millisecs, duration of one wheel slot */
+    final private static long TICK_MILLIS = Math.round(GRANULARITY * 1000);
+
+    /** Number of slots on the timing wheel, power of 2 */
+    final private static int WHEEL_SIZE = 512;
+
     /** Default idle delay */
     final private static long DEFAULT_IDLE_DELAY = 500;
 
     /** Time to wait in system millis when nothing to do */
     final private long idle_delay;
 
-    /** All the single-period scan lists.
+    /** All the single-period scan lists by period in ticks,
+     *  in the order they were created.
      *  <p>
      *  Note that we don't keep empty lists around,
      *  so every list should have a valid 'due time'.
+     *  <p>
+     *  This and the other scan list info is synchronized on <code>this</code>.
      */
-    final private ArrayList<ScanList> lists = new ArrayList<ScanList>();
+    final private Map<Long, ScanList> lists = new LinkedHashMap<Long, ScanList>();
+
+    /** Scan list of each item */
+    final private Map<Runnable, ScanList> item_lists = new HashMap<Runnable, ScanList>();
+
+    /** Timing wheel: Scan lists that are due in the tick of the slot,
+     *  or some multiple of the {@link #WHEEL_SIZE} later
+     */
+    final private List<ScanList>[] wheel;
+
+    /** Tick up to which the wheel has been checked */
+    private long scanned_tick = System.currentTimeMillis() / TICK_MILLIS;
+
+    /** Worker threads for scanning, or <code>null</code> to scan in caller's thread */
+    final private ExecutorService workers;
+
+    /** Scan lists currently being scanned by a worker, not on the wheel */
+    final private Set<ScanList> busy = new HashSet<ScanList>();
 
     /** Next due time in system millis */
-    private long next_due_time;
+    private long next_due_time = Long.MAX_VALUE;
 
     /** Average idle time in percent. */
     final private Average idle_percentage = new Average();
 
+    /** Number of skipped scans */
+    final private AtomicInteger late_scans = new AtomicInteger();
+
     /** Construct scanner
      *  @param idle_delay Time to wait in system millis when nothing to do
+     *  @param worker_count Number of worker threads for scanning,
+     *                      0 to scan in the thread that calls {@link #scanOnce()}
      */
-    public Scanner(final long idle_delay)
+    @SuppressWarnings("unchecked")
+    public Scanner(final long idle_delay, final int worker_count)
     {
         this.idle_delay = idle_delay;
+        wheel = new List[WHEEL_SIZE];
+        for (int i=0; i<WHEEL_SIZE; ++i)
+            wheel[i] = new ArrayList<ScanList>();
+        if (worker_count > 0)
+        {
+            final AtomicInteger count = new AtomicInteger();
+            workers = Executors.newFixedThreadPool(worker_count, runnable ->
+            {
+                final Thread thread = new Thread(runnable, "ScanWorker " + count.incrementAndGet()); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        else
+            workers = null;
+    }
+
+    /** Construct scanner
+     *  @param idle_delay Time to wait in system millis when nothing to do
+     */
+    public Scanner(final long idle_delay)
+    {
+        this(idle_delay, 0);
+    }
+
+    /** Construct scanner with default idle delay
+     *  @param worker_count Number of worker threads for scanning
+     */
+    public Scanner(final int worker_count)
+    {
+        this(DEFAULT_IDLE_DELAY, worker_count);
     }
 
     /** Construct scanner with default idle delay */
@@ -57,79 +143,93 @@ public class Scanner implements Scheduleable
         this(DEFAULT_IDLE_DELAY);
     }
 
+    /** @param time Time in system millis
+     *  @return Wheel slot for that time
+     */
+    private List<ScanList> getSlot(final long time)
+    {
+        return wheel[(int) ((time / TICK_MILLIS) & (WHEEL_SIZE-1))];
+    }
+
     /** Add an item to the scanner, placing it on a suitable scan list.
      *  @param item Item to scan
      *  @param period Scan period in seconds
      */
-    public void add(final Runnable item, final double period)
+    public synchronized void add(final Runnable item, final double period)
     {
         // Avoid duplicates by removing what might be there
         remove(item);
 
         // Locate suitable scan list
-        ScanList the_list = null;
-        for (ScanList list : lists)
-        {
-            if (Math.abs(list.getPeriod() - period) < GRANULARITY)
-            {
-                the_list = list;
-                break;
-            }
-        }
+        final long ticks = Math.max(1, Math.round(period / GRANULARITY));
+        ScanList the_list = lists.get(ticks);
         // Nothing found?
         if (the_list == null)
         {   // Create new scan list
-            the_list = new ScanList(Math.round(period / GRANULARITY) * GRANULARITY);
-            lists.add(the_list);
+            the_list = new ScanList(ticks * GRANULARITY);
+            lists.put(ticks, the_list);
+            the_list.add(item);
+            getSlot(the_list.getNextDueTime()).add(the_list);
         }
-        // Add item to list
-        the_list.add(item);
+        else
+            the_list.add(item);
+        item_lists.put(item, the_list);
         computeDueTime();
     }
 
     /** Remove an item from the scanner */
-    public void remove(final Runnable item)
+    public synchronized void remove(final Runnable item)
     {
-        // Brute-force remove from all lists,
-        // stopping as soon as item was found
-        for (ScanList list : lists)
-            if (list.remove(item))
-            {
-                // If this leaves an empty list, remove it.
-                if (! list.isDueAtAll())
-                    lists.remove(list);
-                return;
-            }
+        final ScanList list = item_lists.remove(item);
+        if (list == null)
+            return;
+        final long due = list.getNextDueTime();
+        list.remove(item);
+        // If this leaves an empty list, remove it.
+        if (! list.isDueAtAll())
+        {
+            lists.values().remove(list);
+            // Remove from wheel unless it's currently being scanned
+            if (! busy.contains(list))
+                getSlot(due).remove(list);
+        }
     }
 
     /** Remove all items from this scanner */
-    public void clear()
+    public synchronized void clear()
     {
         lists.clear();
+        item_lists.clear();
+        for (List<ScanList> slot : wheel)
+            slot.clear();
+        next_due_time = Long.MAX_VALUE;
     }
 
     /** @return Number of scan lists. */
-    public long size()
+    public synchronized long size()
     {
         return lists.size();
     }
 
     /** @return One of the scan lists. */
-    public ScanList get(final int index)
+    public synchronized ScanList get(final int index)
     {
-        return lists.get(index);
+        final Iterator<ScanList> iter = lists.values().iterator();
+        for (int i=0; i<index; ++i)
+            iter.next();
+        return iter.next();
     }
 
     /** {@inheritDoc} */
     @Override
-    public boolean isDueAtAll()
+    public synchronized boolean isDueAtAll()
     {
         return lists.size() > 0;
     }
 
     /** {@inheritDoc} */
     @Override
-    public long getNextDueTime()
+    public synchronized long getNextDueTime()
     {
         if (lists.size() == 0)
             throw new Error("Scanner never due"); //$NON-NLS-1$
@@ -140,23 +240,95 @@ public class Scanner implements Scheduleable
     void scanDueScanLists()
     {
         final long now = System.currentTimeMillis();
-        next_due_time = Long.MAX_VALUE;
-        for (ScanList list : lists)
-        {   // Scan (run) what's due now, and update the next due time
-            if (list.getNextDueTime() <= now)
-                list.scanItems();
-            // Update the next due time - which could change in run()
-            if (list.getNextDueTime() < next_due_time)
-                next_due_time = list.getNextDueTime();
+        final List<ScanList> due = new ArrayList<ScanList>();
+        synchronized (this)
+        {
+            // Check each slot from last scan up to now, but each slot at most once
+            final long now_tick = now / TICK_MILLIS;
+            final long first_tick = Math.max(scanned_tick, now_tick - WHEEL_SIZE + 1);
+            for (long tick = first_tick;  tick <= now_tick;  ++tick)
+            {
+                final Iterator<ScanList> slot = wheel[(int) (tick & (WHEEL_SIZE-1))].iterator();
+                while (slot.hasNext())
+                {   // Skip lists that are due in a later turn of the wheel
+                    final ScanList list = slot.next();
+                    if (list.getNextDueTime() <= now)
+                    {
+                        slot.remove();
+                        due.add(list);
+                    }
+                }
+            }
+            // Keep checking the current tick, since lists may become due later in the tick
+            scanned_tick = now_tick;
+            if (workers != null)
+                busy.addAll(due);
+        }
+
+        // Scan (run) what's due now, and re-schedule
+        for (ScanList list : due)
+        {
+            if (workers == null)
+                scan(list);
+            else
+                workers.submit(() -> scan(list));
+        }
+        computeDueTime();
+    }
+
+    /** Scan a scan list and place it back onto the wheel
+     *  @param list Scan list that was removed from the wheel
+     */
+    private void scan(final ScanList list)
+    {
+        try
+        {
+            list.scanItems();
+        }
+        finally
+        {
+            final long now = System.currentTimeMillis();
+            synchronized (this)
+            {
+                busy.remove(list);
+                notifyAll();
+                // Re-schedule unless list was removed while being scanned
+                if (lists.get(Math.round(list.getPeriod() / GRANULARITY)) == list)
+                {
+                    // Did scanning take longer than the scan period?
+                    long due = list.getNextDueTime();
+                    if (due <= now)
+                    {
+                        final long period = Math.round(list.getPeriod() * 1000);
+                        final long missed = (now - due) / period + 1;
+                        late_scans.addAndGet((int) missed);
+                        due += missed * period;
+                        list.setNextDueTime(due);
+                    }
+                    getSlot(due).add(list);
+                    next_due_time = Math.min(next_due_time, due);
+                }
+            }
         }
     }
 
-    /** Compute the next due time */
-    private void computeDueTime()
+    /** Compute the next due time, waking a waiting {@link #scanOnce()} */
+    private synchronized void computeDueTime()
     {
         next_due_time = Long.MAX_VALUE;
-        for (ScanList list : lists)
-            next_due_time = Math.min(list.getNextDueTime(), next_due_time);
+        for (ScanList list : lists.values())
+            if (! busy.contains(list))
+                next_due_time = Math.min(list.getNextDueTime(), next_due_time);
+        notifyAll();
+    }
+
+    /** Wait for scans that are running in worker threads
+     *  @throws InterruptedException on interruption
+     */
+    public synchronized void waitForScans() throws InterruptedException
+    {
+        while (! busy.isEmpty())
+            wait();
     }
 
     /** Average idle time in percent.
@@ -164,47 +336,57 @@ public class Scanner implements Scheduleable
      *  100 means: Nothing to do, always waiting.<br>
      *   50 means: using about half the allocated time for the scan<br>
      *    0 means: Busy all the time, actually missing scans<br>
+     *  <p>
+     *  This is the idle time of the thread that calls {@link #scanOnce()}.
+     *  With worker threads, that thread only dispatches the scans,
+     *  and scan lists that are too slow for their period
+     *  show up in {@link #getLateScans()}.
      */
     public double getIdlePercentage()
     {
         return idle_percentage.get();
     }
 
+    /** @return Number of scans that were skipped because
+     *          scanning a list took longer than its period
+     */
+    public int getLateScans()
+    {
+        return late_scans.get();
+    }
+
     /** Reset statistics */
     public void reset()
     {
         idle_percentage.reset();
+        late_scans.set(0);
     }
 
-    /** Perform one scan: Wait for the next scan, perform it. */
+    /** Perform one scan: Wait for the next scan, perform it.
+     *  <p>
+     *  Waits on the scanner, so a scan list that is re-scheduled
+     *  by a worker thread ends the wait.
+     */
     public void scanOnce()
     {
         try
         {
-            if (isDueAtAll())
+            synchronized (this)
             {
-                final long delay = getNextDueTime() - System.currentTimeMillis();
-                if (delay > idle_delay)
-                {   // Nothing due within idle time
-                    idle_percentage.update(100.0);
-                    Thread.sleep(idle_delay);
-                    return;
-                }
+                final long start = System.currentTimeMillis();
+                final long delay = next_due_time - start;
                 if (delay > 0)
-                {   // Need to wait a little, then run scan
-                    idle_percentage.update(delay*100.0/idle_delay);
-                    Thread.sleep(delay);
-                    scanDueScanLists();
-                    return;
+                {   // Wait for next due time, at most the idle time
+                    wait(Math.max(1, Math.min(delay, idle_delay)));
+                    // Idle time of this thread, independent of busy workers
+                    idle_percentage.update(Math.min(100.0, (System.currentTimeMillis() - start)*100.0/idle_delay));
+                    if (next_due_time > System.currentTimeMillis())
+                        return;
                 }
-                // High noon
-                idle_percentage.update(0.0);
-                scanDueScanLists();
-                return;
+                else // High noon
+                    idle_percentage.update(0.0);
             }
-            // Nothing to do, ever. Just wait.
-            idle_percentage.update(100.0);
-            Thread.sleep(idle_delay);
+            scanDueScanLists();
         }
         catch (InterruptedException ex)
         {
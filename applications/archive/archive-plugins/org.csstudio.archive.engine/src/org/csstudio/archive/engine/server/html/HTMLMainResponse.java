@@ -9,6 +9,7 @@ package org.csstudio.archive.engine.server.html;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -17,6 +18,8 @@ import org.csstudio.apputil.time.PeriodFormat;
 import org.csstudio.archive.engine.Messages;
 import org.csstudio.archive.engine.model.EngineModel;
 import org.csstudio.archive.engine.model.SampleBuffer;
+import org.csstudio.archive.engine.model.SpillJournal;
+import org.csstudio.archive.engine.model.WriteThread;
 import org.csstudio.archive.engine.server.AbstractMainResponse;
 import org.csstudio.archive.vtype.TimestampHelper;
 import org.diirt.util.time.TimeDuration;
@@ -86,16 +89,32 @@ public class HTMLMainResponse extends AbstractMainResponse
                 HTMLWriter.makeRedText(Integer.toString(disconnectCount))
             });
         }
-        html.tableLine(new String[]
+        if (model.isAdaptiveWrite())
         {
-            Messages.HTTP_BatchSize,
-            model.getBatchSize() + " samples"
-        });
-        html.tableLine(new String[]
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_BatchSize,
+                model.getBatchSize() + " samples, currently " + model.getCurrentBatchSize()
+            });
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_WritePeriod,
+                model.getWritePeriod() + String.format(" sec, currently %.1f sec", model.getCurrentWritePeriod())
+            });
+        }
+        else
         {
-            Messages.HTTP_WritePeriod,
-            model.getWritePeriod() + " sec"
-        });
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_BatchSize,
+                model.getBatchSize() + " samples"
+            });
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_WritePeriod,
+                model.getWritePeriod() + " sec"
+            });
+        }
 
         // Currently in 'Write Error' state?
         html.tableLine(new String[]
@@ -106,6 +125,20 @@ public class HTMLMainResponse extends AbstractMainResponse
              : "OK")
         });
 
+        final SpillJournal spill = model.getSpillJournal();
+        if (spill != null)
+        {
+            final String info = String.format("%d samples, %.1f of %.1f MB used",
+                spill.getSampleCount(), spill.getUsedBytes() / MB, spill.getCapacity() / MB);
+            html.tableLine(new String[]
+            {
+                Messages.HTTP_SpillJournal,
+                spill.getDroppedSamples() > 0
+                ? info + HTMLWriter.makeRedText(", " + spill.getDroppedSamples() + " dropped")
+                : info
+            });
+        }
+
         final Instant last_write_time = model.getLastWriteTime();
         html.tableLine(new String[]
         {
@@ -129,6 +162,11 @@ public class HTMLMainResponse extends AbstractMainResponse
             Messages.HTTP_Idletime,
             String.format("%.1f %%", model.getIdlePercentage())
         });
+        html.tableLine(new String[]
+        {
+            Messages.HTTP_LateScans,
+            Integer.toString(model.getLateScans())
+        });
 
         final Runtime runtime = Runtime.getRuntime();
         final double used_mem = runtime.totalMemory() / MB;
@@ -144,6 +182,38 @@ public class HTMLMainResponse extends AbstractMainResponse
 
         html.closeTable();
 
+        // Per-thread stats when writing with more than one thread
+        final List<WriteThread> threads = model.getWriteThreads();
+        if (threads.size() > 1)
+        {
+            html.text("<p>");
+            html.openTable(1, new String[]
+            {
+                Messages.HTTP_WriteThread,
+                Messages.HTTP_ChannelCount,
+                Messages.HTTP_LastWriteTime,
+                Messages.HTTP_WriteCount,
+                Messages.HTTP_WriteDuration,
+                Messages.HTTP_WritePeriod,
+                Messages.HTTP_BatchSize,
+            });
+            for (WriteThread thread : threads)
+            {
+                final Instant time = thread.getLastWriteTime();
+                html.tableLine(new String[]
+                {
+                    thread.getName(),
+                    Integer.toString(thread.getBufferCount()),
+                    time == null ? Messages.HTTP_Never : TimestampHelper.format(time),
+                    (int)thread.getWriteCount() + " samples",
+                    String.format("%.1f sec", thread.getWriteDuration()),
+                    String.format("%.1f sec", thread.getWritePeriod()),
+                    thread.getBatchSize() + " samples"
+                });
+            }
+            html.closeTable();
+        }
+
         html.close();
     }
 }
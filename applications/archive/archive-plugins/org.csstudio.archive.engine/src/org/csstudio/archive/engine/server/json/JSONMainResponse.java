@@ -77,6 +77,7 @@ public class JSONMainResponse extends AbstractMainResponse
         json.writeObjectEntry(Messages.HTTP_WriteDuration, model.getWriteDuration());
 
         json.writeObjectEntry(Messages.HTTP_Idletime, model.getIdlePercentage());
+        json.writeObjectEntry(Messages.HTTP_LateScans, model.getLateScans());
 
         final Runtime runtime = Runtime.getRuntime();
         final double used_mem = runtime.totalMemory() / MB;
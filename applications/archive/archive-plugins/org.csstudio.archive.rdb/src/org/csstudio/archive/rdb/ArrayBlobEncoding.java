@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.rdb;
+
+import java.util.Arrays;
+
+/** Encoding of array samples in the 'array_val' BLOB
+ *  <p>
+ *  The 'datatype' column of the sample table selects the encoding,
+ *  see dbd/array_encoding.txt.
+ *  All encodings start with a 32-bit element count, high byte first.
+ *  <p>
+ *  The compressed encodings use the fact that consecutive
+ *  waveform elements tend to be similar:
+ *  Integer arrays store the zig-zag encoded difference
+ *  to the previous element as a variable-length integer,
+ *  floating point arrays store the XOR of an element's bits with
+ *  those of the previous element, omitting leading and trailing zero bits.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ArrayBlobEncoding
+{
+    /** Datatype for scalar samples, BLOB not used */
+    final public static String SCALAR = " ";
+
+    /** Datatype for array of 8-byte doubles */
+    final public static String DOUBLE = "d";
+
+    /** Datatype for XOR-compressed array of doubles */
+    final public static String XOR_DOUBLE = "x";
+
+    /** Datatype for delta, zig-zag and varint compressed array of integers */
+    final public static String DELTA_LONG = "z";
+
+    /** Encode plain double array
+     *  @param values Array elements
+     *  @return BLOB for datatype {@link #DOUBLE}
+     */
+    public static byte[] encodeDoubles(final double[] values)
+    {
+        final BitOutput out = new BitOutput(4 + 8*values.length);
+        out.writeBits(values.length, 32);
+        for (double value : values)
+            out.writeBits(Double.doubleToRawLongBits(value), 64);
+        return out.toByteArray();
+    }
+
+    /** Encode XOR-compressed double array
+     *  @param values Array elements
+     *  @return BLOB for datatype {@link #XOR_DOUBLE}
+     */
+    public static byte[] encodeXORDoubles(final double[] values)
+    {
+        final BitOutput out = new BitOutput(4 + values.length);
+        out.writeBits(values.length, 32);
+        if (values.length <= 0)
+            return out.toByteArray();
+        long previous = Double.doubleToRawLongBits(values[0]);
+        out.writeBits(previous, 64);
+        // 'Window' of meaningful bits used for the previous element
+        int leading = Integer.MAX_VALUE, trailing = 0;
+        for (int i=1; i<values.length; ++i)
+        {
+            final long bits = Double.doubleToRawLongBits(values[i]);
+            final long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0)
+            {   // Same value as before
+                out.writeBit(false);
+                continue;
+            }
+            out.writeBit(true);
+            final int lead = Math.min(31, Long.numberOfLeadingZeros(xor));
+            final int trail = Long.numberOfTrailingZeros(xor);
+            // Use previous window if XOR fits and that's not more expensive
+            // than the 11 bits for describing a new window
+            if (lead >= leading  &&  trail >= trailing  &&
+                (lead - leading) + (trail - trailing) <= 11)
+            {   // Fits into previous window
+                out.writeBit(false);
+                out.writeBits(xor >>> trailing, 64 - leading - trailing);
+            }
+            else
+            {   // New window: 5 bits leading zeros, 6 bits for (meaningful bits - 1)
+                leading = lead;
+                trailing = trail;
+                final int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful - 1, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Encode delta-compressed integer array
+     *  @param values Array elements
+     *  @return BLOB for datatype {@link #DELTA_LONG}
+     */
+    public static byte[] encodeDeltaLongs(final long[] values)
+    {
+        final BitOutput out = new BitOutput(4 + values.length);
+        out.writeBits(values.length, 32);
+        long previous = 0;
+        for (long value : values)
+        {
+            final long delta = value - previous;
+            previous = value;
+            // Zig-zag: Small negative and positive numbers become small unsigned numbers
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            // Varint: 7 bits per byte, high bit set while more bytes follow
+            while ((zigzag & ~0x7FL) != 0)
+            {
+                out.writeBits((zigzag & 0x7F) | 0x80, 8);
+                zigzag >>>= 7;
+            }
+            out.writeBits(zigzag, 8);
+        }
+        return out.toByteArray();
+    }
+
+    /** @param datatype Datatype of the BLOB
+     *  @return <code>true</code> if this class can decode the datatype
+     */
+    public static boolean isSupported(final String datatype)
+    {
+        return DOUBLE.equals(datatype)  ||
+               XOR_DOUBLE.equals(datatype)  ||
+               DELTA_LONG.equals(datatype);
+    }
+
+    /** @param blob BLOB of any supported datatype
+     *  @return Number of array elements
+     *  @throws Exception on error
+     */
+    public static int getElementCount(final byte[] blob) throws Exception
+    {
+        if (blob == null  ||  blob.length < 4)
+            throw new Exception("Array BLOB lacks element count");
+        return ((blob[0] & 0xFF) << 24) | ((blob[1] & 0xFF) << 16) |
+               ((blob[2] & 0xFF) <<  8) |  (blob[3] & 0xFF);
+    }
+
+    /** Decode BLOB
+     *  @param datatype Datatype of the BLOB
+     *  @param blob BLOB
+     *  @return Array elements
+     *  @throws Exception on error
+     */
+    public static double[] decode(final String datatype, final byte[] blob) throws Exception
+    {
+        final int nelm = getElementCount(blob);
+        final double[] array = new double[nelm];
+        final BitInput in = new BitInput(blob, 4);
+        try
+        {
+            if (DOUBLE.equals(datatype))
+            {
+                for (int i=0; i<nelm; ++i)
+                    array[i] = Double.longBitsToDouble(in.readBits(64));
+            }
+            else if (XOR_DOUBLE.equals(datatype))
+                decodeXORDoubles(in, array);
+            else if (DELTA_LONG.equals(datatype))
+                decodeDeltaLongs(in, array);
+            else
+                throw new Exception("Sample BLOBs of type '" + datatype + "' are not decoded");
+        }
+        catch (ArrayIndexOutOfBoundsException ex)
+        {
+            throw new Exception("Array BLOB of type '" + datatype + "' is truncated", ex);
+        }
+        return array;
+    }
+
+    private static void decodeXORDoubles(final BitInput in, final double[] array)
+    {
+        if (array.length <= 0)
+            return;
+        long previous = in.readBits(64);
+        array[0] = Double.longBitsToDouble(previous);
+        int leading = 0, trailing = 0;
+        for (int i=1; i<array.length; ++i)
+        {
+            if (in.readBit())
+            {
+                if (in.readBit())
+                {   // New window
+                    leading = (int) in.readBits(5);
+                    trailing = 64 - leading - (int) in.readBits(6) - 1;
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            array[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    private static void decodeDeltaLongs(final BitInput in, final double[] array)
+    {
+        long value = 0;
+        for (int i=0; i<array.length; ++i)
+        {
+            long zigzag = 0;
+            int shift = 0;
+            long b;
+            do
+            {
+                b = in.readBits(8);
+                zigzag |= (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+            value += (zigzag >>> 1) ^ -(zigzag & 1);
+            array[i] = value;
+        }
+    }
+
+    /** Writes bits, high bit first, into growing byte array */
+    private static class BitOutput
+    {
+        private byte[] bytes;
+        /** Number of bits written */
+        private long bits = 0;
+
+        BitOutput(final int initial_size)
+        {
+            bytes = new byte[Math.max(8, initial_size)];
+        }
+
+        void writeBit(final boolean bit)
+        {
+            writeBits(bit ? 1 : 0, 1);
+        }
+
+        /** @param value Value to write, using its low 'count' bits
+         *  @param count Number of bits to write, 1..64
+         */
+        void writeBits(final long value, int count)
+        {
+            final long needed = (bits + count + 7) / 8;
+            if (needed > bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.max(needed, 2L * bytes.length));
+            while (count > 0)
+            {
+                final int index = (int) (bits >>> 3);
+                final int free = 8 - (int) (bits & 7);
+                final int n = Math.min(free, count);
+                final int chunk = (int) (value >>> (count - n)) & ((1 << n) - 1);
+                bytes[index] |= chunk << (free - n);
+                bits += n;
+                count -= n;
+            }
+        }
+
+        byte[] toByteArray()
+        {
+            return Arrays.copyOf(bytes, (int) ((bits + 7) / 8));
+        }
+    }
+
+    /** Reads bits, high bit first, from byte array */
+    private static class BitInput
+    {
+        final private byte[] bytes;
+        /** Number of bits read */
+        private long bits;
+
+        BitInput(final byte[] bytes, final int offset)
+        {
+            this.bytes = bytes;
+            bits = 8L * offset;
+        }
+
+        boolean readBit()
+        {
+            return readBits(1) != 0;
+        }
+
+        /** @param count Number of bits to read, 1..64
+         *  @return Value
+         */
+        long readBits(int count)
+        {
+            long value = 0;
+            while (count > 0)
+            {
+                final int index = (int) (bits >>> 3);
+                final int avail = 8 - (int) (bits & 7);
+                final int n = Math.min(avail, count);
+                final int chunk = ((bytes[index] & 0xFF) >>> (avail - n)) & ((1 << n) - 1);
+                value = (value << n) | chunk;
+                bits += n;
+                count -= n;
+            }
+            return value;
+        }
+    }
+}
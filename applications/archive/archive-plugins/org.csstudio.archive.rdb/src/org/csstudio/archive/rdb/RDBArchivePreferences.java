@@ -23,6 +23,8 @@ public class RDBArchivePreferences
     public static final String PASSWORD = "password";
     public static final String SQL_TIMEOUT = "sql_timeout";
     public static final String USE_ARRAY_BLOB = "use_array_blob";
+    public static final String COMPRESS_ARRAY_BLOB = "compress_array_blob";
+    public static final String CONFIG_THREADS = "config_threads";
 
     /** @return URL of RDB archive server */
     public static String getURL()
@@ -69,6 +71,15 @@ public class RDBArchivePreferences
         return prefs.getBoolean(Activator.ID, USE_ARRAY_BLOB, true, null);
     }
 
+    /** @return <code>true</code> if array samples in BLOB should be compressed */
+    public static boolean compressArrayBlob()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return false;
+        return prefs.getBoolean(Activator.ID, COMPRESS_ARRAY_BLOB, false, null);
+    }
+
     /** Get string preference
      *  @param key Preference key
      *  @return String or <code>null</code>
@@ -80,4 +91,13 @@ public class RDBArchivePreferences
             return null;
         return prefs.getString(Activator.ID, key, null, null);
     }
+
+    /** @return Number of threads for reading an engine configuration */
+    public static int getConfigThreads()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null)
+            return 1;
+        return prefs.getInt(Activator.ID, CONFIG_THREADS, 1, null);
+    }
 }
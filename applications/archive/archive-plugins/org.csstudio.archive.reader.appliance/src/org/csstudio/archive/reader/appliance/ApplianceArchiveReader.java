@@ -10,12 +10,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
 import org.csstudio.apputil.text.RegExHelper;
 import org.csstudio.archive.reader.ArchiveInfo;
 import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ParallelValueFetch;
+import org.csstudio.archive.reader.PendingValueIterator;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
@@ -210,6 +213,25 @@ public class ApplianceArchiveReader implements ArchiveReader, IteratorListener {
         return it;
     }
 
+    /* (non-Javadoc)
+     * @see org.csstudio.archive.reader.ArchiveReader#getRawValues(int, java.util.List, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<PendingValueIterator> getRawValues(int key, List<String> names, Instant start, Instant end) {
+        // Each channel is fetched with its own HTTP request, so these can run concurrently
+        return ParallelValueFetch.fetch(names, ApplianceArchiveReaderConstants.FETCH_THREADS,
+                name -> getRawValues(key, name, start, end));
+    }
+
+    /* (non-Javadoc)
+     * @see org.csstudio.archive.reader.ArchiveReader#getOptimizedValues(int, java.util.List, java.time.Instant, java.time.Instant, int)
+     */
+    @Override
+    public List<PendingValueIterator> getOptimizedValues(int key, List<String> names, Instant start, Instant end, int count) {
+        return ParallelValueFetch.fetch(names, ApplianceArchiveReaderConstants.FETCH_THREADS,
+                name -> getOptimizedValues(key, name, start, end, count));
+    }
+
     /* (non-Javadoc)
      * @see org.csstudio.archive.reader.ArchiveReader#cancel()
      */
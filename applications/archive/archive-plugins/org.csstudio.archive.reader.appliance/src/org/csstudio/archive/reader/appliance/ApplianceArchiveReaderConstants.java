@@ -56,4 +56,7 @@ public class ApplianceArchiveReaderConstants {
     /** The schema delimiter: ca://pvName or pva://pvname */
     static final String SCHEMA_DELIMITER = "://";
 
+    /** Number of concurrent requests when fetching several channels */
+    static final int FETCH_THREADS = 8;
+
 }
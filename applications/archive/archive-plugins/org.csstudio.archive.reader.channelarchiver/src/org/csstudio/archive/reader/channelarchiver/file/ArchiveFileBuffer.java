@@ -7,32 +7,72 @@
  ******************************************************************************/
 package org.csstudio.archive.reader.channelarchiver.file;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 
 /**
  * Implements ByteBuffer-like relative get methods for getting binary data
  * from a file. Created for use with ArchiveFileReader and associated classes.
+ *
+ * <p>By default, the file is memory-mapped via the {@link MappedFileCache},
+ * so random access, as used by the RTree search and the binary search
+ * for samples, reads directly from the mapping.
+ * Setting the system property
+ * <code>org.csstudio.archive.reader.channelarchiver.file.mapped=false</code>
+ * selects the original mode that reads into a heap buffer.
+ *
  * @author Amanda Carpenter
  *
  */
 public class ArchiveFileBuffer implements AutoCloseable
 {
+    /** Use memory-mapped files? */
+    public static final boolean USE_MAPPED_FILES =
+        Boolean.parseBoolean(System.getProperty("org.csstudio.archive.reader.channelarchiver.file.mapped", "true"));
+
     // XXX: what size? Bigger means less fetching, but too big means memory runs out;
-    private final ByteBuffer buffer = ByteBuffer.allocate(65536);
+    private static final int BUFFER_SIZE = 65536;
+
+    private final boolean mapped;
+    /** Heap buffer, or window of mapped file */
+    private ByteBuffer buffer;
+    /** Offset in file of the buffer's first byte */
+    private long buffer_start = 0;
+    /** File channel for heap buffer, not used when mapped */
     private FileChannel fileChannel;
     private File file = null;
 
     public ArchiveFileBuffer()
     {
+        this(USE_MAPPED_FILES);
+    }
+
+    /** @param mapped Use memory-mapped file? */
+    public ArchiveFileBuffer(final boolean mapped)
+    {
+        this.mapped = mapped;
+        buffer = ByteBuffer.allocate(mapped ? 0 : BUFFER_SIZE);
+        buffer.limit(0);
     }
 
     public ArchiveFileBuffer(final File file) throws IOException
     {
+        this(file, USE_MAPPED_FILES);
+    }
+
+    /** @param file File to read
+     *  @param mapped Use memory-mapped file?
+     *  @throws IOException on error
+     */
+    public ArchiveFileBuffer(final File file, final boolean mapped) throws IOException
+    {
+        this(mapped);
         setFile(file);
     }
 
@@ -44,10 +84,17 @@ public class ArchiveFileBuffer implements AutoCloseable
     {
         if (! file.equals(this.file))
         {
-            this.file = file;
             close();
-            fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            if (mapped)
+            {   // Regions are mapped when accessed
+                if (! file.isFile())
+                    throw new NoSuchFileException(file.getPath());
+            }
+            else
+                fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            this.file = file;
         }
+        buffer_start = 0;
         buffer.position(0).limit(0);
     }
 
@@ -56,21 +103,57 @@ public class ArchiveFileBuffer implements AutoCloseable
         return file;
     }
 
-    public void prepareGet(int numBytes) throws IOException
+    /** Load buffer with data from file
+     *  @param offset Offset in file
+     *  @param numBytes Number of bytes that should be available at that offset
+     *  @throws IOException on error
+     */
+    private void load(final long offset, final int numBytes) throws IOException
     {
-        if (buffer.remaining() < numBytes)
+        if (mapped)
+        {
+            final MappedFileCache.Region region = MappedFileCache.getRegion(file, offset, numBytes);
+            if (region == null)
+            {   // End of file
+                buffer = ByteBuffer.allocate(0);
+                buffer_start = offset;
+                return;
+            }
+            // Each buffer needs its own position, but shares the mapped data
+            buffer = region.buffer.duplicate();
+            buffer_start = region.start;
+            buffer.position((int) (offset - buffer_start));
+        }
+        else
         {
-            buffer.compact();
-            fileChannel.read(buffer);
-            buffer.limit(buffer.position()); //use limit to mark extent of read
-            buffer.position(0);
+            buffer.clear();
+            while (buffer.hasRemaining()  &&
+                   fileChannel.read(buffer, offset + buffer.position()) > 0)
+                ;
+            buffer.flip();
+            buffer_start = offset;
         }
     }
 
+    public void prepareGet(int numBytes) throws IOException
+    {
+        if (buffer.remaining() < numBytes)
+            load(offset(), numBytes);
+    }
+
     public void get(byte dst []) throws IOException
     {
-        prepareGet(dst.length);
-        buffer.get(dst);
+        // Copy in sections in case dst is larger than the buffer
+        int done = 0;
+        while (done < dst.length)
+        {
+            prepareGet(1);
+            if (! buffer.hasRemaining())
+                throw new EOFException("Cannot read " + dst.length + " bytes at offset " + (offset() - done) + " of " + file);
+            final int chunk = Math.min(buffer.remaining(), dst.length - done);
+            buffer.get(dst, done, chunk);
+            done += chunk;
+        }
     }
 
     public long getUnsignedInt() throws IOException
@@ -99,11 +182,7 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     public byte get() throws IOException
     {
-        if (!buffer.hasRemaining())
-        {
-            buffer.clear();
-            buffer.limit(fileChannel.read(buffer));
-        }
+        prepareGet(1);
         return buffer.get();
     }
 
@@ -116,40 +195,35 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     public void skip(int numBytes) throws IOException
     {
-        int numAlready = buffer.remaining();
-        while (numBytes > numAlready)
-        {
-            numBytes -= numAlready;
-            buffer.clear();
-            numAlready = fileChannel.read(buffer);
-            buffer.limit(numAlready);
-            buffer.position(0);
-        }
-        buffer.position(buffer.position() + numBytes);
+        if (numBytes <= buffer.remaining())
+            buffer.position(buffer.position() + numBytes);
+        else
+            load(offset() + numBytes, 0);
     }
 
     public void offset(long offset) throws IOException
     {
-         if (offset < 0 || offset > fileChannel.size())
-        {
-            //throw new RuntimeException("Offset is invalid.") ?
-            return;
-        }
         //check if buffer contains the data
         //(Buffer always represents a contiguous portion of the file's contents)
-        long buffer_start_offset = fileChannel.position() - buffer.limit();
-        boolean doesNotContain = buffer_start_offset > offset || fileChannel.position() < offset;
-        if (doesNotContain)
+        if (offset >= buffer_start  &&  offset <= buffer_start + buffer.limit())
         {
-            fileChannel.position(offset);
-            buffer.clear();
-            buffer.limit(fileChannel.read(buffer));
-            buffer.position(0);
+            buffer.position((int)(offset - buffer_start));
+            return;
         }
-        else
+        if (offset < 0 || offset > size())
         {
-            buffer.position((int)(offset - buffer_start_offset));
+            //throw new RuntimeException("Offset is invalid.") ?
+            return;
         }
+        load(offset, 0);
+    }
+
+    /** @return Size of the file
+     *  @throws IOException on error
+     */
+    private long size() throws IOException
+    {
+        return mapped ? file.length() : fileChannel.size();
     }
 
     public int getInt() throws IOException
@@ -160,7 +234,7 @@ public class ArchiveFileBuffer implements AutoCloseable
 
     long offset() throws IOException
     {
-        return fileChannel.position() - buffer.limit() + buffer.position();
+        return buffer_start + buffer.position();
     }
 
     public int remaining()
@@ -176,6 +250,12 @@ public class ArchiveFileBuffer implements AutoCloseable
             fileChannel.close();
             fileChannel = null;
         }
+        if (mapped)
+        {   // Release this buffer's reference to the mapped region
+            buffer = ByteBuffer.allocate(0);
+            buffer_start = 0;
+        }
+        file = null;
     }
 
     @Override
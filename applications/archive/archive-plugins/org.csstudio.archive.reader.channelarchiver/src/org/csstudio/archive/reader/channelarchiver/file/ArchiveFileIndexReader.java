@@ -17,7 +17,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.regex.Pattern;
 
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.channelarchiver.file.RTreeNode.RTreeNodeWithIndex;
@@ -31,7 +33,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
 {
     private final ArchiveFileBuffer buffer;
     private final File indexParent;
-    private final HashMap<String, TreeAnchor> anchors;
+    private final ChannelNameIndex names;
 
     /** Anchor of an RTree
      *
@@ -61,8 +63,8 @@ public class ArchiveFileIndexReader implements AutoCloseable
     {
         buffer = new ArchiveFileBuffer(indexFile);
         indexParent = indexFile.getParentFile();
-        anchors = getAnchors();
-        logger.fine(() -> "Opened " + indexFile + ", " + anchors.size() + " channels");
+        names = ChannelNameIndex.open(indexFile, this::readAnchorOffsets);
+        logger.fine(() -> "Opened " + indexFile + ", " + names.size() + " channels");
     }
 
     private Queue<Long> readHashTable() throws IOException
@@ -82,7 +84,10 @@ public class ArchiveFileIndexReader implements AutoCloseable
         return ret;
     }
 
-    private HashMap<String, TreeAnchor> getAnchors() throws IOException
+    /** @return Offset of RTree anchor by channel name
+     *  @throws IOException on error
+     */
+    private Map<String, Long> readAnchorOffsets() throws IOException
     {
         //Hash table entries are stored as follows:
         // long next - offset of next hash entry on the table
@@ -91,7 +96,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
         // short id_text_len - length of channel id text
         // char name [name_name] - channel name (without '/0' terminator)
         // char id_text [id_text_len] - id text (without '/0' terminator)
-        HashMap<String, TreeAnchor> ret = new HashMap<>();
+        HashMap<String, Long> ret = new HashMap<>();
         Queue<Long> offsets = readHashTable();
         while (!offsets.isEmpty())
         {
@@ -107,7 +112,7 @@ public class ArchiveFileIndexReader implements AutoCloseable
             byte name_buf [] = new byte [nameLen];
             buffer.get(name_buf);
             final String name = new String(name_buf);
-            ret.put(name, new TreeAnchor(name, anchor_offset));
+            ret.put(name, anchor_offset);
             if (offset != 0)
                 offsets.add(offset);
         }
@@ -129,9 +134,10 @@ public class ArchiveFileIndexReader implements AutoCloseable
      */
     public List<DataFileEntry> getEntries(final String channelName, final Instant startTime, final Instant endTime) throws Exception, UnknownChannelException
     {
-        final TreeAnchor anchor = anchors.get(channelName);
-        if (anchor == null)
+        final long anchor_offset = names.getAnchor(channelName);
+        if (anchor_offset < 0)
             throw new UnknownChannelException(channelName);
+        final TreeAnchor anchor = new TreeAnchor(channelName, anchor_offset);
 
         final RTreeNodeWithIndex node_and_index = searchRTreeNodes(anchor.root, anchor.numRecords, startTime);
         if (node_and_index == null)
@@ -256,8 +262,17 @@ public class ArchiveFileIndexReader implements AutoCloseable
         buffer.close();
     }
 
-    public java.util.Set<String> getChannelNames()
+    /** @return All channel names, sorted */
+    public List<String> getChannelNames()
+    {
+        return names.getNames();
+    }
+
+    /** @param pattern Pattern that must match the complete channel name
+     *  @return Matching channel names, sorted
+     */
+    public List<String> getChannelNames(final Pattern pattern)
     {
-        return anchors.keySet();
+        return names.search(pattern);
     }
 }
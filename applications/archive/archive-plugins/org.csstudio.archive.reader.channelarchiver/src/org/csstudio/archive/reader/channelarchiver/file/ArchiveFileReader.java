@@ -10,7 +10,6 @@ package org.csstudio.archive.reader.channelarchiver.file;
 import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -82,10 +81,7 @@ public class ArchiveFileReader implements ArchiveReader
     public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
     {
         final Pattern pattern = Pattern.compile(reg_exp, Pattern.CASE_INSENSITIVE);
-        final List<String> result = new ArrayList<>();
-        for (String name : indexReader.getChannelNames())
-            if (pattern.matcher(name).matches())
-                result.add(name);
+        final List<String> result = indexReader.getChannelNames(pattern);
         return result.toArray(new String [result.size()]);
     }
 
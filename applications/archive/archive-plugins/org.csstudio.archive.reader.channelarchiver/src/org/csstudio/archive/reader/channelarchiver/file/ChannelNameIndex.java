@@ -0,0 +1,632 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import static org.csstudio.archive.reader.channelarchiver.file.ArchiveFileReader.logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/** Sorted channel names of an index file, with a trigram index for name searches.
+ *
+ *  <p>Walking the hash table of a large index file to list all channels
+ *  takes a long time, and so does matching each name against a pattern.
+ *  The names are thus persisted in a 'sidecar' file next to the index file,
+ *  or in the temp. directory if the index directory is read-only.
+ *  The sidecar is memory-mapped when the index is opened again,
+ *  and re-created when the index file changes.
+ *  Its header records the path of the index file and the charset of the names,
+ *  so a sidecar in the shared temp. directory is only used for the index file
+ *  that it was created for.
+ *
+ *  <p>Name searches locate candidate names via the trigrams
+ *  of literal text that a regular expression requires,
+ *  then check only those names against the pattern.
+ *
+ *  @author agent
+ */
+class ChannelNameIndex
+{
+    /** Reads channel names from the index file */
+    @FunctionalInterface
+    static interface NameReader
+    {
+        /** @return Offset of RTree anchor by channel name
+         *  @throws IOException on error
+         */
+        Map<String, Long> readNames() throws IOException;
+    }
+
+    /** 'CANI' */
+    private static final int MAGIC = 0x43414E49;
+    private static final int VERSION = 2;
+
+    /** Charset of names and index file path */
+    private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+    /** Magic, version, index file length and modification time,
+     *  number of names, number of trigrams, size of names, size of complete header.
+     *  Followed by the charset name and the index file path.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+
+    /** Trigram, offset and count of its postings */
+    private static final int TRIGRAM_SIZE = 8 + 4 + 4;
+
+    /** Content of the sidecar file:
+     *  <pre>
+     *  Header                     Fixed size part, charset name, index file path
+     *  int name_offset[count]     Offset of each name in the 'names' section, sorted by name
+     *  int anchor[count]          Offset of RTree anchor in index file for each name
+     *  Trigram entries, sorted    long trigram, int postings offset, int postings count
+     *  Names                      Bytes of all names
+     *  Postings                   Name indices for each trigram, delta- and varint-encoded
+     *  </pre>
+     */
+    private final ByteBuffer data;
+    private final int count, trigram_count, names_size;
+    private final int offsets_start, anchors_start, trigrams_start, names_start, postings_start;
+
+    /** @param data Content of sidecar file */
+    private ChannelNameIndex(final ByteBuffer data)
+    {
+        this.data = data;
+        count = data.getInt(24);
+        trigram_count = data.getInt(28);
+        names_size = data.getInt(32);
+        offsets_start = data.getInt(36);
+        anchors_start = offsets_start + 4 * count;
+        trigrams_start = anchors_start + 4 * count;
+        names_start = trigrams_start + TRIGRAM_SIZE * trigram_count;
+        postings_start = names_start + names_size;
+    }
+
+    /** Open name index of an index file
+     *
+     *  <p>Uses existing sidecar file, or creates one.
+     *
+     *  @param index Index file
+     *  @param reader Reads names from index file if there is no up-to-date sidecar file
+     *  @return {@link ChannelNameIndex}
+     *  @throws IOException on error
+     */
+    static ChannelNameIndex open(final File index, final NameReader reader) throws IOException
+    {
+        final File[] sidecars = getSidecarFiles(index);
+        for (File sidecar : sidecars)
+        {
+            if (! sidecar.isFile())
+                continue;
+            try
+            {
+                final ByteBuffer data = map(sidecar);
+                if (isCurrent(data, index))
+                {
+                    logger.fine(() -> "Using channel names from " + sidecar);
+                    return new ChannelNameIndex(data);
+                }
+            }
+            catch (IOException ex)
+            {
+                logger.log(Level.FINE, "Cannot read " + sidecar, ex);
+            }
+        }
+
+        final long start = System.currentTimeMillis();
+        final ByteBuffer data = build(index, reader.readNames());
+        logger.fine(() -> "Read channel names of " + index + " in " + (System.currentTimeMillis() - start) + " ms");
+        for (File sidecar : sidecars)
+        {
+            try
+            {
+                write(data, sidecar);
+                logger.fine(() -> "Saved channel names in " + sidecar);
+                return new ChannelNameIndex(map(sidecar));
+            }
+            catch (IOException ex)
+            {
+                logger.log(Level.FINE, "Cannot write " + sidecar, ex);
+            }
+        }
+        logger.log(Level.WARNING, "Cannot save channel names of " + index);
+        return new ChannelNameIndex(data);
+    }
+
+    /** @param index Index file
+     *  @return Sidecar files to try, next to index file and in temp. directory
+     */
+    static File[] getSidecarFiles(final File index)
+    {
+        final String path = index.getAbsolutePath();
+        return new File[]
+        {
+            new File(path + ".names"),
+            new File(System.getProperty("java.io.tmpdir"),
+                     "channelarchiver_" + digest(path) + ".names")
+        };
+    }
+
+    /** @param path Index file path
+     *  @return Hex digest of the path
+     */
+    private static String digest(final String path)
+    {
+        try
+        {
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(path.getBytes(CHARSET));
+            final StringBuilder buf = new StringBuilder(2 * hash.length);
+            for (byte b : hash)
+                buf.append(String.format("%02x", b & 0xFF));
+            return buf.toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {   // Every JRE must support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static ByteBuffer map(final File file) throws IOException
+    {
+        try
+        (
+            final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        )
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /** @param data Sidecar file content
+     *  @param index Index file
+     *  @return <code>true</code> if sidecar is valid and matches the current index file
+     */
+    private static boolean isCurrent(final ByteBuffer data, final File index)
+    {
+        if (! (data.capacity() >= HEADER_SIZE         &&
+               data.getInt(0) == MAGIC                &&
+               data.getInt(4) == VERSION              &&
+               data.getLong(8) == index.length()      &&
+               data.getLong(16) == index.lastModified()))
+            return false;
+        final int header_size = data.getInt(36);
+        if (header_size < HEADER_SIZE  ||  header_size > data.capacity())
+            return false;
+        final ByteBuffer header = data.duplicate();
+        header.position(HEADER_SIZE);
+        header.limit(header_size);
+        return CHARSET.name().equals(getString(header))  &&
+               index.getAbsolutePath().equals(getString(header));
+    }
+
+    /** @param buffer Buffer to which length and bytes of text are added
+     *  @param bytes Bytes of text
+     */
+    private static void putString(final ByteBuffer buffer, final byte[] bytes)
+    {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /** @param buffer Buffer positioned on length and bytes of text
+     *  @return Text or <code>null</code> if buffer does not hold a complete text
+     */
+    private static String getString(final ByteBuffer buffer)
+    {
+        if (buffer.remaining() < 4)
+            return null;
+        final int length = buffer.getInt();
+        if (length < 0  ||  length > buffer.remaining())
+            return null;
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private static void write(final ByteBuffer data, final File sidecar) throws IOException
+    {
+        // Write to unique temporary file in same directory, then rename,
+        // so readers never see a partial file and concurrent writers don't interfere
+        final File tmp = File.createTempFile(sidecar.getName(), ".tmp", sidecar.getAbsoluteFile().getParentFile());
+        try
+        {
+            try
+            (
+                final FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE);
+            )
+            {
+                final ByteBuffer content = data.duplicate();
+                content.clear();
+                while (content.hasRemaining())
+                    channel.write(content);
+            }
+            Files.move(tmp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /** Growing list of name indices for one trigram */
+    private static class Postings
+    {
+        int[] items = new int[4];
+        int size = 0;
+
+        void add(final int item)
+        {
+            // Name may contain the same trigram several times
+            if (size > 0  &&  items[size-1] == item)
+                return;
+            if (size >= items.length)
+                items = Arrays.copyOf(items, size * 2);
+            items[size++] = item;
+        }
+    }
+
+    /** Create sidecar file content
+     *  @param index Index file
+     *  @param anchors Anchor offset by channel name
+     *  @return Sidecar file content
+     */
+    static ByteBuffer build(final File index, final Map<String, Long> anchors)
+    {
+        final List<String> names = new ArrayList<>(anchors.keySet());
+        Collections.sort(names);
+        final int count = names.size();
+
+        final byte[][] name_bytes = new byte[count][];
+        int names_size = 0;
+        final Map<Long, Postings> trigrams = new HashMap<>();
+        for (int i=0; i<count; ++i)
+        {
+            final String name = names.get(i);
+            name_bytes[i] = name.getBytes(CHARSET);
+            names_size += name_bytes[i].length;
+            for (int c=0; c<name.length()-2; ++c)
+                trigrams.computeIfAbsent(getTrigram(name, c), t -> new Postings()).add(i);
+        }
+
+        final Long[] keys = trigrams.keySet().toArray(new Long[trigrams.size()]);
+        Arrays.sort(keys);
+        final ByteArrayOutputStream postings = new ByteArrayOutputStream();
+        final int[] postings_offset = new int[keys.length];
+        for (int t=0; t<keys.length; ++t)
+        {
+            postings_offset[t] = postings.size();
+            final Postings list = trigrams.get(keys[t]);
+            int previous = 0;
+            for (int i=0; i<list.size; ++i)
+            {
+                int delta = list.items[i] - previous;
+                previous = list.items[i];
+                while ((delta & ~0x7F) != 0)
+                {
+                    postings.write((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+                postings.write(delta);
+            }
+        }
+
+        final byte[] charset = CHARSET.name().getBytes(CHARSET);
+        final byte[] path = index.getAbsolutePath().getBytes(CHARSET);
+        final int header_size = HEADER_SIZE + 4 + charset.length + 4 + path.length;
+        final ByteBuffer data = ByteBuffer.allocate(header_size + 8 * count + TRIGRAM_SIZE * keys.length +
+                                                    names_size + postings.size());
+        data.putInt(MAGIC);
+        data.putInt(VERSION);
+        data.putLong(index.length());
+        data.putLong(index.lastModified());
+        data.putInt(count);
+        data.putInt(keys.length);
+        data.putInt(names_size);
+        data.putInt(header_size);
+        putString(data, charset);
+        putString(data, path);
+        int offset = 0;
+        for (int i=0; i<count; ++i)
+        {
+            data.putInt(offset);
+            offset += name_bytes[i].length;
+        }
+        for (String name : names)
+            data.putInt(anchors.get(name).intValue());
+        for (int t=0; t<keys.length; ++t)
+        {
+            data.putLong(keys[t]);
+            data.putInt(postings_offset[t]);
+            data.putInt(trigrams.get(keys[t]).size);
+        }
+        for (byte[] bytes : name_bytes)
+            data.put(bytes);
+        data.put(postings.toByteArray());
+        data.flip();
+        return data;
+    }
+
+    /** @param c Character
+     *  @return Character with ASCII letters in lower case,
+     *          same as {@link Pattern#CASE_INSENSITIVE} without {@link Pattern#UNICODE_CASE}
+     */
+    private static char fold(final char c)
+    {
+        return (c >= 'A'  &&  c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /** @param text Text
+     *  @param i Start index
+     *  @return Case-folded trigram at start index
+     */
+    private static long getTrigram(final String text, final int i)
+    {
+        return ((long) fold(text.charAt(i)) << 32) |
+               ((long) fold(text.charAt(i+1)) << 16) |
+                       fold(text.charAt(i+2));
+    }
+
+    /** @return Number of channel names */
+    int size()
+    {
+        return count;
+    }
+
+    /** @param i Index 0 .. size()-1
+     *  @return Name
+     */
+    String getName(final int i)
+    {
+        final int start = data.getInt(offsets_start + 4*i);
+        final int end = i < count-1 ? data.getInt(offsets_start + 4*(i+1)) : names_size;
+        final byte[] bytes = new byte[end - start];
+        final ByteBuffer names = data.duplicate();
+        names.position(names_start + start);
+        names.get(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    /** @return All channel names, sorted */
+    List<String> getNames()
+    {
+        final List<String> names = new ArrayList<>(count);
+        for (int i=0; i<count; ++i)
+            names.add(getName(i));
+        return names;
+    }
+
+    /** @param name Channel name
+     *  @return Offset of the channel's RTree anchor in the index file, or -1 if not found
+     */
+    long getAnchor(final String name)
+    {
+        int low = 0, high = count - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int cmp = getName(mid).compareTo(name);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return Integer.toUnsignedLong(data.getInt(anchors_start + 4*mid));
+        }
+        return -1;
+    }
+
+    /** @param pattern Pattern that must match the complete name
+     *  @return Matching channel names, sorted
+     */
+    List<String> search(final Pattern pattern)
+    {
+        final List<String> result = new ArrayList<>();
+        final int[] candidates = getCandidates(getRequiredLiterals(pattern.pattern()));
+        if (candidates == null)
+        {   // Check all names
+            for (int i=0; i<count; ++i)
+            {
+                final String name = getName(i);
+                if (pattern.matcher(name).matches())
+                    result.add(name);
+            }
+        }
+        else
+            for (int i : candidates)
+            {
+                final String name = getName(i);
+                if (pattern.matcher(name).matches())
+                    result.add(name);
+            }
+        return result;
+    }
+
+    /** @param literals Text that names must contain
+     *  @return Indices of names that contain all trigrams of the literals,
+     *          or <code>null</code> if there are no trigrams to check
+     */
+    private int[] getCandidates(final List<String> literals)
+    {
+        int[] candidates = null;
+        for (String literal : literals)
+            for (int c=0; c<literal.length()-2; ++c)
+            {
+                final int[] postings = getPostings(getTrigram(literal, c));
+                if (candidates == null)
+                    candidates = postings;
+                else
+                    candidates = intersect(candidates, postings);
+                if (candidates.length == 0)
+                    return candidates;
+            }
+        return candidates;
+    }
+
+    /** @param trigram Trigram
+     *  @return Sorted indices of names that contain the trigram
+     */
+    private int[] getPostings(final long trigram)
+    {
+        int low = 0, high = trigram_count - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int entry = trigrams_start + TRIGRAM_SIZE * mid;
+            final long key = data.getLong(entry);
+            if (key < trigram)
+                low = mid + 1;
+            else if (key > trigram)
+                high = mid - 1;
+            else
+            {
+                int pos = postings_start + data.getInt(entry + 8);
+                final int[] result = new int[data.getInt(entry + 12)];
+                int value = 0;
+                for (int i=0; i<result.length; ++i)
+                {
+                    int delta = 0, shift = 0, b;
+                    do
+                    {
+                        b = data.get(pos++);
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    }
+                    while ((b & 0x80) != 0);
+                    value += delta;
+                    result[i] = value;
+                }
+                return result;
+            }
+        }
+        return new int[0];
+    }
+
+    /** @param a Sorted values
+     *  @param b Sorted values
+     *  @return Values that are in both
+     */
+    private static int[] intersect(final int[] a, final int[] b)
+    {
+        final int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length  &&  j < b.length)
+        {
+            if (a[i] < b[j])
+                ++i;
+            else if (a[i] > b[j])
+                ++j;
+            else
+            {
+                result[n++] = a[i];
+                ++i;
+                ++j;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Determine literal text that a regular expression requires.
+     *
+     *  <p>Only handles the basic constructs used by glob patterns and
+     *  simple regular expressions. Text in groups is ignored,
+     *  and expressions with alternatives or special escapes
+     *  result in an empty list.
+     *
+     *  @param regex Regular expression
+     *  @return Literal texts of at least 3 characters that a matching name must contain
+     */
+    static List<String> getRequiredLiterals(final String regex)
+    {
+        final List<String> result = new ArrayList<>();
+        if (regex.indexOf('|') >= 0  ||  regex.contains("(?")  ||  regex.contains("\\Q"))
+            return result;
+        final StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i=0; i<regex.length(); ++i)
+        {
+            final char c = regex.charAt(i);
+            switch (c)
+            {
+            case '\\':
+                if (++i >= regex.length()  ||  Character.isLetterOrDigit(regex.charAt(i)))
+                    return Collections.emptyList();
+                if (depth == 0)
+                    run.append(regex.charAt(i));
+                break;
+            case '[':
+                addLiteral(result, run);
+                // Skip character class, where ']' right at the start is literal
+                ++i;
+                if (i < regex.length()  &&  regex.charAt(i) == '^')
+                    ++i;
+                if (i < regex.length()  &&  regex.charAt(i) == ']')
+                    ++i;
+                while (i < regex.length()  &&  regex.charAt(i) != ']')
+                {
+                    if (regex.charAt(i) == '\\')
+                        ++i;
+                    ++i;
+                }
+                break;
+            case '(':
+                addLiteral(result, run);
+                ++depth;
+                break;
+            case ')':
+                --depth;
+                break;
+            case '*':
+            case '?':
+            case '{':
+                // Preceding character is optional
+                if (run.length() > 0)
+                    run.setLength(run.length() - 1);
+                addLiteral(result, run);
+                if (c == '{')
+                    while (i < regex.length()  &&  regex.charAt(i) != '}')
+                        ++i;
+                break;
+            case '+':
+            case '.':
+            case '^':
+            case '$':
+                addLiteral(result, run);
+                break;
+            default:
+                if (depth == 0)
+                    run.append(c);
+            }
+        }
+        addLiteral(result, run);
+        return result;
+    }
+
+    private static void addLiteral(final List<String> literals, final StringBuilder run)
+    {
+        if (run.length() >= 3)
+            literals.add(run.toString());
+        run.setLength(0);
+    }
+}
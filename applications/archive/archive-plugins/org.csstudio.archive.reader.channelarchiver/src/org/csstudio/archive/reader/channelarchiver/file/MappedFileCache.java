@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import static org.csstudio.archive.reader.channelarchiver.file.ArchiveFileReader.logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Memory-mapped regions of index and data files,
+ *  shared by all {@link ArchiveFileBuffer}s.
+ *
+ *  <p>Files are mapped in windows of {@link #WINDOW_SIZE}.
+ *  Each window extends {@link #OVERLAP} bytes into the next one,
+ *  so values that start close to the end of a window can still
+ *  be read without changing windows.
+ *  Since one mapping is limited to 2GB, larger files use several windows.
+ *
+ *  <p>The least recently used windows are dropped from the cache
+ *  once more than {@link #MAX_WINDOWS} are mapped.
+ *  The operating system releases the mapping when the window
+ *  is no longer used by any buffer.
+ *
+ *  @author agent
+ */
+class MappedFileCache
+{
+    /** Size of a window */
+    final static long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    /** Overlap of windows, must be larger than any single value */
+    final static int OVERLAP = 1024 * 1024;
+
+    /** Maximum number of cached windows */
+    final static int MAX_WINDOWS = 64;
+
+    /** Mapped window of a file */
+    static class Region
+    {
+        /** Offset of the window in the file */
+        final long start;
+
+        /** Mapped content. Use a duplicate to read. */
+        final ByteBuffer buffer;
+
+        Region(final long start, final ByteBuffer buffer)
+        {
+            this.start = start;
+            this.buffer = buffer;
+        }
+
+        /** @return <code>true</code> if region covers the maximum size of a window,
+         *          so even if the file grew it cannot offer more data
+         */
+        boolean isComplete()
+        {
+            return buffer.capacity() >= WINDOW_SIZE + OVERLAP;
+        }
+    }
+
+    /** Windows by file and window index, in access order */
+    @SuppressWarnings("serial")
+    private static final Map<String, Region> windows = new LinkedHashMap<String, Region>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Region> eldest)
+        {
+            return size() > MAX_WINDOWS;
+        }
+    };
+
+    /** Get window of a file
+     *  @param file File
+     *  @param offset Offset in file
+     *  @param num_bytes Number of bytes that will be read at that offset
+     *  @return Region that contains the offset, or <code>null</code> if offset is at or beyond the end of the file
+     *  @throws IOException on error
+     */
+    static Region getRegion(final File file, final long offset, final int num_bytes) throws IOException
+    {
+        final long index = offset / WINDOW_SIZE;
+        final String key = file.getAbsolutePath() + '@' + index;
+        synchronized (windows)
+        {
+            final Region cached = windows.get(key);
+            // Use cached region unless file might have grown since it was mapped
+            if (cached != null  &&
+                (offset + num_bytes <= cached.start + cached.buffer.capacity()  ||  cached.isComplete()))
+                return cached;
+
+            final Region region;
+            try
+            (
+                final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            )
+            {
+                final long start = index * WINDOW_SIZE;
+                final long size = Math.min(WINDOW_SIZE + OVERLAP, channel.size() - start);
+                if (size <= 0)
+                    return null;
+                region = new Region(start, channel.map(FileChannel.MapMode.READ_ONLY, start, size));
+            }
+            logger.fine(() -> "Mapped " + file + " @ 0x" + Long.toHexString(region.start) +
+                              ", " + region.buffer.capacity() + " bytes");
+            windows.put(key, region);
+            return region;
+        }
+    }
+}
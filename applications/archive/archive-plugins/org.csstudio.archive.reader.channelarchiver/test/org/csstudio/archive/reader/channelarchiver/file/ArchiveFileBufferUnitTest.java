@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.nio.file.Files;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link ArchiveFileBuffer}
+ *
+ *  <p>Uses a sparse file that is larger than one window of the {@link MappedFileCache}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ArchiveFileBufferUnitTest
+{
+    private static final long BOUNDARY = MappedFileCache.WINDOW_SIZE;
+
+    private File createFile() throws Exception
+    {
+        final File file = File.createTempFile("archive_buffer", ".data");
+        file.deleteOnExit();
+        try
+        (
+            final RandomAccessFile out = new RandomAccessFile(file, "rw");
+        )
+        {
+            out.setLength(BOUNDARY + 2 * MappedFileCache.OVERLAP);
+            out.seek(0);
+            out.writeInt(0x12345678);
+            out.writeShort(42);
+            // Double that straddles the window boundary
+            out.seek(BOUNDARY - 4);
+            out.writeDouble(3.14);
+            out.writeBytes("Text");
+            // Value at the very end
+            out.seek(out.length() - 8);
+            out.writeDouble(-1.5);
+        }
+        return file;
+    }
+
+    private void check(final File file, final boolean mapped) throws Exception
+    {
+        try
+        (
+            final ArchiveFileBuffer buffer = new ArchiveFileBuffer(file, mapped);
+        )
+        {
+            assertEquals(0x12345678L, buffer.getUnsignedInt());
+            assertEquals(42, buffer.getShort());
+            assertEquals(6, buffer.offset());
+
+            // Jump across windows
+            buffer.offset(BOUNDARY - 4);
+            assertEquals(3.14, buffer.getDouble(), 0.0);
+            assertEquals(BOUNDARY + 4, buffer.offset());
+            final byte[] text = new byte[4];
+            buffer.get(text);
+            assertArrayEquals("Text".getBytes(), text);
+
+            buffer.offset(file.length() - 8);
+            assertEquals(-1.5, buffer.getDouble(), 0.0);
+
+            // Back to start, skip
+            buffer.offset(0);
+            buffer.skip(4);
+            assertEquals(42, buffer.getShort());
+            buffer.skip((int) (BOUNDARY - 10));
+            assertEquals(3.14, buffer.getDouble(), 0.0);
+        }
+    }
+
+    @Test
+    public void testHeapBuffer() throws Exception
+    {
+        check(createFile(), false);
+    }
+
+    @Test
+    public void testMappedBuffer() throws Exception
+    {
+        final File file = createFile();
+        check(file, true);
+        // Second buffer shares the mapped windows
+        check(file, true);
+    }
+
+    private void checkEnd(final File file, final boolean mapped) throws Exception
+    {
+        try
+        (
+            final ArchiveFileBuffer buffer = new ArchiveFileBuffer(file, mapped);
+        )
+        {
+            // Reading across the end of the file must fail, not hang
+            final byte[] data = new byte[10];
+            try
+            {
+                buffer.get(data);
+                fail("Read past end of file");
+            }
+            catch (EOFException ex)
+            {
+                System.out.println(ex.getMessage());
+            }
+
+            buffer.offset(file.length());
+            try
+            {
+                buffer.get(data);
+                fail("Read at end of file");
+            }
+            catch (EOFException ex)
+            {
+                System.out.println(ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testEndOfFile() throws Exception
+    {
+        final File file = File.createTempFile("archive_buffer", ".data");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        checkEnd(file, false);
+        checkEnd(file, true);
+    }
+}
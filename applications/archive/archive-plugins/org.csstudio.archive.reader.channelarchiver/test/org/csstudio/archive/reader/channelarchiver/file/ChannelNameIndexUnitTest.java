@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.channelarchiver.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.csstudio.apputil.text.RegExHelper;
+import org.junit.Test;
+
+/** JUnit test of the {@link ChannelNameIndex}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ChannelNameIndexUnitTest
+{
+    @Test
+    public void testLiterals() throws Exception
+    {
+        // Literals shorter than a trigram are ignored
+        assertEquals(Arrays.asList("Tnk_PT"), ChannelNameIndex.getRequiredLiterals(RegExHelper.fullRegexFromGlob("*Tnk_PT*:P")));
+        assertEquals(Arrays.asList("CCL_HPRF:Kly", ":Flw"), ChannelNameIndex.getRequiredLiterals(RegExHelper.fullRegexFromGlob("CCL_HPRF:Kly?:Flw")));
+        assertEquals(Arrays.asList("abc", "efg", "hij"), ChannelNameIndex.getRequiredLiterals("abcd?efg+hijk*"));
+        assertEquals(Arrays.asList("x.y"), ChannelNameIndex.getRequiredLiterals("[a-z]+x\\.y(abc)?"));
+        assertEquals(Collections.emptyList(), ChannelNameIndex.getRequiredLiterals("abc|def"));
+        assertEquals(Collections.emptyList(), ChannelNameIndex.getRequiredLiterals("abc\\d+"));
+    }
+
+    /** @return Channel names with anchor offsets */
+    private Map<String, Long> createNames()
+    {
+        final Map<String, Long> names = new HashMap<>();
+        long offset = 100;
+        for (String system : new String[] { "CCL", "DTL", "RFQ", "SCL" })
+            for (int i=1; i<=50; ++i)
+            {
+                names.put(system + "_HPRF:Kly" + i + ":Flw", offset++);
+                names.put(system + "_HPRF:Kly" + i + ":Pwr", offset++);
+                names.put(system + "_Vac:Pump" + i + ":Press", offset++);
+            }
+        // Name that is not plain ASCII
+        names.put("MEBT_Vac:Gauge1:\u00b5Torr", offset++);
+        return names;
+    }
+
+    @Test
+    public void testSearch() throws Exception
+    {
+        final File index = File.createTempFile("index", "");
+        index.deleteOnExit();
+        final Map<String, Long> names = createNames();
+        final AtomicInteger reads = new AtomicInteger();
+        final ChannelNameIndex.NameReader reader = () ->
+        {
+            reads.incrementAndGet();
+            return names;
+        };
+        for (File sidecar : ChannelNameIndex.getSidecarFiles(index))
+            sidecar.deleteOnExit();
+
+        ChannelNameIndex channels = ChannelNameIndex.open(index, reader);
+        assertEquals(1, reads.get());
+        assertEquals(names.size(), channels.size());
+
+        // Compare with plain search
+        for (String glob : new String[] { "*Kly1*", "ccl*flw", "*:press", "*xyz*", "DTL_HPRF:Kly42:Pwr", "*" })
+        {
+            final Pattern pattern = Pattern.compile(RegExHelper.fullRegexFromGlob(glob), Pattern.CASE_INSENSITIVE);
+            final List<String> expected = new ArrayList<>();
+            for (String name : names.keySet())
+                if (pattern.matcher(name).matches())
+                    expected.add(name);
+            Collections.sort(expected);
+            final List<String> found = channels.search(pattern);
+            System.out.println(glob + ": " + found.size() + " channels");
+            assertEquals(expected, found);
+        }
+
+        for (Map.Entry<String, Long> entry : names.entrySet())
+            assertEquals(entry.getValue().longValue(), channels.getAnchor(entry.getKey()));
+        assertEquals(-1, channels.getAnchor("Unknown"));
+
+        // Second time, names are read from sidecar
+        channels = ChannelNameIndex.open(index, reader);
+        assertEquals(1, reads.get());
+        assertEquals(names.size(), channels.size());
+
+        // Changed index file requires new sidecar
+        Files.write(index.toPath(), new byte[] { 1, 2, 3 });
+        channels = ChannelNameIndex.open(index, reader);
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void testSourcePath() throws Exception
+    {
+        final File index = File.createTempFile("index", "");
+        index.deleteOnExit();
+        final File other = new File(index.getPath() + "_other");
+        other.deleteOnExit();
+        Files.write(other.toPath(), Files.readAllBytes(index.toPath()));
+        other.setLastModified(index.lastModified());
+        final AtomicInteger reads = new AtomicInteger();
+        final Map<String, Long> names = createNames();
+        final ChannelNameIndex.NameReader reader = () ->
+        {
+            reads.incrementAndGet();
+            return names;
+        };
+        final File sidecar = ChannelNameIndex.getSidecarFiles(index)[0];
+        sidecar.deleteOnExit();
+        final File other_sidecar = ChannelNameIndex.getSidecarFiles(other)[0];
+        other_sidecar.deleteOnExit();
+
+        ChannelNameIndex.open(index, reader);
+        assertEquals(1, reads.get());
+
+        // Sidecar of a different index file with same size and time is not used
+        Files.copy(sidecar.toPath(), other_sidecar.toPath());
+        final ChannelNameIndex channels = ChannelNameIndex.open(other, reader);
+        assertEquals(2, reads.get());
+        assertEquals(names.size(), channels.size());
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.rdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.csstudio.archive.rdb.ArrayBlobEncoding;
+import org.junit.Test;
+
+/** JUnit test of the {@link ArrayBlobEncoding}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ArrayBlobEncodingUnitTest
+{
+    /** @return Waveform that looks like a digitized sine wave */
+    private double[] createWaveform(final int size)
+    {
+        final double[] values = new double[size];
+        for (int i=0; i<size; ++i)
+            values[i] = 0.5 * Math.round(1000.0 * Math.sin(i * 0.01));
+        return values;
+    }
+
+    @Test
+    public void testDoubles() throws Exception
+    {
+        final double[] values = createWaveform(2000);
+        final byte[] blob = ArrayBlobEncoding.encodeDoubles(values);
+        assertEquals(4 + 8*values.length, blob.length);
+        assertEquals(values.length, ArrayBlobEncoding.getElementCount(blob));
+        assertArrayEquals(values, ArrayBlobEncoding.decode(ArrayBlobEncoding.DOUBLE, blob), 0.0);
+    }
+
+    @Test
+    public void testXORDoubles() throws Exception
+    {
+        final double[] values = createWaveform(2000);
+        values[10] = Double.NaN;
+        values[11] = Double.NEGATIVE_INFINITY;
+        values[12] = -0.0;
+        values[13] = Double.MIN_VALUE;
+        final byte[] blob = ArrayBlobEncoding.encodeXORDoubles(values);
+        System.out.println("XOR encoding: " + blob.length + " bytes instead of " + (4 + 8*values.length));
+        assertTrue(blob.length < 4 * values.length);
+
+        // Fractions do not compress
+        final double[] noise = new double[2000];
+        for (int i=0; i<noise.length; ++i)
+            noise[i] = Math.random();
+        assertArrayEquals(noise, ArrayBlobEncoding.decode(ArrayBlobEncoding.XOR_DOUBLE, ArrayBlobEncoding.encodeXORDoubles(noise)), 0.0);
+        assertEquals(values.length, ArrayBlobEncoding.getElementCount(blob));
+        final double[] decoded = ArrayBlobEncoding.decode(ArrayBlobEncoding.XOR_DOUBLE, blob);
+        assertEquals(values.length, decoded.length);
+        for (int i=0; i<values.length; ++i)
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoded[i]));
+
+        // Constant waveform: One bit per element
+        final double[] constant = new double[2000];
+        assertEquals(4 + 8 + (constant.length-1 + 7)/8,
+                     ArrayBlobEncoding.encodeXORDoubles(constant).length);
+
+        // Empty array
+        final byte[] empty = ArrayBlobEncoding.encodeXORDoubles(new double[0]);
+        assertEquals(0, ArrayBlobEncoding.decode(ArrayBlobEncoding.XOR_DOUBLE, empty).length);
+    }
+
+    @Test
+    public void testDeltaLongs() throws Exception
+    {
+        final long[] values = { 5, 6, 4, 0, -1, 1000000, Long.MIN_VALUE, Long.MAX_VALUE, 42 };
+        final byte[] blob = ArrayBlobEncoding.encodeDeltaLongs(values);
+        assertEquals(values.length, ArrayBlobEncoding.getElementCount(blob));
+        final double[] decoded = ArrayBlobEncoding.decode(ArrayBlobEncoding.DELTA_LONG, blob);
+        for (int i=0; i<values.length; ++i)
+            assertEquals((double) values[i], decoded[i], 0.0);
+
+        // Example from dbd/array_encoding.txt
+        assertArrayEquals(new byte[] { 0, 0, 0, 3, 0x0A, 0x02, 0x03 },
+                          ArrayBlobEncoding.encodeDeltaLongs(new long[] { 5, 6, 4 }));
+
+        // Ramp of 16 bit ADC readings: One byte per element
+        final long[] ramp = new long[2000];
+        for (int i=0; i<ramp.length; ++i)
+            ramp[i] = 30000 + i/2;
+        assertEquals(4 + 3 + ramp.length-1, ArrayBlobEncoding.encodeDeltaLongs(ramp).length);
+    }
+
+    @Test(expected=Exception.class)
+    public void testTruncated() throws Exception
+    {
+        final byte[] blob = ArrayBlobEncoding.encodeXORDoubles(createWaveform(100));
+        final byte[] truncated = new byte[blob.length / 2];
+        System.arraycopy(blob, 0, truncated, 0, truncated.length);
+        ArrayBlobEncoding.decode(ArrayBlobEncoding.XOR_DOUBLE, truncated);
+    }
+}
@@ -7,8 +7,6 @@
  ******************************************************************************/
 package org.csstudio.archive.reader.rdb;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -17,12 +15,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.csstudio.archive.rdb.ArrayBlobEncoding;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.ArchiveVEnum;
 import org.csstudio.archive.vtype.ArchiveVNumber;
 import org.csstudio.archive.vtype.ArchiveVNumberArray;
 import org.csstudio.archive.vtype.ArchiveVString;
 import org.csstudio.archive.vtype.TimestampHelper;
+import org.diirt.util.array.ArrayDouble;
+import org.diirt.util.array.ListNumber;
 import org.diirt.util.text.NumberFormats;
 import org.diirt.vtype.AlarmSeverity;
 import org.diirt.vtype.Display;
@@ -195,11 +196,11 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
             // Double data.
             if (handle_array)
             {   // Get array elements - if any.
-                final double data[] = reader.useArrayBlob()
+                final ListNumber data = reader.useArrayBlob()
                     ? readBlobArrayElements(dbl0, result)
-                    : readArrayElements(time, dbl0, severity);
-                if (data.length == 1)
-                    return new ArchiveVNumber(time, severity, status, display, data[0]);
+                    : new ArrayDouble(readArrayElements(time, dbl0, severity));
+                if (data.size() == 1)
+                    return new ArchiveVNumber(time, severity, status, display, data.getDouble(0));
                 else
                     return new ArchiveVNumberArray(time, severity, status, display, data);
             }
@@ -301,9 +302,10 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
      *  @param dbl0 Value of the first (maybe only) array element
      *  @param result ResultSet for the sample table with blob
      *  @return Array with given element and maybe more.
+     *          Compressed BLOBs are decoded when elements are accessed.
      *  @throws Exception on error, including 'cancel'
      */
-    private double[] readBlobArrayElements(final double dbl0, final ResultSet result) throws Exception
+    private ListNumber readBlobArrayElements(final double dbl0, final ResultSet result) throws Exception
     {
         final String datatype;
         if (reader.isOracle())
@@ -312,27 +314,14 @@ abstract public class AbstractRDBValueIterator  implements ValueIterator
             datatype = result.getString(8);
 
         // ' ' or NULL indicate: Scalar, not an array
-        if (datatype == null || " ".equals(datatype) || result.wasNull())
-            return new double [] { dbl0 };
+        if (datatype == null || ArrayBlobEncoding.SCALAR.equals(datatype) || result.wasNull())
+            return new ArrayDouble(dbl0);
 
         // Decode BLOB
         final byte[] bytes = result.getBytes(reader.isOracle() ? 8 : 9);
-        final ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
-        final DataInputStream data = new DataInputStream(stream);
-        if ("d".equals(datatype))
-        {    // Read Double typed array elements
-            final int nelm = data.readInt();
-            final double[] array = new double[nelm];
-            for (int i = 0; i < nelm; i++)
-                array[i] = data.readDouble();
-            data.close();
-            return array;
-        }
-        // TODO Decode 'l' Long and 'i' Integer?
-        else
-        {
-            throw new Exception("Sample BLOBs of type '" + datatype + "' are not decoded");
-        }
+        if (ArrayBlobEncoding.DOUBLE.equals(datatype))
+            return new ArrayDouble(ArrayBlobEncoding.decode(datatype, bytes));
+        return new ArrayBlobList(datatype, bytes);
     }
 
     /** @param result ResultSet positioned on row to dump to console
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader.rdb;
+
+import org.csstudio.archive.rdb.ArrayBlobEncoding;
+import org.diirt.util.array.ListDouble;
+
+/** Array elements of a sample, decoded from the 'array_val' BLOB on first access.
+ *  <p>
+ *  Clients that only look at the first element or the size
+ *  of a waveform, for example when plotting the waveform's
+ *  value over time, never decode the complete array.
+ *
+ *  @author agent
+ */
+class ArrayBlobList extends ListDouble
+{
+    final private String datatype;
+    final private int size;
+
+    /** BLOB, <code>null</code> once decoded */
+    private byte[] blob;
+
+    /** Decoded elements */
+    private volatile double[] data = null;
+
+    /** @param datatype Datatype of the BLOB
+     *  @param blob BLOB
+     *  @throws Exception on error in BLOB's element count or type
+     */
+    @SuppressWarnings("nls")
+    ArrayBlobList(final String datatype, final byte[] blob) throws Exception
+    {
+        if (! ArrayBlobEncoding.isSupported(datatype))
+            throw new Exception("Sample BLOBs of type '" + datatype + "' are not decoded");
+        this.datatype = datatype;
+        this.blob = blob;
+        size = ArrayBlobEncoding.getElementCount(blob);
+    }
+
+    /** @return Decoded array elements */
+    private double[] getData()
+    {
+        double[] result = data;
+        if (result == null)
+        {
+            synchronized (this)
+            {
+                result = data;
+                if (result == null)
+                {
+                    try
+                    {
+                        result = ArrayBlobEncoding.decode(datatype, blob);
+                    }
+                    catch (Exception ex)
+                    {
+                        throw new IllegalStateException(ex.getMessage(), ex);
+                    }
+                    data = result;
+                    blob = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public double getDouble(final int index)
+    {
+        return getData()[index];
+    }
+}
@@ -15,12 +15,16 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.csstudio.archive.rdb.RDBArchivePreferences;
 import org.csstudio.archive.reader.ArchiveInfo;
 import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ParallelValueFetch;
+import org.csstudio.archive.reader.PendingValueIterator;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.archive.vtype.TimestampHelper;
@@ -380,11 +384,25 @@ public class RDBArchiveReader implements ArchiveReader
     @Override
     public ValueIterator getOptimizedValues(final int key, final String name,
             final Instant start, final Instant end, int count) throws UnknownChannelException, Exception
+    {
+        final int channel_id = getChannelID(name);
+        return getOptimizedValues(channel_id, start, end, count);
+    }
+
+    /** Fetch optimized samples
+     *  @param channel_id Channel ID in RDB
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @return {@link ValueIterator} for optimized samples
+     *  @throws Exception on error
+     */
+    public ValueIterator getOptimizedValues(final int channel_id,
+            final Instant start, final Instant end, final int count) throws Exception
     {
         // MySQL version of the stored proc. requires count > 1
         if (count <= 1)
             throw new Exception("Count must be > 1");
-        final int channel_id = getChannelID(name);
 
         // Use stored procedure in RDB server?
         if (stored_procedure.length() > 0)
@@ -418,6 +436,90 @@ public class RDBArchiveReader implements ArchiveReader
         return new AveragedValueIterator(raw_data, seconds);
     }
 
+    /** {@inheritDoc}
+     *  <p>Locates all channel IDs in one query,
+     *  then opens one channel at a time since they share the RDB connection.
+     */
+    @Override
+    public List<PendingValueIterator> getRawValues(final int key, final List<String> names,
+            final Instant start, final Instant end)
+    {
+        final Map<String, Integer> ids = getChannelIDs(names);
+        return ParallelValueFetch.fetch(names, 1, name ->
+            getRawValues(getChannelID(ids, name), start, end));
+    }
+
+    /** {@inheritDoc}
+     *  <p>Locates all channel IDs in one query,
+     *  then opens one channel at a time since they share the RDB connection.
+     */
+    @Override
+    public List<PendingValueIterator> getOptimizedValues(final int key, final List<String> names,
+            final Instant start, final Instant end, final int count)
+    {
+        final Map<String, Integer> ids = getChannelIDs(names);
+        return ParallelValueFetch.fetch(names, 1, name ->
+            getOptimizedValues(getChannelID(ids, name), start, end, count));
+    }
+
+    /** @param names Channel names
+     *  @return Numeric channel IDs by name. Unknown channels are not in the map.
+     *          Empty map on error.
+     */
+    private Map<String, Integer> getChannelIDs(final List<String> names)
+    {
+        final Map<String, Integer> ids = new HashMap<>();
+        // Oracle supports at most 1000 expressions in a list
+        final int chunk = 1000;
+        try
+        {
+            for (int start=0; start<names.size(); start += chunk)
+            {
+                final List<String> part = names.subList(start, Math.min(start + chunk, names.size()));
+                final StringBuilder query = new StringBuilder(sql.channel_sel_by_names);
+                query.append('(');
+                for (int i=0; i<part.size(); ++i)
+                    query.append(i > 0 ? ", ?" : "?");
+                query.append(')');
+                try
+                (
+                    final PreparedStatement statement =
+                        rdb.getConnection().prepareStatement(query.toString());
+                )
+                {
+                    if (timeout > 0)
+                        statement.setQueryTimeout(timeout);
+                    for (int i=0; i<part.size(); ++i)
+                        statement.setString(i+1, part.get(i));
+                    final ResultSet result = statement.executeQuery();
+                    while (result.next())
+                        ids.put(result.getString(2), result.getInt(1));
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            Activator.getLogger().log(Level.WARNING, "Cannot locate channel IDs, will query one at a time", ex);
+            ids.clear();
+        }
+        return ids;
+    }
+
+    /** @param ids Channel IDs by name from <code>getChannelIDs</code>
+     *  @param name Channel name
+     *  @return Numeric channel ID
+     *  @throws UnknownChannelException when channel not known
+     *  @throws Exception on error
+     */
+    private int getChannelID(final Map<String, Integer> ids, final String name) throws UnknownChannelException, Exception
+    {
+        final Integer id = ids.get(name);
+        if (id != null)
+            return id;
+        // Not found, or found with different case?
+        return getChannelID(name);
+    }
+
     /** @param name Channel name
      *  @return Numeric channel ID
      *  @throws UnknownChannelException when channel not known
@@ -31,6 +31,8 @@ public class SQL
     final public String channel_sel_by_like;
     final public String channel_sel_by_reg_exp;
     final public String channel_sel_by_name;
+    /** Start of query for channels by name, needs "(?, ?, ...)" */
+    final public String channel_sel_by_names;
 
     // 'sample' table
     final public String sample_sel_initial_time;
@@ -83,6 +85,7 @@ public class SQL
         }
 
         channel_sel_by_name = "SELECT channel_id FROM " + prefix + "channel WHERE name=?";
+        channel_sel_by_names = "SELECT channel_id, name FROM " + prefix + "channel WHERE name IN ";
 
         // 'sample' table
         if (dialect == RDBUtil.Dialect.Oracle)
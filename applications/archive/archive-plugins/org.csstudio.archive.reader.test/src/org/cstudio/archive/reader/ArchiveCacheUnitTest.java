@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.archive.reader.ArchiveCache;
+import org.csstudio.archive.reader.ArchiveInfo;
+import org.csstudio.archive.reader.ArchiveReader;
+import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.ArchiveVString;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VType;
+import org.junit.Test;
+
+/** JUnit test of the {@link ArchiveCache}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ArchiveCacheUnitTest
+{
+    /** Reader with a sample every 10 seconds */
+    private static class DemoReader implements ArchiveReader
+    {
+        final List<String> requests = new ArrayList<>();
+
+        @Override
+        public String getServerName()
+        {
+            return "Demo";
+        }
+
+        @Override
+        public String getURL()
+        {
+            return "demo://test";
+        }
+
+        @Override
+        public String getDescription()
+        {
+            return "Demo";
+        }
+
+        @Override
+        public int getVersion()
+        {
+            return 1;
+        }
+
+        @Override
+        public ArchiveInfo[] getArchiveInfos()
+        {
+            return new ArchiveInfo[0];
+        }
+
+        @Override
+        public String[] getNamesByPattern(final int key, final String glob_pattern) throws Exception
+        {
+            return new String[0];
+        }
+
+        @Override
+        public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
+        {
+            return new String[0];
+        }
+
+        /** Like an archive, return the sample 'at' the start time, then samples up to the end time */
+        @Override
+        public ValueIterator getRawValues(final int key, final String name,
+                                          final Instant start, final Instant end) throws Exception
+        {
+            requests.add(start.getEpochSecond() + " - " + end.getEpochSecond());
+            final List<VType> values = new ArrayList<>();
+            long time = start.getEpochSecond() / 10 * 10;
+            while (! Instant.ofEpochSecond(time).isAfter(end))
+            {
+                values.add(new ArchiveVString(Instant.ofEpochSecond(time), AlarmSeverity.NONE, "OK", name + " " + time));
+                time += 10;
+            }
+            return new DemoDataIterator(values.toArray(new VType[values.size()]));
+        }
+
+        @Override
+        public ValueIterator getOptimizedValues(final int key, final String name,
+                                                final Instant start, final Instant end, final int count) throws Exception
+        {
+            return getRawValues(key, name, start, end);
+        }
+
+        @Override
+        public void cancel()
+        {
+            // NOP
+        }
+
+        @Override
+        public void close()
+        {
+            // NOP
+        }
+    }
+
+    private List<String> read(final ArchiveReader reader, final long start, final long end) throws Exception
+    {
+        return read(reader, "pv", start, end);
+    }
+
+    private List<String> read(final ArchiveReader reader, final String name, final long start, final long end) throws Exception
+    {
+        final List<String> result = new ArrayList<>();
+        final ValueIterator values = reader.getRawValues(1, name, Instant.ofEpochSecond(start), Instant.ofEpochSecond(end));
+        while (values.hasNext())
+            result.add(values.next().toString());
+        values.close();
+        return result;
+    }
+
+    @Test
+    public void testCache() throws Exception
+    {
+        final DemoReader demo = new DemoReader();
+        final ArchiveCache cache = new ArchiveCache(1000000);
+        final ArchiveReader reader = cache.wrap(demo);
+
+        assertThat(read(reader, 105, 200), equalTo(read(demo, 105, 200)));
+        assertThat(demo.requests.size(), equalTo(2));
+        final long size = cache.getSize();
+        assertThat(size > 0, equalTo(true));
+
+        // Fully cached
+        demo.requests.clear();
+        assertThat(read(reader, 120, 180), equalTo(read(demo, 120, 180)));
+        assertThat(read(reader, 125, 185), equalTo(read(demo, 125, 185)));
+        assertThat(demo.requests.size(), equalTo(2));
+
+        // Only the missing ranges are fetched
+        demo.requests.clear();
+        assertThat(read(reader, 50, 250), equalTo(read(demo, 50, 250)));
+        System.out.println(demo.requests);
+        assertThat(demo.requests.size(), equalTo(3));
+        assertThat(demo.requests.get(0), equalTo("50 - 104"));
+        assertThat(demo.requests.get(1), equalTo("200 - 250"));
+        assertThat(cache.getSize() > size, equalTo(true));
+
+        // All of that is now cached
+        demo.requests.clear();
+        assertThat(read(reader, 50, 250), equalTo(read(demo, 50, 250)));
+        assertThat(demo.requests.size(), equalTo(1));
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        final DemoReader demo = new DemoReader();
+        final ArchiveCache cache = new ArchiveCache(5000);
+        final ArchiveReader reader = cache.wrap(demo);
+
+        // Cache fits about four of these channels
+        for (String name : new String[] { "a", "b", "c", "d" })
+            read(reader, name, 0, 100);
+        final long size = cache.getSize();
+        assertThat(size > 0, equalTo(true));
+        assertThat(size <= 5000, equalTo(true));
+
+        // Use "a" again, so "b" is now the least recently used channel
+        demo.requests.clear();
+        read(reader, "a", 0, 100);
+        assertThat(demo.requests.size(), equalTo(0));
+
+        // Adding another channel drops "b"
+        read(reader, "e", 0, 100);
+        assertThat(cache.getSize() <= 5000, equalTo(true));
+        demo.requests.clear();
+        for (String name : new String[] { "a", "c", "d", "e" })
+            read(reader, name, 0, 100);
+        assertThat(demo.requests.size(), equalTo(0));
+        read(reader, "b", 0, 100);
+        assertThat(demo.requests.size(), equalTo(1));
+    }
+
+    @Test
+    public void testLargeRequest() throws Exception
+    {
+        final DemoReader demo = new DemoReader();
+        final ArchiveCache cache = new ArchiveCache(5000);
+        final ArchiveReader reader = cache.wrap(demo);
+
+        read(reader, 0, 100);
+        final long size = cache.getSize();
+        assertThat(size > 0, equalTo(true));
+
+        // Request that's too large to cache is returned, but not cached,
+        // and doesn't drop other data
+        assertThat(read(reader, 1000, 2000), equalTo(read(demo, 1000, 2000)));
+        assertThat(cache.getSize(), equalTo(size));
+        demo.requests.clear();
+        read(reader, 0, 100);
+        assertThat(demo.requests.size(), equalTo(0));
+        read(reader, 1000, 2000);
+        assertThat(demo.requests.size(), equalTo(1));
+    }
+
+    @Test
+    public void testRefresh() throws Exception
+    {
+        final DemoReader demo = new DemoReader();
+        final ArchiveCache cache = new ArchiveCache(1000000);
+
+        read(cache.wrap(demo), 0, 100);
+        demo.requests.clear();
+        read(cache.wrap(demo), 0, 100);
+        assertThat(demo.requests.size(), equalTo(0));
+
+        // Refresh fetches everything, replacing the cached data
+        assertThat(read(cache.wrap(demo, true), 0, 100), equalTo(read(demo, 0, 100)));
+        assertThat(demo.requests.size(), equalTo(2));
+        demo.requests.clear();
+        read(cache.wrap(demo), 0, 100);
+        assertThat(demo.requests.size(), equalTo(0));
+    }
+}
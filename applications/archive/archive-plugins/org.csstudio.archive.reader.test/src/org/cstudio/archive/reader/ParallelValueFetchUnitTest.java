@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.cstudio.archive.reader;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.reader.ParallelValueFetch;
+import org.csstudio.archive.reader.PendingValueIterator;
+import org.csstudio.archive.reader.UnknownChannelException;
+import org.junit.Test;
+
+/** JUnit test of the {@link ParallelValueFetch}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ParallelValueFetchUnitTest
+{
+    /** Fetch several channels, one of them unknown */
+    @Test
+    public void testFetch() throws Exception
+    {
+        final AtomicInteger active = new AtomicInteger(), max_active = new AtomicInteger();
+        final List<PendingValueIterator> iters = ParallelValueFetch.fetch(Arrays.asList("A", "B", "Bad", "C", "D"), 2, name ->
+        {
+            max_active.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            active.decrementAndGet();
+            if (name.equals("Bad"))
+                throw new UnknownChannelException(name);
+            return DemoDataIterator.forStrings(name);
+        });
+        assertThat(iters.size(), equalTo(5));
+
+        // Results are in the order of the names
+        for (PendingValueIterator iter : iters)
+        {
+            if (iter.getName().equals("Bad"))
+            {
+                try
+                {
+                    iter.await();
+                    throw new Exception("Did not report error");
+                }
+                catch (UnknownChannelException ex)
+                {
+                    System.out.println(iter + ": " + ex.getMessage());
+                }
+                continue;
+            }
+            int count = 0;
+            while (iter.hasNext())
+            {
+                iter.next();
+                ++count;
+            }
+            System.out.println(iter + ": " + count + " samples");
+            assertThat(count, equalTo(10));
+            iter.close();
+        }
+        // Number of concurrent fetches was limited
+        assertThat(max_active.get(), equalTo(2));
+    }
+
+    /** Close before the fetch completes */
+    @Test
+    public void testClose() throws Exception
+    {
+        final DemoDataIterator data = DemoDataIterator.forStrings("A");
+        final List<PendingValueIterator> iters = ParallelValueFetch.fetch(Arrays.asList("A"), 1, name ->
+        {
+            Thread.sleep(500);
+            return data;
+        });
+        final PendingValueIterator iter = iters.get(0);
+        assertThat(iter.isDone(), equalTo(false));
+        iter.close();
+        assertThat(iter.hasNext(), equalTo(false));
+
+        // Iterator that's opened after the close is closed right away
+        Thread.sleep(1000);
+        assertThat(data.isOpen(), equalTo(false));
+    }
+}
@@ -44,6 +44,32 @@ public class SpreadsheetIteratorUnitTest
         assertThat(result, equalTo("A 1,null,A 2,null,A 3,null,A 4,null,A 5,null,A 6,B 1,A 7,B 2,A 8,B 3,A 9,B 4,A 10,B 5,A 10,B 6,A 10,B 7,A 10,B 8,A 10,B 9,A 10,B 10"));
     }
 
+    /** Lines placed into a buffer match the lines returned by next() */
+    @Test
+    public void testLineBuffer() throws Exception
+    {
+        final SpreadsheetIterator sheet1 = new SpreadsheetIterator(
+                DemoDataIterator.forStrings("A"), DemoDataIterator.forStrings("B", 3), DemoDataIterator.forStrings("C", 7));
+        final SpreadsheetIterator sheet2 = new SpreadsheetIterator(
+                DemoDataIterator.forStrings("A"), DemoDataIterator.forStrings("B", 3), DemoDataIterator.forStrings("C", 7));
+        final VType[] line = new VType[3];
+        int count = 0;
+        while (sheet1.hasNext())
+        {
+            assertThat(sheet2.hasNext(), equalTo(true));
+            assertThat(sheet2.getTime(), equalTo(sheet1.getTime()));
+            final VType[] expected = sheet1.next();
+            sheet2.next(line);
+            for (int i=0; i<line.length; ++i)
+                assertThat(line[i], equalTo(expected[i]));
+            ++count;
+        }
+        assertThat(sheet2.hasNext(), equalTo(false));
+        assertThat(count, equalTo(17));
+        sheet1.close();
+        sheet2.close();
+    }
+
     private String runSheetTest(final int time_lag) throws Exception
     {
         System.out.println("SpreadsheetIterator");
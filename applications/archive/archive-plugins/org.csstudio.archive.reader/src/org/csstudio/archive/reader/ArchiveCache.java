@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.VNumberArray;
+import org.diirt.vtype.VStatistics;
+import org.diirt.vtype.VString;
+import org.diirt.vtype.VType;
+
+/** Client-side cache of archived samples
+ *
+ *  <p>Samples are cached by archive URL, key, channel name
+ *  and request type, where optimized requests are further
+ *  distinguished by their bin resolution.
+ *  For each channel, the cache tracks which time ranges have
+ *  been fetched.
+ *  A request that is partially covered by the cache
+ *  only fetches the missing time ranges from the archive.
+ *
+ *  <p>Samples within {@link #RECENT} of 'now' are not cached
+ *  because the archive might still receive data for that time range.
+ *
+ *  <p>When the estimated memory size of the cached samples exceeds
+ *  the configured limit, the least recently used channels are dropped.
+ *  Requests that return more than {@link #MAX_RECORD_FRACTION} of the
+ *  limit are not cached at all.
+ *
+ *  <p>Since the archive may receive samples later than expected,
+ *  for example delayed or spilled writes of an archive engine,
+ *  a reader obtained with <code>wrap(reader, true)</code>
+ *  replaces the cached data of the requested channels
+ *  with freshly fetched data.
+ *
+ *  @see #wrap(ArchiveReader)
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class ArchiveCache
+{
+    /** Time range before 'now' that is never cached */
+    final static Duration RECENT = Duration.ofMinutes(1);
+
+    /** Maximum size of one request's samples that are added to the cache,
+     *  relative to the size of the complete cache
+     */
+    final static double MAX_RECORD_FRACTION = 0.5;
+
+    final static Logger logger = Logger.getLogger(ArchiveCache.class.getName());
+
+    /** Maximum size of the cache in bytes */
+    final private long max_bytes;
+
+    /** Cached channels, in access order.
+     *  Synchronize on 'this' on access.
+     */
+    final private Map<String, CachedChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Estimated size of all cached channels.
+     *  Synchronize on 'this' on access.
+     */
+    private long bytes = 0;
+
+    /** Range of samples that have been fetched for a channel.
+     *  Immutable.
+     */
+    static class Segment
+    {
+        /** Covered time range, including start, excluding end */
+        final Instant start, end;
+
+        /** Samples with time stamps before 'end'.
+         *  Samples before 'start' are possible,
+         *  as returned by the archive for the first sample 'at' the start time.
+         */
+        final List<VType> samples;
+
+        /** Estimated size of the samples */
+        final long bytes;
+
+        Segment(final Instant start, final Instant end, final List<VType> samples)
+        {
+            this.start = start;
+            this.end = end;
+            this.samples = samples;
+            long size = 0;
+            for (VType sample : samples)
+                size += estimateSize(sample);
+            bytes = size;
+        }
+    }
+
+    /** Part of a request: Either cached samples or a gap that needs to be fetched */
+    static class Part
+    {
+        /** Time range of the part, including start, excluding end */
+        final Instant start, end;
+
+        /** Cached samples, or <code>null</code> for a gap */
+        final List<VType> samples;
+
+        Part(final Instant start, final Instant end, final List<VType> samples)
+        {
+            this.start = start;
+            this.end = end;
+            this.samples = samples;
+        }
+
+        /** @return <code>true</code> if this part needs to be fetched */
+        boolean isGap()
+        {
+            return samples == null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return (isGap() ? "Gap " : "Cached ") + start + " - " + end;
+        }
+    }
+
+    /** Cached data for one channel */
+    static class CachedChannel
+    {
+        /** Non-overlapping segments by start time.
+         *  Synchronize on 'this' on access.
+         */
+        final private TreeMap<Instant, Segment> segments = new TreeMap<>();
+
+        /** Estimated size of all segments */
+        final private AtomicLong bytes = new AtomicLong();
+
+        /** @return Estimated size of cached samples */
+        long getSize()
+        {
+            return bytes.get();
+        }
+
+        /** Determine cached and missing parts of a time range
+         *  @param start Start of range, inclusive
+         *  @param end End of range, exclusive
+         *  @return Parts that cover the time range in order
+         */
+        synchronized List<Part> plan(final Instant start, final Instant end)
+        {
+            final List<Part> parts = new ArrayList<>();
+            Instant time = start;
+            // Start with segment that might include 'start'
+            Instant first = segments.floorKey(start);
+            if (first == null)
+                first = start;
+            for (Segment segment : segments.subMap(first, true, end, false).values())
+            {
+                if (! segment.end.isAfter(time))
+                    continue;
+                if (segment.start.isAfter(time))
+                {
+                    parts.add(new Part(time, segment.start, null));
+                    time = segment.start;
+                }
+                final Instant part_end = segment.end.isBefore(end) ? segment.end : end;
+                int i0 = findSample(segment.samples, time);
+                // For the first part, include the sample that's 'at' the start time
+                if (parts.isEmpty()  &&  i0 > 0  &&
+                    (i0 >= segment.samples.size()  ||  VTypeHelper.getTimestamp(segment.samples.get(i0)).isAfter(time)))
+                    --i0;
+                final int i1 = findSample(segment.samples, part_end);
+                parts.add(new Part(time, part_end, Collections.unmodifiableList(segment.samples.subList(i0, i1))));
+                time = part_end;
+            }
+            if (time.isBefore(end))
+                parts.add(new Part(time, end, null));
+            return parts;
+        }
+
+        /** Add fetched samples
+         *  @param start Start of fetched time range, inclusive
+         *  @param end End of fetched time range, exclusive
+         *  @param samples Samples before 'end', which may include one before 'start'
+         *  @return Change in estimated size
+         */
+        synchronized long add(final Instant start, final Instant end, final List<VType> samples)
+        {
+            // Locate existing segments that overlap or touch the new range
+            Instant first = segments.floorKey(start);
+            if (first == null)
+                first = start;
+            Segment left = null, right = null;
+            long removed = 0;
+            final Iterator<Segment> iter = segments.subMap(first, true, end, true).values().iterator();
+            while (iter.hasNext())
+            {
+                final Segment segment = iter.next();
+                if (segment.end.isBefore(start))
+                    continue;
+                if (segment.start.isBefore(start))
+                    left = segment;
+                if (segment.end.isAfter(end))
+                    right = segment;
+                removed += segment.bytes;
+                iter.remove();
+            }
+
+            // Combine left segment's samples before 'start', new samples, right segment's samples from 'end' on
+            final List<VType> combined = new ArrayList<>();
+            Instant combined_start = start, combined_end = end;
+            if (left != null)
+            {
+                combined.addAll(left.samples.subList(0, findSample(left.samples, start)));
+                combined.addAll(samples.subList(findSample(samples, start), samples.size()));
+                combined_start = left.start;
+            }
+            else
+                combined.addAll(samples);
+            if (right != null)
+            {
+                combined.addAll(right.samples.subList(findSample(right.samples, end), right.samples.size()));
+                combined_end = right.end;
+            }
+            final Segment segment = new Segment(combined_start, combined_end, combined);
+            segments.put(combined_start, segment);
+            final long delta = segment.bytes - removed;
+            bytes.addAndGet(delta);
+            return delta;
+        }
+    }
+
+    /** @param max_bytes Maximum size of the cache in bytes */
+    public ArchiveCache(final long max_bytes)
+    {
+        this.max_bytes = max_bytes;
+    }
+
+    /** Wrap an archive reader to use this cache for its sample requests
+     *  @param reader {@link ArchiveReader}
+     *  @return {@link ArchiveReader} that uses the cache
+     */
+    public ArchiveReader wrap(final ArchiveReader reader)
+    {
+        return wrap(reader, false);
+    }
+
+    /** Wrap an archive reader to use this cache for its sample requests
+     *  @param reader {@link ArchiveReader}
+     *  @param refresh Ignore cached samples, fetch all requested samples and update the cache?
+     *  @return {@link ArchiveReader} that uses the cache
+     */
+    public ArchiveReader wrap(final ArchiveReader reader, final boolean refresh)
+    {
+        return new CachingArchiveReader(this, reader, refresh);
+    }
+
+    /** @return Maximum size of samples from one request that are added to the cache */
+    long getMaxRecordSize()
+    {
+        return (long) (max_bytes * MAX_RECORD_FRACTION);
+    }
+
+    /** @return Estimated size of cached samples in bytes */
+    public synchronized long getSize()
+    {
+        return bytes;
+    }
+
+    /** Remove all cached samples */
+    public synchronized void clear()
+    {
+        channels.clear();
+        bytes = 0;
+    }
+
+    /** @param prefix Start of the cache keys to remove from the cache */
+    synchronized void remove(final String prefix)
+    {
+        final Iterator<Map.Entry<String, CachedChannel>> iter = channels.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            final Map.Entry<String, CachedChannel> entry = iter.next();
+            if (entry.getKey().startsWith(prefix))
+            {
+                bytes -= entry.getValue().getSize();
+                iter.remove();
+            }
+        }
+    }
+
+    /** @param key Cache key of the channel
+     *  @return Cached data for the channel, created if necessary
+     */
+    synchronized CachedChannel getChannel(final String key)
+    {
+        return channels.computeIfAbsent(key, k -> new CachedChannel());
+    }
+
+    /** Update the estimated size, evict channels when cache is too large
+     *  @param key Cache key of the channel
+     *  @param channel Channel that changed
+     *  @param delta Change in the channel's size
+     */
+    synchronized void updateSize(final String key, final CachedChannel channel, final long delta)
+    {
+        // Ignore channel that has meanwhile been evicted
+        if (channels.get(key) != channel)
+            return;
+        bytes += delta;
+        final Iterator<Map.Entry<String, CachedChannel>> iter = channels.entrySet().iterator();
+        while (bytes > max_bytes  &&  iter.hasNext())
+        {
+            final Map.Entry<String, CachedChannel> entry = iter.next();
+            logger.log(Level.FINE, "Archive cache drops {0}", entry.getKey());
+            bytes -= entry.getValue().getSize();
+            iter.remove();
+        }
+    }
+
+    /** @param samples Samples in time order
+     *  @param time Time stamp
+     *  @return Index of first sample at or after the time stamp, <code>samples.size()</code> if none
+     */
+    static int findSample(final List<VType> samples, final Instant time)
+    {
+        int low = 0, high = samples.size();
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (VTypeHelper.getTimestamp(samples.get(mid)).isBefore(time))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** @param sample Sample
+     *  @return Estimated memory size in bytes
+     */
+    static long estimateSize(final VType sample)
+    {
+        if (sample instanceof VNumberArray)
+            return 100 + 8L * ((VNumberArray) sample).getData().size();
+        if (sample instanceof VString)
+            return 100 + 2L * ((VString) sample).getValue().length();
+        if (sample instanceof VStatistics)
+            return 150;
+        return 100;
+    }
+}
@@ -9,6 +9,7 @@ package org.csstudio.archive.reader;
 
 import java.io.Closeable;
 import java.time.Instant;
+import java.util.List;
 
 /** Interface to archive data retrieval.
  *  <p>
@@ -165,6 +166,45 @@ public interface ArchiveReader extends Closeable
     public ValueIterator getOptimizedValues(int key, String name,
         Instant start, Instant end, int count) throws UnknownChannelException, Exception;
 
+    /** Read original, raw samples for several channels.
+     *  <p>
+     *  The iterators are opened in background threads,
+     *  so clients can start to read the samples of the first channel
+     *  while the remaining channels are still being opened.
+     *  The default implementation opens one channel at a time,
+     *  implementations that can handle concurrent requests
+     *  or fetch several channels at once should override.
+     *
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @return {@link PendingValueIterator} for each channel, same order as <code>names</code>.
+     *          Errors, including {@link UnknownChannelException}, are reported by the iterator.
+     */
+    default List<PendingValueIterator> getRawValues(final int key, final List<String> names,
+            final Instant start, final Instant end)
+    {
+        return ParallelValueFetch.fetch(names, 1, name -> getRawValues(key, name, start, end));
+    }
+
+    /** Read optimized samples for several channels.
+     *  @param key Key of the archive to use for retrieval.
+     *  @param names Channel names
+     *  @param start Start time
+     *  @param end End time
+     *  @param count Hint for number of values
+     *  @return {@link PendingValueIterator} for each channel, same order as <code>names</code>.
+     *          Errors, including {@link UnknownChannelException}, are reported by the iterator.
+     *  @see #getRawValues(int, List, Instant, Instant)
+     *  @see #getOptimizedValues(int, String, Instant, Instant, int)
+     */
+    default List<PendingValueIterator> getOptimizedValues(final int key, final List<String> names,
+            final Instant start, final Instant end, final int count)
+    {
+        return ParallelValueFetch.fetch(names, 1, name -> getOptimizedValues(key, name, start, end, count));
+    }
+
     /** Cancel an ongoing archive query.
      *  It's up to the implementation to support this for all queries,
      *  or only 'getSamples', or not at all.
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.csstudio.archive.reader.ArchiveCache.CachedChannel;
+import org.csstudio.archive.reader.ArchiveCache.Part;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.VType;
+
+/** {@link ArchiveReader} that uses an {@link ArchiveCache}
+ *
+ *  <p>Sample requests are split into parts that are already cached
+ *  and gaps which are fetched from the wrapped reader.
+ *  Gaps are fetched when the iterator reaches them,
+ *  and their samples are added to the cache once the
+ *  gap has been read completely.
+ *  Samples of a gap are not cached when they would take more than
+ *  a fraction of the cache, so that a very large request is not
+ *  held in memory twice.
+ *
+ *  <p>For a 'refresh', the previously cached samples of the channel
+ *  are dropped and the complete request is fetched.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+class CachingArchiveReader implements ArchiveReader
+{
+    final private ArchiveCache cache;
+    final private ArchiveReader reader;
+    final private boolean refresh;
+    private volatile boolean cancelled = false;
+
+    /** Iterator over the parts of a request */
+    private class CachedValueIterator implements ValueIterator
+    {
+        final private String cache_key;
+        final private CachedChannel channel;
+        final private List<Part> parts;
+        final private Fetcher fetcher;
+
+        /** Index of current part */
+        private int index = -1;
+
+        /** Cached samples of current part */
+        private Iterator<VType> cached = null;
+
+        /** Archive data of current gap */
+        private ValueIterator fetched = null;
+
+        /** Samples of current gap to add to cache, <code>null</code> if gap is not cached */
+        private List<VType> recorded = null;
+
+        /** Estimated size of 'recorded' */
+        private long recorded_bytes;
+
+        /** End of the cached time range for the current gap */
+        private Instant recorded_end;
+
+        /** Next value to return */
+        private VType value = null;
+
+        /** Error to report in next() */
+        private Exception error = null;
+
+        CachedValueIterator(final String cache_key, final CachedChannel channel,
+                            final List<Part> parts, final Fetcher fetcher) throws Exception
+        {
+            this.cache_key = cache_key;
+            this.channel = channel;
+            this.parts = parts;
+            this.fetcher = fetcher;
+            // Open first part right away, so UnknownChannelException etc. are reported by the request
+            nextPart();
+            advance();
+        }
+
+        /** Move to the next part */
+        private void nextPart() throws Exception
+        {
+            closeFetch();
+            ++index;
+            if (index >= parts.size())
+                return;
+            final Part part = parts.get(index);
+            if (part.isGap())
+            {
+                fetched = fetcher.fetch(part.start, part.end.minusNanos(1));
+                final Instant now_limit = Instant.now().minus(ArchiveCache.RECENT);
+                recorded_end = part.end.isBefore(now_limit) ? part.end : now_limit;
+                recorded = recorded_end.isAfter(part.start) ? new ArrayList<>() : null;
+                recorded_bytes = 0;
+            }
+            else
+                cached = part.samples.iterator();
+        }
+
+        /** Locate next value */
+        private void advance() throws Exception
+        {
+            value = null;
+            while (index < parts.size())
+            {
+                final Part part = parts.get(index);
+                if (cached != null)
+                {
+                    if (cached.hasNext())
+                    {
+                        value = cached.next();
+                        return;
+                    }
+                    cached = null;
+                }
+                else if (fetched != null)
+                {
+                    while (fetched.hasNext())
+                    {
+                        final VType sample = fetched.next();
+                        final Instant time = VTypeHelper.getTimestamp(sample);
+                        if (recorded != null  &&  time.isBefore(recorded_end))
+                            record(sample);
+                        // First part includes sample 'at' the start time,
+                        // later parts continue where the previous part ended
+                        if (time.isBefore(part.end)  &&
+                            (index == 0  ||  !time.isBefore(part.start)))
+                        {
+                            value = sample;
+                            return;
+                        }
+                    }
+                    // Gap was read completely
+                    if (recorded != null  &&  !cancelled)
+                        cache.updateSize(cache_key, channel, channel.add(part.start, recorded_end, recorded));
+                    recorded = null;
+                }
+                nextPart();
+            }
+        }
+
+        /** @param sample Sample to add to the cache once the gap is complete */
+        private void record(final VType sample)
+        {
+            recorded_bytes += ArchiveCache.estimateSize(sample);
+            if (recorded_bytes > cache.getMaxRecordSize())
+            {
+                ArchiveCache.logger.log(Level.FINE, "Archive cache skips large request for {0}", cache_key);
+                recorded = null;
+            }
+            else
+                recorded.add(sample);
+        }
+
+        private void closeFetch()
+        {
+            if (fetched != null)
+            {
+                fetched.close();
+                fetched = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return value != null  ||  error != null;
+        }
+
+        @Override
+        public VType next() throws Exception
+        {
+            if (error != null)
+                throw error;
+            final VType result = value;
+            try
+            {
+                advance();
+            }
+            catch (Exception ex)
+            {   // Report on the following call to next()
+                error = ex;
+                value = null;
+            }
+            return result;
+        }
+
+        @Override
+        public void close()
+        {
+            closeFetch();
+            index = parts.size();
+            value = null;
+        }
+    }
+
+    /** Fetch samples for a gap */
+    @FunctionalInterface
+    private interface Fetcher
+    {
+        /** @param start Start time
+         *  @param end End time
+         *  @return {@link ValueIterator}
+         *  @throws Exception on error
+         */
+        ValueIterator fetch(Instant start, Instant end) throws Exception;
+    }
+
+    /** @param cache Cache to use
+     *  @param reader Reader to wrap
+     *  @param refresh Replace cached samples with fetched samples?
+     */
+    CachingArchiveReader(final ArchiveCache cache, final ArchiveReader reader, final boolean refresh)
+    {
+        this.cache = cache;
+        this.reader = reader;
+        this.refresh = refresh;
+    }
+
+    @Override
+    public String getServerName()
+    {
+        return reader.getServerName();
+    }
+
+    @Override
+    public String getURL()
+    {
+        return reader.getURL();
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return reader.getDescription();
+    }
+
+    @Override
+    public int getVersion()
+    {
+        return reader.getVersion();
+    }
+
+    @Override
+    public ArchiveInfo[] getArchiveInfos()
+    {
+        return reader.getArchiveInfos();
+    }
+
+    @Override
+    public String[] getNamesByPattern(final int key, final String glob_pattern) throws Exception
+    {
+        return reader.getNamesByPattern(key, glob_pattern);
+    }
+
+    @Override
+    public String[] getNamesByRegExp(final int key, final String reg_exp) throws Exception
+    {
+        return reader.getNamesByRegExp(key, reg_exp);
+    }
+
+    @Override
+    public ValueIterator getRawValues(final int key, final String name,
+            final Instant start, final Instant end) throws UnknownChannelException, Exception
+    {
+        final String channel_key = getURL() + "|" + key + "|" + name + "|";
+        return getValues(channel_key, channel_key + "raw", start, end,
+                         (gap_start, gap_end) -> reader.getRawValues(key, name, gap_start, gap_end));
+    }
+
+    @Override
+    public ValueIterator getOptimizedValues(final int key, final String name,
+            final Instant start, final Instant end, final int count) throws UnknownChannelException, Exception
+    {
+        if (count <= 0)
+            return reader.getOptimizedValues(key, name, start, end, count);
+        // Round bin size down to power of 2 milliseconds,
+        // so small zoom changes still use the same cached data
+        final long millis = Duration.between(start, end).toMillis();
+        final long resolution = Long.highestOneBit(Math.max(1, millis / count));
+        final String channel_key = getURL() + "|" + key + "|" + name + "|";
+        return getValues(channel_key, channel_key + resolution + "ms", start, end, (gap_start, gap_end) ->
+        {
+            final long gap_millis = Duration.between(gap_start, gap_end).toMillis();
+            final int gap_count = (int) Math.max(1, gap_millis / resolution);
+            return reader.getOptimizedValues(key, name, gap_start, gap_end, gap_count);
+        });
+    }
+
+    /** @param channel_key Start of cache keys for all requests of the channel
+     *  @param cache_key Cache key for this type of request
+     *  @param start Start time
+     *  @param end End time
+     *  @param fetcher Fetches gaps
+     *  @return {@link ValueIterator}
+     *  @throws Exception on error
+     */
+    private ValueIterator getValues(final String channel_key, final String cache_key,
+                                    final Instant start, final Instant end,
+                                    final Fetcher fetcher) throws Exception
+    {
+        // Drop raw and optimized data of the channel
+        if (refresh)
+            cache.remove(channel_key);
+        final CachedChannel channel = cache.getChannel(cache_key);
+        final List<Part> parts = channel.plan(start, end.plusNanos(1));
+        ArchiveCache.logger.log(Level.FINE, () -> cache_key + ": " + parts);
+        return new CachedValueIterator(cache_key, channel, parts, fetcher);
+    }
+
+    @Override
+    public void enableConcurrency(final boolean concurrency)
+    {
+        reader.enableConcurrency(concurrency);
+    }
+
+    @Override
+    public void cancel()
+    {
+        cancelled = true;
+        reader.cancel();
+    }
+
+    @Override
+    public void close()
+    {
+        reader.close();
+    }
+}
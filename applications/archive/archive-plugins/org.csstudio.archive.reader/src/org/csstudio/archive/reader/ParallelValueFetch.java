@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Opens {@link ValueIterator}s for several channels in background threads
+ *  <p>
+ *  Threads are shared by all readers,
+ *  but each call limits the number of channels that it
+ *  opens concurrently, since for example an RDB reader
+ *  can only run one query at a time on its connection
+ *  while a web-based reader can handle several requests.
+ *
+ *  @author agent
+ */
+public class ParallelValueFetch
+{
+    /** Opens the iterator for one channel */
+    @FunctionalInterface
+    public static interface ChannelFetch
+    {
+        /** @param name Channel name
+         *  @return {@link ValueIterator} for the channel
+         *  @throws Exception on error
+         */
+        public ValueIterator open(String name) throws Exception;
+    }
+
+    /** Shared threads, started as needed */
+    private static final ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory());
+
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory
+    {
+        final private AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable)
+        {
+            final Thread thread = new Thread(runnable, "ArchiveFetch " + count.incrementAndGet()); //$NON-NLS-1$
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /** Open iterators for channels in background threads
+     *  @param names Channel names
+     *  @param threads Maximum number of channels to open concurrently
+     *  @param fetch Opens the iterator for one channel
+     *  @return {@link PendingValueIterator} for each channel, same order as names
+     */
+    public static List<PendingValueIterator> fetch(final List<String> names, final int threads,
+                                                   final ChannelFetch fetch)
+    {
+        final List<PendingValueIterator> result = new ArrayList<>(names.size());
+        for (String name : names)
+            result.add(new PendingValueIterator(name));
+        final Queue<PendingValueIterator> queue = new ConcurrentLinkedQueue<>(result);
+        final int N = Math.min(Math.max(1, threads), names.size());
+        for (int i=0; i<N; ++i)
+            pool.execute(() ->
+            {
+                PendingValueIterator pending;
+                while ((pending = queue.poll()) != null)
+                {
+                    if (pending.isClosed())
+                        continue;
+                    try
+                    {
+                        pending.setIterator(fetch.open(pending.getName()));
+                    }
+                    catch (Exception ex)
+                    {
+                        pending.setError(ex);
+                    }
+                }
+            });
+        return result;
+    }
+}
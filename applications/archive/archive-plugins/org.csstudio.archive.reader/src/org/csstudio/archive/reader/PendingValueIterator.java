@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2010 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.reader;
+
+import org.diirt.vtype.VType;
+
+/** {@link ValueIterator} for a channel that is opened in the background
+ *  <p>
+ *  Returned by the multi-channel calls of the {@link ArchiveReader}.
+ *  Calls to the iterator wait until the underlying iterator
+ *  has been opened.
+ *  If opening the iterator fails, for example with an {@link UnknownChannelException},
+ *  {@link #await()} and {@link #next()} throw that exception.
+ *
+ *  @author agent
+ */
+public class PendingValueIterator implements ValueIterator
+{
+    final private String name;
+
+    /** Opened iterator, error, closed state. Synchronized on this */
+    private ValueIterator iter = null;
+    private Exception error = null;
+    private boolean done = false, closed = false;
+
+    /** @param name Channel name */
+    public PendingValueIterator(final String name)
+    {
+        this.name = name;
+    }
+
+    /** @return Channel name */
+    public String getName()
+    {
+        return name;
+    }
+
+    /** Set result of opening the iterator.
+     *  If the pending iterator has already been closed, the iterator is closed.
+     *  @param iter Iterator for the channel's samples
+     */
+    public void setIterator(final ValueIterator iter)
+    {
+        synchronized (this)
+        {
+            if (! closed)
+            {
+                this.iter = iter;
+                done = true;
+                notifyAll();
+                return;
+            }
+        }
+        iter.close();
+    }
+
+    /** Set error of opening the iterator
+     *  @param error Error
+     */
+    public synchronized void setError(final Exception error)
+    {
+        this.error = error;
+        done = true;
+        notifyAll();
+    }
+
+    /** @return <code>true</code> if the iterator has been opened, or failed to open */
+    public synchronized boolean isDone()
+    {
+        return done;
+    }
+
+    /** Wait for the iterator to open
+     *  @return Underlying iterator
+     *  @throws Exception if the iterator could not be opened
+     */
+    public synchronized ValueIterator await() throws Exception
+    {
+        while (! (done  ||  closed))
+            wait();
+        if (closed)
+            throw new Exception(name + " closed"); //$NON-NLS-1$
+        if (error != null)
+            throw error;
+        return iter;
+    }
+
+    /** {@inheritDoc}
+     *  <p>Returns <code>true</code> if there is an error that
+     *  {@link #next()} will throw
+     */
+    @Override
+    public boolean hasNext()
+    {
+        try
+        {
+            return await().hasNext();
+        }
+        catch (Exception ex)
+        {
+            return ! isClosed();
+        }
+    }
+
+    @Override
+    public VType next() throws Exception
+    {
+        return await().next();
+    }
+
+    /** @return <code>true</code> if iterator has been closed */
+    public synchronized boolean isClosed()
+    {
+        return closed;
+    }
+
+    @Override
+    public void close()
+    {
+        final ValueIterator to_close;
+        synchronized (this)
+        {
+            closed = true;
+            to_close = iter;
+            iter = null;
+            notifyAll();
+        }
+        if (to_close != null)
+            to_close.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PendingValueIterator for " + name; //$NON-NLS-1$
+    }
+}
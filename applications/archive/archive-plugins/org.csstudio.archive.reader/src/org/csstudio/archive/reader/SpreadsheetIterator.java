@@ -8,6 +8,7 @@
 package org.csstudio.archive.reader;
 
 import java.time.Instant;
+import java.util.PriorityQueue;
 
 import org.csstudio.archive.vtype.VTypeHelper;
 import org.diirt.vtype.VType;
@@ -21,6 +22,10 @@ import org.diirt.vtype.VType;
  *  While it uses the common Java <code>Iterator</code> idea with
  *  <code>hasNext()/next()</code> for the values, pay attention to
  *  the comments for <code>getTime()</code>!
+ *  <p>
+ *  The channels are kept in a heap ordered by the time stamp
+ *  of their next sample, so each line only needs to check
+ *  the channels that actually have a sample for that line.
  *
  *  @author Kay Kasemir
  */
@@ -37,6 +42,17 @@ public class SpreadsheetIterator
      */
     private VType raw_data[];
 
+    /** Time stamps of the <code>raw_data</code> */
+    final private Instant raw_time[];
+
+    /** Indices of channels with <code>raw_data</code>,
+     *  ordered by <code>raw_time</code>
+     */
+    final private PriorityQueue<Integer> pending;
+
+    /** Indices of channels that have data for the current line */
+    final private int[] updated;
+
     /** The timestamp for the current spreadsheet 'line'. */
     private Instant time;
 
@@ -54,10 +70,14 @@ public class SpreadsheetIterator
 
         // Get first sample from each base iterator
         raw_data = new VType[iters.length];
+        raw_time = new Instant[iters.length];
         values = new VType[iters.length];
+        updated = new int[iters.length];
+        pending = new PriorityQueue<>(Math.max(1, iters.length),
+                                      (a, b) -> raw_time[a].compareTo(raw_time[b]));
         for (int i=0; i<iters.length; ++i)
         {
-            raw_data[i] = iters[i].hasNext()  ?  iters[i].next()  :  null;
+            fetch(i);
             if (debug)
                 System.out.println("Initial " + i + ": " + VTypeHelper.toString(raw_data[i]));
         }
@@ -121,6 +141,35 @@ public class SpreadsheetIterator
         return result;
     }
 
+    /** Get the next set of values, and move iterator to the following line.
+     *  <p>
+     *  Like {@link #next()}, but places the values into a buffer
+     *  instead of allocating a new array for each line.
+     *
+     *  @param line Buffer for the next spreadsheet 'line', one sample per channel.
+     *  @throws Exception on error
+     *  @see #next()
+     */
+    public void next(final VType[] line) throws Exception
+    {
+        assert hasNext();
+        System.arraycopy(values, 0, line, 0, values.length);
+        getNextSpreadsheetLine();
+    }
+
+    /** Fetch next sample of a channel into <code>raw_data</code>
+     *  @param i Channel index
+     *  @throws Exception on error
+     */
+    private void fetch(final int i) throws Exception
+    {
+        raw_data[i] = iters[i].hasNext()  ?  iters[i].next()  :  null;
+        if (raw_data[i] == null)
+            return;
+        raw_time[i] = VTypeHelper.getTimestamp(raw_data[i]);
+        pending.add(i);
+    }
+
     /** Fill <code>time</code> and <code>values</code> with the next
      *  spreadsheet line.
      *  @throws Exception on error
@@ -128,41 +177,30 @@ public class SpreadsheetIterator
     private void getNextSpreadsheetLine() throws Exception
     {
         // Find oldest timestamp
-        time = null;
-        for (int i=0; i<raw_data.length; ++i)
-        {
-            if (raw_data[i] == null)
-                continue;
-            final Instant sample_time = VTypeHelper.getTimestamp(raw_data[i]);
-            if (time == null  ||  sample_time.compareTo(time) < 0)
-                time = sample_time;
-        }
-        if (time == null)
+        if (pending.isEmpty())
         {   // No channel left with any data.
+            time = null;
             values = null;
             return;
         }
+        time = raw_time[pending.peek()];
 
         if (debug)
             System.out.println("Next time stamp: " + time.toString()); //$NON-NLS-1$
 
         // 'time' now defines the current spreadsheet line.
-        for (int i=0; i<raw_data.length; ++i)
+        // Channels with data at that time use it,
+        // and get the next sample in preparation for next().
+        // Other channels leave values[i] as is until 'time' catches up
+        // with their raw_data. This also covers the initial values[i] == null case.
+        int count = 0;
+        while (! pending.isEmpty()  &&  raw_time[pending.peek()].compareTo(time) <= 0)
+            updated[count++] = pending.poll();
+        for (int u=0; u<count; ++u)
         {
-            // Channel has no new data? Leave at last known value[i].
-            if (raw_data[i] == null)
-                continue;
-            // Channel has data.
-            if (VTypeHelper.getTimestamp(raw_data[i]).compareTo(time) <= 0)
-            {   // 'raw_data' is still valid, so use it ....
-                values[i] = raw_data[i];
-                // and get next sample in preparation for next()
-                raw_data[i] = iters[i].hasNext()  ?  iters[i].next()  :  null;
-            }
-            // else: raw_data.time is already > time,
-            // so leave values[i] as is until 'time' catches up
-            // with raw_data.time.
-            // This also covers the initial values[i] == null case.
+            final int i = updated[u];
+            values[i] = raw_data[i];
+            fetch(i);
         }
     }
 
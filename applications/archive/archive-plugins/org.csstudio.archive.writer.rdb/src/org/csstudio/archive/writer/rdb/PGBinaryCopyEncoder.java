@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Encoder for the binary format of the PostgreSQL COPY command.
+ * </p>
+ * <p>
+ * Values are kept as primitives until a row is added, then written straight
+ * into a reusable buffer in the binary representation of the column's type,
+ * avoiding the string conversion of the text format.
+ * </p>
+ * <p>
+ * See <a href="https://www.postgresql.org/docs/9.2/static/sql-copy.html">
+ * COPY, Binary Format</a>
+ * </p>
+ *
+ * @author agent
+ */
+public class PGBinaryCopyEncoder {
+
+    /** File header: Signature, flags, header extension length */
+    private static final byte[] HEADER = {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+        0, 0, 0, 0,
+        0, 0, 0, 0
+    };
+
+    /** Microseconds between 1970-01-01 and the PostgreSQL epoch 2000-01-01 */
+    private static final long PG_EPOCH_MICROS = 946684800L * 1000000L;
+
+    /** Supported column types */
+    private enum Type {
+        BOOL, INT2, INT4, INT8, FLOAT4, FLOAT8, TIMESTAMP, TIMESTAMPTZ, TEXT, BYTEA
+    }
+
+    /** Kind of value set for a column */
+    private static final byte NULL = 0, LONG = 1, DOUBLE = 2, OBJECT = 3;
+
+    private final Type[] types;
+
+    /** Values of current row, per column in table order */
+    private final byte[] kinds;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+
+    private ByteBuffer buffer;
+
+    private int rows = 0;
+
+    /**
+     * @param type_names
+     *            PostgreSQL type names of all table columns in table order,
+     *            as reported in the TYPE_NAME of the database meta data
+     * @throws SQLException
+     *             if a column type is not supported
+     */
+    public PGBinaryCopyEncoder(final String[] type_names) throws SQLException {
+        types = new Type[type_names.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getType(type_names[i]);
+        }
+        kinds = new byte[types.length];
+        longs = new long[types.length];
+        doubles = new double[types.length];
+        objects = new Object[types.length];
+        buffer = ByteBuffer.allocate(64 * 1024);
+    }
+
+    private static Type getType(final String name) throws SQLException {
+        switch (name.toLowerCase()) {
+        case "bool":
+            return Type.BOOL;
+        case "int2":
+        case "smallserial":
+            return Type.INT2;
+        case "int4":
+        case "serial":
+            return Type.INT4;
+        case "int8":
+        case "bigserial":
+            return Type.INT8;
+        case "float4":
+            return Type.FLOAT4;
+        case "float8":
+            return Type.FLOAT8;
+        case "timestamp":
+            return Type.TIMESTAMP;
+        case "timestamptz":
+            return Type.TIMESTAMPTZ;
+        case "text":
+        case "varchar":
+        case "bpchar":
+        case "char":
+            return Type.TEXT;
+        case "bytea":
+            return Type.BYTEA;
+        default:
+            throw new SQLException("Binary COPY does not support column type "
+                    + name);
+        }
+    }
+
+    /** @return Number of columns */
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    /** @return Number of rows added since last <code>clear()</code> */
+    public int getRowCount() {
+        return rows;
+    }
+
+    public void setNull(final int column) {
+        kinds[column] = NULL;
+        objects[column] = null;
+    }
+
+    public void setLong(final int column, final long value) {
+        kinds[column] = LONG;
+        longs[column] = value;
+    }
+
+    public void setDouble(final int column, final double value) {
+        kinds[column] = DOUBLE;
+        doubles[column] = value;
+    }
+
+    /**
+     * @param column
+     *            Column index in table order
+     * @param value
+     *            String, byte[], {@link Timestamp}, {@link Boolean},
+     *            {@link BigDecimal} or <code>null</code>
+     */
+    public void setObject(final int column, final Object value) {
+        if (value == null) {
+            setNull(column);
+        } else {
+            kinds[column] = OBJECT;
+            objects[column] = value;
+        }
+    }
+
+    /** Clear the values of the current row */
+    public void clearRow() {
+        Arrays.fill(kinds, NULL);
+        Arrays.fill(objects, null);
+    }
+
+    /**
+     * Encode the current row, then clear its values
+     *
+     * @throws SQLException
+     *             if a value cannot be converted to its column type
+     */
+    public void addRow() throws SQLException {
+        if (rows == 0) {
+            buffer.clear();
+            buffer.put(HEADER);
+        }
+        final int start = buffer.position();
+        while (true) {
+            try {
+                buffer.putShort((short) types.length);
+                for (int i = 0; i < types.length; i++) {
+                    encode(i);
+                }
+                break;
+            } catch (SQLException ex) {
+                // Drop the incomplete row
+                buffer.position(start);
+                clearRow();
+                throw ex;
+            } catch (BufferOverflowException ex) {
+                // Grow buffer, then encode row again
+                final ByteBuffer larger = ByteBuffer
+                        .allocate(buffer.capacity() * 2);
+                buffer.position(start);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        ++rows;
+        clearRow();
+    }
+
+    /**
+     * Get encoded data with trailer.
+     *
+     * @return Array that holds the data, starting at index 0
+     * @see #getLength()
+     */
+    public byte[] getData() {
+        if (buffer.remaining() < 2) {
+            final ByteBuffer larger = ByteBuffer
+                    .allocate(buffer.capacity() + 2);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        buffer.putShort(buffer.position(), (short) -1);
+        return buffer.array();
+    }
+
+    /** @return Length of data returned by <code>getData()</code> */
+    public int getLength() {
+        return buffer.position() + 2;
+    }
+
+    /** Clear all rows */
+    public void clear() {
+        rows = 0;
+        buffer.clear();
+        clearRow();
+    }
+
+    private void encode(final int column) throws SQLException {
+        final Type type = types[column];
+        switch (kinds[column]) {
+        case NULL:
+            buffer.putInt(-1);
+            return;
+        case LONG:
+            putLong(type, longs[column]);
+            return;
+        case DOUBLE:
+            putDouble(type, doubles[column]);
+            return;
+        default:
+            putObject(type, objects[column]);
+        }
+    }
+
+    private void putLong(final Type type, final long value)
+            throws SQLException {
+        switch (type) {
+        case BOOL:
+            buffer.putInt(1).put((byte) (value != 0 ? 1 : 0));
+            break;
+        case INT2:
+            buffer.putInt(2).putShort((short) value);
+            break;
+        case INT4:
+            buffer.putInt(4).putInt((int) value);
+            break;
+        case INT8:
+            buffer.putInt(8).putLong(value);
+            break;
+        case FLOAT4:
+            buffer.putInt(4).putFloat(value);
+            break;
+        case FLOAT8:
+            buffer.putInt(8).putDouble(value);
+            break;
+        case TEXT:
+            putText(Long.toString(value));
+            break;
+        default:
+            throw new SQLException("Cannot write number to " + type);
+        }
+    }
+
+    private void putDouble(final Type type, final double value)
+            throws SQLException {
+        switch (type) {
+        case FLOAT4:
+            buffer.putInt(4).putFloat((float) value);
+            break;
+        case FLOAT8:
+            buffer.putInt(8).putDouble(value);
+            break;
+        case INT2:
+        case INT4:
+        case INT8:
+            putLong(type, (long) value);
+            break;
+        case TEXT:
+            putText(Double.toString(value));
+            break;
+        default:
+            throw new SQLException("Cannot write number to " + type);
+        }
+    }
+
+    private void putObject(final Type type, final Object value)
+            throws SQLException {
+        if (value instanceof Timestamp) {
+            putTimestamp(type, (Timestamp) value);
+        } else if (value instanceof byte[] && type == Type.BYTEA) {
+            final byte[] bytes = (byte[]) value;
+            buffer.putInt(bytes.length).put(bytes);
+        } else if (value instanceof Boolean) {
+            putLong(type, ((Boolean) value) ? 1 : 0);
+        } else if (value instanceof BigDecimal) {
+            if (type == Type.TEXT) {
+                putText(((BigDecimal) value).toPlainString());
+            } else if (type == Type.FLOAT4 || type == Type.FLOAT8) {
+                putDouble(type, ((BigDecimal) value).doubleValue());
+            } else {
+                putLong(type, ((BigDecimal) value).longValue());
+            }
+        } else if (value instanceof String) {
+            final String text = (String) value;
+            try {
+                switch (type) {
+                case TEXT:
+                    putText(text);
+                    break;
+                case BYTEA:
+                    final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                    buffer.putInt(bytes.length).put(bytes);
+                    break;
+                case BOOL:
+                    putLong(type, Boolean.parseBoolean(text.trim()) ? 1 : 0);
+                    break;
+                case FLOAT4:
+                case FLOAT8:
+                    putDouble(type, Double.parseDouble(text.trim()));
+                    break;
+                case TIMESTAMP:
+                case TIMESTAMPTZ:
+                    putTimestamp(type, Timestamp.valueOf(text.trim()));
+                    break;
+                default:
+                    putLong(type, Long.parseLong(text.trim()));
+                }
+            } catch (IllegalArgumentException ex) {
+                throw new SQLException("Cannot write '" + text + "' to "
+                        + type, ex);
+            }
+        } else {
+            throw new SQLException("Cannot write " + value.getClass()
+                    + " to " + type);
+        }
+    }
+
+    private void putTimestamp(final Type type, final Timestamp stamp)
+            throws SQLException {
+        final long seconds;
+        if (type == Type.TIMESTAMP) {
+            // Like the text format, use the local date and time
+            seconds = stamp.toLocalDateTime().toEpochSecond(ZoneOffset.UTC);
+        } else if (type == Type.TIMESTAMPTZ) {
+            seconds = Math.floorDiv(stamp.getTime(), 1000L);
+        } else if (type == Type.TEXT) {
+            putText(stamp.toString());
+            return;
+        } else {
+            throw new SQLException("Cannot write time stamp to " + type);
+        }
+        final long micros = seconds * 1000000L + stamp.getNanos() / 1000
+                - PG_EPOCH_MICROS;
+        buffer.putInt(8).putLong(micros);
+    }
+
+    private void putText(final String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length).put(bytes);
+    }
+}
@@ -32,6 +32,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.postgresql.copy.CopyManager;
 
 public class PGCopyPreparedStatement implements PreparedStatement {
@@ -46,8 +47,27 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     private String tableName;
 
+    /** Encoder for binary COPY, or <code>null</code> when using CSV */
+    private PGBinaryCopyEncoder binary;
+
     public PGCopyPreparedStatement(Connection connection, String insertSqlQuery)
             throws SQLException {
+        this(connection, insertSqlQuery, false);
+    }
+
+    /**
+     * @param connection
+     *            Connection
+     * @param insertSqlQuery
+     *            "INSERT INTO table (column, ...) ..." statement to emulate
+     * @param useBinary
+     *            Use the binary COPY format instead of CSV?
+     * @throws SQLException
+     *             on error, including a column type that is not supported by
+     *             the binary format
+     */
+    public PGCopyPreparedStatement(Connection connection,
+            String insertSqlQuery, boolean useBinary) throws SQLException {
         this.connection = connection;
         batchBuilder = new StringBuffer();
 
@@ -65,13 +85,28 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
         // Get the column order as it's stored in database
         Map<String, Integer> postgresColumnOrderMap = new HashMap<String, Integer>();
+        Map<Integer, String> postgresColumnTypeMap = new HashMap<Integer, String>();
         ResultSet columnsRs = connection.getMetaData().getColumns(
                 connection.getCatalog(), null, tableName, null);
         while (columnsRs.next()) {
             postgresColumnOrderMap.put(columnsRs.getString("COLUMN_NAME"),
                     columnsRs.getInt("ORDINAL_POSITION"));
+            postgresColumnTypeMap.put(columnsRs.getInt("ORDINAL_POSITION"),
+                    columnsRs.getString("TYPE_NAME"));
         }
+        columnsRs.close();
         rowValues = new String[postgresColumnOrderMap.size()];
+        if (useBinary) {
+            String[] typeNames = new String[rowValues.length];
+            for (int i = 0; i < typeNames.length; i++) {
+                typeNames[i] = postgresColumnTypeMap.get(i + 1);
+                if (typeNames[i] == null) {
+                    throw new SQLException("Unable to find type of column "
+                            + (i + 1) + " in table " + tableName);
+                }
+            }
+            binary = new PGBinaryCopyEncoder(typeNames);
+        }
 
         // Generate a tab containing mapping between order in insert query and
         // database order
@@ -91,6 +126,10 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void addBatch() throws SQLException {
+        if (binary != null) {
+            binary.addRow();
+            return;
+        }
         for (int i = 0; i < rowValues.length; i++) {
             if (rowValues[i] != null) {
                 batchBuilder.append(rowValues[i]);
@@ -114,6 +153,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void clearBatch() throws SQLException {
+        if (binary != null) {
+            binary.clear();
+        }
         batchBuilder.setLength(0);
     }
 
@@ -128,6 +170,7 @@ public class PGCopyPreparedStatement implements PreparedStatement {
         rowValues = null;
         columnOrderMapping = null;
         batchBuilder = null;
+        binary = null;
         connection = null;
     }
 
@@ -163,6 +206,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public int[] executeBatch() throws SQLException {
+        if (binary != null) {
+            return executeBinaryBatch();
+        }
         long res = 0;
         try {
             CopyManager cpManager = ((PGConnection) connection).getCopyAPI();
@@ -178,6 +224,26 @@ public class PGCopyPreparedStatement implements PreparedStatement {
         return new int[] { (int) res };
     }
 
+    /** Stream the binary rows to the server */
+    private int[] executeBinaryBatch() throws SQLException {
+        if (binary.getRowCount() <= 0) {
+            return new int[] { 0 };
+        }
+        CopyManager cpManager = ((PGConnection) connection).getCopyAPI();
+        CopyIn copyIn = cpManager.copyIn("COPY " + tableName
+                + " FROM STDIN WITH BINARY");
+        try {
+            copyIn.writeToCopy(binary.getData(), 0, binary.getLength());
+            long res = copyIn.endCopy();
+            binary.clear();
+            return new int[] { (int) res };
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
     @Override
     public ResultSet executeQuery(String arg0) throws SQLException {
         throw new SQLException("Not implemented");
@@ -376,6 +442,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void clearParameters() throws SQLException {
+        if (binary != null) {
+            binary.clearRow();
+        }
         Arrays.fill(rowValues, null);
     }
 
@@ -439,7 +508,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void setBigDecimal(int parameterIndex, BigDecimal x)
             throws SQLException {
-        if (x == null) {
+        if (binary != null) {
+            binary.setObject(columnOrderMapping[parameterIndex], x);
+        } else if (x == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = x.toPlainString();
@@ -489,6 +560,11 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+        if (binary != null) {
+            binary.setObject(columnOrderMapping[parameterIndex],
+                    Boolean.valueOf(x));
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = Boolean.toString(x);
     }
 
@@ -500,7 +576,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-        if (x == null) {
+        if (binary != null) {
+            binary.setObject(columnOrderMapping[parameterIndex], x);
+        } else if (x == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = bytesToByteA(x);
@@ -592,21 +670,37 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
+        if (binary != null) {
+            binary.setDouble(columnOrderMapping[parameterIndex], x);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = Double.toString(x);
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
+        if (binary != null) {
+            binary.setDouble(columnOrderMapping[parameterIndex], x);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = Float.toString(x);
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
+        if (binary != null) {
+            binary.setLong(columnOrderMapping[parameterIndex], x);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = Integer.toString(x);
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
+        if (binary != null) {
+            binary.setLong(columnOrderMapping[parameterIndex], x);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = Long.toString(x);
     }
 
@@ -646,7 +740,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void setNString(int parameterIndex, String value)
             throws SQLException {
-        if (value == null) {
+        if (binary != null) {
+            binary.setObject(columnOrderMapping[parameterIndex], value);
+        } else if (value == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = value;
@@ -655,12 +751,20 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
+        if (binary != null) {
+            binary.setNull(columnOrderMapping[parameterIndex]);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = null;
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType, String typeName)
             throws SQLException {
+        if (binary != null) {
+            binary.setNull(columnOrderMapping[parameterIndex]);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = null;
     }
 
@@ -705,11 +809,19 @@ public class PGCopyPreparedStatement implements PreparedStatement {
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
+        if (binary != null) {
+            binary.setLong(columnOrderMapping[parameterIndex], x);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = Short.toString(x);
     }
 
     @Override
     public void setString(int parameterIndex, String x) throws SQLException {
+        if (binary != null) {
+            binary.setObject(columnOrderMapping[parameterIndex], x);
+            return;
+        }
         rowValues[columnOrderMapping[parameterIndex]] = x;
     }
 
@@ -729,7 +841,9 @@ public class PGCopyPreparedStatement implements PreparedStatement {
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x)
             throws SQLException {
-        if (x == null) {
+        if (binary != null) {
+            binary.setObject(columnOrderMapping[parameterIndex], x);
+        } else if (x == null) {
             rowValues[columnOrderMapping[parameterIndex]] = null;
         } else {
             rowValues[columnOrderMapping[parameterIndex]] = x.toString();
@@ -7,8 +7,6 @@
  ******************************************************************************/
 package org.csstudio.archive.writer.rdb;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -22,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 
+import org.csstudio.archive.rdb.ArrayBlobEncoding;
 import org.csstudio.archive.rdb.RDBArchivePreferences;
 import org.csstudio.archive.vtype.MetaDataHelper;
 import org.csstudio.archive.vtype.TimestampHelper;
@@ -30,7 +29,11 @@ import org.csstudio.archive.writer.ArchiveWriter;
 import org.csstudio.archive.writer.WriteChannel;
 import org.csstudio.platform.utility.rdb.RDBUtil;
 import org.csstudio.platform.utility.rdb.RDBUtil.Dialect;
+import org.diirt.util.array.ListByte;
+import org.diirt.util.array.ListInt;
+import org.diirt.util.array.ListLong;
 import org.diirt.util.array.ListNumber;
+import org.diirt.util.array.ListShort;
 import org.diirt.vtype.AlarmSeverity;
 import org.diirt.vtype.Display;
 import org.diirt.vtype.VDouble;
@@ -57,6 +60,9 @@ public class RDBArchiveWriter implements ArchiveWriter
 
     final private boolean use_array_blob;
 
+    /** Compress array elements in BLOB? */
+    final private boolean compress_array_blob;
+
     /** RDB connection */
     final private RDBUtil rdb;
 
@@ -100,6 +106,9 @@ public class RDBArchiveWriter implements ArchiveWriter
     private final List<RDBWriteChannel> batched_channel = new ArrayList<RDBWriteChannel>();
     private final List<VType> batched_samples = new ArrayList<VType>();
 
+    /** Did a failed flush() commit some of its samples? */
+    private boolean partially_committed = false;
+
     /** Initialize from preferences.
      *  This constructor will be invoked when an {@link ArchiveWriter}
      *  is created via the extension point.
@@ -109,7 +118,8 @@ public class RDBArchiveWriter implements ArchiveWriter
     {
         this(RDBArchivePreferences.getURL(), RDBArchivePreferences.getUser(),
                 RDBArchivePreferences.getPassword(), RDBArchivePreferences.getSchema(),
-                RDBArchivePreferences.useArrayBlob());
+                RDBArchivePreferences.useArrayBlob(),
+                RDBArchivePreferences.compressArrayBlob());
     }
 
     /** Initialize
@@ -122,8 +132,25 @@ public class RDBArchiveWriter implements ArchiveWriter
      */
     public RDBArchiveWriter(final String url, final String user, final String password,
             final String schema, boolean use_array_blob) throws Exception
+    {
+        this(url, user, password, schema, use_array_blob, false);
+    }
+
+    /** Initialize
+     *  @param url RDB URL
+     *  @param user .. user name
+     *  @param password .. password
+     *  @param schema Schema/table prefix, not including ".". May be empty
+     *  @param use_array_blob Use BLOB for array elements?
+     *  @param compress_array_blob Compress array elements in BLOB?
+     *  @throws Exception on error, for example RDB connection error
+     */
+    public RDBArchiveWriter(final String url, final String user, final String password,
+            final String schema, boolean use_array_blob,
+            final boolean compress_array_blob) throws Exception
     {
         this.use_array_blob = use_array_blob;
+        this.compress_array_blob = use_array_blob && compress_array_blob;
         rdb = RDBUtil.connect(url, user, password, false);
         sql = new SQL(rdb.getDialect(), schema);
         severities = new SeverityCache(rdb, sql);
@@ -235,8 +262,19 @@ public class RDBArchiveWriter implements ArchiveWriter
         PreparedStatement statement = null;
         if (rdb.getDialect() == Dialect.PostgreSQL
                 && Preferences.isUsePostgresCopy()) {
-            statement = new PGCopyPreparedStatement(rdb.getConnection(),
-                    sqlQuery);
+            if (Preferences.isUsePostgresBinaryCopy()) {
+                try {
+                    statement = new PGCopyPreparedStatement(
+                            rdb.getConnection(), sqlQuery, true);
+                } catch (SQLException ex) {
+                    Activator.getLogger().log(Level.WARNING,
+                            "Cannot use binary COPY, falling back to CSV", ex);
+                }
+            }
+            if (statement == null) {
+                statement = new PGCopyPreparedStatement(rdb.getConnection(),
+                        sqlQuery);
+            }
         } else {
             statement = rdb.getConnection().prepareStatement(sqlQuery);
         }
@@ -342,24 +380,45 @@ public class RDBArchiveWriter implements ArchiveWriter
         }
         else
         {   // More array elements
-            final ByteArrayOutputStream bout = new ByteArrayOutputStream();
-            final DataOutputStream dout = new DataOutputStream(bout);
-            // Indicate 'Double' as data type
+            final String datatype;
+            final byte[] asBytes;
             final int N = additional.size();
-            dout.writeInt(N);
-            // Write binary data for array elements
-            for (int i=0; i<N; ++i)
-                dout.writeDouble(additional.getDouble(i));
-            dout.close();
-            final byte[] asBytes = bout.toByteArray();
+            if (compress_array_blob && isIntegerList(additional))
+            {
+                final long[] values = new long[N];
+                for (int i=0; i<N; ++i)
+                    values[i] = additional.getLong(i);
+                datatype = ArrayBlobEncoding.DELTA_LONG;
+                asBytes = ArrayBlobEncoding.encodeDeltaLongs(values);
+            }
+            else
+            {
+                final double[] values = new double[N];
+                for (int i=0; i<N; ++i)
+                    values[i] = additional.getDouble(i);
+                final byte[] compressed = compress_array_blob
+                    ? ArrayBlobEncoding.encodeXORDoubles(values)
+                    : null;
+                // Random-looking fractions may not compress
+                if (compressed != null  &&  compressed.length < 4 + 8*N)
+                {
+                    datatype = ArrayBlobEncoding.XOR_DOUBLE;
+                    asBytes = compressed;
+                }
+                else
+                {
+                    datatype = ArrayBlobEncoding.DOUBLE;
+                    asBytes = ArrayBlobEncoding.encodeDoubles(values);
+                }
+            }
             if (rdb.getDialect() == Dialect.Oracle)
             {
-                insert_double_sample.setString(6, "d");
+                insert_double_sample.setString(6, datatype);
                 insert_double_sample.setBytes(7, asBytes);
             }
             else
             {
-                insert_double_sample.setString(7, "d");
+                insert_double_sample.setString(7, datatype);
                 insert_double_sample.setBytes(8, asBytes);
             }
         }
@@ -368,6 +427,15 @@ public class RDBArchiveWriter implements ArchiveWriter
         ++batched_double_inserts;
     }
 
+    /** @param list Array elements
+     *  @return <code>true</code> if elements are integers
+     */
+    private static boolean isIntegerList(final ListNumber list)
+    {
+        return list instanceof ListLong  ||  list instanceof ListInt  ||
+               list instanceof ListShort  ||  list instanceof ListByte;
+    }
+
     /** Add 'insert' for double samples to batch, handling arrays
      *  via the original array_val table
      */
@@ -498,6 +566,7 @@ public class RDBArchiveWriter implements ArchiveWriter
     @Override
     public void flush() throws Exception
     {
+        partially_committed = false;
         try
         {
             if (batched_double_inserts > 0)
@@ -544,6 +613,7 @@ public class RDBArchiveWriter implements ArchiveWriter
                     batched_double_array_inserts = 0;
                 }
             }
+            partially_committed = false;
         }
         catch (final Exception ex)
         {
@@ -565,6 +635,16 @@ public class RDBArchiveWriter implements ArchiveWriter
         }
     }
 
+    /** {@inheritDoc}
+     *  RDB implementation commits each type of sample separately,
+     *  so a failed flush might have committed some of the samples
+     */
+    @Override
+    public boolean isFlushRetrySafe()
+    {
+        return ! partially_committed;
+    }
+
     /** Submit and clear the batch, or roll back on error */
     private void checkBatchExecution(final PreparedStatement insert) throws Exception
     {
@@ -575,6 +655,7 @@ public class RDBArchiveWriter implements ArchiveWriter
             // an exception
             insert.executeBatch();
             rdb.getConnection().commit();
+            partially_committed = true;
         }
         catch (final Exception ex)
         {
@@ -588,6 +669,9 @@ public class RDBArchiveWriter implements ArchiveWriter
                 // Unfortunately no way to know what failed,
                 // and no way to re-submit the 'remaining' inserts.
                 rdb.getConnection().commit();
+                // PostgreSQL aborted the transaction, so nothing was committed
+                if (rdb.getDialect() != Dialect.PostgreSQL)
+                    partially_committed = true;
             }
             catch (Exception nested)
             {
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.archive.writer.rdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link PGBinaryCopyEncoder}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class PGBinaryCopyEncoderUnitTest
+{
+    @Test
+    public void testEncoding() throws Exception
+    {
+        // Columns of the 'sample' table
+        final PGBinaryCopyEncoder encoder = new PGBinaryCopyEncoder(new String[]
+        { "int8", "timestamp", "int8", "int8", "int8", "int4", "float8", "varchar", "bpchar", "bytea" });
+        final Timestamp stamp = Timestamp.valueOf(LocalDateTime.of(2000, 1, 1, 0, 0, 1, 5000));
+        encoder.setLong(0, 42);
+        encoder.setObject(1, stamp);
+        encoder.setLong(2, 5000);
+        encoder.setLong(3, 1);
+        encoder.setLong(4, 2);
+        encoder.setDouble(6, 3.14);
+        encoder.setObject(8, " ");
+        encoder.addRow();
+        assertEquals(1, encoder.getRowCount());
+
+        final ByteBuffer data = ByteBuffer.wrap(encoder.getData(), 0, encoder.getLength());
+        final byte[] signature = new byte[11];
+        data.get(signature);
+        assertEquals("PGCOPY\n", new String(signature, 0, 7, StandardCharsets.ISO_8859_1));
+        assertEquals(0, data.getInt());
+        assertEquals(0, data.getInt());
+        // Tuple
+        assertEquals(10, data.getShort());
+        assertEquals(8, data.getInt());
+        assertEquals(42L, data.getLong());
+        assertEquals(8, data.getInt());
+        assertEquals(1000005L, data.getLong());
+        assertEquals(8, data.getInt());
+        assertEquals(5000L, data.getLong());
+        assertEquals(8, data.getInt());
+        assertEquals(1L, data.getLong());
+        assertEquals(8, data.getInt());
+        assertEquals(2L, data.getLong());
+        // NULL int
+        assertEquals(-1, data.getInt());
+        assertEquals(8, data.getInt());
+        assertEquals(3.14, data.getDouble(), 0.0);
+        // NULL varchar
+        assertEquals(-1, data.getInt());
+        assertEquals(1, data.getInt());
+        assertEquals(' ', data.get());
+        // NULL bytea
+        assertEquals(-1, data.getInt());
+        // Trailer
+        assertEquals(-1, data.getShort());
+        assertEquals(0, data.remaining());
+
+        encoder.clear();
+        assertEquals(0, encoder.getRowCount());
+    }
+
+    @Test
+    public void testGrowth() throws Exception
+    {
+        final PGBinaryCopyEncoder encoder = new PGBinaryCopyEncoder(new String[] { "bytea" });
+        final byte[] blob = new byte[100000];
+        for (int i=0; i<5; ++i)
+        {
+            encoder.setObject(0, blob);
+            encoder.addRow();
+        }
+        assertEquals(19 + 5*(2 + 4 + blob.length) + 2, encoder.getLength());
+    }
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        try
+        {
+            new PGBinaryCopyEncoder(new String[] { "numeric" });
+            fail("Numeric is not supported");
+        }
+        catch (SQLException ex)
+        {
+            // Expected
+        }
+
+        final PGBinaryCopyEncoder encoder = new PGBinaryCopyEncoder(new String[] { "int8" });
+        encoder.setObject(0, "Not a number");
+        try
+        {
+            encoder.addRow();
+            fail("Added invalid number");
+        }
+        catch (SQLException ex)
+        {
+            // Expected
+        }
+        assertEquals(0, encoder.getRowCount());
+    }
+}
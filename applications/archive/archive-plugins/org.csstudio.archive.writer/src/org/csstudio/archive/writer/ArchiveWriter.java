@@ -55,6 +55,23 @@ public interface ArchiveWriter
      */
     public void flush() throws Exception;
 
+    /** Can samples be added again after an error?
+     *
+     *  <p>When <code>addSample()</code> or <code>flush()</code> fail,
+     *  the caller may keep the samples that were added since the
+     *  last successful <code>flush()</code> and add them again later.
+     *  This is only safe when the failed <code>flush()</code>
+     *  did not write some of them to the archive,
+     *  because adding those again would create duplicate samples.
+     *
+     *  @return <code>true</code> if samples added since the last
+     *          successful <code>flush()</code> may be added again
+     */
+    public default boolean isFlushRetrySafe()
+    {
+        return true;
+    }
+
     /** Should be called to release resources,
      *  for example disconnect from a relational database.
      */
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.export;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.time.Instant;
+
+import org.csstudio.archive.vtype.TimestampHelper;
+import org.diirt.vtype.AlarmSeverity;
+import org.junit.Test;
+
+import com.jmatio.io.MatFileReader;
+import com.jmatio.types.MLCell;
+import com.jmatio.types.MLChar;
+import com.jmatio.types.MLDouble;
+import com.jmatio.types.MLStructure;
+
+/** JUnit test of the MatlabFileWriter
+ *
+ *  <p>Reads the file back via JMatIO
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class MatlabFileWriterTest
+{
+    @Test
+    public void testMatlabFileWriter() throws Exception
+    {
+        final File file = File.createTempFile("export", ".mat");
+        file.deleteOnExit();
+
+        final Instant start = Instant.now();
+        final AlarmSeverity[] severities = AlarmSeverity.values();
+        try
+        (
+            final MatlabFileWriter writer = new MatlabFileWriter(file.toPath());
+        )
+        {
+            writer.startChannel(0, "ramp");
+            for (int i=0; i<10000; ++i)
+                writer.addSample(start.plusSeconds(i), i * 0.5, severities[i % severities.length]);
+            writer.endChannel();
+
+            writer.startChannel(1, "empty");
+            writer.endChannel();
+        }
+
+        final MatFileReader reader = new MatFileReader(file);
+
+        final MLStructure ramp = (MLStructure) reader.getMLArray("channel0");
+        assertThat(((MLChar) ramp.getField("name")).getString(0), equalTo("ramp"));
+        final MLCell time = (MLCell) ramp.getField("time");
+        final MLDouble value = (MLDouble) ramp.getField("value");
+        final MLCell severity = (MLCell) ramp.getField("severity");
+        assertThat(value.getM(), equalTo(10000));
+        for (int i=0; i<10000; ++i)
+        {
+            assertThat(((MLChar) time.get(i)).getString(0), equalTo(TimestampHelper.format(start.plusSeconds(i))));
+            assertThat(value.get(i), equalTo(i * 0.5));
+            assertThat(((MLChar) severity.get(i)).getString(0), equalTo(severities[i % severities.length].toString()));
+        }
+
+        final MLStructure empty = (MLStructure) reader.getMLArray("channel1");
+        assertThat(((MLChar) empty.getField("name")).getString(0), equalTo("empty"));
+        assertThat(empty.getField("value").getM(), equalTo(0));
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.PrintWriter;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.ValueFactory;
+import org.junit.Test;
+
+/** JUnit test for incremental evaluation of the {@link FormulaItem}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class FormulaItemUnitTest
+{
+    /** Model item with plain array of samples */
+    private static class DemoItem extends ModelItem
+    {
+        final private PlotSampleArray samples = new PlotSampleArray();
+        final private List<PlotSample> list = new ArrayList<>();
+
+        DemoItem(final String name)
+        {
+            super(name);
+        }
+
+        void add(final int time, final double value)
+        {
+            final int keep = list.size();
+            list.add(new PlotSample("Test", ValueFactory.newVDouble(value, ValueFactory.newTime(Instant.ofEpochSecond(time)))));
+            samples.update(keep, list.subList(keep, list.size()));
+            samples.have_new_samples.set(true);
+        }
+
+        void insert(final int index, final double value)
+        {
+            final Instant time = list.get(index).getPosition();
+            list.add(index, new PlotSample("Test", ValueFactory.newVDouble(value, ValueFactory.newTime(time))));
+            samples.set(new ArrayList<>(list));
+            samples.have_new_samples.set(true);
+        }
+
+        @Override
+        public PlotSamples getSamples()
+        {
+            return samples;
+        }
+
+        @Override
+        public void write(final PrintWriter writer)
+        {
+            // NOP
+        }
+    }
+
+    private static String format(final PlotSamples samples)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (int i=0; i<samples.size(); ++i)
+        {
+            final PlotSample sample = samples.get(i);
+            buf.append(sample.getPosition().getEpochSecond()).append(" ")
+               .append(VTypeHelper.toDouble(sample.getVType())).append("\n");
+        }
+        return buf.toString();
+    }
+
+    /** Incremental evaluation must give the same result as a full evaluation */
+    @Test
+    public void testIncrementalEvaluation() throws Exception
+    {
+        final Random random = new Random(42);
+        final DemoItem a = new DemoItem("a"), b = new DemoItem("b");
+        final FormulaItem formula = new FormulaItem("f", "x + 2*y",
+            new FormulaInput[] { new FormulaInput(a, "x"), new FormulaInput(b, "y") });
+        int time_a = 0, time_b = 0;
+        for (int i=0; i<500; ++i)
+        {
+            if (i % 50 == 49)
+                // Historic data is merged into the middle
+                a.insert(a.list.size() / 2, i);
+            else if (random.nextBoolean())
+                a.add(time_a += random.nextInt(3), i);
+            else
+                b.add(time_b += random.nextInt(3), i);
+            formula.reevaluate();
+
+            final FormulaItem full = new FormulaItem("g", "x + 2*y",
+                new FormulaInput[] { new FormulaInput(a, "x"), new FormulaInput(b, "y") });
+            assertEquals(format(full.getSamples()), format(formula.getSamples()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/** JUnit test for {@link PlotSampleMerger}
+ *  @author agent
+ */
+public class PlotSampleMergerUnitTest
+{
+    private PlotSample[] makeSamples(final double y, final int... times)
+    {
+        final PlotSample samples[] = new PlotSample[times.length];
+        for (int i=0; i<times.length; ++i)
+            samples[i] = new PlotSample(times[i], y);
+        return samples;
+    }
+
+    private String format(final PlotSample[] samples)
+    {
+        final StringBuilder buf = new StringBuilder();
+        for (PlotSample sample : samples)
+            buf.append(sample.getPosition().getEpochSecond())
+               .append(':')
+               .append(sample.getValue())
+               .append(' ');
+        return buf.toString().trim();
+    }
+
+    /** Merging in chunks must give the same result as merging all at once */
+    @Test
+    public void testChunkedMerge()
+    {
+        final PlotSample old[] = makeSamples(1.0, 1, 2, 3, 5, 6, 7, 8, 12, 15);
+        final PlotSample add[] = makeSamples(2.0, 2, 4, 6, 6, 9, 10);
+
+        final PlotSample all[] = PlotSampleMerger.merge(old, add);
+        System.out.println(format(all));
+
+        PlotSample chunked[] = old;
+        Instant previous_end = null;
+        for (int i=0; i<add.length; i += 2)
+        {
+            final PlotSample chunk[] = Arrays.copyOfRange(add, i, Math.min(i+2, add.length));
+            chunked = previous_end == null
+                    ? PlotSampleMerger.merge(chunked, chunk)
+                    : PlotSampleMerger.merge(chunked, chunk, previous_end);
+            previous_end = chunk[chunk.length-1].getPosition();
+            System.out.println(format(chunked));
+        }
+        assertEquals(format(all), format(chunked));
+    }
+}
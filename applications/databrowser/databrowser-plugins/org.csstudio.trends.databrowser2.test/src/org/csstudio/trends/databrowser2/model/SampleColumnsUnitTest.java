@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueFactory;
+import org.junit.Test;
+
+/** JUnit test for {@link SampleColumns}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class SampleColumnsUnitTest
+{
+    private static VType makeValue(final int time, final double value)
+    {
+        return ValueFactory.newVDouble(value, ValueFactory.newTime(Instant.ofEpochSecond(time)));
+    }
+
+    private static String format(final PlotSample sample)
+    {
+        return sample.getPosition().getEpochSecond() + " " + sample.getSource() + " " + sample.getValue();
+    }
+
+    /** Merging into the columns must give the same result as the {@link PlotSampleMerger} */
+    @Test
+    public void testHistoricMerge()
+    {
+        final Random random = new Random(42);
+        final HistoricSamples history = new HistoricSamples(new AtomicInteger());
+        PlotSample expected[] = new PlotSample[0];
+        for (int run=0; run<200; ++run)
+        {
+            final String source = "Source" + run;
+            final List<VType> values = new ArrayList<>();
+            final int n = random.nextInt(20);
+            int time = random.nextInt(100);
+            for (int i=0; i<n; ++i)
+            {
+                time += random.nextInt(3);
+                values.add(makeValue(time, run));
+            }
+            final PlotSample add[] = new PlotSample[n];
+            for (int i=0; i<n; ++i)
+                add[i] = new PlotSample(source, values.get(i));
+            expected = PlotSampleMerger.merge(expected, add);
+            history.mergeArchivedData(source, values);
+
+            assertEquals(expected.length, history.size());
+            for (int i=0; i<expected.length; ++i)
+                assertEquals(format(expected[i]), format(history.get(i)));
+        }
+    }
+
+    /** Use as ring buffer */
+    @Test
+    public void testRing() throws Exception
+    {
+        final SampleColumns columns = new SampleColumns(new AtomicInteger(), 10);
+        for (int i=0; i<25; ++i)
+            columns.add(new PlotSample("Live", makeValue(i, i)));
+        assertEquals(10, columns.size());
+        assertEquals(15.0, columns.get(0).getValue(), 0.0);
+        assertEquals(24.0, columns.get(9).getValue(), 0.0);
+
+        // Samples that are not plain numbers are kept as they are
+        final PlotSample error = new PlotSample("Live", "Disconnected");
+        columns.add(error);
+        assertEquals(error, columns.get(9));
+        assertEquals(16.0, columns.get(0).getValue(), 0.0);
+
+        // Reducing the capacity keeps the newest samples
+        columns.setCapacity(5);
+        assertEquals(5, columns.size());
+        assertEquals(21.0, columns.get(0).getValue(), 0.0);
+        assertEquals(error, columns.get(4));
+
+        columns.setCapacity(20);
+        columns.add(new PlotSample("Live", makeValue(100, 100)));
+        assertEquals(6, columns.size());
+        assertEquals("100 Live 100.0", format(columns.get(5)));
+    }
+
+    /** Numbers keep their type and value */
+    @Test
+    public void testNumberTypes() throws Exception
+    {
+        final Number[] numbers = { 3.14, 1.5f, 42, 5L, (1L << 60) + 1, (short) -7, (byte) 8 };
+        final SampleColumns columns = new SampleColumns(new AtomicInteger(), 10);
+        for (int i=0; i<numbers.length; ++i)
+            columns.add(new PlotSample("Live",
+                    new ArchiveVNumber(Instant.ofEpochSecond(i), AlarmSeverity.NONE, "OK", ValueFactory.displayNone(), numbers[i])));
+        assertEquals(numbers.length, columns.size());
+        for (int i=0; i<numbers.length; ++i)
+            assertEquals(numbers[i], ((VNumber) columns.get(i).getVType()).getValue());
+    }
+}
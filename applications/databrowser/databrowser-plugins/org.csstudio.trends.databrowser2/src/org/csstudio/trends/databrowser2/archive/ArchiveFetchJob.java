@@ -12,13 +12,16 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.csstudio.apputil.time.BenchmarkTimer;
+import org.csstudio.archive.reader.ArchiveCache;
 import org.csstudio.archive.reader.ArchiveReader;
 import org.csstudio.archive.reader.ArchiveRepository;
 import org.csstudio.archive.reader.UnknownChannelException;
 import org.csstudio.archive.reader.ValueIterator;
+import org.csstudio.archive.vtype.VTypeHelper;
 import org.csstudio.trends.databrowser2.Activator;
 import org.csstudio.trends.databrowser2.Messages;
 import org.csstudio.trends.databrowser2.model.ArchiveDataSource;
@@ -46,9 +49,34 @@ public class ArchiveFetchJob extends Job
     /** Poll period in millisecs */
     private static final int POLL_PERIOD_MS = 1000;
 
+    /** Number of samples in the first chunk that's merged while fetching data */
+    private static final int INITIAL_CHUNK_SIZE = 1000;
+
+    /** Maximum number of samples in a chunk */
+    private static final int MAX_CHUNK_SIZE = 100000;
+
+    /** Period in millisecs after which a partial chunk is merged */
+    private static final int CHUNK_PERIOD_MS = 1000;
+
+    /** Holder of the cache shared by all fetch jobs, created on first use */
+    private static class CacheHolder
+    {
+        /** Cache, <code>null</code> if disabled */
+        static final ArchiveCache cache = createCache();
+
+        private static ArchiveCache createCache()
+        {
+            final int size = Preferences.getArchiveCacheSize();
+            return size > 0 ? new ArchiveCache(size * 1024L * 1024L) : null;
+        }
+    }
+
     /**to manage concurrency on postgresql*/
     private final boolean concurrency;
 
+    /** Replace cached samples with freshly fetched samples? */
+    private final boolean refresh;
+
     /** Item for which to fetch samples */
     final private PVItem item;
 
@@ -65,16 +93,31 @@ public class ArchiveFetchJob extends Job
      *  can then poll the progress monitor for cancellation and if
      *  necessary interrupt the WorkerThread which might be 'stuck'
      *  in a long running operation.
+     *
+     *  <p>The WorkerThread queries all archive data sources in parallel,
+     *  each via a {@link SourceFetch}.
+     *  Samples are merged into the item in chunks as they arrive,
+     *  so the plot can show partial data while the fetch is still running.
+     *  Since data from later sources replaces overlapping data from
+     *  earlier sources, chunks are merged in the order of the data sources:
+     *  Chunks of a source are held until all the sources before it have completed.
      */
     class WorkerThread implements Runnable
     {
         private String message = "";
         private volatile boolean cancelled = false;
 
-        /** Archive reader that's currently queried.
+        /** Fetch for each archive data source */
+        private SourceFetch[] fetches = new SourceFetch[0];
+
+        /** Index of the first source in 'fetches' that has not completed.
+         *  Chunks of that source are merged as they arrive.
          *  Synchronize 'this' on access.
          */
-        private volatile ArchiveReader reader = null;
+        private int next_merge = 0;
+
+        /** Total number of samples */
+        private final AtomicLong samples = new AtomicLong();
 
         /** @return Message that somehow indicates progress */
         public synchronized String getMessage()
@@ -86,50 +129,67 @@ public class ArchiveFetchJob extends Job
         public synchronized void cancel()
         {
             cancelled = true;
-            synchronized (this)
-            {
-                if (reader != null)
-                    reader.cancel();
-            }
+            for (SourceFetch fetch : fetches)
+                fetch.cancel();
         }
 
-        /** {@inheritDoc} */
-        @Override
-        public void run()
+        /** Fetch for one archive data source */
+        class SourceFetch implements Runnable
         {
-            Activator.getLogger().log(Level.FINE, "Starting {0}", ArchiveFetchJob.this);
-            final BenchmarkTimer timer = new BenchmarkTimer();
-            long samples = 0;
+            final private ArchiveDataSource archive;
+            final private int bins;
 
-            // Number of bins. Negative values are scaling factor for display width
-            int bins = Preferences.getPlotBins();
-            if (bins < 0)
-                bins = Activator.display_pixel_width * (- bins);
+            /** Archive reader that's currently queried.
+             *  Synchronize 'this' on access.
+             */
+            private ArchiveReader reader = null;
 
-            final ArchiveDataSource archives[] = item.getArchiveDataSources();
-            List<ArchiveDataSource> sourcesWhereChannelDoesntExist = new ArrayList<>();
-            for (int i=0; i<archives.length && !cancelled; ++i)
+            /** Server name, set once the reader is available */
+            private volatile String server_name = "";
+
+            /** Chunks of samples that have not been merged.
+             *  Synchronize WorkerThread on access.
+             */
+            final private List<List<VType>> pending = new ArrayList<>();
+
+            /** Time stamp of the last merged sample, <code>null</code> before the first merge.
+             *  Synchronize WorkerThread on access.
+             */
+            private Instant merged_end = null;
+
+            /** Has the source delivered all its samples?
+             *  Synchronize WorkerThread on access.
+             */
+            private boolean done = false;
+
+            /** Did the source report that it does not know the channel? */
+            private volatile boolean unknown = false;
+
+            SourceFetch(final ArchiveDataSource archive, final int bins)
+            {
+                this.archive = archive;
+                this.bins = bins;
+            }
+
+            synchronized void cancel()
+            {
+                if (reader != null)
+                    reader.cancel();
+            }
+
+            @Override
+            public void run()
             {
-                final ArchiveDataSource archive = archives[i];
-                final String url = archive.getUrl();
-                // Display "N/total", using '1' for the first sub-archive.
-                synchronized  (this)
-                {
-                    message = NLS.bind(Messages.ArchiveFetchDetailFmt,
-                            new Object[]
-                            {
-                                archive.getName(),
-                                (i+1),
-                                archives.length
-                            });
-                }
                 try
                 {
                     final ArchiveReader the_reader;
                     synchronized (this)
                     {
-                        the_reader = reader = ArchiveRepository.getInstance().getArchiveReader(url);
+                        if (cancelled)
+                            return;
+                        the_reader = reader = getArchiveReader(archive.getUrl(), refresh);
                     }
+                    server_name = the_reader.getServerName();
                     the_reader.enableConcurrency(concurrency);
                     final ValueIterator value_iter;
                     try
@@ -145,24 +205,33 @@ public class ArchiveFetchJob extends Job
                     {
                         // Do not immediately notify about unknown channels. First search for the data in all archive
                         // sources and only report this kind of errors at the end
-                        sourcesWhereChannelDoesntExist.add(archives[i]);
-                        continue;
+                        unknown = true;
+                        return;
                     }
-                    // Get samples into array
-                    final List<VType> result = new ArrayList<VType>();
-                    while (value_iter.hasNext())
-                        result.add(value_iter.next());
-                    samples += result.size();
-                    item.mergeArchivedSamples(the_reader.getServerName(), result);
-                    if (cancelled)
-                        break;
+                    // Deliver samples in chunks of increasing size,
+                    // or whatever arrived within the chunk period
+                    int chunk_size = INITIAL_CHUNK_SIZE;
+                    long deadline = System.currentTimeMillis() + CHUNK_PERIOD_MS;
+                    List<VType> chunk = new ArrayList<>();
+                    while (!cancelled  &&  value_iter.hasNext())
+                    {
+                        chunk.add(value_iter.next());
+                        if (chunk.size() >= chunk_size  ||  System.currentTimeMillis() >= deadline)
+                        {
+                            deliver(this, chunk);
+                            chunk = new ArrayList<>();
+                            chunk_size = Math.min(2 * chunk_size, MAX_CHUNK_SIZE);
+                            deadline = System.currentTimeMillis() + CHUNK_PERIOD_MS;
+                        }
+                    }
+                    if (! chunk.isEmpty())
+                        deliver(this, chunk);
                     value_iter.close();
                 }
                 catch (Exception ex)
                 {   // Tell listener unless it's the result of a 'cancel'?
                     if (! cancelled)
                         listener.archiveFetchFailed(ArchiveFetchJob.this, archive, ex);
-                    // Continue with the next data source
                 }
                 finally
                 {
@@ -172,8 +241,104 @@ public class ArchiveFetchJob extends Job
                             reader.close();
                         reader = null;
                     }
+                    complete(this);
+                }
+            }
+        }
+
+        /** @param fetch Source that received a chunk of samples
+         *  @param chunk Samples
+         */
+        private void deliver(final SourceFetch fetch, final List<VType> chunk)
+        {
+            samples.addAndGet(chunk.size());
+            synchronized (this)
+            {
+                fetch.pending.add(chunk);
+                mergePending();
+            }
+        }
+
+        /** @param fetch Source that has delivered all its samples */
+        private void complete(final SourceFetch fetch)
+        {
+            synchronized (this)
+            {
+                fetch.done = true;
+                mergePending();
+            }
+        }
+
+        /** Merge pending chunks in the order of sources.
+         *  Caller must synchronize on 'this'.
+         */
+        private void mergePending()
+        {
+            while (next_merge < fetches.length)
+            {
+                final SourceFetch fetch = fetches[next_merge];
+                for (List<VType> chunk : fetch.pending)
+                {
+                    if (cancelled)
+                        break;
+                    item.mergeArchivedSamples(fetch.server_name, chunk, fetch.merged_end);
+                    fetch.merged_end = VTypeHelper.getTimestamp(chunk.get(chunk.size()-1));
+                }
+                fetch.pending.clear();
+                if (! fetch.done)
+                    break;
+                ++next_merge;
+            }
+            // Display "N/total", using '1' for the first sub-archive.
+            if (next_merge < fetches.length)
+                message = NLS.bind(Messages.ArchiveFetchDetailFmt,
+                        new Object[]
+                        {
+                            fetches[next_merge].archive.getName(),
+                            (next_merge+1),
+                            fetches.length
+                        });
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run()
+        {
+            Activator.getLogger().log(Level.FINE, "Starting {0}", ArchiveFetchJob.this);
+            final BenchmarkTimer timer = new BenchmarkTimer();
+
+            // Number of bins. Negative values are scaling factor for display width
+            int bins = Preferences.getPlotBins();
+            if (bins < 0)
+                bins = Activator.display_pixel_width * (- bins);
+
+            final ArchiveDataSource archives[] = item.getArchiveDataSources();
+            final List<Future<?>> running = new ArrayList<>(archives.length);
+            synchronized (this)
+            {
+                fetches = new SourceFetch[archives.length];
+                for (int i=0; i<archives.length; ++i)
+                    fetches[i] = new SourceFetch(archives[i], bins);
+                mergePending();
+            }
+            for (SourceFetch fetch : fetches)
+                running.add(Activator.getThreadPool().submit(fetch));
+            for (Future<?> done : running)
+            {
+                try
+                {
+                    done.get();
+                }
+                catch (Exception ex)
+                {
+                    Activator.getLogger().log(Level.WARNING, "Archive fetch error", ex);
                 }
             }
+
+            final List<ArchiveDataSource> sourcesWhereChannelDoesntExist = new ArrayList<>();
+            for (SourceFetch fetch : fetches)
+                if (fetch.unknown)
+                    sourcesWhereChannelDoesntExist.add(fetch.archive);
             if (!sourcesWhereChannelDoesntExist.isEmpty() && !cancelled)
             {
                 listener.channelNotFound(ArchiveFetchJob.this, sourcesWhereChannelDoesntExist.size() < archives.length,
@@ -185,7 +350,7 @@ public class ArchiveFetchJob extends Job
                 listener.fetchCompleted(ArchiveFetchJob.this);
             Activator.getLogger().log(Level.FINE,
                     "Ended {0} with {1} samples in {2}",
-                    new Object[] { ArchiveFetchJob.this, samples, timer });
+                    new Object[] { ArchiveFetchJob.this, samples.get(), timer });
         }
 
         @Override
@@ -195,6 +360,18 @@ public class ArchiveFetchJob extends Job
         }
     }
 
+    /** @param url Archive URL
+     *  @param refresh Replace cached samples with freshly fetched samples?
+     *  @return {@link ArchiveReader}, using the archive cache unless disabled
+     *  @throws Exception on error
+     */
+    private static ArchiveReader getArchiveReader(final String url, final boolean refresh) throws Exception
+    {
+        final ArchiveReader reader = ArchiveRepository.getInstance().getArchiveReader(url);
+        final ArchiveCache cache = CacheHolder.cache;
+        return cache == null ? reader : cache.wrap(reader, refresh);
+    }
+
     /** Initialize
      *  @param item
      *  @param start
@@ -220,6 +397,27 @@ public class ArchiveFetchJob extends Job
      */
     protected ArchiveFetchJob(PVItem item, final Instant start,
         final Instant end, final ArchiveFetchJobListener listener, boolean enableConcurrency)
+    {
+        this(item, start, end, listener, enableConcurrency, false);
+    }
+
+    /**
+     * Construct a new job.
+     *
+     * @param item the item for which the data are fetched
+     * @param start the lower time boundary for the historic data
+     * @param end the upper time boundary for the history data
+     * @param listener the listener notified when the job is complete or an error happens
+     * @param enableConcurrency a parameter forwarded to the reader
+     * @param refresh <code>true</code> to fetch all data from the archive,
+     *                replacing samples in the archive cache,
+     *                for example when the user requests a refresh
+     *
+     * @see ArchiveReader#enableConcurrency(boolean)
+     */
+    public ArchiveFetchJob(PVItem item, final Instant start,
+        final Instant end, final ArchiveFetchJobListener listener, boolean enableConcurrency,
+        final boolean refresh)
     {
         super(NLS.bind(Messages.ArchiveFetchJobFmt,
                 new Object[] { item.getName(), TimeHelper.format(start),
@@ -229,6 +427,7 @@ public class ArchiveFetchJob extends Job
         this.end = end;
         this.listener = listener;
         this.concurrency = enableConcurrency;
+        this.refresh = refresh;
     }
 
     /** @return PVItem for which this job was created */
@@ -7,10 +7,16 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.export;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
@@ -21,6 +27,7 @@ import org.csstudio.archive.reader.ArchiveReader;
 import org.csstudio.archive.reader.ArchiveRepository;
 import org.csstudio.archive.reader.LinearValueIterator;
 import org.csstudio.archive.reader.MergingValueIterator;
+import org.csstudio.archive.reader.PendingValueIterator;
 import org.csstudio.archive.reader.ValueIterator;
 import org.csstudio.trends.databrowser2.Activator;
 import org.csstudio.trends.databrowser2.model.ArchiveDataSource;
@@ -41,6 +48,9 @@ import org.eclipse.core.runtime.jobs.Job;
 abstract public class ExportJob extends Job
 {
     final protected static int PROGRESS_UPDATE_LINES = 1000;
+
+    /** Size of buffer for the output file */
+    final private static int FILE_BUFFER_SIZE = 64 * 1024;
     final protected String comment;
     final protected Model model;
     final protected Instant start, end;
@@ -126,7 +136,8 @@ abstract public class ExportJob extends Job
             final PrintStream out;
             if (filename != null)
             {
-                out = new PrintStream(filename);
+                // PrintStream would write each print() call to the file
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(filename), FILE_BUFFER_SIZE));
                 printExportInfo(out);
             }
             else
@@ -246,4 +257,97 @@ abstract public class ExportJob extends Job
         // Return a merging iterator
         return new MergingValueIterator(iters.toArray(new ValueIterator[iters.size()]));
     }
+
+    /** Create iterators for several items
+     *
+     *  <p>Channels are requested from each archive in one call,
+     *  allowing the archive reader to fetch them concurrently
+     *  instead of one item after the other.
+     *
+     *  @param items ModelItems
+     *  @return ValueIterator for samples in each item
+     *  @throws Exception on error
+     */
+    protected List<ValueIterator> createValueIterators(final List<ModelItem> items) throws Exception
+    {
+        // Names of channels to fetch by archive URL, then key
+        final Map<String, Map<Integer, List<String>>> requests = new LinkedHashMap<>();
+        for (ModelItem item : items)
+        {
+            if (source == Source.PLOT || !(item instanceof PVItem))
+                continue;
+            for (ArchiveDataSource archive : ((PVItem)item).getArchiveDataSources())
+                requests.computeIfAbsent(archive.getUrl(), url -> new LinkedHashMap<>())
+                        .computeIfAbsent(archive.getKey(), key -> new ArrayList<>())
+                        .add(item.getResolvedName());
+        }
+
+        // Start fetching all channels of each archive
+        final Map<String, Map<Integer, List<PendingValueIterator>>> pending = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, List<String>>> url_request : requests.entrySet())
+        {
+            // Create reader, remember to close it when done
+            final ArchiveReader reader = ArchiveRepository.getInstance().getArchiveReader(url_request.getKey());
+            archive_readers.add(reader);
+            final Map<Integer, List<PendingValueIterator>> by_key = new HashMap<>();
+            for (Map.Entry<Integer, List<String>> key_request : url_request.getValue().entrySet())
+            {
+                final List<PendingValueIterator> iters;
+                if (source == Source.OPTIMIZED_ARCHIVE  &&  optimize_parameter > 1)
+                    iters = reader.getOptimizedValues(key_request.getKey(), key_request.getValue(),
+                                                      start, end, (int)optimize_parameter);
+                else
+                    iters = reader.getRawValues(key_request.getKey(), key_request.getValue(), start, end);
+                by_key.put(key_request.getKey(), iters);
+            }
+            pending.put(url_request.getKey(), by_key);
+        }
+
+        // Collect iterators for each item, in the order they were requested
+        final List<ValueIterator> result = new ArrayList<>(items.size());
+        final Map<List<PendingValueIterator>, Integer> next = new IdentityHashMap<>();
+        for (ModelItem item : items)
+        {
+            if (source == Source.PLOT || !(item instanceof PVItem))
+            {
+                result.add(new ModelSampleIterator(item, start, end));
+                continue;
+            }
+            final List<ValueIterator> iters = new ArrayList<>();
+            Exception error = null;
+            for (ArchiveDataSource archive : ((PVItem)item).getArchiveDataSources())
+            {
+                final List<PendingValueIterator> fetched = pending.get(archive.getUrl()).get(archive.getKey());
+                final int index = next.getOrDefault(fetched, 0);
+                next.put(fetched, index + 1);
+                try
+                {
+                    ValueIterator iter = fetched.get(index).await();
+                    if (source == Source.LINEAR_INTERPOLATION && optimize_parameter >= 1)
+                        iter = new LinearValueIterator(iter, TimeDuration.ofSeconds(optimize_parameter));
+                    iters.add(iter);
+                }
+                catch (Exception ex)
+                {
+                    Logger.getLogger(getClass().getName()).log(Level.FINE, "Export error for " + item.getResolvedName(), ex);
+                    if (error == null)
+                        error = ex;
+                }
+            }
+            // If none of the iterators work out, report the first error that we found
+            if (iters.isEmpty()  &&  error != null)
+            {   // Close the iterators that were already awaited and merged ..
+                for (ValueIterator iter : result)
+                    iter.close();
+                // .. and those that were never awaited
+                for (Map<Integer, List<PendingValueIterator>> by_key : pending.values())
+                    for (List<PendingValueIterator> fetched : by_key.values())
+                        for (int i=next.getOrDefault(fetched, 0); i<fetched.size(); ++i)
+                            fetched.get(i).close();
+                throw error;
+            }
+            result.add(new MergingValueIterator(iters.toArray(new ValueIterator[iters.size()])));
+        }
+        return result;
+    }
 }
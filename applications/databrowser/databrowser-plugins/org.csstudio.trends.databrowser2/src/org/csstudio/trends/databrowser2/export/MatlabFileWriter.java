@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import org.csstudio.archive.vtype.TimestampHelper;
+import org.diirt.vtype.AlarmSeverity;
+
+/** Writer for Matlab MAT files
+ *
+ *  <p>Writes one structure per channel with fields
+ *  <code>name</code>, <code>time</code> (cell array of text),
+ *  <code>value</code> (array of double) and
+ *  <code>severity</code> (cell array of text),
+ *  the same layout as created by the JMatIO library,
+ *  but streaming the samples to the file
+ *  instead of first creating the complete structure in memory.
+ *
+ *  <p>Time stamps are written to the file as they arrive.
+ *  Values and severities are kept in temporary files
+ *  until the channel is complete.
+ *  Sizes of the enclosing elements are then updated in the file.
+ *
+ *  <p>Uses the uncompressed 'Level 5' MAT file format,
+ *  so each channel is limited to 2GB.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class MatlabFileWriter implements AutoCloseable
+{
+    // Data types
+    private static final int miINT8 = 1, miUINT16 = 4, miINT32 = 5, miUINT32 = 6, miDOUBLE = 9, miMATRIX = 14;
+
+    // Array classes
+    private static final int mxCELL_CLASS = 1, mxSTRUCT_CLASS = 2, mxCHAR_CLASS = 4, mxDOUBLE_CLASS = 6;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Maximum length of structure field names */
+    private static final int FIELD_NAME_LENGTH = 32;
+
+    private static final String[] FIELDS = { "name", "time", "value", "severity" };
+
+    private static final AlarmSeverity[] SEVERITIES = AlarmSeverity.values();
+
+    /** File and buffer for writing to it */
+    final private FileChannel file;
+    final private ByteBuffer buffer = createBuffer();
+
+    /** Temporary files for values and severities of current channel */
+    private Path value_path, severity_path;
+    private FileChannel values, severities;
+    final private ByteBuffer value_buffer = createBuffer(), severity_buffer = createBuffer();
+
+    /** Number of samples in current channel */
+    private int samples;
+
+    /** File positions of the current channel's structure, time cell, time cell dimensions */
+    private long struct_start, time_start, time_dims;
+
+    /** Create file and write header
+     *  @param filename Name of file
+     *  @throws IOException on error
+     */
+    public MatlabFileWriter(final Path filename) throws IOException
+    {
+        file = FileChannel.open(filename, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE);
+        final StringBuilder text = new StringBuilder("MATLAB 5.0 MAT-file, Created on: " + Instant.now());
+        while (text.length() < 116)
+            text.append(' ');
+        buffer.put(text.toString().getBytes(StandardCharsets.US_ASCII));
+        // No subsystem data, version 0x0100, endian indicator
+        buffer.putLong(0);
+        buffer.putShort((short) 0x0100);
+        buffer.put((byte) 'I');
+        buffer.put((byte) 'M');
+    }
+
+    private static ByteBuffer createBuffer()
+    {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** Start structure for a channel
+     *  @param index Index of the channel
+     *  @param name Name of the channel
+     *  @throws IOException on error
+     */
+    public void startChannel(final int index, final String name) throws IOException
+    {
+        samples = 0;
+        value_path = Files.createTempFile("matlab", ".dat");
+        severity_path = Files.createTempFile("matlab", ".dat");
+        values = FileChannel.open(value_path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        severities = FileChannel.open(severity_path, StandardOpenOption.WRITE, StandardOpenOption.READ);
+
+        struct_start = getPosition();
+        writeMatrixHeader(0, mxSTRUCT_CLASS, 1, 1, "channel" + index);
+        writeTag(miINT32, 4);
+        writeInt(FIELD_NAME_LENGTH);
+        pad(4);
+        writeTag(miINT8, FIELDS.length * FIELD_NAME_LENGTH);
+        for (String field : FIELDS)
+        {
+            final byte[] bytes = field.getBytes(StandardCharsets.US_ASCII);
+            write(bytes);
+            pad(FIELD_NAME_LENGTH - bytes.length);
+        }
+
+        writeText(name);
+
+        // Cell array for time stamps, dimensions and size will be updated
+        time_start = getPosition();
+        time_dims = writeMatrixHeader(0, mxCELL_CLASS, 0, 1, null);
+    }
+
+    /** Add sample to current channel
+     *  @param time Time stamp
+     *  @param value Value
+     *  @param severity Severity
+     *  @throws IOException on error
+     */
+    public void addSample(final Instant time, final double value, final AlarmSeverity severity) throws IOException
+    {
+        writeText(TimestampHelper.format(time));
+        if (value_buffer.remaining() < Double.BYTES)
+            flush(value_buffer, values);
+        value_buffer.putDouble(value);
+        if (severity_buffer.remaining() < 1)
+            flush(severity_buffer, severities);
+        severity_buffer.put((byte) severity.ordinal());
+        ++samples;
+    }
+
+    /** Complete structure for current channel
+     *  @throws IOException on error
+     */
+    public void endChannel() throws IOException
+    {
+        try
+        {
+            // Update dimensions and size of time cell array
+            final long time_end = getPosition();
+            flush(buffer, file);
+            final ByteBuffer update = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            update.putInt(0, samples);
+            file.write(update, time_dims);
+            update.clear();
+            update.putInt(0, getSize(time_end - time_start - 8));
+            file.write(update, time_start + 4);
+
+            // Values
+            flush(value_buffer, values);
+            writeMatrixHeader(8 + 8L*samples, mxDOUBLE_CLASS, samples, 1, null);
+            writeTag(miDOUBLE, getSize(8L*samples));
+            flush(buffer, file);
+            copy(values);
+
+            // Severities
+            flush(severity_buffer, severities);
+            final long severity_start = getPosition();
+            writeMatrixHeader(0, mxCELL_CLASS, samples, 1, null);
+            severities.position(0);
+            severity_buffer.limit(0);
+            for (int i=0; i<samples; ++i)
+            {
+                if (! severity_buffer.hasRemaining())
+                {
+                    severity_buffer.clear();
+                    severities.read(severity_buffer);
+                    severity_buffer.flip();
+                }
+                writeText(SEVERITIES[severity_buffer.get()].toString());
+            }
+            severity_buffer.clear();
+            final long struct_end = getPosition();
+            flush(buffer, file);
+            update.clear();
+            update.putInt(0, getSize(struct_end - severity_start - 8));
+            file.write(update, severity_start + 4);
+
+            // Update size of complete structure
+            update.clear();
+            update.putInt(0, getSize(struct_end - struct_start - 8));
+            file.write(update, struct_start + 4);
+        }
+        finally
+        {
+            deleteTemporaryFiles();
+        }
+    }
+
+    /** @return Current position in the file, including buffered data
+     *  @throws IOException on error
+     */
+    private long getPosition() throws IOException
+    {
+        return file.position() + buffer.position();
+    }
+
+    /** @param size Size of element data
+     *  @return Size as required for the element tag
+     *  @throws IOException if size is too large
+     */
+    private int getSize(final long size) throws IOException
+    {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Channel data exceeds size limit of MAT file");
+        return (int) size;
+    }
+
+    /** Write header of matrix element
+     *  @param size Size of data that follows the header, 0 if unknown
+     *  @param type Array class
+     *  @param rows Rows
+     *  @param columns Columns
+     *  @param name Name or <code>null</code>
+     *  @return File position of the 'rows'
+     *  @throws IOException on error
+     */
+    private long writeMatrixHeader(final long size, final int type, final int rows, final int columns, final String name) throws IOException
+    {
+        final byte[] bytes = name == null ? new byte[0] : name.getBytes(StandardCharsets.US_ASCII);
+        final long header = 16 + 16 + 8 + padded(bytes.length);
+        writeTag(miMATRIX, getSize(size + header));
+        // Array flags
+        writeTag(miUINT32, 8);
+        writeInt(type);
+        writeInt(0);
+        // Dimensions
+        writeTag(miINT32, 8);
+        final long position = getPosition();
+        writeInt(rows);
+        writeInt(columns);
+        // Name
+        writeTag(miINT8, bytes.length);
+        write(bytes);
+        pad(padded(bytes.length) - bytes.length);
+        return position;
+    }
+
+    /** Write character array
+     *  @param text Text
+     *  @throws IOException on error
+     */
+    private void writeText(final String text) throws IOException
+    {
+        final int length = text.length();
+        final int data = padded(2*length);
+        if (length > 0)
+            writeMatrixHeader(8 + data, mxCHAR_CLASS, 1, length, null);
+        else
+            writeMatrixHeader(8, mxCHAR_CLASS, 0, 0, null);
+        writeTag(miUINT16, 2*length);
+        for (int i=0; i<length; ++i)
+        {
+            if (buffer.remaining() < 2)
+                flush(buffer, file);
+            buffer.putChar(text.charAt(i));
+        }
+        pad(data - 2*length);
+    }
+
+    /** @param size Size of data
+     *  @return Size padded to 8 byte boundary
+     */
+    private static int padded(final int size)
+    {
+        return (size + 7) & ~7;
+    }
+
+    private void writeTag(final int type, final int size) throws IOException
+    {
+        writeInt(type);
+        writeInt(size);
+    }
+
+    private void writeInt(final int value) throws IOException
+    {
+        if (buffer.remaining() < Integer.BYTES)
+            flush(buffer, file);
+        buffer.putInt(value);
+    }
+
+    private void write(final byte[] bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes.length)
+            flush(buffer, file);
+        buffer.put(bytes);
+    }
+
+    private void pad(final int count) throws IOException
+    {
+        for (int i=0; i<count; ++i)
+        {
+            if (! buffer.hasRemaining())
+                flush(buffer, file);
+            buffer.put((byte) 0);
+        }
+    }
+
+    /** @param buffer Buffer to write
+     *  @param channel Channel where to write the buffer
+     *  @throws IOException on error
+     */
+    private static void flush(final ByteBuffer buffer, final FileChannel channel) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /** @param source Temporary file to append to the file
+     *  @throws IOException on error
+     */
+    private void copy(final FileChannel source) throws IOException
+    {
+        final long size = source.size();
+        long copied = 0;
+        while (copied < size)
+            copied += source.transferTo(copied, size - copied, file);
+    }
+
+    private void deleteTemporaryFiles() throws IOException
+    {
+        if (values != null)
+        {
+            values.close();
+            severities.close();
+            Files.delete(value_path);
+            Files.delete(severity_path);
+            values = severities = null;
+        }
+    }
+
+    /** Close the file
+     *  @throws IOException on error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush(buffer, file);
+            file.close();
+        }
+        finally
+        {
+            deleteTemporaryFiles();
+        }
+    }
+}
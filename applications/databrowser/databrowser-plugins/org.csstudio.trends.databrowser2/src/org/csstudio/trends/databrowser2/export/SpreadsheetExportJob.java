@@ -53,25 +53,27 @@ public class SpreadsheetExportJob extends PlainExportJob
         out.println();
 
         // Create speadsheet interpolation
-        final List<ValueIterator> iters = new ArrayList<>();
+        final List<ModelItem> items = new ArrayList<>();
         for (ModelItem item : model.getItems())
-        {
-            monitor.subTask(NLS.bind("Fetching data for {0}", item.getResolvedName()));
-            iters.add(createValueIterator(item));
-        }
+            items.add(item);
+        monitor.subTask(NLS.bind("Fetching data for {0} channels", items.size()));
+        final List<ValueIterator> iters = createValueIterators(items);
         final SpreadsheetIterator sheet = new SpreadsheetIterator(iters.toArray(new ValueIterator[iters.size()]));
-        // Dump the spreadsheet lines
+        // Dump the spreadsheet lines,
+        // re-using the line and text buffer
+        final VType line[] = new VType[iters.size()];
+        final StringBuilder buf = new StringBuilder();
         long line_count = 0;
 
         while (sheet.hasNext()  &&  !monitor.isCanceled())
         {
             final Instant time = sheet.getTime();
-            final VType line[] = sheet.next();
-            out.print(TimestampHelper.format(time));
-
+            sheet.next(line);
+            buf.setLength(0);
+            buf.append(TimestampHelper.format(time));
             for (int i=0; i<line.length; ++i)
-                out.print(Messages.Export_Delimiter + formatter.format(line[i]));
-            out.println();
+                buf.append(Messages.Export_Delimiter).append(formatter.format(line[i]));
+            out.println(buf);
             ++line_count;
             if ((line_count % PROGRESS_UPDATE_LINES) == 0)
                 monitor.subTask(NLS.bind("Wrote {0} samples", line_count));
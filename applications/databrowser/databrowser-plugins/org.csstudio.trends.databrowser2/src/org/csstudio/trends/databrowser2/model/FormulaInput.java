@@ -7,6 +7,8 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.model;
 
+import java.time.Instant;
+
 import org.diirt.vtype.VType;
 
 /** One input to the formula: Model item that provides data, Variable name
@@ -95,6 +97,81 @@ public class FormulaInput
         return result;
     }
 
+    /** Position the sample iterator at a time stamp
+     *  @param time Time stamp
+     *  @see #next()
+     *  @return Last sample before the time stamp or <code>null</code>
+     */
+    public VType seek(final Instant time)
+    {
+        final PlotSamples samples = item.getSamples();
+        samples.getLock().lock();
+        try
+        {
+            // Binary search for first sample at or after time
+            int low = 0, high = samples.size();
+            while (low < high)
+            {
+                final int mid = (low + high) >>> 1;
+                if (samples.get(mid).getPosition().compareTo(time) < 0)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            index = low < samples.size() ? low : -1;
+            return low > 0 ? samples.get(low-1).getVType() : null;
+        }
+        finally
+        {
+            samples.getLock().unlock();
+        }
+    }
+
+    /** @return Revision of the input's samples
+     *  @see PlotSamples#getRevision()
+     */
+    public long getRevision()
+    {
+        return item.getSamples().getRevision();
+    }
+
+    /** @return Time stamp of the first sample or <code>null</code> */
+    public Instant getStart()
+    {
+        final PlotSamples samples = item.getSamples();
+        samples.getLock().lock();
+        try
+        {
+            return samples.size() > 0 ? samples.get(0).getPosition() : null;
+        }
+        finally
+        {
+            samples.getLock().unlock();
+        }
+    }
+
+    /** The last sample might still change, for example when
+     *  the last value of a PV is extended to 'now'.
+     *  Samples before the one-but-last sample will not change
+     *  while the revision of the samples remains the same.
+     *
+     *  @return Time stamp of the one-but-last sample or <code>null</code>
+     */
+    public Instant getStableEnd()
+    {
+        final PlotSamples samples = item.getSamples();
+        samples.getLock().lock();
+        try
+        {
+            final int n = samples.size();
+            return n > 1 ? samples.get(n-2).getPosition() : null;
+        }
+        finally
+        {
+            samples.getLock().unlock();
+        }
+    }
+
     /** Check for new samples.
      *  Note that this will not reset the new-sample flag,
      *  so its use has to be coordinated with the overall mechanism
@@ -11,6 +11,7 @@ import java.io.PrintWriter;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import org.csstudio.apputil.formula.Formula;
 import org.csstudio.apputil.formula.VariableNode;
@@ -67,6 +68,22 @@ public class FormulaItem extends ModelItem
      *  Access must synchronize on samples (done inside PlotSampleArray) */
     private PlotSampleArray samples = new PlotSampleArray();
 
+    /** Revision of each input's samples at the last full evaluation,
+     *  <code>null</code> to force a full evaluation.
+     *  @see #formula for synchronization
+     */
+    private long revisions[] = null;
+
+    /** Time stamp of each input's first sample at the last full evaluation
+     *  @see #formula for synchronization
+     */
+    private Instant starts[];
+
+    /** Number of formula samples after the last full evaluation
+     *  @see #formula for synchronization
+     */
+    private int full_size;
+
     /** Initialize formula
      *  @param name Name of the Formula item
      *  @param expression Expression to evaluate
@@ -122,6 +139,7 @@ public class FormulaItem extends ModelItem
             for (int i=0; i<variables.length; ++i)
                 variables[i] = new VariableNode(inputs[i].getVariableName());
             this.formula = new Formula(expression, variables);
+            revisions = null;
         }
         fireItemLookChanged();
     }
@@ -131,6 +149,10 @@ public class FormulaItem extends ModelItem
      *  Iterates over the input samples in a manner of spreadsheet or
      *  staircase-interpolation: An input with a time stamp is valid
      *  until there's a sample with a greater time stamp.
+     *  <p>
+     *  When the inputs only received newer samples since the last
+     *  evaluation, the formula samples before the stable end of all inputs
+     *  are kept, and only the remaining 'lines in the spreadsheet' are computed.
      */
     private void compute()
     {
@@ -149,14 +171,35 @@ public class FormulaItem extends ModelItem
             final double val[] = new double[inputs.length];
             final double max[] = new double[inputs.length];
 
+            // Evaluate all, or only the samples after a stable time?
+            final Instant stable = getIncrementalStart();
+            if (stable == null)
+            {
+                revisions = new long[inputs.length];
+                starts = new Instant[inputs.length];
+                for (int i = 0; i < values.length; i++)
+                {
+                    revisions[i] = inputs[i].getRevision();
+                    starts[i] = inputs[i].getStart();
+                }
+            }
+
             // Determine first sample for each input
             boolean more_input = false;
             for (int i = 0; i < values.length; i++)
             {
                 // Initially, none have any data
                 min[i] = val[i] = max[i] = Double.NaN;
+                if (stable == null)
+                    values[i] = inputs[i].first();
+                else
+                {   // Continue with the last sample before the stable time
+                    final VType previous = inputs[i].seek(stable);
+                    if (previous != null)
+                        setInput(previous, i, min, val, max);
+                    values[i] = inputs[i].next();
+                }
                 // Is there an initial value for any input?
-                values[i] = inputs[i].first();
                 if (values[i] != null)
                     more_input = true;
             }
@@ -194,22 +237,8 @@ public class FormulaItem extends ModelItem
                     }
                     else if (VTypeHelper.getTimestamp(values[i]).compareTo(time) <= 0)
                     {   // Input is valid before-and-up-to 'time'
-                        if (values[i] instanceof VStatistics)
-                        {
-                            final VStatistics mmv = (VStatistics)values[i];
-                            min[i] = mmv.getMin();
-                            val[i] = mmv.getAverage();
-                            max[i] = mmv.getMax();
-                        }
-                        else
-                        {
-                            min[i] = max[i] = Double.NaN;
-                            val[i] = VTypeHelper.toDouble(values[i]);
-                            // Use NaN for any non-number
-                            if (Double.isInfinite(val[i]))
-                                val[i] = Double.NaN;
+                        if (! setInput(values[i], i, min, val, max))
                             have_min_max = false;
-                        }
                         // Move to next input sample
                         values[i] = inputs[i].next();
                     }
@@ -252,9 +281,93 @@ public class FormulaItem extends ModelItem
                 }
                 result.add(new PlotSample(Messages.Formula, value));
             }
+
+            // Update PlotSamples
+            if (stable == null)
+            {
+                samples.set(result);
+                full_size = result.size();
+            }
+            else
+                samples.update(findSample(stable), result);
+        }
+    }
+
+    /** Set min/val/max of an input from a sample
+     *  @param value Sample of the input
+     *  @param i Index of the input
+     *  @param min Minimum of each input
+     *  @param val Value of each input
+     *  @param max Maximum of each input
+     *  @return <code>true</code> if sample provided min/max
+     */
+    private static boolean setInput(final VType value, final int i,
+                                    final double min[], final double val[], final double max[])
+    {
+        if (value instanceof VStatistics)
+        {
+            final VStatistics mmv = (VStatistics)value;
+            min[i] = mmv.getMin();
+            val[i] = mmv.getAverage();
+            max[i] = mmv.getMax();
+            return true;
+        }
+        min[i] = max[i] = Double.NaN;
+        val[i] = VTypeHelper.toDouble(value);
+        // Use NaN for any non-number
+        if (Double.isInfinite(val[i]))
+            val[i] = Double.NaN;
+        return false;
+    }
+
+    /** Check if formula can be evaluated incrementally
+     *  <p>
+     *  Caller must synchronize on <code>this</code>
+     *  @return Time from which the formula needs to be evaluated,
+     *          or <code>null</code> to evaluate all samples
+     */
+    private Instant getIncrementalStart()
+    {
+        if (revisions == null)
+            return null;
+        Instant stable = null;
+        boolean trimmed = false;
+        for (int i = 0; i < inputs.length; i++)
+        {
+            // Was historic data merged or otherwise changed?
+            if (inputs[i].getRevision() != revisions[i])
+                return null;
+            final Instant end = inputs[i].getStableEnd();
+            if (end == null)
+                return null;
+            if (stable == null  ||  end.compareTo(stable) < 0)
+                stable = end;
+            if (! Objects.equals(inputs[i].getStart(), starts[i]))
+                trimmed = true;
+        }
+        // When inputs drop older samples, for example from the live sample ring buffer,
+        // the formula keeps its older samples until it has doubled in size,
+        // then evaluates all samples to again start with the oldest input sample
+        if (trimmed  &&  samples.size() > 2 * full_size)
+            return null;
+        return stable;
+    }
+
+    /** @param time Time stamp
+     *  @return Index of first formula sample at or after the time stamp
+     */
+    private int findSample(final Instant time)
+    {
+        int low = 0, high = samples.size();
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (samples.get(mid).getPosition().compareTo(time) < 0)
+                low = mid + 1;
+            else
+                high = mid;
         }
-        // Update PlotSamples
-        samples.set(result);
+        return low;
     }
 
     /** Re-evaluate the formula in case some of the input samples changed.
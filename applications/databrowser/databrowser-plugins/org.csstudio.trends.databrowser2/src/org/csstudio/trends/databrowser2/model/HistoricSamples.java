@@ -36,7 +36,7 @@ public class HistoricSamples extends PlotSamples
     // No locking in here, all access is via PVSamples
 
     /** "All" historic samples */
-    private PlotSample samples[] = new PlotSample[0];
+    final private SampleColumns samples;
 
     /** If set, samples beyond this time are hidden from access */
     private Optional<Instant> border_time = Optional.empty();
@@ -52,6 +52,7 @@ public class HistoricSamples extends PlotSamples
     HistoricSamples(final AtomicInteger waveform_index)
     {
         this.waveform_index = waveform_index;
+        samples = new SampleColumns(waveform_index, 0);
     }
 
     /** Define a new 'border' time beyond which no samples
@@ -65,19 +66,16 @@ public class HistoricSamples extends PlotSamples
         // New border, recompute, mark as 'new data'
         this.border_time = border_time;
         computeVisibleSize();
+        modifications.incrementAndGet();
     }
 
     /** Update visible size */
     private void computeVisibleSize()
     {
         if (border_time.isPresent())
-        {
-            final int last_index = PlotSampleSearch.findSampleLessThan(
-                    samples, border_time.get());
-            visible_size = (last_index < 0)   ?   0   :   last_index + 1;
-        }
+            visible_size = samples.findFirstAtOrAfter(border_time.get());
         else
-            visible_size = samples.length;
+            visible_size = samples.size();
     }
 
     /** {@inheritDoc} */
@@ -87,7 +85,7 @@ public class HistoricSamples extends PlotSamples
     {
         if (i >= visible_size)
             throw new IndexOutOfBoundsException("Index " + i + " exceeds visible size " + visible_size);
-        return samples[i];
+        return samples.get(i);
     }
 
     /** {@inheritDoc} */
@@ -101,7 +99,7 @@ public class HistoricSamples extends PlotSamples
      * @return the number of samples, ignoring the border time
      */
     public int getRawSize() {
-        return samples.length;
+        return samples.size();
     }
 
     /**
@@ -111,7 +109,7 @@ public class HistoricSamples extends PlotSamples
      * @return the plot sample
      */
     public PlotSample getRawSample(int i) {
-        return samples[i];
+        return samples.get(i);
     }
 
     /** Merge newly received archive data into historic samples
@@ -119,26 +117,40 @@ public class HistoricSamples extends PlotSamples
      *  @param result Samples to add/merge
      */
     public void mergeArchivedData(final String source, final List<VType> result)
+    {
+        mergeArchivedData(source, result, null);
+    }
+
+    /** Merge newly received archive data into historic samples
+     *  @param source Info about data source
+     *  @param result Samples to add/merge
+     *  @param previous_end End time of the previous chunk of samples from the same source
+     *                      or <code>null</code> if these are the first samples from that source
+     *  @see PlotSampleMerger
+     */
+    public void mergeArchivedData(final String source, final List<VType> result, final Instant previous_end)
     {
         // Anything new at all?
         if (result.size() <= 0)
             return;
-        // Turn IValues into PlotSamples
-        final PlotSample new_samples[] = new PlotSample[result.size()];
-        for (int i=0; i<new_samples.length; ++i)
-            new_samples[i] = new PlotSample(waveform_index, source, result.get(i));
-        // Merge with existing samples
-        final PlotSample merged[] = PlotSampleMerger.merge(samples, new_samples);
-        if (merged == samples)
-            return;
-        samples = merged;
+        final Instant add_start = new PlotSample(waveform_index, source, result.get(0)).getPosition();
+        final Instant add_end = new PlotSample(waveform_index, source, result.get(result.size()-1)).getPosition();
+        // Replace existing samples in the time range of the new samples,
+        // same as PlotSampleMerger but in place
+        final int first = previous_end == null
+            ? samples.findFirstAtOrAfter(add_start)
+            : samples.findFirstAfter(previous_end);
+        final int end = Math.max(first, samples.findFirstAfter(add_end));
+        samples.replace(first, end, source, result);
         computeVisibleSize();
+        modifications.incrementAndGet();
     }
 
     /** Delete all samples */
     public void clear()
     {
         visible_size = 0;
-        samples = new PlotSample[0];
+        samples.clear();
+        modifications.incrementAndGet();
     }
 }
@@ -9,7 +9,6 @@ package org.csstudio.trends.databrowser2.model;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.csstudio.apputil.ringbuffer.RingBuffer;
 import org.csstudio.trends.databrowser2.preferences.Preferences;
 
 /** Ring buffer for 'live' samples.
@@ -23,8 +22,7 @@ public class LiveSamples extends PlotSamples
 {
     // No locking in here, all access is via PVSamples
 
-    private RingBuffer<PlotSample> samples =
-        new RingBuffer<PlotSample>(Preferences.getLiveSampleBufferSize());
+    final private SampleColumns samples;
 
     /** Waveform index */
     final private AtomicInteger waveform_index;
@@ -32,6 +30,7 @@ public class LiveSamples extends PlotSamples
     LiveSamples(final AtomicInteger waveform_index)
     {
         this.waveform_index = waveform_index;
+        samples = new SampleColumns(waveform_index, Preferences.getLiveSampleBufferSize());
     }
 
     /** @return Maximum number of samples in ring buffer */
@@ -58,6 +57,7 @@ public class LiveSamples extends PlotSamples
     {
         sample.setWaveformIndex(waveform_index);
         samples.add(sample);
+        modifications.incrementAndGet();
         have_new_samples.set(true);
     }
 
@@ -77,6 +77,7 @@ public class LiveSamples extends PlotSamples
     public void clear()
     {
         samples.clear();
+        modifications.incrementAndGet();
         have_new_samples.set(true);
     }
 }
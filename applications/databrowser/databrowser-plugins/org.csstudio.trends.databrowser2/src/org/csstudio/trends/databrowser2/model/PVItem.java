@@ -12,6 +12,7 @@ import static org.diirt.datasource.vtype.ExpressionLanguage.vType;
 import static org.diirt.util.time.TimeDuration.ofSeconds;
 
 import java.io.PrintWriter;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
@@ -111,7 +112,10 @@ public class PVItem extends ModelItem implements PVReaderListener<List<VType>>
         if (index < 0)
             index = 0;
         if (waveform_index.getAndSet(index) != index)
+        {
+            samples.waveformIndexChanged();
             fireItemDataConfigChanged();
+        }
     }
 
     /** Set new item name, which changes the underlying PV name
@@ -434,12 +438,26 @@ public class PVItem extends ModelItem implements PVReaderListener<List<VType>>
      */
     public void mergeArchivedSamples(final String server_name,
             final List<VType> new_samples)
+    {
+        mergeArchivedSamples(server_name, new_samples, null);
+    }
+
+    /** Add data retrieved from an archive to the 'historic' section
+     *
+     *  <p>Data from one archive server may be added in several chunks.
+     *  @param server_name Archive server that provided these samples
+     *  @param new_samples Historic data
+     *  @param previous_end End time of the previous chunk from the same server,
+     *                      or <code>null</code> for the first chunk
+     */
+    public void mergeArchivedSamples(final String server_name,
+            final List<VType> new_samples, final Instant previous_end)
     {
         final boolean need_refresh;
         samples.lockForWriting();
         try
         {
-            samples.mergeArchivedData(server_name, new_samples);
+            samples.mergeArchivedData(server_name, new_samples, previous_end);
             need_refresh = automaticRefresh && model.isPresent() &&
                            samples.isHistoryRefreshNeeded(model.get().getStartTime(), model.get().getEndTime());
         }
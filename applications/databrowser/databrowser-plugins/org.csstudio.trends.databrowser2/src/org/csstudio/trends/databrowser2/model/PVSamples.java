@@ -73,6 +73,8 @@ public class PVSamples extends PlotSamples
     public void setLiveCapacity(final int new_capacity) throws Exception
     {
         live.setCapacity(new_capacity);
+        revision.incrementAndGet();
+        modifications.incrementAndGet();
     }
 
     /** @return Combined count of historic and live samples */
@@ -114,6 +116,19 @@ public class PVSamples extends PlotSamples
             return new PlotSample(sample.getSource(), VTypeHelper.transformTimestampToNow(sample.getVType()));
     }
 
+    /** {@inheritDoc}
+     *  <p>
+     *  While the last sample is extended to 'now',
+     *  the samples change with time and are not tracked.
+     */
+    @Override
+    public long getModificationCount()
+    {
+        if (size() > getRawSize())
+            return -1;
+        return super.getModificationCount();
+    }
+
     /** Get 'raw' sample, no continuation until 'now'
      *  @param index 0... getRawSize()-1
      *  @return Sample from historic or live sample subsection
@@ -156,6 +171,18 @@ public class PVSamples extends PlotSamples
      */
     public void mergeArchivedData(final String source,
             final List<VType> result)
+    {
+        mergeArchivedData(source, result, null);
+    }
+
+    /** Add data retrieved from an archive to the 'historic' section
+     *  @param source Source of the samples
+     *  @param result Historic data
+     *  @param previous_end End time of the previous chunk of samples from the same source
+     *                      or <code>null</code> if these are the first samples from that source
+     */
+    public void mergeArchivedData(final String source,
+            final List<VType> result, final Instant previous_end)
     {
         lockForWriting();
         try
@@ -165,7 +192,8 @@ public class PVSamples extends PlotSamples
                 emptyHistoryOnAdd = false;
                 history.clear();
             }
-            history.mergeArchivedData(source, result);
+            history.mergeArchivedData(source, result, previous_end);
+            revision.incrementAndGet();
         }
         finally
         {
@@ -199,7 +227,11 @@ public class PVSamples extends PlotSamples
             // History ends before the start of 'live' samples.
             // Adding a live sample might have moved the ring buffer,
             // so need to update whenever live data is extended.
+            final int old_history = history.size();
             history.setBorderTime(Optional.of(live.get(0).getPosition()));
+            // Did that reveal historic samples before the live samples?
+            if (history.size() != old_history)
+                revision.incrementAndGet();
         }
         finally
         {
@@ -208,6 +240,15 @@ public class PVSamples extends PlotSamples
         samplesAddedSinceLastRefresh++;
     }
 
+    /** Update after the waveform index changed,
+     *  which changes the values of all samples
+     */
+    void waveformIndexChanged()
+    {
+        revision.incrementAndGet();
+        modifications.incrementAndGet();
+    }
+
     /** Delete all samples */
     public void clear()
     {
@@ -216,6 +257,7 @@ public class PVSamples extends PlotSamples
         {
             history.clear();
             live.clear();
+            revision.incrementAndGet();
         }
         finally
         {
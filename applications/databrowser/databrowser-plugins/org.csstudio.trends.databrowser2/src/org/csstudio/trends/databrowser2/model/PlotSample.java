@@ -99,6 +99,20 @@ public class PlotSample implements PlotDataItem<Instant>
         this.waveform_index = index;
     }
 
+    /** @return <code>true</code> if sample has an info text */
+    boolean hasInfo()
+    {
+        return info.isPresent();
+    }
+
+    /** @param time Time stamp
+     *  @return Nanoseconds since epoch
+     */
+    static long toNanos(final Instant time)
+    {
+        return time.getEpochSecond() * 1000000000L + time.getNano();
+    }
+
     /** @return Source of the data */
     public String getSource()
     {
@@ -7,6 +7,7 @@
  ******************************************************************************/
 package org.csstudio.trends.databrowser2.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,6 +22,24 @@ public class PlotSampleArray extends PlotSamples
     public void set(final List<PlotSample> samples)
     {
         this.samples = samples;
+        revision.incrementAndGet();
+        modifications.incrementAndGet();
+    }
+
+    /** Replace the samples after some index
+     *  @param keep Number of current samples to keep
+     *  @param added Samples to add after those
+     */
+    public void update(final int keep, final List<PlotSample> added)
+    {
+        // Readers might still access the current list, so create a new one
+        final List<PlotSample> updated = new ArrayList<>(keep + added.size());
+        updated.addAll(samples.subList(0, keep));
+        updated.addAll(added);
+        if (keep < samples.size() - 1)
+            revision.incrementAndGet();
+        samples = updated;
+        modifications.incrementAndGet();
     }
 
     /** {@inheritDoc} */
@@ -98,4 +98,46 @@ public class PlotSampleMerger
 
         throw new Error("Cannot handle this case");  //$NON-NLS-1$
     }
+
+    /** Add newly received samples that continue a previous merge from the same source.
+     *  <p>
+     *  When samples of one data source arrive in several chunks,
+     *  the first chunk is merged via {@link #merge(PlotSample[], PlotSample[])}.
+     *  Subsequent chunks keep all existing samples up to and including the end
+     *  of the previous chunk, and replace existing samples
+     *  from there on up to the end of the new chunk.
+     *  The result is the same as merging all chunks at once.
+     *
+     *  @param old Existing data
+     *  @param add Newly received data
+     *  @param previous_end Time stamp of the last sample in the previous chunk
+     *  @return Array that combines new and old data
+     */
+    static public PlotSample[] merge(final PlotSample old[], final PlotSample add[], final Instant previous_end)
+    {
+        if (old == null  ||  old.length <= 0)
+            return add;
+        if (add == null  ||  add.length <= 0)
+            return old;
+        final int No = old.length;
+        final int Na = add.length;
+        final Instant add_end = add[Na-1].getPosition();
+
+        // Keep old[0 .. l-1], which are at or before the previous chunk's end
+        int l = PlotSampleSearch.findSampleGreaterThan(old, previous_end);
+        if (l < 0)
+            l = No;
+        // Keep old[r ...], which are after the new chunk
+        int r = PlotSampleSearch.findSampleGreaterThan(old, add_end);
+        if (r < 0)
+            r = No;
+        else if (r < l)
+            r = l;
+        final int Nr = No - r;
+        final PlotSample result[] = new PlotSample[l + Na + Nr];
+        System.arraycopy(old, 0, result, 0, l);
+        System.arraycopy(add, 0, result, l, Na);
+        System.arraycopy(old, r, result, l+Na, Nr);
+        return result;
+    }
 }
@@ -9,6 +9,7 @@ package org.csstudio.trends.databrowser2.model;
 
 import java.time.Instant;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -29,6 +30,17 @@ abstract public class PlotSamples implements PlotDataProvider<Instant>
      */
     final protected AtomicBoolean have_new_samples = new AtomicBoolean();
 
+    /** To be incremented when existing samples change,
+     *  as opposed to newer samples being added at the end
+     *  @see #getRevision()
+     */
+    final protected AtomicLong revision = new AtomicLong();
+
+    /** To be incremented whenever samples change
+     *  @see #getModificationCount()
+     */
+    final protected AtomicLong modifications = new AtomicLong();
+
     /** Lock for writing */
     public void lockForWriting()
     {
@@ -38,6 +50,7 @@ abstract public class PlotSamples implements PlotDataProvider<Instant>
     /** Un-lock after writing */
     public void unlockForWriting()
     {
+        modifications.incrementAndGet();
         lock.writeLock().unlock();
         have_new_samples.set(true);
     }
@@ -74,6 +87,27 @@ abstract public class PlotSamples implements PlotDataProvider<Instant>
         return have_new_samples.getAndSet(false);
     }
 
+    /** Revision of the samples.
+     *  <p>
+     *  Changes whenever samples other than the last one
+     *  might have been changed, removed or inserted.
+     *  When the revision remains the same, only newer samples
+     *  have been added, older samples might have been dropped,
+     *  and the last sample might have been updated.
+     *  @return Revision of the samples
+     */
+    public long getRevision()
+    {
+        return revision.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getModificationCount()
+    {
+        return modifications.get();
+    }
+
     /** @return Info text about PlotSamples for debugging */
     @SuppressWarnings("nls")
     @Override
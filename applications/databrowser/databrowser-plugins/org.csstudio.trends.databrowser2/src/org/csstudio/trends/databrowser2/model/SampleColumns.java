@@ -0,0 +1,560 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.trends.databrowser2.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.csstudio.archive.vtype.ArchiveVNumber;
+import org.csstudio.archive.vtype.ArchiveVStatistics;
+import org.csstudio.archive.vtype.VTypeHelper;
+import org.diirt.vtype.Alarm;
+import org.diirt.vtype.AlarmSeverity;
+import org.diirt.vtype.Display;
+import org.diirt.vtype.Time;
+import org.diirt.vtype.VNumber;
+import org.diirt.vtype.VStatistics;
+import org.diirt.vtype.VType;
+import org.diirt.vtype.ValueFactory;
+
+/** Column-oriented storage of {@link PlotSample}s
+ *
+ *  <p>Scalar numbers and statistics, i.e. most samples,
+ *  are kept in primitive arrays for time stamp, value, severity etc.
+ *  Source, alarm status and display info are kept in small tables
+ *  and referenced by index.
+ *  The type of each number is kept, so integer values remain integers.
+ *  Long values that cannot be represented as double are kept as samples.
+ *  The {@link PlotSample} with its {@link VType} is only created when
+ *  a caller asks for a sample.
+ *  Other samples like arrays, strings or samples with an info text
+ *  are kept as {@link PlotSample}s.
+ *
+ *  <p>The columns are used as a ring buffer by the {@link LiveSamples}
+ *  and as a growing array by the {@link HistoricSamples},
+ *  where ranges of samples are replaced in place.
+ *
+ *  <p>Not thread-safe, all access is via PVSamples.
+ *
+ *  @author agent
+ */
+class SampleColumns
+{
+    /** Maximum number of entries in the string and display tables */
+    final private static int MAX_TABLE_SIZE = Short.MAX_VALUE;
+
+    /** Number of display table entries that are checked for a match */
+    final private static int DISPLAY_SEARCH = 8;
+
+    final private static AlarmSeverity[] severities = AlarmSeverity.values();
+
+    /** Types of numbers in the 'values' column */
+    final private static byte DOUBLE = 0, FLOAT = 1, LONG = 2, INT = 3, SHORT = 4, BYTE = 5;
+
+    /** Waveform index */
+    final private AtomicInteger waveform_index;
+
+    //  Valid entries are [start], [start+1], ..., [start+size-1]
+    //  with wrap-around at [capacity-1].
+    private int capacity, start = 0, size = 0;
+
+    /** Time stamps as nanoseconds since epoch */
+    private long[] times;
+    private double[] values;
+    private byte[] severity;
+
+    /** Type of each value: DOUBLE, FLOAT, ... */
+    private byte[] types;
+
+    /** Index into 'strings' */
+    private short[] sources, statuses;
+
+    /** Index into 'displays' */
+    private short[] display_index;
+
+    /** Statistics, allocated when first needed */
+    private double[] mins, maxs, stddevs;
+    private int[] counts;
+
+    /** Samples that are not kept in the columns, allocated when first needed */
+    private PlotSample[] objects;
+
+    /** Table of sources and alarm status texts */
+    final private List<String> strings = new ArrayList<>();
+    final private Map<String, Short> string_index = new HashMap<>();
+
+    /** Table of display infos */
+    final private List<Display> displays = new ArrayList<>();
+    private int last_display = -1;
+
+    /** @param waveform_index Waveform index used by the samples
+     *  @param capacity Initial capacity
+     */
+    SampleColumns(final AtomicInteger waveform_index, final int capacity)
+    {
+        this.waveform_index = waveform_index;
+        allocate(capacity);
+    }
+
+    /** @param new_capacity Capacity of new, empty columns */
+    private void allocate(final int new_capacity)
+    {
+        capacity = new_capacity;
+        times = new long[capacity];
+        values = new double[capacity];
+        severity = new byte[capacity];
+        types = new byte[capacity];
+        sources = new short[capacity];
+        statuses = new short[capacity];
+        display_index = new short[capacity];
+        mins = maxs = stddevs = null;
+        counts = null;
+        objects = null;
+    }
+
+    /** @return Number of samples */
+    int size()
+    {
+        return size;
+    }
+
+    /** @return Maximum number of samples before the columns need to grow or drop the oldest sample */
+    int getCapacity()
+    {
+        return capacity;
+    }
+
+    /** Delete all samples */
+    void clear()
+    {
+        start = size = 0;
+        if (objects != null)
+            Arrays.fill(objects, null);
+        strings.clear();
+        string_index.clear();
+        displays.clear();
+        last_display = -1;
+    }
+
+    /** @param i Sample index 0 .. size()-1
+     *  @return Index into the columns
+     */
+    private int index(final int i)
+    {
+        final int p = start + i;
+        return p < capacity ? p : p - capacity;
+    }
+
+    /** Set new capacity.
+     *  <p>
+     *  Tries to preserve the newest samples.
+     *  @param new_capacity New sample count capacity
+     *  @throws Exception on out-of-memory error
+     */
+    void setCapacity(final int new_capacity) throws Exception
+    {
+        final int keep = Math.min(size, new_capacity);
+        try
+        {
+            relocate(new_capacity, size - keep, keep, 0);
+        }
+        catch (OutOfMemoryError err)
+        {
+            throw new Exception("Out of memory: " + err.getMessage()); //$NON-NLS-1$
+        }
+    }
+
+    /** Copy samples into new columns
+     *  @param new_capacity Capacity of new columns
+     *  @param first First sample to keep
+     *  @param count Number of samples to keep
+     *  @param offset Index of the first kept sample in the new columns
+     */
+    private void relocate(final int new_capacity, final int first, final int count, final int offset)
+    {
+        final long[] old_times = times;
+        final double[] old_values = values, old_mins = mins, old_maxs = maxs, old_stddevs = stddevs;
+        final byte[] old_severity = severity, old_types = types;
+        final short[] old_sources = sources, old_statuses = statuses, old_display_index = display_index;
+        final int[] old_counts = counts;
+        final PlotSample[] old_objects = objects;
+        final int old_start = start, old_capacity = capacity;
+
+        allocate(new_capacity);
+        if (old_mins != null)
+            allocateStatistics();
+        if (old_objects != null)
+            objects = new PlotSample[capacity];
+
+        // Copy in up to two sections because of wrap-around
+        int done = 0;
+        while (done < count)
+        {
+            final int src = (old_start + first + done) % old_capacity;
+            final int len = Math.min(count - done, old_capacity - src);
+            final int dst = offset + done;
+            System.arraycopy(old_times, src, times, dst, len);
+            System.arraycopy(old_values, src, values, dst, len);
+            System.arraycopy(old_severity, src, severity, dst, len);
+            System.arraycopy(old_types, src, types, dst, len);
+            System.arraycopy(old_sources, src, sources, dst, len);
+            System.arraycopy(old_statuses, src, statuses, dst, len);
+            System.arraycopy(old_display_index, src, display_index, dst, len);
+            if (old_mins != null)
+            {
+                System.arraycopy(old_mins, src, mins, dst, len);
+                System.arraycopy(old_maxs, src, maxs, dst, len);
+                System.arraycopy(old_stddevs, src, stddevs, dst, len);
+                System.arraycopy(old_counts, src, counts, dst, len);
+            }
+            if (old_objects != null)
+                System.arraycopy(old_objects, src, objects, dst, len);
+            done += len;
+        }
+        start = 0;
+        size = count;
+    }
+
+    private void allocateStatistics()
+    {
+        mins = new double[capacity];
+        maxs = new double[capacity];
+        stddevs = new double[capacity];
+        counts = new int[capacity];
+        // Samples added so far have no statistics
+        Arrays.fill(counts, -1);
+    }
+
+    /** Add sample to end of ring buffer,
+     *  dropping the oldest sample when full
+     *  @param sample Sample to add
+     */
+    void add(final PlotSample sample)
+    {
+        if (size >= capacity)
+        {
+            ++start;    // Overwrite oldest element
+            if (start >= capacity)
+                start = 0;
+        }
+        else
+            ++size;
+        set(index(size-1), sample.getSource(), sample.getVType(), sample);
+    }
+
+    /** Replace samples, growing the columns as necessary
+     *  <p>
+     *  Only supported for columns that are not used as a ring buffer.
+     *  @param first Index of first sample to replace
+     *  @param end Index after the last sample to replace
+     *  @param source Source of the new samples
+     *  @param add New samples
+     */
+    void replace(final int first, final int end, final String source, final List<VType> add)
+    {
+        final int tail = size - end;
+        final int new_size = first + add.size() + tail;
+        if (new_size > capacity)
+        {   // Move samples [0, first) and [end, size) into larger columns
+            final int new_capacity = Math.max(new_size, capacity + capacity/2);
+            final SampleColumns old = copy();
+            relocate(new_capacity, 0, first, 0);
+            old.moveTo(this, end, first + add.size(), tail);
+        }
+        else
+        {
+            moveTo(this, end, first + add.size(), tail);
+            // Release samples beyond the new end
+            if (objects != null  &&  new_size < size)
+                Arrays.fill(objects, start + new_size, start + size, null);
+        }
+        size = new_size;
+        for (int i=0; i<add.size(); ++i)
+            set(first + i, source, add.get(i), null);
+    }
+
+    /** @return Shallow copy that references the current columns */
+    private SampleColumns copy()
+    {
+        final SampleColumns copy = new SampleColumns(waveform_index, 0);
+        copy.capacity = capacity;
+        copy.start = start;
+        copy.size = size;
+        copy.times = times;
+        copy.values = values;
+        copy.severity = severity;
+        copy.types = types;
+        copy.sources = sources;
+        copy.statuses = statuses;
+        copy.display_index = display_index;
+        copy.mins = mins;
+        copy.maxs = maxs;
+        copy.stddevs = stddevs;
+        copy.counts = counts;
+        copy.objects = objects;
+        return copy;
+    }
+
+    /** Copy samples from these columns, which must not wrap around, into other columns.
+     *  @param other Target, may be 'this'
+     *  @param first Index of first sample to copy
+     *  @param dst Index in 'other'
+     *  @param count Number of samples to copy
+     */
+    private void moveTo(final SampleColumns other, final int first, final int dst, final int count)
+    {
+        if (count <= 0)
+            return;
+        final int src = start + first;
+        System.arraycopy(times, src, other.times, dst, count);
+        System.arraycopy(values, src, other.values, dst, count);
+        System.arraycopy(severity, src, other.severity, dst, count);
+        System.arraycopy(types, src, other.types, dst, count);
+        System.arraycopy(sources, src, other.sources, dst, count);
+        System.arraycopy(statuses, src, other.statuses, dst, count);
+        System.arraycopy(display_index, src, other.display_index, dst, count);
+        if (mins != null)
+        {
+            if (other.mins == null)
+                other.allocateStatistics();
+            System.arraycopy(mins, src, other.mins, dst, count);
+            System.arraycopy(maxs, src, other.maxs, dst, count);
+            System.arraycopy(stddevs, src, other.stddevs, dst, count);
+            System.arraycopy(counts, src, other.counts, dst, count);
+        }
+        if (objects != null)
+        {
+            if (other.objects == null)
+                other.objects = new PlotSample[other.capacity];
+            System.arraycopy(objects, src, other.objects, dst, count);
+        }
+    }
+
+    /** @param p Index into columns
+     *  @param source Source of the sample
+     *  @param value Value of the sample
+     *  @param sample {@link PlotSample} for the value or <code>null</code>
+     */
+    private void set(final int p, final String source, final VType value, final PlotSample sample)
+    {
+        final byte type = getType(value);
+        if ((sample == null  ||  !sample.hasInfo())  &&
+            type >= 0  &&
+            value instanceof Time)
+        {
+            final short source_index = getStringIndex(source);
+            final short status_index = getStringIndex(((Alarm) value).getAlarmName());
+            final short disp_index = getDisplayIndex((Display) value);
+            if (source_index >= 0  &&  status_index >= 0  &&  disp_index >= 0)
+            {
+                final Instant time = ((Time) value).getTimestamp();
+                times[p] = time.getEpochSecond() * 1000000000L + time.getNano();
+                values[p] = VTypeHelper.toDouble(value);
+                severity[p] = (byte) ((Alarm) value).getAlarmSeverity().ordinal();
+                types[p] = type;
+                sources[p] = source_index;
+                statuses[p] = status_index;
+                display_index[p] = disp_index;
+                if (value instanceof VStatistics)
+                {
+                    if (mins == null)
+                        allocateStatistics();
+                    final VStatistics stats = (VStatistics) value;
+                    mins[p] = stats.getMin();
+                    maxs[p] = stats.getMax();
+                    stddevs[p] = stats.getStdDev();
+                    counts[p] = stats.getNSamples();
+                }
+                else if (mins != null)
+                    counts[p] = -1;
+                if (objects != null)
+                    objects[p] = null;
+                return;
+            }
+        }
+        if (objects == null)
+            objects = new PlotSample[capacity];
+        objects[p] = sample != null ? sample : new PlotSample(waveform_index, source, value);
+        times[p] = PlotSample.toNanos(objects[p].getPosition());
+    }
+
+    /** @param value Value
+     *  @return Type of number that can be kept in 'values', -1 if the value can't be kept in the columns
+     */
+    private static byte getType(final VType value)
+    {
+        if (value instanceof VStatistics)
+            return DOUBLE;
+        if (! (value instanceof VNumber))
+            return -1;
+        final Number number = ((VNumber) value).getValue();
+        if (number instanceof Double)
+            return DOUBLE;
+        if (number instanceof Float)
+            return FLOAT;
+        if (number instanceof Long)
+        {   // Double has 53 bits of mantissa, larger values lose precision
+            final long l = number.longValue();
+            return (long) (double) l == l ? LONG : -1;
+        }
+        if (number instanceof Integer)
+            return INT;
+        if (number instanceof Short)
+            return SHORT;
+        if (number instanceof Byte)
+            return BYTE;
+        return -1;
+    }
+
+    /** @param p Index into columns
+     *  @return Number of original type
+     */
+    private Number getNumber(final int p)
+    {
+        final double value = values[p];
+        switch (types[p])
+        {
+        case FLOAT:
+            return Float.valueOf((float) value);
+        case LONG:
+            return Long.valueOf((long) value);
+        case INT:
+            return Integer.valueOf((int) value);
+        case SHORT:
+            return Short.valueOf((short) value);
+        case BYTE:
+            return Byte.valueOf((byte) value);
+        default:
+            return Double.valueOf(value);
+        }
+    }
+
+    /** @param text Text
+     *  @return Index of text in table, -1 if table is full
+     */
+    private short getStringIndex(final String text)
+    {
+        final Short index = string_index.get(text);
+        if (index != null)
+            return index;
+        if (strings.size() >= MAX_TABLE_SIZE)
+            return -1;
+        final short added = (short) strings.size();
+        strings.add(text);
+        string_index.put(text, added);
+        return added;
+    }
+
+    /** @param display Display info
+     *  @return Index of matching display info in table, -1 if not found and table is full
+     */
+    private short getDisplayIndex(final Display display)
+    {
+        // Most samples use the same display info as the previous sample
+        if (last_display >= 0  &&  sameDisplay(displays.get(last_display), display))
+            return (short) last_display;
+        final int N = displays.size();
+        for (int i=N-1; i>=0 && i>=N-DISPLAY_SEARCH; --i)
+            if (sameDisplay(displays.get(i), display))
+                return (short) (last_display = i);
+        if (N >= MAX_TABLE_SIZE)
+            return -1;
+        displays.add(ValueFactory.newDisplay(display.getLowerDisplayLimit(), display.getLowerAlarmLimit(),
+                display.getLowerWarningLimit(), display.getUnits(), display.getFormat(),
+                display.getUpperWarningLimit(), display.getUpperAlarmLimit(), display.getUpperDisplayLimit(),
+                display.getLowerCtrlLimit(), display.getUpperCtrlLimit()));
+        return (short) (last_display = N);
+    }
+
+    private static boolean sameDisplay(final Display a, final Display b)
+    {
+        return Objects.equals(a.getUnits(), b.getUnits())  &&
+               Objects.equals(a.getFormat(), b.getFormat())  &&
+               Objects.equals(a.getLowerDisplayLimit(), b.getLowerDisplayLimit())  &&
+               Objects.equals(a.getUpperDisplayLimit(), b.getUpperDisplayLimit())  &&
+               Objects.equals(a.getLowerAlarmLimit(), b.getLowerAlarmLimit())  &&
+               Objects.equals(a.getUpperAlarmLimit(), b.getUpperAlarmLimit())  &&
+               Objects.equals(a.getLowerWarningLimit(), b.getLowerWarningLimit())  &&
+               Objects.equals(a.getUpperWarningLimit(), b.getUpperWarningLimit())  &&
+               Objects.equals(a.getLowerCtrlLimit(), b.getLowerCtrlLimit())  &&
+               Objects.equals(a.getUpperCtrlLimit(), b.getUpperCtrlLimit());
+    }
+
+    /** @param i Sample index 0 .. size()-1
+     *  @return Time stamp of sample in nanoseconds since epoch
+     */
+    long getTime(final int i)
+    {
+        return times[index(i)];
+    }
+
+    /** @param i Sample index 0 .. size()-1
+     *  @return Sample
+     */
+    PlotSample get(final int i)
+    {
+        if (i < 0  ||  i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " exceeds size " + size); //$NON-NLS-1$ //$NON-NLS-2$
+        final int p = index(i);
+        if (objects != null  &&  objects[p] != null)
+            return objects[p];
+        final long nanos = times[p];
+        final Instant time = Instant.ofEpochSecond(Math.floorDiv(nanos, 1000000000L), Math.floorMod(nanos, 1000000000L));
+        final AlarmSeverity sevr = severities[severity[p]];
+        final String status = strings.get(statuses[p]);
+        final Display display = displays.get(display_index[p]);
+        final VType value;
+        if (mins != null  &&  counts[p] >= 0)
+            value = new ArchiveVStatistics(time, sevr, status, display, values[p], mins[p], maxs[p], stddevs[p], counts[p]);
+        else
+            value = new ArchiveVNumber(time, sevr, status, display, getNumber(p));
+        return new PlotSample(waveform_index, strings.get(sources[p]), value);
+    }
+
+    /** @param time Time stamp
+     *  @return Index of the first sample at or after the time, <code>size()</code> if there is none
+     */
+    int findFirstAtOrAfter(final Instant time)
+    {
+        final long nanos = PlotSample.toNanos(time);
+        int low = 0, high = size;
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (getTime(mid) < nanos)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** @param time Time stamp
+     *  @return Index of the first sample after the time, <code>size()</code> if there is none
+     */
+    int findFirstAfter(final Instant time)
+    {
+        final long nanos = PlotSample.toNanos(time);
+        int low = 0, high = size;
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (getTime(mid) <= nanos)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
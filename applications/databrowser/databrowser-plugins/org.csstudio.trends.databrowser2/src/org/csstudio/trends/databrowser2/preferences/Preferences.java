@@ -54,6 +54,7 @@ public class Preferences
             OPACITY = "opacity",
             TRACE_TYPE = "trace_type",
             ARCHIVE_FETCH_DELAY = "archive_fetch_delay",
+            ARCHIVE_CACHE_SIZE = "archive_cache_size",
             PLOT_BINS = "plot_bins", URLS = "urls", ARCHIVES = "archives",
             USE_DEFAULT_ARCHIVES = "use_default_archives",
             PROMPT_FOR_ERRORS = "prompt_for_errors",
@@ -163,6 +164,15 @@ public class Preferences
         return delay;
     }
 
+    /** @return Size of archive cache in MB, 0 to disable */
+    public static int getArchiveCacheSize()
+    {
+        final IPreferencesService prefs = Platform.getPreferencesService();
+        if (prefs == null) // Allow some JUnit tests without prefs
+            return 0;
+        return prefs.getInt(Activator.PLUGIN_ID, ARCHIVE_CACHE_SIZE, 100, null);
+    }
+
     public static int getPlotBins()
     {
         final IPreferencesService prefs = Platform.getPreferencesService();
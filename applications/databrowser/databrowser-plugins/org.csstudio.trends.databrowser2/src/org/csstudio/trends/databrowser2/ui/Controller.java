@@ -21,6 +21,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -107,6 +108,16 @@ public class Controller
      */
     private ScheduledFuture<?> archive_fetch_delay_task = null;
 
+    /** Should the next archive retrieval replace cached samples
+     *  with data fetched from the archive?
+     */
+    final private AtomicBoolean archive_refresh = new AtomicBoolean();
+
+    /** Is the time range changed by panning or zooming the plot?
+     *  Only accessed on UI thread
+     */
+    private boolean plot_time_change = false;
+
     /** Currently active archive jobs, used to prevent multiple requests
      *  for the same model item.
      */
@@ -261,6 +272,7 @@ public class Controller
                     end_spec = AbsoluteTimeParser.format(cal);
                 }
                 // Update model's time range
+                plot_time_change = true;
                 try
                 {
                     model.setTimerange(start_spec, end_spec);
@@ -270,6 +282,10 @@ public class Controller
                     Logger.getLogger(Controller.class.getName()).log(Level.WARNING,
                         "Cannot adjust time range to " + start_spec + " .. " + end_spec, ex);
                 }
+                finally
+                {
+                    plot_time_change = false;
+                }
                 // Controller's ModelListener will fetch new archived data
             }
 
@@ -459,7 +475,11 @@ public class Controller
                 else
                     plot.setTimeRange(model.getStartTime(), model.getEndTime());
 
-                // Get matching archived data
+                // Get matching archived data.
+                // Panning and zooming uses cached samples,
+                // other changes like a new time range from the dialog fetch all data
+                if (! plot_time_change)
+                    archive_refresh.set(true);
                 scheduleArchiveRetrieval();
             }
 
@@ -496,7 +516,7 @@ public class Controller
                 // Item may be added in 'middle' of existing traces
                 createPlotTraces();
                 // Get archived data for new item (NOP for non-PVs)
-                getArchivedData(item, model.getStartTime(), model.getEndTime());
+                getArchivedData(item, model.getStartTime(), model.getEndTime(), false);
             }
 
             @Override
@@ -525,13 +545,14 @@ public class Controller
             @Override
             public void changedItemDataConfig(final PVItem item)
             {
-                getArchivedData(item, model.getStartTime(), model.getEndTime());
+                // Archive data sources may have changed, don't use cached samples
+                getArchivedData(item, model.getStartTime(), model.getEndTime(), true);
             }
 
             @Override
             public void itemRefreshRequested(final PVItem item)
             {
-                getArchivedData(item, model.getStartTime(), model.getEndTime());
+                getArchivedData(item, model.getStartTime(), model.getEndTime(), false);
             }
 
             @Override
@@ -577,6 +598,15 @@ public class Controller
         archive_fetch_delay_task = update_timer.schedule(() -> getArchivedData(), archive_fetch_delay, TimeUnit.MILLISECONDS);
     }
 
+    /** Schedule fetching archived data, replacing cached samples with data from the archive
+     *  @see #scheduleArchiveRetrieval()
+     */
+    public void refreshArchivedData()
+    {
+        archive_refresh.set(true);
+        scheduleArchiveRetrieval();
+    }
+
     /** Start model items and initiate scrolling/updates
      *  @throws Exception on error: Already running, problem starting threads, ...
      *  @see #isRunning()
@@ -702,17 +732,19 @@ public class Controller
     {
         final Instant start = model.getStartTime();
         final Instant end = model.getEndTime();
+        final boolean refresh = archive_refresh.getAndSet(false);
         for (ModelItem item : model.getItems())
-            getArchivedData(item, start, end);
+            getArchivedData(item, start, end, refresh);
     }
 
     /** Initiate archive data retrieval for a specific model item
      *  @param item Model item. NOP for non-PVItem
      *  @param start Start time
      *  @param end End time
+     *  @param refresh Replace cached samples with data from the archive?
      */
     private void getArchivedData(final ModelItem item,
-            final Instant start, final Instant end)
+            final Instant start, final Instant end, final boolean refresh)
     {
         // Only useful for PVItems with archive data source
         if (!(item instanceof PVItem))
@@ -723,7 +755,7 @@ public class Controller
 
         // Determine ongoing jobs for this item
         final List<ArchiveFetchJob> ongoing = new ArrayList<>();
-        final ArchiveFetchJob new_job = new ArchiveFetchJob(pv_item, start, end, archive_fetch_listener);
+        final ArchiveFetchJob new_job = new ArchiveFetchJob(pv_item, start, end, archive_fetch_listener, false, refresh);
         synchronized (archive_fetch_jobs)
         {
             for (Iterator<ArchiveFetchJob> iter = archive_fetch_jobs.iterator();  iter.hasNext();  /**/)
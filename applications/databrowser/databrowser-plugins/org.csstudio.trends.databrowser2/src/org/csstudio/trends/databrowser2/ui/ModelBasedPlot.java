@@ -24,6 +24,7 @@ import org.csstudio.swt.rtplot.RTPlotListener;
 import org.csstudio.swt.rtplot.RTTimePlot;
 import org.csstudio.swt.rtplot.Trace;
 import org.csstudio.swt.rtplot.YAxis;
+import org.csstudio.swt.rtplot.data.PlotDataPyramid;
 import org.csstudio.trends.databrowser2.Activator;
 import org.csstudio.trends.databrowser2.Messages;
 import org.csstudio.trends.databrowser2.model.AnnotationInfo;
@@ -32,6 +33,7 @@ import org.csstudio.trends.databrowser2.model.AxisConfig;
 import org.csstudio.trends.databrowser2.model.ChannelInfo;
 import org.csstudio.trends.databrowser2.model.Model;
 import org.csstudio.trends.databrowser2.model.ModelItem;
+import org.csstudio.trends.databrowser2.model.PlotSamples;
 import org.csstudio.trends.databrowser2.preferences.Preferences;
 import org.csstudio.ui.util.dialogs.ExceptionDetailsErrorDialog;
 import org.csstudio.ui.util.dnd.ControlSystemDropTarget;
@@ -307,9 +309,11 @@ public class ModelBasedPlot
      */
     public void addTrace(final ModelItem item)
     {
+        // Summary of the samples allows locating min/max without scanning all samples
+        final PlotSamples samples = item.getSamples();
         final Trace<Instant> trace = plot.addTrace(item.getResolvedDisplayName(),
                 item.getUnits(),
-                item.getSamples(),
+                new PlotDataPyramid<>(samples, samples::getRevision),
                 item.getColor(),
                 item.getTraceType(), item.getLineWidth(),
                 item.getPointType(), item.getPointSize(),
@@ -373,7 +377,7 @@ public class ModelBasedPlot
     private Trace<Instant> findTrace(final ModelItem item)
     {
         for (Trace<Instant> trace : plot.getTraces())
-            if (trace.getData() == item.getSamples())
+            if (items_by_trace.get(trace) == item)
                 return trace;
         throw new IllegalArgumentException("Cannot locate trace for " + item);
     }
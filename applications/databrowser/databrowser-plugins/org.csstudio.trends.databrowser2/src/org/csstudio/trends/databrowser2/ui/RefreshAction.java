@@ -32,6 +32,6 @@ public class RefreshAction extends Action
     @Override
     public void run()
     {
-        controller.scheduleArchiveRetrieval();
+        controller.refreshArchivedData();
     }
 }
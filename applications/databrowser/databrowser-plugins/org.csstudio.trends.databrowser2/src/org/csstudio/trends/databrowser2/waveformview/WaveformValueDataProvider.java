@@ -29,6 +29,8 @@ public class WaveformValueDataProvider implements PlotDataProvider<Double>
 
     private ListNumber numbers = null;
 
+    private long modifications = 0;
+
     /** {@inheritDoc} */
     @Override
     public Lock getLock()
@@ -52,6 +54,7 @@ public class WaveformValueDataProvider implements PlotDataProvider<Double>
         try
         {
             numbers = new_numbers;
+            ++modifications;
         }
         finally
         {
@@ -72,4 +75,11 @@ public class WaveformValueDataProvider implements PlotDataProvider<Double>
     {
         return new SimpleDataItem<Double>((double)index, numbers.getDouble(index));
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getModificationCount()
+    {
+        return modifications;
+    }
 }
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.XMLTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.csstudio.opibuilder.persistence.DisplayCache;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.jdom.Element;
+import org.junit.Test;
+
+/** Plugin test of the {@link DisplayCache}
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class DisplayCacheIT
+{
+    private static void writeDisplay(final File file, final String name) throws Exception
+    {
+        Files.write(file.toPath(),
+                    ("<display typeId=\"org.csstudio.opibuilder.Display\" version=\"1.0.0\"><name>" + name + "</name></display>")
+                    .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDisplayCache() throws Exception
+    {
+        final File file = File.createTempFile("cache", ".opi");
+        file.deleteOnExit();
+        writeDisplay(file, "First");
+        final IPath path = new Path(file.getAbsolutePath());
+
+        final DisplayCache cache = DisplayCache.getInstance();
+        cache.clear();
+
+        final Element first = cache.getDisplay(path);
+        assertThat(first.getChildText("name"), equalTo("First"));
+
+        // Each call receives its own copy
+        final Element again = cache.getDisplay(path);
+        assertThat(again, not(sameInstance(first)));
+        assertThat(again.getChildText("name"), equalTo("First"));
+        first.getChild("name").setText("Changed");
+        assertThat(cache.getDisplay(path).getChildText("name"), equalTo("First"));
+
+        // Updated file is parsed again
+        writeDisplay(file, "Second");
+        file.setLastModified(file.lastModified() + 2000);
+        assertThat(cache.getDisplay(path).getChildText("name"), equalTo("Second"));
+
+        cache.reportStatistics();
+    }
+}
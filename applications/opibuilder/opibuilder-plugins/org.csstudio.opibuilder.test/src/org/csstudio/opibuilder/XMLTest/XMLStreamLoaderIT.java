@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.XMLTest;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.model.DisplayModel;
+import org.csstudio.opibuilder.persistence.LineAwareXMLParser;
+import org.csstudio.opibuilder.persistence.XMLStreamLoader;
+import org.csstudio.opibuilder.persistence.XMLUtil;
+import org.jdom.Element;
+import org.jdom.output.Format;
+import org.jdom.output.XMLOutputter;
+import org.junit.Test;
+
+/** Plugin test of the {@link XMLStreamLoader}
+ *
+ *  <p>Compares with the document-based loader
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class XMLStreamLoaderIT
+{
+    /** @param element XML element
+     *  @return Element as text, ignoring whitespace
+     */
+    private static String toString(final Element element)
+    {
+        return new XMLOutputter(Format.getCompactFormat()).outputString(element);
+    }
+
+    /** Load file with the document-based and streaming loader, compare results
+     *  @param file OPI file
+     *  @throws Exception on error
+     */
+    private void checkFile(final File file) throws Exception
+    {
+        final String message = file.getName();
+
+        final Element root = LineAwareXMLParser.createBuilder().build(file).getRootElement();
+        final DisplayModel expected = new DisplayModel(null);
+        final AbstractWidgetModel expected_root = XMLUtil.fillWidgets(root, expected);
+        final List<String> expected_connections = new ArrayList<>();
+        if (root.getName().equals(XMLUtil.XMLTAG_CONNECTION))
+            expected_connections.add(toString(root));
+        else if (root.getName().equals(XMLUtil.XMLTAG_DISPLAY))
+            for (Object child : root.getChildren(XMLUtil.XMLTAG_CONNECTION))
+                expected_connections.add(toString((Element) child));
+
+        final DisplayModel streamed = new DisplayModel(null);
+        final XMLStreamLoader loader = new XMLStreamLoader(streamed);
+        final AbstractWidgetModel streamed_root;
+        try
+        (
+            final InputStream stream = new FileInputStream(file);
+        )
+        {
+            streamed_root = loader.load(stream);
+        }
+
+        assertThat(message, streamed_root == null, equalTo(expected_root == null));
+        if (expected_root != null)
+            assertThat(message, XMLUtil.widgetToXMLString(streamed_root, true),
+                       equalTo(XMLUtil.widgetToXMLString(expected_root, true)));
+        assertThat(message, XMLUtil.widgetToXMLString(streamed, true),
+                   equalTo(XMLUtil.widgetToXMLString(expected, true)));
+
+        final List<String> streamed_connections = new ArrayList<>();
+        for (Element connection : loader.getConnections())
+            streamed_connections.add(toString(connection));
+        assertThat(message, streamed_connections, equalTo(expected_connections));
+
+        assertThat(message, streamed.getLineNumber(), equalTo(expected.getLineNumber()));
+        final List<AbstractWidgetModel> expected_widgets = expected.getAllDescendants();
+        final List<AbstractWidgetModel> streamed_widgets = streamed.getAllDescendants();
+        assertThat(message, streamed_widgets.size(), equalTo(expected_widgets.size()));
+        for (int i=0; i<expected_widgets.size(); ++i)
+            assertThat(message, streamed_widgets.get(i).getLineNumber(), equalTo(expected_widgets.get(i).getLineNumber()));
+    }
+
+    @Test
+    public void testStreamLoader() throws Exception
+    {
+        for (File file : new File("opi/macros_test").listFiles())
+            checkFile(file);
+    }
+
+    @Test
+    public void testConnections() throws Exception
+    {
+        checkFile(new File("opi/stream_loader_test/Connections.opi"));
+        checkFile(new File("opi/stream_loader_test/ConnectionOnly.opi"));
+    }
+
+    @Test
+    public void testNestedContainer() throws Exception
+    {
+        checkFile(new File("opi/stream_loader_test/NestedContainer.opi"));
+    }
+
+    @Test
+    public void testUnknownWidget() throws Exception
+    {
+        final File file = new File("opi/stream_loader_test/UnknownWidget.opi");
+        checkFile(file);
+
+        // Unknown widget and its content are skipped, following widgets are read
+        final DisplayModel display = new DisplayModel(null);
+        try
+        (
+            final InputStream stream = new FileInputStream(file);
+        )
+        {
+            new XMLStreamLoader(display).load(stream);
+        }
+        final List<AbstractWidgetModel> widgets = display.getAllDescendants();
+        assertThat(widgets.size(), equalTo(2));
+        assertThat(widgets.get(0).getName(), equalTo("Before"));
+        assertThat(widgets.get(1).getName(), equalTo("After"));
+    }
+}
@@ -0,0 +1,574 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.performance;
+
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
+import org.csstudio.opibuilder.editparts.ExecutionMode;
+import org.csstudio.opibuilder.editparts.WidgetEditPartFactory;
+import org.csstudio.opibuilder.model.AbstractPVWidgetModel;
+import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.model.DisplayModel;
+import org.csstudio.opibuilder.persistence.XMLUtil;
+import org.csstudio.opibuilder.util.BOYPVFactory;
+import org.csstudio.opibuilder.util.GUIRefreshThread;
+import org.csstudio.simplepv.IPV;
+import org.csstudio.simplepv.VTypeHelper;
+import org.diirt.vtype.VType;
+import org.eclipse.gef.EditDomain;
+import org.eclipse.gef.GraphicalViewer;
+import org.eclipse.gef.editparts.ScalableRootEditPart;
+import org.eclipse.gef.ui.parts.GraphicalViewerImpl;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+/** Runtime performance benchmark for OPI displays
+ *
+ *  <p>Loads a display into a plain GEF viewer in run mode,
+ *  without workbench, then drives the PVs of its widgets at a given rate.
+ *
+ *  <p>The <code>pv_name</code> of each PV widget is replaced by a
+ *  <code>loc://</code> PV which the benchmark writes.
+ *  Each written value is the time of the write,
+ *  so the latency from write to the UI thread handling the update
+ *  can be computed when the widget receives the value.
+ *  PVs used in rules and scripts are left as they are,
+ *  for example <code>sim://</code> PVs.
+ *
+ *  <p>Needs an SWT {@link Display}, which may be a virtual X server.
+ *  May be called on the UI thread, in which case it runs the event loop
+ *  while waiting, or on another thread while the UI thread runs the event loop.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class RuntimeBenchmark
+{
+    /** Prefix of the PVs written by the benchmark */
+    public static final String PV_PREFIX = "loc://bench";
+
+    /** Period for sampling the GUI refresh queue */
+    private static final long SAMPLE_MS = 10;
+
+    /** Time to wait for all widgets to receive a first value */
+    private static final long CONNECT_TIMEOUT_MS = 30000;
+
+    /** Result of one benchmark run */
+    public static class Result
+    {
+        public String name;
+        public double rate_hz;
+        public int widgets;
+        public double parse_ms, create_ms, connect_ms;
+        public boolean connected;
+        public long writes, updates;
+        public double latency_mean_ms, latency_50_ms, latency_95_ms, latency_99_ms, latency_max_ms;
+        public double queue_mean, queue_max;
+        public double cpu_percent;
+        public double allocation_mb_per_sec;
+        public long gc_count, gc_ms;
+        public double seconds;
+
+        /** @return Result as one line of JSON */
+        public String toJSON()
+        {
+            final StringBuilder buf = new StringBuilder("{");
+            buf.append("\"name\":\"").append(name.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            add(buf, "rate_hz", rate_hz);
+            add(buf, "seconds", seconds);
+            add(buf, "widgets", widgets);
+            add(buf, "parse_ms", parse_ms);
+            add(buf, "create_ms", create_ms);
+            add(buf, "connect_ms", connect_ms);
+            buf.append(",\"connected\":").append(connected);
+            add(buf, "writes", writes);
+            add(buf, "updates", updates);
+            add(buf, "latency_mean_ms", latency_mean_ms);
+            add(buf, "latency_50_ms", latency_50_ms);
+            add(buf, "latency_95_ms", latency_95_ms);
+            add(buf, "latency_99_ms", latency_99_ms);
+            add(buf, "latency_max_ms", latency_max_ms);
+            add(buf, "queue_mean", queue_mean);
+            add(buf, "queue_max", queue_max);
+            add(buf, "cpu_percent", cpu_percent);
+            add(buf, "allocation_mb_per_sec", allocation_mb_per_sec);
+            add(buf, "gc_count", gc_count);
+            add(buf, "gc_ms", gc_ms);
+            return buf.append('}').toString();
+        }
+
+        private static void add(final StringBuilder buf, final String name, final double value)
+        {
+            buf.append(",\"").append(name).append("\":");
+            // JSON has no NaN
+            if (Double.isFinite(value))
+                buf.append(value);
+            else
+                buf.append("null");
+        }
+
+        @Override
+        public String toString()
+        {
+            return toJSON();
+        }
+    }
+
+    /** Statistics of values, accessed on one thread */
+    private static class Statistics
+    {
+        private double[] values = new double[1024];
+        private int count = 0;
+
+        void add(final double value)
+        {
+            if (count >= values.length)
+                values = Arrays.copyOf(values, values.length * 2);
+            values[count++] = value;
+        }
+
+        void clear()
+        {
+            count = 0;
+        }
+
+        double mean()
+        {
+            if (count <= 0)
+                return Double.NaN;
+            double sum = 0;
+            for (int i=0; i<count; ++i)
+                sum += values[i];
+            return sum / count;
+        }
+
+        /** @param fraction 0..1
+         *  @return Percentile, sorts the values
+         */
+        double percentile(final double fraction)
+        {
+            if (count <= 0)
+                return Double.NaN;
+            Arrays.sort(values, 0, count);
+            return values[Math.min(count-1, (int) (fraction * count))];
+        }
+
+        double max()
+        {
+            return percentile(1.0);
+        }
+    }
+
+    private final Display display;
+    private final boolean show;
+
+    /** Widgets with PVs, index in list is index of the PV they use */
+    private final List<AbstractPVWidgetModel> widgets = new ArrayList<>();
+
+    /** Time of start of benchmark, used for the values written to the PVs */
+    private final long start = System.nanoTime();
+
+    /** Write and update counts. Updates and latencies are only accessed on UI thread */
+    private final AtomicLong writes = new AtomicLong();
+    private long updates;
+    private final Statistics latencies = new Statistics();
+    /** Start of measurement, time since start of benchmark in ms. Updates written before are ignored */
+    private volatile double measure_start = Double.MAX_VALUE;
+    private boolean[] received;
+    private int received_count;
+
+    /** Queue samples, only accessed by sampler */
+    private final Statistics queue = new Statistics();
+
+    /** @param display Display to use
+     *  @param show Show the display? Otherwise widgets are updated, but not painted
+     */
+    public RuntimeBenchmark(final Display display, final boolean show)
+    {
+        this.display = display;
+        this.show = show;
+    }
+
+    /** @param widget_count Number of widgets
+     *  @param rules Add a color rule to each widget?
+     *  @return XML for a display with text update widgets that use the benchmark PVs
+     */
+    public static String createDisplay(final int widget_count, final boolean rules)
+    {
+        final int columns = (int) Math.ceil(Math.sqrt(widget_count));
+        final StringBuilder buf = new StringBuilder();
+        buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        buf.append("<display typeId=\"org.csstudio.opibuilder.Display\" version=\"1.0.0\">\n");
+        buf.append("  <width>").append(10 + columns*60).append("</width>\n");
+        buf.append("  <height>").append(10 + columns*25).append("</height>\n");
+        for (int i=0; i<widget_count; ++i)
+        {
+            final String pv = PV_PREFIX + i + "(0)";
+            buf.append("  <widget typeId=\"org.csstudio.opibuilder.widgets.TextUpdate\" version=\"1.0.0\">\n");
+            buf.append("    <x>").append(10 + (i % columns)*60).append("</x>\n");
+            buf.append("    <y>").append(10 + (i / columns)*25).append("</y>\n");
+            buf.append("    <width>55</width>\n");
+            buf.append("    <height>20</height>\n");
+            buf.append("    <pv_name>").append(pv).append("</pv_name>\n");
+            if (rules)
+            {
+                buf.append("    <rules>\n");
+                buf.append("      <rule name=\"Color\" prop_id=\"background_color\" out_exp=\"false\">\n");
+                buf.append("        <exp bool_exp=\"pv0 % 1000 &gt; 500\"><value><color red=\"255\" green=\"0\" blue=\"0\" /></value></exp>\n");
+                buf.append("        <pv trig=\"true\">").append(pv).append("</pv>\n");
+                buf.append("      </rule>\n");
+                buf.append("    </rules>\n");
+            }
+            buf.append("  </widget>\n");
+        }
+        buf.append("</display>\n");
+        return buf.toString();
+    }
+
+    /** Run the benchmark
+     *  @param name Name of the display
+     *  @param opi Provides stream for the display file, which is closed after parsing
+     *  @param rate_hz Rate at which PVs are written
+     *  @param seconds Duration of the measurement
+     *  @return Result
+     *  @throws Exception on error
+     */
+    public Result run(final String name, final Callable<InputStream> opi,
+                      final double rate_hz, final double seconds) throws Exception
+    {
+        final Result result = new Result();
+        result.name = name;
+        result.rate_hz = rate_hz;
+        result.seconds = seconds;
+
+        // Load display
+        long t0 = System.nanoTime();
+        final DisplayModel model = new DisplayModel(null);
+        try
+        (
+            final InputStream stream = opi.call();
+        )
+        {
+            XMLUtil.fillDisplayModelFromInputStream(stream, model);
+        }
+        result.parse_ms = (System.nanoTime() - t0) / 1e6;
+
+        // Use benchmark PVs
+        widgets.clear();
+        for (AbstractWidgetModel widget : model.getAllDescendants())
+            if (widget instanceof AbstractPVWidgetModel)
+            {
+                final AbstractPVWidgetModel pv_widget = (AbstractPVWidgetModel) widget;
+                if (pv_widget.getPVName().trim().isEmpty())
+                    continue;
+                final String pv = PV_PREFIX + widgets.size() + "(0)";
+                if (! pv_widget.getPVName().equals(pv))
+                    pv_widget.setPropertyValue(AbstractPVWidgetModel.PROP_PVNAME, pv);
+                widgets.add(pv_widget);
+            }
+        result.widgets = widgets.size();
+        received = new boolean[widgets.size()];
+        received_count = 0;
+
+        // Create edit parts, which starts the PVs
+        final Shell[] shell = new Shell[1];
+        final GraphicalViewer[] viewer = new GraphicalViewer[1];
+        t0 = System.nanoTime();
+        ui(() -> shell[0] = createViewer(model, viewer));
+        result.create_ms = (System.nanoTime() - t0) / 1e6;
+        t0 = System.nanoTime();
+
+        final List<IPV> pvs = new ArrayList<>(widgets.size());
+        final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+        try
+        {
+            for (int i=0; i<widgets.size(); ++i)
+            {
+                final IPV pv = BOYPVFactory.createPV(PV_PREFIX + i + "(0)");
+                pv.start();
+                pvs.add(pv);
+            }
+
+            // Wait for every widget to show a value
+            write(pvs);
+            result.connected = waitUntil(() -> received_count >= widgets.size(), CONNECT_TIMEOUT_MS);
+            result.connect_ms = (System.nanoTime() - t0) / 1e6;
+
+            // Measure updates
+            final GUIRefreshThread refresh = GUIRefreshThread.getInstance(true);
+            ui(() ->
+            {
+                latencies.clear();
+                updates = 0;
+            });
+            queue.clear();
+            writes.set(0);
+            final long[] allocated = getAllocatedBytes();
+            final long cpu = getProcessCpuTime();
+            final long[] gc = getGC();
+            t0 = System.nanoTime();
+            measure_start = getTime();
+
+            timer.scheduleAtFixedRate(() -> queue.add(refresh.getQueueSize()), 0, SAMPLE_MS, TimeUnit.MILLISECONDS);
+            timer.scheduleAtFixedRate(() -> write(pvs), 0, Math.round(1e6 / rate_hz), TimeUnit.MICROSECONDS);
+            waitUntil(() -> false, Math.round(seconds * 1000));
+            timer.shutdown();
+            timer.awaitTermination(10, TimeUnit.SECONDS);
+            measure_start = Double.MAX_VALUE;
+
+            final double elapsed = (System.nanoTime() - t0) / 1e9;
+            final long cpu_used = getProcessCpuTime() - cpu;
+            result.cpu_percent = cpu < 0 ? Double.NaN : 100.0 * cpu_used / 1e9 / elapsed;
+            result.allocation_mb_per_sec = getAllocationRate(allocated, elapsed);
+            final long[] gc_used = getGC();
+            result.gc_count = gc_used[0] - gc[0];
+            result.gc_ms = gc_used[1] - gc[1];
+            result.queue_mean = queue.mean();
+            result.queue_max = queue.max();
+            result.writes = writes.get();
+            ui(() ->
+            {
+                result.updates = updates;
+                result.latency_mean_ms = latencies.mean();
+                result.latency_50_ms = latencies.percentile(0.5);
+                result.latency_95_ms = latencies.percentile(0.95);
+                result.latency_99_ms = latencies.percentile(0.99);
+                result.latency_max_ms = latencies.max();
+            });
+        }
+        finally
+        {
+            timer.shutdownNow();
+            for (IPV pv : pvs)
+                pv.stop();
+            ui(() ->
+            {
+                model.setViewer(null);
+                viewer[0].setContents(null);
+                shell[0].dispose();
+            });
+        }
+        return result;
+    }
+
+    /** Create viewer for the display, on UI thread
+     *  @param model Display model
+     *  @param viewer Set to the viewer
+     *  @return Shell that holds the viewer
+     */
+    private Shell createViewer(final DisplayModel model, final GraphicalViewer[] viewer)
+    {
+        final Shell shell = new Shell(display);
+        shell.setLayout(new FillLayout());
+        viewer[0] = new GraphicalViewerImpl();
+        viewer[0].createControl(shell);
+        viewer[0].setEditPartFactory(new WidgetEditPartFactory(ExecutionMode.RUN_MODE));
+        viewer[0].setRootEditPart(new ScalableRootEditPart());
+        new EditDomain().addViewer(viewer[0]);
+        viewer[0].setContents(model);
+        model.setViewer(viewer[0]);
+
+        // Handle PV updates like the widget, on the UI thread
+        for (int i=0; i<widgets.size(); ++i)
+        {
+            final int index = i;
+            final AbstractBaseEditPart part = (AbstractBaseEditPart) viewer[0].getEditPartRegistry().get(widgets.get(i));
+            if (part != null)
+                part.setPropertyChangeHandler(AbstractPVWidgetModel.PROP_PVVALUE,
+                    (old_value, new_value, figure) -> handleUpdate(index, new_value));
+        }
+
+        if (show)
+        {
+            shell.setSize(model.getSize().width, model.getSize().height);
+            shell.open();
+        }
+        return shell;
+    }
+
+    /** @param index Widget index
+     *  @param value Value received by widget
+     *  @return <code>false</code>
+     */
+    private boolean handleUpdate(final int index, final Object value)
+    {
+        if (! received[index])
+        {
+            received[index] = true;
+            ++received_count;
+        }
+        if (value instanceof VType)
+        {
+            final double written = VTypeHelper.getDouble((VType) value);
+            if (written >= measure_start)
+            {
+                latencies.add(getTime() - written);
+                ++updates;
+            }
+        }
+        return false;
+    }
+
+    /** @return Time since start of benchmark in ms */
+    private double getTime()
+    {
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Write current time to all PVs
+     *  @param pvs PVs
+     */
+    private void write(final List<IPV> pvs)
+    {
+        for (IPV pv : pvs)
+        {
+            try
+            {
+                pv.setValue(getTime());
+                writes.incrementAndGet();
+            }
+            catch (Exception ex)
+            {
+                throw new RuntimeException("Cannot write " + pv.getName(), ex);
+            }
+        }
+    }
+
+    /** Execute on UI thread, wait for completion
+     *  @param runnable Runnable to execute
+     */
+    private void ui(final Runnable runnable)
+    {
+        if (Display.getCurrent() == display)
+            runnable.run();
+        else
+            display.syncExec(runnable);
+    }
+
+    /** Wait for condition, running the event loop when called on UI thread
+     *  @param condition Condition to await, checked on UI thread
+     *  @param timeout_ms Timeout
+     *  @return <code>true</code> if condition was met, <code>false</code> on timeout
+     *  @throws InterruptedException on interruption
+     */
+    private boolean waitUntil(final BooleanSupplier condition, final long timeout_ms) throws InterruptedException
+    {
+        final long end = System.currentTimeMillis() + timeout_ms;
+        final boolean[] met = new boolean[1];
+        while (System.currentTimeMillis() < end)
+        {
+            ui(() -> met[0] = condition.getAsBoolean());
+            if (met[0])
+                return true;
+            if (Display.getCurrent() == display)
+            {
+                if (! display.readAndDispatch())
+                {   // Wake up to check condition and timeout
+                    display.timerExec(10, () -> {});
+                    display.sleep();
+                }
+            }
+            else
+                Thread.sleep(10);
+        }
+        return false;
+    }
+
+    /** @return Process CPU time in ns, -1 if not supported by JVM */
+    private static long getProcessCpuTime()
+    {
+        try
+        {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            return (Long) server.getAttribute(new ObjectName(ManagementFactory.OPERATING_SYSTEM_MXBEAN_NAME), "ProcessCpuTime");
+        }
+        catch (Exception ex)
+        {
+            return -1;
+        }
+    }
+
+    /** @return Thread IDs and bytes allocated by all threads, or <code>null</code> if not supported by JVM */
+    private static long[] getAllocatedBytes()
+    {
+        try
+        {
+            final long[] ids = ManagementFactory.getThreadMXBean().getAllThreadIds();
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final long[] bytes = (long[]) server.invoke(new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME), "getThreadAllocatedBytes",
+                                                        new Object[] { ids }, new String[] { long[].class.getName() });
+            // Combine IDs and bytes in one array
+            final long[] result = Arrays.copyOf(ids, 2*ids.length);
+            System.arraycopy(bytes, 0, result, ids.length, ids.length);
+            return result;
+        }
+        catch (Exception ex)
+        {
+            return null;
+        }
+    }
+
+    /** Allocation rate of all threads that are alive at the end.
+     *  Threads that ended during the measurement are not included.
+     *  @param start Thread IDs and allocated bytes at start
+     *  @param seconds Elapsed time
+     *  @return Allocation rate in MB/sec, NaN if not supported by JVM
+     */
+    private static double getAllocationRate(final long[] start, final double seconds)
+    {
+        if (start == null)
+            return Double.NaN;
+        final long[] end = getAllocatedBytes();
+        if (end == null)
+            return Double.NaN;
+        final int start_count = start.length / 2, end_count = end.length / 2;
+        long total = 0;
+        for (int i=0; i<end_count; ++i)
+        {
+            if (end[end_count + i] < 0)
+                continue;
+            long before = 0;
+            for (int j=0; j<start_count; ++j)
+                if (start[j] == end[i])
+                {
+                    before = Math.max(0, start[start_count + j]);
+                    break;
+                }
+            total += end[end_count + i] - before;
+        }
+        return total / 1024.0 / 1024.0 / seconds;
+    }
+
+    /** @return Number of garbage collections and their time in ms */
+    private static long[] getGC()
+    {
+        final long[] result = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            result[0] += Math.max(0, gc.getCollectionCount());
+            result[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.performance;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.csstudio.opibuilder.OPIBuilderPlugin;
+import org.csstudio.opibuilder.performance.RuntimeBenchmark.Result;
+import org.csstudio.opibuilder.preferences.PreferencesHelper;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.swt.widgets.Display;
+import org.junit.Test;
+
+/** Run the {@link RuntimeBenchmark} for generated displays
+ *  and the displays in org.csstudio.opibuilder.performanceTest
+ *
+ *  <p>Run as JUnit plug-in test.
+ *  Takes several minutes, so it is not part of the build.
+ *
+ *  <p>Writes one line of JSON for each display and update rate
+ *  so results of different builds can be compared.
+ *
+ *  <p>System properties:
+ *  <ul>
+ *  <li>opibuilder.benchmark.rates: Update rates in Hz, default "1,10,100"
+ *  <li>opibuilder.benchmark.seconds: Duration of each measurement, default 10
+ *  <li>opibuilder.benchmark.files: Directory with *.opi files, default ../org.csstudio.opibuilder.performanceTest/ScalabilityTests
+ *  <li>opibuilder.benchmark.output: Result file, default opi_benchmark.json
+ *  <li>opibuilder.benchmark.show: Show the displays, default true
+ *  </ul>
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class RuntimeBenchmarkDemo
+{
+    private final double[] rates = Arrays.stream(System.getProperty("opibuilder.benchmark.rates", "1,10,100").split(","))
+                                         .mapToDouble(rate -> Double.parseDouble(rate.trim()))
+                                         .toArray();
+    private final double seconds = Double.parseDouble(System.getProperty("opibuilder.benchmark.seconds", "10"));
+    private final File files = new File(System.getProperty("opibuilder.benchmark.files", "../org.csstudio.opibuilder.performanceTest/ScalabilityTests"));
+    private final File output = new File(System.getProperty("opibuilder.benchmark.output", "opi_benchmark.json"));
+    private final boolean show = Boolean.parseBoolean(System.getProperty("opibuilder.benchmark.show", "true"));
+
+    private RuntimeBenchmark benchmark;
+    private PrintStream out;
+
+    @Test
+    public void runBenchmark() throws Exception
+    {
+        benchmark = new RuntimeBenchmark(Display.getDefault(), show);
+        final IEclipsePreferences prefs = InstanceScope.INSTANCE.getNode(OPIBuilderPlugin.PLUGIN_ID);
+        try
+        (
+            final PrintStream out = new PrintStream(output, StandardCharsets.UTF_8.name());
+        )
+        {
+            this.out = out;
+            for (int widgets : new int[] { 100, 1000 })
+                runGenerated("generated_" + widgets, RuntimeBenchmark.createDisplay(widgets, false));
+
+            // Compare rules executed as scripts and in Java
+            final String rules = RuntimeBenchmark.createDisplay(1000, true);
+            prefs.putBoolean(PreferencesHelper.NATIVE_RULES, false);
+            runGenerated("generated_rules_script_1000", rules);
+            prefs.putBoolean(PreferencesHelper.NATIVE_RULES, true);
+            runGenerated("generated_rules_native_1000", rules);
+            prefs.remove(PreferencesHelper.NATIVE_RULES);
+
+            final File[] opis = files.listFiles((dir, name) -> name.endsWith(".opi"));
+            if (opis == null)
+                System.out.println("No displays in " + files.getAbsolutePath());
+            else
+            {
+                Arrays.sort(opis);
+                for (File opi : opis)
+                    for (double rate : rates)
+                        report(benchmark.run(opi.getName(), () -> new FileInputStream(opi), rate, seconds));
+            }
+        }
+        finally
+        {
+            prefs.remove(PreferencesHelper.NATIVE_RULES);
+        }
+        System.out.println("Results are in " + output.getAbsolutePath());
+    }
+
+    private void runGenerated(final String name, final String xml) throws Exception
+    {
+        final byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        for (double rate : rates)
+            report(benchmark.run(name, () -> new ByteArrayInputStream(bytes), rate, seconds));
+    }
+
+    private void report(final Result result)
+    {
+        final String json = result.toJSON();
+        System.out.println(json);
+        out.println(json);
+        out.flush();
+    }
+}
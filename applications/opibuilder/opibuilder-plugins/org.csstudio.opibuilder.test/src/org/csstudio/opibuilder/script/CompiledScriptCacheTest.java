@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/** JUnit test of the {@link CompiledScriptCache}
+ *
+ *  <p>'Compiles' scripts by counting, then returning the text
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class CompiledScriptCacheTest
+{
+    private final CompiledScriptCache cache = CompiledScriptCache.getInstance();
+    private final AtomicInteger compilations = new AtomicInteger();
+
+    @Before
+    public void setup()
+    {
+        cache.clear();
+    }
+
+    private String compile(final String text)
+    {
+        compilations.incrementAndGet();
+        return text;
+    }
+
+    private String compile(final BufferedReader reader) throws Exception
+    {
+        compilations.incrementAndGet();
+        return reader.readLine();
+    }
+
+    @Test
+    public void testText() throws Exception
+    {
+        assertThat(cache.get("engine", "x = 1", () -> compile("x = 1")), equalTo("x = 1"));
+        assertThat(cache.get("engine", "x = 1", () -> compile("x = 1")), equalTo("x = 1"));
+        assertThat(compilations.get(), equalTo(1));
+
+        // Different engine needs its own compiled script
+        cache.get("other", "x = 1", () -> compile("x = 1"));
+        assertThat(compilations.get(), equalTo(2));
+    }
+
+    @Test
+    public void testFile() throws Exception
+    {
+        final File file = File.createTempFile("script", ".js");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(cache.get("engine", file, new FileInputStream(file), reader -> compile(new BufferedReader(reader))),
+                   equalTo("first"));
+        assertThat(cache.get("engine", file, new FileInputStream(file), reader -> compile(new BufferedReader(reader))),
+                   equalTo("first"));
+        assertThat(compilations.get(), equalTo(1));
+
+        // Modified file is compiled again
+        Files.write(file.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(file.lastModified() + 2000);
+        assertThat(cache.get("engine", file, new FileInputStream(file), reader -> compile(new BufferedReader(reader))),
+                   equalTo("second"));
+        assertThat(compilations.get(), equalTo(2));
+
+        // Stream without file is identified by its text
+        assertThat(cache.get("engine", null, new ByteArrayInputStream("second".getBytes()), reader -> compile(new BufferedReader(reader))),
+                   equalTo("second"));
+        assertThat(cache.get("engine", null, new ByteArrayInputStream("second".getBytes()), reader -> compile(new BufferedReader(reader))),
+                   equalTo("second"));
+        assertThat(compilations.get(), equalTo(3));
+    }
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/** JUnit test of the {@link RuleExpression}
+ *
+ *  <p>Expected results are those of JavaScript
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class RuleExpressionTest
+{
+    private static Object evaluate(final String text, final Object... values)
+    {
+        final RuleExpression expression = new RuleExpression(text);
+        assertThat(expression.getVariables().size(), equalTo(values.length));
+        return expression.evaluate(values);
+    }
+
+    private static void assertUnsupported(final String text)
+    {
+        try
+        {
+            new RuleExpression(text);
+            fail("Compiled " + text);
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            System.out.println(ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testNumbers()
+    {
+        assertThat(evaluate("1 + 2 * 3"), equalTo(7.0));
+        assertThat(evaluate("(1 + 2) * 3"), equalTo(9.0));
+        assertThat(evaluate("10 - 4 - 3"), equalTo(3.0));
+        assertThat(evaluate("7 % 4 + -2"), equalTo(1.0));
+        assertThat(evaluate("0x10 + .5 + 1e1"), equalTo(26.5));
+        assertThat(evaluate("pv0 * 2", 21.0), equalTo(42.0));
+        assertThat(evaluate("pvInt0 + 1", 41L), equalTo(42.0));
+    }
+
+    @Test
+    public void testConditions()
+    {
+        assertThat(evaluate("pv0 > 5", 6.0), equalTo(true));
+        assertThat(evaluate("pv0 > 5", 5.0), equalTo(false));
+        assertThat(evaluate("pv0>=5&&pv0<=10", 5.0), equalTo(true));
+        assertThat(evaluate("pvSev0 == 2 || pvSev1 == 1", 0.0, 1.0), equalTo(true));
+        assertThat(evaluate("!(pv0 == 1)", 1.0), equalTo(false));
+        assertThat(evaluate("pv0 != pv1", Double.NaN, Double.NaN), equalTo(true));
+        assertThat(evaluate("pv0 < 1", Double.NaN), equalTo(false));
+        assertThat(evaluate("pv0 >= 1", Double.NaN), equalTo(false));
+        assertThat(evaluate("pvInt0 == 3", 3L), equalTo(true));
+        assertThat(evaluate("true"), equalTo(true));
+    }
+
+    @Test
+    public void testStrings()
+    {
+        assertThat(evaluate("pvStr0 == \"ON\"", "ON"), equalTo(true));
+        assertThat(evaluate("pvStr0 != 'ON'", "OFF"), equalTo(true));
+        assertThat(evaluate("pvStr0 == 3", " 3 "), equalTo(true));
+        assertThat(evaluate("pvStr0 == 0", ""), equalTo(true));
+        assertThat(evaluate("pvStr0 == 1", "true"), equalTo(false));
+        assertThat(evaluate("pvStr0 < \"b\"", "a"), equalTo(true));
+        assertThat(evaluate("\"10\" < \"9\""), equalTo(true));
+        assertThat(evaluate("\"10\" < 9"), equalTo(false));
+        assertThat(evaluate("pvStr0 + \" mm\"", "5"), equalTo("5 mm"));
+        assertThat(evaluate("'a\\'b'"), equalTo("a'b"));
+        assertThat(evaluate("true == 1"), equalTo(true));
+    }
+
+    @Test
+    public void testValues()
+    {
+        assertThat(evaluate("pv0 > 5 ? \"red\" : \"green\"", 6.0), equalTo("red"));
+        assertThat(evaluate("pv0 > 5 ? \"red\" : \"green\"", 4.0), equalTo("green"));
+        assertThat(evaluate("pv0 || pv1", 0.0, 2.0), equalTo(2.0));
+        assertThat(evaluate("pv0 && pv1", 0.0, 2.0), equalTo(0.0));
+        assertThat(evaluate("pvStr0", "Text"), equalTo("Text"));
+        assertThat(evaluate("pvInt0", 7L), equalTo(7L));
+    }
+
+    @Test
+    public void testSharedVariables()
+    {
+        final RuleExpression expression = new RuleExpression("pv0 + pv1 + pv0 + pvSev0");
+        assertThat(expression.getVariables().size(), equalTo(3));
+        assertThat(expression.getVariables().get(0).toString(), equalTo("pv0"));
+        assertThat(expression.getVariables().get(1).toString(), equalTo("pv1"));
+        assertThat(expression.getVariables().get(2).toString(), equalTo("pvSev0"));
+        assertThat(expression.evaluate(new Object[] { 1.0, 2.0, -1.0 }), equalTo(3.0));
+    }
+
+    @Test
+    public void testUnsupported()
+    {
+        // Left for the script engine
+        assertUnsupported("Math.abs(pv0) > 5");
+        assertUnsupported("pvs[0].getValue() != null");
+        assertUnsupported("pv0 = 5");
+        assertUnsupported("pv0 === 5");
+        assertUnsupported("pv0++ > 5");
+        assertUnsupported("pv0 & 1");
+        assertUnsupported("pv01 > 5");
+        assertUnsupported("010 == 8");
+        assertUnsupported("pvStr0 + 1");
+        assertUnsupported("pv0 > ");
+        assertUnsupported("(pv0 > 5");
+        // Java objects that differ from plain values in JavaScript
+        assertUnsupported("!pvStr0");
+        assertUnsupported("pvInt0 && true");
+        assertUnsupported("pvStr0 == pvStr1");
+    }
+}
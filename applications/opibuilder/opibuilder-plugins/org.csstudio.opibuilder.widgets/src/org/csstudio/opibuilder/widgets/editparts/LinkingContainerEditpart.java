@@ -218,9 +218,8 @@ public class LinkingContainerEditpart extends AbstractLinkingContainerEditpart{
             getWidgetModel().setDisplayModel(tempDisplayModel);
             try {
                 if (! path.isEmpty())
-                    XMLUtil.fillDisplayModelFromInputStream(
-                            ResourceUtil.pathToInputStream(path), tempDisplayModel,
-                            getViewer().getControl().getDisplay());
+                    XMLUtil.fillDisplayModelFromPath(path, tempDisplayModel,
+                            getViewer().getControl().getDisplay(), null);
             } catch (Exception e) {
                 OPIBuilderPlugin.getLogger().log(Level.WARNING, "Could not reload the linking container.",e);
             }
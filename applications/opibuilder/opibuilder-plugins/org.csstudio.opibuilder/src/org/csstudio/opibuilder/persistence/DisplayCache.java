@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.persistence;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.csstudio.opibuilder.preferences.PreferencesHelper;
+import org.csstudio.opibuilder.util.ConsoleService;
+import org.csstudio.opibuilder.util.ResourceUtil;
+import org.eclipse.core.runtime.IPath;
+import org.jdom.Element;
+
+/** Cache of parsed display files
+ *
+ *  <p>Displays which embed the same OPI file many times,
+ *  for example in linking containers,
+ *  only need to read and parse that file once.
+ *  Each user receives a copy of the cached XML,
+ *  from which it creates its own widget models with its own macros.
+ *
+ *  <p>Files are identified by their location and modification time,
+ *  so a file that's changed will be parsed again.
+ *  Files that are not on the local file system, for example URLs,
+ *  are not cached.
+ *  The number of cached files is limited by a preference,
+ *  dropping the least recently used files.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class DisplayCache
+{
+    /** Cached display file */
+    private static class Entry
+    {
+        final long modified;
+        final Element root;
+
+        Entry(final long modified, final Element root)
+        {
+            this.modified = modified;
+            this.root = root;
+        }
+    }
+
+    private static final DisplayCache instance = new DisplayCache();
+
+    /** Maximum number of cached files, read from preferences */
+    private volatile int max_size = 0;
+
+    /** Cached files by location, in order of access. SYNC on access */
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest)
+        {
+            return size() > max_size;
+        }
+    };
+
+    /** Statistics. SYNC on cache */
+    private long hits = 0, misses = 0, reported_hits = 0, reported_misses = 0;
+
+    private DisplayCache()
+    {
+        // Singleton
+    }
+
+    /** @return Instance of the display cache */
+    public static DisplayCache getInstance()
+    {
+        return instance;
+    }
+
+    /** Get root element of display file
+     *  @param path Path to display file, with macros already resolved
+     *  @return Root element of the display. Caller may modify it.
+     *  @throws Exception on error
+     */
+    public Element getDisplay(final IPath path) throws Exception
+    {
+        max_size = PreferencesHelper.getDisplayCacheSize();
+        final File file = max_size > 0 ? ResourceUtil.getFile(path) : null;
+        if (file == null)
+            return parse(path);
+
+        final String key = file.getPath();
+        final long modified = file.lastModified();
+        synchronized (cache)
+        {
+            final Entry entry = cache.get(key);
+            if (entry != null  &&  entry.modified == modified)
+            {
+                ++hits;
+                return (Element) entry.root.clone();
+            }
+            ++misses;
+        }
+
+        // Parse outside of the lock.
+        // In case another thread parses the same file, one of the results is cached.
+        final Element root = parse(path);
+        synchronized (cache)
+        {
+            cache.put(key, new Entry(modified, root));
+        }
+        return (Element) root.clone();
+    }
+
+    private Element parse(final IPath path) throws Exception
+    {
+        try
+        (
+            final InputStream stream = ResourceUtil.pathToInputStream(path);
+        )
+        {
+            return XMLUtil.inputStreamToXML(stream);
+        }
+    }
+
+    /** Remove all cached files */
+    public void clear()
+    {
+        synchronized (cache)
+        {
+            cache.clear();
+        }
+    }
+
+    /** Write hit/miss statistics to the console
+     *  if the cache was used since the last report
+     */
+    public void reportStatistics()
+    {
+        final String message;
+        synchronized (cache)
+        {
+            if (hits == reported_hits  &&  misses == reported_misses)
+                return;
+            reported_hits = hits;
+            reported_misses = misses;
+            message = "Display cache: " + hits + " hits, " + misses + " misses, " + cache.size() + " files cached";
+        }
+        ConsoleService.getInstance().writeInfo(message);
+    }
+}
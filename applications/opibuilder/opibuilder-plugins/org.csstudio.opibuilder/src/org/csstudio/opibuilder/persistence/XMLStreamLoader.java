@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.persistence;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.csstudio.opibuilder.model.AbstractContainerModel;
+import org.csstudio.opibuilder.model.AbstractWidgetModel;
+import org.csstudio.opibuilder.model.DisplayModel;
+import org.csstudio.opibuilder.persistence.LineAwareXMLParser.LineAwareElement;
+import org.csstudio.opibuilder.util.ConsoleService;
+import org.csstudio.opibuilder.util.ErrorHandlerUtil;
+import org.csstudio.opibuilder.util.WidgetDescriptor;
+import org.csstudio.opibuilder.util.WidgetsService;
+import org.eclipse.osgi.util.NLS;
+import org.jdom.CDATA;
+import org.jdom.Comment;
+import org.jdom.Element;
+import org.jdom.Namespace;
+import org.osgi.framework.Version;
+
+/** Loader that streams an OPI file into widget models
+ *
+ *  <p>Creates the same models as {@link XMLUtil#fillWidgets(Element, DisplayModel)},
+ *  but reads the file with StAX instead of first building a document for the complete file.
+ *  Only the XML of each property is turned into a small {@link Element},
+ *  since that is what the widget properties read.
+ *
+ *  <p>Widgets are created as their start tag is read and their properties are set as they arrive.
+ *  Adding widgets to their container and adjusting them for the BOY version of the file
+ *  is postponed to the end of the file, in the same order as the
+ *  document-based loader, so that the result does not depend on the order of the
+ *  properties in the file.
+ *
+ *  <p>Connections need all widgets, so they are only collected
+ *  and need to be created after the file has been loaded,
+ *  see {@link #getConnections()}.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class XMLStreamLoader
+{
+    private static final XMLInputFactory factory = createFactory();
+
+    /** Root display model, may be <code>null</code> */
+    private final DisplayModel displayModel;
+
+    /** Steps to complete the widgets once all have been read */
+    private final List<Runnable> completion = new ArrayList<>();
+
+    /** XML of the connections */
+    private final List<Element> connections = new ArrayList<>();
+
+    private XMLStreamReader reader;
+
+    private static XMLInputFactory createFactory()
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /** @param displayModel the root display model. If root of the file is a display, use this display model as root model
+     *                      instead of creating a new one. If this is null, a new one will be created.
+     */
+    public XMLStreamLoader(final DisplayModel displayModel)
+    {
+        this.displayModel = displayModel;
+    }
+
+    /** Load widgets from stream
+     *  @param stream Stream for the OPI file. Caller needs to close it.
+     *  @return Root widget model, <code>null</code> if the file does not contain a widget
+     *  @throws Exception on error
+     */
+    public AbstractWidgetModel load(final InputStream stream) throws Exception
+    {
+        reader = factory.createXMLStreamReader(stream);
+        try
+        {
+            reader.nextTag();
+            final String name = reader.getLocalName();
+            final AbstractWidgetModel result;
+            if (name.equals(XMLUtil.XMLTAG_CONNECTION))
+            {   // Only a connection: Connection model as well as connection to display
+                final Element element = readElement();
+                result = XMLUtil.fillWidgets(element, displayModel);
+                connections.add(element);
+            }
+            else if (XMLUtil.WIDGET_TAGS.contains(name))
+                result = readWidget(true);
+            else
+            {
+                ConsoleService.getInstance().writeError("Unknown Tag: " + name);
+                return null;
+            }
+            for (Runnable step : completion)
+                step.run();
+            return result;
+        }
+        finally
+        {
+            reader.close();
+            reader = null;
+            completion.clear();
+        }
+    }
+
+    /** @return XML of the connections in the file, to be created once the widgets have been loaded */
+    public List<Element> getConnections()
+    {
+        return connections;
+    }
+
+    /** Read display or widget, positioned on its start tag
+     *  @param is_root Is this the root of the file?
+     *  @return Widget model, <code>null</code> if it could not be created
+     *  @throws Exception on error
+     */
+    private AbstractWidgetModel readWidget(final boolean is_root) throws Exception
+    {
+        final String name = reader.getLocalName();
+        final AbstractWidgetModel model;
+        if (name.equals(XMLUtil.XMLTAG_DISPLAY))
+            model = displayModel != null ? displayModel : new DisplayModel(null);
+        else
+        {
+            final String typeId = reader.getAttributeValue(null, XMLUtil.XMLATTR_TYPEID);
+            final WidgetDescriptor desc = WidgetsService.getInstance().getWidgetDescriptor(typeId);
+            model = desc == null ? null : desc.getWidgetModel();
+            if (model == null)
+            {
+                final String errorMessage = NLS.bind("Fail to load the widget: {0}\n " +
+                    "The widget may not exist, as a consequence, the widget will be ignored.", typeId);
+                ErrorHandlerUtil.handleError(errorMessage, new Exception("Widget does not exist."));
+                skipElement();
+                return null;
+            }
+        }
+
+        model.setVersionOnFile(Version.parseVersion(reader.getAttributeValue(null, XMLUtil.XMLATTR_VERSION)));
+        model.setLineNumber(reader.getLocation().getLineNumber());
+
+        while (nextElement())
+        {
+            final String tag = reader.getLocalName();
+            if (tag.equals(XMLUtil.XMLTAG_WIDGET)  &&  model instanceof AbstractContainerModel)
+            {   // Child is complete before it's added to the container
+                final AbstractWidgetModel child = readWidget(false);
+                completion.add(() -> ((AbstractContainerModel) model).addChild(child));
+            }
+            else if (tag.equals(XMLUtil.XMLTAG_CONNECTION)  &&  is_root  &&  name.equals(XMLUtil.XMLTAG_DISPLAY))
+                connections.add(readElement());
+            else if (model.getProperty(tag) != null)
+                XMLUtil.setPropertyFromXML(readElement(), model);
+            else
+                skipElement();
+        }
+
+        if (displayModel != null)
+            completion.add(() -> model.processVersionDifference(displayModel.getBOYVersion()));
+        return model;
+    }
+
+    /** Move to the next child element of the current element
+     *  @return <code>true</code> if positioned on start of child element,
+     *          <code>false</code> if at end of current element
+     *  @throws XMLStreamException on error
+     */
+    private boolean nextElement() throws XMLStreamException
+    {
+        while (true)
+        {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                return true;
+            if (event == XMLStreamConstants.END_ELEMENT)
+                return false;
+        }
+    }
+
+    /** Skip current element, positioned on its start tag
+     *  @throws XMLStreamException on error
+     */
+    private void skipElement() throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                ++depth;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                --depth;
+        }
+    }
+
+    /** Read current element, positioned on its start tag, into a document element
+     *  @return {@link Element}
+     *  @throws XMLStreamException on error
+     */
+    private Element readElement() throws XMLStreamException
+    {
+        final Element element = new LineAwareElement(reader.getLocalName(),
+                getNamespace(reader.getPrefix(), reader.getNamespaceURI()),
+                reader.getLocation().getLineNumber());
+        for (int i=0; i<reader.getAttributeCount(); ++i)
+            element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i),
+                                 getNamespace(reader.getAttributePrefix(i), reader.getAttributeNamespace(i)));
+        while (true)
+        {
+            switch (reader.next())
+            {
+            case XMLStreamConstants.START_ELEMENT:
+                element.addContent(readElement());
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                element.addContent(reader.getText());
+                break;
+            case XMLStreamConstants.CDATA:
+                element.addContent(new CDATA(reader.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                element.addContent(new Comment(reader.getText()));
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                return element;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static Namespace getNamespace(final String prefix, final String uri)
+    {
+        if (uri == null  ||  uri.isEmpty())
+            return Namespace.NO_NAMESPACE;
+        return Namespace.getNamespace(prefix == null ? "" : prefix, uri);
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 
 import javax.security.auth.login.FailedLoginException;
@@ -199,9 +200,45 @@ public class XMLUtil {
         fillDisplayModelFromInputStreamSub(inputStream, displayModel, display, new ArrayList<IPath>(), macrosInput_);
     }
 
+    /**Fill the DisplayModel from an OPI file.
+     * Files that are read repeatedly, for example because they are embedded
+     * in several linking containers, are only parsed once.
+     * @param path path of the OPI file, with macros resolved.
+     * @param displayModel. The {@link DisplayModel} to be filled.
+     * @param display the display in UI Thread.
+     * @param macrosInput_ macros, may be null.
+     * @throws Exception
+     * @see DisplayCache
+     */
+    public static void fillDisplayModelFromPath(
+            final IPath path, final DisplayModel displayModel, Display display,
+            final MacrosInput macrosInput_) throws Exception{
+        final List<IPath> trace = new ArrayList<IPath>();
+        fillDisplayModelSub(() -> XMLElementToWidgetSub(DisplayCache.getInstance().getDisplay(path), displayModel, trace, macrosInput_),
+                displayModel, display, trace, macrosInput_);
+    }
+
     private static void fillDisplayModelFromInputStreamSub(
             final InputStream inputStream, final DisplayModel displayModel, Display display, List<IPath> trace,
             final MacrosInput macrosInput_) throws Exception{
+        try {
+            if(PreferencesHelper.isStreamingOPILoader())
+                fillDisplayModelSub(() -> streamToWidgetSub(inputStream, displayModel, trace, macrosInput_),
+                        displayModel, display, trace, macrosInput_);
+            else
+                fillDisplayModelSub(() -> XMLElementToWidgetSub(inputStreamToXML(inputStream), displayModel, trace, macrosInput_),
+                        displayModel, display, trace, macrosInput_);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**Fill the DisplayModel
+     * @param loader loads the widgets into the display model.
+     */
+    private static void fillDisplayModelSub(
+            final Callable<AbstractWidgetModel> loader, final DisplayModel displayModel, Display display, List<IPath> trace,
+            final MacrosInput macrosInput_) throws Exception{
 
         if(display == null){
             display = Display.getCurrent();
@@ -215,7 +252,6 @@ public class XMLUtil {
                 for(String securedPath : securedPaths){
                     if(opiPath.toString().startsWith(securedPath)) {
                         if (!SingleSourceHelper.rapAuthenticate(display)) {
-                            inputStream.close();
                             throw new FailedLoginException();
                         }
                     }
@@ -234,7 +270,6 @@ public class XMLUtil {
                     }
                     if(shouldBeSecured){
                         if (!SingleSourceHelper.rapAuthenticate(display)) {
-                            inputStream.close();
                             throw new FailedLoginException();
                         }
                     }
@@ -243,39 +278,38 @@ public class XMLUtil {
 
         }
 
-        Element root = inputStreamToXML(inputStream);
-        if(root != null){
-             XMLElementToWidgetSub(root, displayModel, trace, macrosInput_);
-
-             //check version
-             if(compareVersion(displayModel.getBOYVersion(),
-                     OPIBuilderPlugin.getDefault().getBundle().getVersion()) > 0){
-                final String message = displayModel.getOpiFilePath() == null ? "This OPI"
-                        : displayModel.getOpiFilePath().lastSegment()
-                                + " was created in a newer version of BOY ("
-                                + displayModel.getBOYVersion().toString()
-                                + "). It may not function properly! "
-                                + "Please update your " +
-                                (OPIBuilderPlugin.isRAP()? "WebOPI":"BOY")
-                                + " (" + OPIBuilderPlugin.getDefault().getBundle().getVersion() +
-                                ") to the latest version.";
-                if(display == null){
-                    display = Display.getDefault();
-                }
-                if (display != null)
-                    display.asyncExec(new Runnable() {
-                        @Override
-                        public void run() {
+        loader.call();
+
+        //check version
+        if(compareVersion(displayModel.getBOYVersion(),
+                OPIBuilderPlugin.getDefault().getBundle().getVersion()) > 0){
+            final String message = displayModel.getOpiFilePath() == null ? "This OPI"
+                    : displayModel.getOpiFilePath().lastSegment()
+                            + " was created in a newer version of BOY ("
+                            + displayModel.getBOYVersion().toString()
+                            + "). It may not function properly! "
+                            + "Please update your " +
+                            (OPIBuilderPlugin.isRAP()? "WebOPI":"BOY")
+                            + " (" + OPIBuilderPlugin.getDefault().getBundle().getVersion() +
+                            ") to the latest version.";
+            if(display == null){
+                display = Display.getDefault();
+            }
+            if (display != null)
+                display.asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
 //                            MessageDialog.openWarning(null, "Warning", message);
-                            ConsoleService.getInstance().writeWarning(message);
-                            OPIBuilderPlugin.getLogger().log(Level.WARNING,
-                                    message); //$NON-NLS-1$
-                        }
-                    });
-             }
-
+                        ConsoleService.getInstance().writeWarning(message);
+                        OPIBuilderPlugin.getLogger().log(Level.WARNING,
+                                message); //$NON-NLS-1$
+                    }
+                });
         }
-        inputStream.close();
+
+        //only report once for the top-level display, not for each linked opi
+        if(trace.isEmpty())
+            DisplayCache.getInstance().reportStatistics();
     }
 
     /**Fill the DisplayModel from an OPI file inputstream. In RAP, it must be called in UI Thread.
@@ -320,6 +354,21 @@ public class XMLUtil {
         }
     }
 
+    /**Construct widget model by streaming the OPI file, without building a document for the complete file.
+     * Creates the same models as {@link #XMLElementToWidgetSub(Element, DisplayModel, List, MacrosInput)}.
+     * @see XMLStreamLoader
+     */
+    private static AbstractWidgetModel streamToWidgetSub(InputStream stream, DisplayModel displayModel, List<IPath> trace,
+            final MacrosInput macrosInput_) throws Exception{
+        XMLStreamLoader loader = new XMLStreamLoader(displayModel);
+        AbstractWidgetModel result = loader.load(stream);
+        if(result instanceof AbstractContainerModel)
+            fillLinkingContainersSub((AbstractContainerModel)result, trace, macrosInput_);
+        for(Element connection : loader.getConnections())
+            fillConnections(connection, displayModel);
+        return result;
+    }
+
     /**Convert XML String to a widget model.
      * @param xmlString
      * @param displayModel the root display model. If root of the element is a display, use this display model as root model
@@ -450,19 +499,26 @@ public class XMLUtil {
         while (iterator.hasNext()) {
             Element subElement = (Element) iterator.next();
             //handle property
-            if(propIdSet.contains(subElement.getName())){
-                String propId = subElement.getName();
-                try {
-                    model.setPropertyValue(propId,
-                            model.getProperty(propId).readValueFromXML(subElement));
-                } catch (Exception e) {
-                    String errorMessage = "Failed to read the " + propId + " property for " + model.getName() +". " +
-                            "The default property value will be setted instead. \n" + e;
-                    //MessageDialog.openError(null, "OPI File format error", errorMessage + "\n" + e.getMessage());
-                    OPIBuilderPlugin.getLogger().log(Level.WARNING, errorMessage, e);
-                    ConsoleService.getInstance().writeWarning(errorMessage);
-                }
-            }
+            if(propIdSet.contains(subElement.getName()))
+                setPropertyFromXML(subElement, model);
+        }
+    }
+
+    /**Set a property of the widget.
+     * @param element XML element of the property. Its name is the property ID.
+     * @param model the widget model, which must have that property.
+     */
+    static void setPropertyFromXML(Element element, AbstractWidgetModel model) {
+        String propId = element.getName();
+        try {
+            model.setPropertyValue(propId,
+                    model.getProperty(propId).readValueFromXML(element));
+        } catch (Exception e) {
+            String errorMessage = "Failed to read the " + propId + " property for " + model.getName() +". " +
+                    "The default property value will be setted instead. \n" + e;
+            //MessageDialog.openError(null, "OPI File format error", errorMessage + "\n" + e.getMessage());
+            OPIBuilderPlugin.getLogger().log(Level.WARNING, errorMessage, e);
+            ConsoleService.getInstance().writeWarning(errorMessage);
         }
     }
 
@@ -520,7 +576,9 @@ public class XMLUtil {
 
                 try
                 {
-                    fillDisplayModelFromInputStreamSub(ResourceUtil.pathToInputStream(path), inside, Display.getCurrent(), trace, macrosInput_);
+                    final IPath opiPath = path;
+                    fillDisplayModelSub(() -> XMLElementToWidgetSub(DisplayCache.getInstance().getDisplay(opiPath), inside, trace, macrosInput_),
+                            inside, Display.getCurrent(), trace, macrosInput_);
                 }
                 catch (Exception ex)
                 {
@@ -665,7 +723,7 @@ public class XMLUtil {
         return potentialTag.equals(xmlTag);
     }
 
-    private static Element inputStreamToXML(InputStream stream) throws JDOMException, IOException {
+    static Element inputStreamToXML(InputStream stream) throws JDOMException, IOException {
         SAXBuilder saxBuilder = LineAwareXMLParser.createBuilder();
         Document doc = saxBuilder.build(stream);
         Element root = doc.getRootElement();
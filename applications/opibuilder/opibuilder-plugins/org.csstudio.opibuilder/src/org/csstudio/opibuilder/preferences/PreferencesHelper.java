@@ -71,6 +71,9 @@ public class PreferencesHelper {
     public static final String SHOW_OPI_RUNTIME_STACKS = "show_opi_runtime_stacks"; //$NON-NLS-1$
     public static final String SWITCH_TO_OPI_EDITOR_PERSPECTIVE = "switch_to_opi_editor_perspective"; //$NON-NLS-1$
     public static final String FONT_DEFAULT_PIXELS_OR_POINTS = "font_default_pixels_or_points";
+    public static final String DISPLAY_CACHE_SIZE = "display_cache_size"; //$NON-NLS-1$
+    public static final String STREAMING_OPI_LOADER = "streaming_opi_loader"; //$NON-NLS-1$
+    public static final String NATIVE_RULES = "native_rules"; //$NON-NLS-1$
 
     //The widgets that are hidden from palette.
     public static final String HIDDEN_WIDGETS="hidden_widgets"; //$NON-NLS-1$
@@ -385,6 +388,32 @@ public class PreferencesHelper {
         return service.getInt(OPIBuilderPlugin.PLUGIN_ID, URL_FILE_LOADING_TIMEOUT, 8000, null);
     }
 
+    /**
+     * @return maximum number of parsed OPI files to cache, 0 to disable the cache.
+     */
+    public static int getDisplayCacheSize(){
+        final IPreferencesService service = Platform.getPreferencesService();
+        return service.getInt(OPIBuilderPlugin.PLUGIN_ID, DISPLAY_CACHE_SIZE, 100, null);
+    }
+
+    /**
+     * @return true if OPI files should be loaded by streaming them into the widget models,
+     * false to first read the complete XML document.
+     */
+    public static boolean isStreamingOPILoader(){
+        final IPreferencesService service = Platform.getPreferencesService();
+        return service.getBoolean(OPIBuilderPlugin.PLUGIN_ID, STREAMING_OPI_LOADER, false, null);
+    }
+
+    /**
+     * @return true if rules should be evaluated in Java where possible,
+     * false to always execute the script generated for a rule.
+     */
+    public static boolean isNativeRules(){
+        final IPreferencesService service = Platform.getPreferencesService();
+        return service.getBoolean(OPIBuilderPlugin.PLUGIN_ID, NATIVE_RULES, true, null);
+    }
+
     /**
      * @return the absolute path of the startup opi. null if not configured.
      */
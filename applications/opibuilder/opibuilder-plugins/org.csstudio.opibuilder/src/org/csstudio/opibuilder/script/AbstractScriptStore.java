@@ -37,6 +37,8 @@ import org.eclipse.swt.widgets.Display;
  * This is the abstract script store implementation for BOY script execution. All script stores
  * in BOY should implement this abstract class with a specific script engine.
  * The store must be disposed manually when it is not needed.
+ * Compiled scripts are shared between stores via the {@link CompiledScriptCache},
+ * while each store executes them in its own scope.
  * @author Xihui Chen
  *
  */
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/** Cache of compiled scripts, shared by all script stores
+ *
+ *  <p>When the same script file or rule is used by many widgets,
+ *  it only needs to be compiled once.
+ *  Each script store still executes the compiled script
+ *  with its own scope, bindings or interpreter.
+ *
+ *  <p>Scripts are identified by their text,
+ *  or by the file name and modification time.
+ *  Compiled scripts are specific to an 'engine',
+ *  which can be the type of script store if its compiled scripts
+ *  can be executed by any instance of the engine,
+ *  or the actual script engine.
+ *
+ *  @author agent
+ */
+public class CompiledScriptCache
+{
+    /** Compiler for script text
+     *  @param <T> Type of compiled script
+     */
+    @FunctionalInterface
+    public interface Compiler<T>
+    {
+        /** @return Compiled script
+         *  @throws Exception on error
+         */
+        T compile() throws Exception;
+    }
+
+    /** Compiler for a script file
+     *  @param <T> Type of compiled script
+     */
+    @FunctionalInterface
+    public interface ReaderCompiler<T>
+    {
+        /** @param reader Reader for the script
+         *  @return Compiled script
+         *  @throws Exception on error
+         */
+        T compile(Reader reader) throws Exception;
+    }
+
+    /** Key for a compiled script */
+    private static class Key
+    {
+        private final Object engine;
+        private final String source;
+        private final long modified;
+
+        /** @param engine Engine that compiled the script
+         *  @param source Script text or file name
+         *  @param modified Modification time of file, -1 for script text
+         */
+        Key(final Object engine, final String source, final long modified)
+        {
+            this.engine = engine;
+            this.source = source;
+            this.modified = modified;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(engine, source, modified);
+        }
+
+        @Override
+        public boolean equals(final Object obj)
+        {
+            if (! (obj instanceof Key))
+                return false;
+            final Key other = (Key) obj;
+            return engine.equals(other.engine)  &&
+                   modified == other.modified   &&
+                   source.equals(other.source);
+        }
+    }
+
+    /** Maximum number of cached scripts */
+    private static final int MAX_SIZE = 500;
+
+    private static final CompiledScriptCache instance = new CompiledScriptCache();
+
+    /** Compiled scripts in order of access. SYNC on access */
+    private final Map<Key, Object> cache = new LinkedHashMap<Key, Object>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, Object> eldest)
+        {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private CompiledScriptCache()
+    {
+        // Singleton
+    }
+
+    /** @return Instance of the compiled script cache */
+    public static CompiledScriptCache getInstance()
+    {
+        return instance;
+    }
+
+    /** Get compiled script for script text
+     *  @param engine Engine that compiles the script
+     *  @param text Script text
+     *  @param compiler Compiles the text if it is not in the cache
+     *  @return Compiled script
+     *  @throws Exception on error
+     */
+    public <T> T get(final Object engine, final String text, final Compiler<T> compiler) throws Exception
+    {
+        return get(new Key(engine, text, -1), compiler);
+    }
+
+    /** Get compiled script for script file
+     *  @param engine Engine that compiles the script
+     *  @param file Script file, or <code>null</code> if not a local file
+     *  @param stream Stream for the script file. Will be closed.
+     *  @param compiler Compiles the script if it is not in the cache
+     *  @return Compiled script
+     *  @throws Exception on error
+     */
+    public <T> T get(final Object engine, final File file, final InputStream stream, final ReaderCompiler<T> compiler) throws Exception
+    {
+        try
+        (
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+        )
+        {
+            if (file != null  &&  file.exists())
+                return get(new Key(engine, file.getAbsolutePath(), file.lastModified()), () -> compiler.compile(reader));
+            // Without a file to check for changes, identify the script by its text
+            final String text = reader.lines().collect(Collectors.joining("\n"));
+            return get(new Key(engine, text, -1), () -> compiler.compile(new StringReader(text)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(final Key key, final Compiler<T> compiler) throws Exception
+    {
+        synchronized (cache)
+        {
+            final Object script = cache.get(key);
+            if (script != null)
+                return (T) script;
+        }
+        // Compile outside of the lock.
+        // In case another thread compiles the same script, one of the results is cached.
+        final T script = compiler.compile();
+        synchronized (cache)
+        {
+            cache.put(key, script);
+        }
+        return script;
+    }
+
+    /** Remove all compiled scripts */
+    public void clear()
+    {
+        synchronized (cache)
+        {
+            cache.clear();
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package org.csstudio.opibuilder.script;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
@@ -42,15 +40,15 @@ public class JavaScriptStore extends AbstractScriptStore {
 
     @Override
     protected void compileString(String string) throws Exception {
-        script = ((Compilable) engine).compile(string);
+        // Compiled scripts are specific to the engine
+        script = CompiledScriptCache.getInstance().get(engine, string,
+                () -> ((Compilable) engine).compile(string));
     }
 
     @Override
-    protected void compileInputStream(File dir, InputStream s) throws Exception {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(s))) {
-            script = ((Compilable) engine).compile(reader);
-        }
-
+    protected void compileInputStream(File file, InputStream s) throws Exception {
+        script = CompiledScriptCache.getInstance().get(engine, file, s,
+                reader -> ((Compilable) engine).compile(reader));
     }
 
     @Override
@@ -9,7 +9,6 @@ package org.csstudio.opibuilder.script;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
 import org.csstudio.opibuilder.util.ResourceUtil;
@@ -64,7 +63,9 @@ public class JythonScriptStore extends AbstractScriptStore{
 
     @Override
     protected void compileString(String string) throws Exception {
-        code = interp.compile(string);
+        // Compiled code can be executed by any interpreter
+        code = CompiledScriptCache.getInstance().get(JythonScriptStore.class, string,
+                () -> interp.compile(string));
     }
 
     @Override
@@ -81,17 +82,19 @@ public class JythonScriptStore extends AbstractScriptStore{
             synchronized (paths)
             {
                 final int index = paths.indexOf(path);
-                // Already top entry?
-                if (index == 0)
-                    return;
-                // Remove if further down in the list
-                if (index > 0)
-                    paths.remove(index);
-                // Add to front of list
-                paths.add(0, path);
+                // Unless already top entry,
+                if (index != 0)
+                {
+                    // remove if further down in the list
+                    if (index > 0)
+                        paths.remove(index);
+                    // and add to front of list
+                    paths.add(0, path);
+                }
             }
         }
-        code = interp.compile(new InputStreamReader(s));
+        code = CompiledScriptCache.getInstance().get(JythonScriptStore.class, file, s,
+                reader -> interp.compile(reader));
     }
 
     @Override
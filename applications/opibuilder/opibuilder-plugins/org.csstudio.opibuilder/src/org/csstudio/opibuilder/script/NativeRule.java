@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
+import org.csstudio.opibuilder.script.RuleExpression.Variable;
+import org.csstudio.opibuilder.scriptUtil.PVUtil;
+import org.csstudio.simplepv.IPV;
+
+/** Rule that is evaluated in Java, without a script engine
+ *
+ *  <p>Performs the same steps as the script created by
+ *  {@link RuleData#generateScript()}:
+ *  Reads the PV values used by the expressions,
+ *  then sets the property to the value of the first expression
+ *  whose condition is met, or to the original value of the property.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class NativeRule
+{
+    private final String prop_id;
+
+    /** Variables used by all expressions */
+    private final List<Variable> variables;
+
+    /** Values of the variables */
+    private final Object[] values;
+
+    private final RuleExpression[] conditions;
+
+    /** Values for each condition.
+     *  {@link RuleExpression} for rules that output the expression value
+     */
+    private final Object[] results;
+
+    private final Object default_value;
+
+    private NativeRule(final String prop_id, final List<Variable> variables,
+                       final RuleExpression[] conditions, final Object[] results,
+                       final Object default_value)
+    {
+        this.prop_id = prop_id;
+        this.variables = variables;
+        this.values = new Object[variables.size()];
+        this.conditions = conditions;
+        this.results = results;
+        this.default_value = default_value;
+    }
+
+    /** Compile rule
+     *  @param rule Rule data
+     *  @param pv_count Number of PVs that will be passed to {@link #execute(AbstractBaseEditPart, IPV[])}
+     *  @return Compiled rule, or empty if the rule needs to be handled by a script engine
+     */
+    public static Optional<NativeRule> compile(final RuleData rule, final int pv_count)
+    {
+        final List<Variable> variables = new ArrayList<>();
+        final List<Expression> expressions = rule.getExpressionList();
+        final RuleExpression[] conditions = new RuleExpression[expressions.size()];
+        final Object[] results = new Object[expressions.size()];
+        try
+        {
+            for (int i=0; i<conditions.length; ++i)
+            {
+                final Expression expression = expressions.get(i);
+                conditions[i] = new RuleExpression(expression.getBooleanExpression(), variables);
+                // Java object used as condition
+                if (! conditions[i].isCondition())
+                    return Optional.empty();
+                if (rule.isOutputExpValue())
+                    results[i] = new RuleExpression(expression.getValue().toString(), variables);
+                else
+                    results[i] = expression.getValue();
+            }
+        }
+        catch (UnsupportedOperationException ex)
+        {   // Expression beyond what RuleExpression handles
+            return Optional.empty();
+        }
+        // Rule uses undefined PV
+        for (Variable variable : variables)
+            if (variable.index >= pv_count)
+                return Optional.empty();
+        final Object default_value = conditions.length > 0 ? rule.getProperty().getPropertyValue() : null;
+        return Optional.of(new NativeRule(rule.getPropId(), variables, conditions, results, default_value));
+    }
+
+    /** Execute the rule
+     *
+     *  <p>Not thread-safe, to be called on the UI thread
+     *  like the script of a rule.
+     *
+     *  @param widget Widget that has the rule
+     *  @param pvs PVs of the rule
+     *  @throws Exception on error, for example PV without value
+     */
+    public void execute(final AbstractBaseEditPart widget, final IPV[] pvs) throws Exception
+    {
+        if (conditions.length <= 0)
+            return;
+
+        for (int i=0; i<values.length; ++i)
+        {
+            final Variable variable = variables.get(i);
+            final IPV pv = pvs[variable.index];
+            switch (variable.kind)
+            {
+            case DOUBLE:
+                values[i] = PVUtil.getDouble(pv);
+                break;
+            case LONG:
+                values[i] = PVUtil.getLong(pv);
+                break;
+            case STRING:
+                values[i] = PVUtil.getString(pv);
+                break;
+            case SEVERITY:
+                values[i] = (double) PVUtil.getSeverity(pv);
+                break;
+            }
+        }
+
+        for (int i=0; i<conditions.length; ++i)
+            if (conditions[i].test(values))
+            {
+                final Object result = results[i] instanceof RuleExpression
+                                    ? ((RuleExpression) results[i]).evaluate(values)
+                                    : results[i];
+                widget.setPropertyValue(prop_id, result);
+                return;
+            }
+        widget.setPropertyValue(prop_id, default_value);
+    }
+}
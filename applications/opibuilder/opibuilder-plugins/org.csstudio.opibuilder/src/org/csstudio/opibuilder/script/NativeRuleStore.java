@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
+import org.csstudio.simplepv.IPV;
+
+/** Implementation of {@link AbstractScriptStore} that executes
+ *  a rule as a {@link NativeRule}, without a script engine.
+ *
+ *  <p>Only handles rules, using a rule that was compiled
+ *  by {@link NativeRule#compile(RuleData, int)}.
+ *  @author agent
+ */
+public class NativeRuleStore extends AbstractScriptStore
+{
+    private final NativeRule rule;
+
+    /** @param scriptData Rule
+     *  @param editpart Widget that has the rule
+     *  @param pvArray PVs of the rule
+     *  @param rule Compiled rule
+     *  @throws Exception on error
+     */
+    public NativeRuleStore(final RuleScriptData scriptData, final AbstractBaseEditPart editpart,
+            final IPV[] pvArray, final NativeRule rule) throws Exception
+    {
+        super(scriptData, editpart, pvArray);
+        this.rule = rule;
+    }
+
+    @Override
+    protected void initScriptEngine() throws Exception
+    {
+        // No engine
+    }
+
+    @Override
+    protected void compileString(final String string) throws Exception
+    {
+        // Rule was compiled before creating the store
+    }
+
+    @Override
+    protected void compileInputStream(final File file, final InputStream s) throws Exception
+    {
+        // Rules are never read from a file
+    }
+
+    @Override
+    protected void execScript(final IPV triggerPV) throws Exception
+    {
+        rule.execute(getEditPart(), getPvArray());
+    }
+}
@@ -7,11 +7,8 @@
  ******************************************************************************/
 package org.csstudio.opibuilder.script;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import org.csstudio.opibuilder.editparts.AbstractBaseEditPart;
 import org.csstudio.simplepv.IPV;
@@ -63,15 +60,15 @@ public class RhinoScriptStore extends AbstractScriptStore{
 
     @Override
     protected void compileString(String string) throws Exception{
-        script = scriptContext.compileString(string, "rule", 1, null);
+        // Compiled scripts can be executed with any context
+        script = CompiledScriptCache.getInstance().get(RhinoScriptStore.class, string,
+                () -> scriptContext.compileString(string, "rule", 1, null)); //$NON-NLS-1$
     }
 
     @Override
-    protected void compileInputStream(File file, InputStream s) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(s));
-        script = scriptContext.compileReader(reader, "script", 1, null); //$NON-NLS-1$
-        s.close();
-        reader.close();
+    protected void compileInputStream(File file, InputStream s) throws Exception {
+        script = CompiledScriptCache.getInstance().get(RhinoScriptStore.class, file, s,
+                reader -> scriptContext.compileReader(reader, "script", 1, null)); //$NON-NLS-1$
     }
 
     @Override
@@ -0,0 +1,743 @@
+/*******************************************************************************
+ * Copyright (c) 2017 Oak Ridge National Laboratory.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+package org.csstudio.opibuilder.script;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Expression of a rule, compiled into a tree of Java objects
+ *
+ *  <p>Handles the subset of JavaScript that rules typically use:
+ *  Number, string and boolean literals,
+ *  the rule variables <code>pv0</code>, <code>pvInt0</code>, <code>pvStr0</code>, <code>pvSev0</code>,
+ *  arithmetic, comparisons, logical operators and <code>? :</code>.
+ *  The result matches what the script generated by {@link RuleData#generateScript()}
+ *  would compute.
+ *
+ *  <p>Anything else, including function calls and
+ *  cases where JavaScript semantics are tricky to reproduce,
+ *  results in an {@link UnsupportedOperationException}
+ *  so that the rule can fall back to a script engine.
+ *
+ *  <p>Compiled expressions have no state and can be shared.
+ *
+ *  @author agent
+ */
+@SuppressWarnings("nls")
+public class RuleExpression
+{
+    /** Kind of rule variable */
+    public enum Kind
+    {
+        /** <code>pv0</code>, value as double */
+        DOUBLE("pv"),
+        /** <code>pvInt0</code>, value as long */
+        LONG("pvInt"),
+        /** <code>pvStr0</code>, value as string */
+        STRING("pvStr"),
+        /** <code>pvSev0</code>, severity code */
+        SEVERITY("pvSev");
+
+        final String prefix;
+
+        private Kind(final String prefix)
+        {
+            this.prefix = prefix;
+        }
+    }
+
+    /** Rule variable, a value of one input PV */
+    public static class Variable
+    {
+        /** Kind of variable */
+        public final Kind kind;
+
+        /** Index of PV */
+        public final int index;
+
+        Variable(final Kind kind, final int index)
+        {
+            this.kind = kind;
+            this.index = index;
+        }
+
+        @Override
+        public String toString()
+        {
+            return kind.prefix + index;
+        }
+    }
+
+    /** Type of a node's value */
+    private enum Type
+    {
+        /** Double */
+        NUMBER,
+        /** String */
+        STRING,
+        /** Boolean */
+        BOOLEAN
+    }
+
+    /** Node of the expression tree */
+    private abstract static class Node
+    {
+        final Type type;
+
+        /** Is the value a Java object in the script?
+         *
+         *  <p>The script engine wraps the Long of <code>pvInt</code>
+         *  and the String of <code>pvStr</code> as Java objects.
+         *  Those are 'true' even when 0 or empty,
+         *  and compare by identity with each other.
+         */
+        final boolean wrapped;
+
+        Node(final Type type, final boolean wrapped)
+        {
+            this.type = type;
+            this.wrapped = wrapped;
+        }
+
+        /** @param values Values of the variables
+         *  @return Double, Long, String or Boolean
+         */
+        abstract Object eval(Object[] values);
+    }
+
+    private static class Constant extends Node
+    {
+        final Object value;
+
+        Constant(final Type type, final Object value)
+        {
+            super(type, false);
+            this.value = value;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return value;
+        }
+    }
+
+    private static class VariableNode extends Node
+    {
+        final int slot;
+
+        VariableNode(final Kind kind, final int slot)
+        {
+            super(kind == Kind.STRING ? Type.STRING : Type.NUMBER,
+                  kind == Kind.STRING  ||  kind == Kind.LONG);
+            this.slot = slot;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return values[slot];
+        }
+    }
+
+    @FunctionalInterface
+    private interface NumericOperation
+    {
+        double apply(double a, double b);
+    }
+
+    private static class Arithmetic extends Node
+    {
+        final Node left, right;
+        final NumericOperation operation;
+
+        Arithmetic(final Node left, final Node right, final NumericOperation operation)
+        {
+            super(Type.NUMBER, false);
+            this.left = left;
+            this.right = right;
+            this.operation = operation;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return operation.apply(toNumber(left.eval(values)), toNumber(right.eval(values)));
+        }
+    }
+
+    private static class Concatenation extends Node
+    {
+        final Node left, right;
+
+        Concatenation(final Node left, final Node right)
+        {
+            super(Type.STRING, false);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return (String) left.eval(values) + (String) right.eval(values);
+        }
+    }
+
+    private static class Negation extends Node
+    {
+        final Node operand;
+
+        Negation(final Node operand)
+        {
+            super(Type.NUMBER, false);
+            this.operand = operand;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return -toNumber(operand.eval(values));
+        }
+    }
+
+    private static class Not extends Node
+    {
+        final Node operand;
+
+        Not(final Node operand)
+        {
+            super(Type.BOOLEAN, false);
+            this.operand = operand;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return ! toBoolean(operand.eval(values));
+        }
+    }
+
+    private static class Equality extends Node
+    {
+        final Node left, right;
+        final boolean equal;
+
+        Equality(final Node left, final Node right, final boolean equal)
+        {
+            super(Type.BOOLEAN, false);
+            this.left = left;
+            this.right = right;
+            this.equal = equal;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            final Object a = left.eval(values), b = right.eval(values);
+            final boolean result;
+            if (left.type == right.type  &&  left.type != Type.NUMBER)
+                result = a.equals(b);
+            else // Number, or mixed types which compare as numbers
+                result = toNumber(a) == toNumber(b);
+            return result == equal;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Order
+    {
+        /** @param cmp Result of comparison, &lt;0, 0, &gt;0
+         *  @return <code>true</code> if that matches the order
+         */
+        boolean test(int cmp);
+    }
+
+    private static class Comparison extends Node
+    {
+        final Node left, right;
+        final Order order;
+
+        Comparison(final Node left, final Node right, final Order order)
+        {
+            super(Type.BOOLEAN, false);
+            this.left = left;
+            this.right = right;
+            this.order = order;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            final Object a = left.eval(values), b = right.eval(values);
+            if (left.type == Type.STRING  &&  right.type == Type.STRING)
+                return order.test(((String) a).compareTo((String) b));
+            final double x = toNumber(a), y = toNumber(b);
+            // NaN compares false
+            if (Double.isNaN(x)  ||  Double.isNaN(y))
+                return false;
+            return order.test(x < y ? -1 : (x > y ? 1 : 0));
+        }
+    }
+
+    private static class Logical extends Node
+    {
+        final Node left, right;
+        final boolean and;
+
+        Logical(final Node left, final Node right, final boolean and)
+        {
+            super(left.type, false);
+            this.left = left;
+            this.right = right;
+            this.and = and;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            // Like JavaScript, return the value of the operand that decided
+            final Object a = left.eval(values);
+            if (toBoolean(a) != and)
+                return a;
+            return right.eval(values);
+        }
+    }
+
+    private static class Conditional extends Node
+    {
+        final Node condition, yes, no;
+
+        Conditional(final Node condition, final Node yes, final Node no)
+        {
+            super(yes.type, yes.wrapped || no.wrapped);
+            this.condition = condition;
+            this.yes = yes;
+            this.no = no;
+        }
+
+        @Override
+        Object eval(final Object[] values)
+        {
+            return toBoolean(condition.eval(values)) ? yes.eval(values) : no.eval(values);
+        }
+    }
+
+    /** JavaScript 'StrDecimalLiteral' */
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(Infinity|[0-9]+\\.?[0-9]*([eE][+-]?[0-9]+)?|\\.[0-9]+([eE][+-]?[0-9]+)?)");
+
+    /** JavaScript hex number */
+    private static final Pattern HEX = Pattern.compile("0[xX][0-9a-fA-F]+");
+
+    /** Rule variable */
+    private static final Pattern VARIABLE = Pattern.compile("pv(Int|Str|Sev)?(0|[1-9][0-9]*)");
+
+    /** Convert value to number like JavaScript
+     *  @param value Double, Long, Integer, String or Boolean
+     *  @return Number
+     */
+    static double toNumber(final Object value)
+    {
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        if (value instanceof Boolean)
+            return ((Boolean) value) ? 1.0 : 0.0;
+        final String text = ((String) value).trim();
+        if (text.isEmpty())
+            return 0.0;
+        if (HEX.matcher(text).matches())
+            return new BigInteger(text.substring(2), 16).doubleValue();
+        if (DECIMAL.matcher(text).matches())
+            return Double.parseDouble(text);
+        return Double.NaN;
+    }
+
+    /** Convert value to boolean like JavaScript
+     *  @param value Double, String or Boolean
+     *  @return Boolean
+     */
+    static boolean toBoolean(final Object value)
+    {
+        if (value instanceof Boolean)
+            return (Boolean) value;
+        if (value instanceof String)
+            return ! ((String) value).isEmpty();
+        final double number = ((Number) value).doubleValue();
+        return number != 0.0  &&  ! Double.isNaN(number);
+    }
+
+    private final Node root;
+    private final List<Variable> variables;
+
+    /** Compile an expression
+     *  @param text Expression text
+     *  @throws UnsupportedOperationException if the expression cannot be compiled,
+     *          and needs to be handled by a script engine
+     */
+    public RuleExpression(final String text)
+    {
+        this(text, new ArrayList<>());
+    }
+
+    /** Compile an expression that shares variables with other expressions
+     *  @param text Expression text
+     *  @param variables Variables of all expressions. Variables used by this expression are added
+     *  @throws UnsupportedOperationException if the expression cannot be compiled,
+     *          and needs to be handled by a script engine
+     */
+    public RuleExpression(final String text, final List<Variable> variables)
+    {
+        final Parser parser = new Parser(text, variables);
+        root = parser.parse();
+        this.variables = Collections.unmodifiableList(variables);
+    }
+
+    /** @return Variables used by the expression, in the order expected by {@link #evaluate(Object[])} */
+    public List<Variable> getVariables()
+    {
+        return variables;
+    }
+
+    /** @return <code>true</code> if the expression can be used as a condition */
+    boolean isCondition()
+    {
+        return ! root.wrapped;
+    }
+
+    /** @param values Values of the variables, see {@link #getVariables()}
+     *  @return Double, Long, String or Boolean
+     */
+    public Object evaluate(final Object[] values)
+    {
+        return root.eval(values);
+    }
+
+    /** @param values Values of the variables, see {@link #getVariables()}
+     *  @return Result of the expression as boolean, like a JavaScript <code>if (..)</code>
+     */
+    public boolean test(final Object[] values)
+    {
+        return toBoolean(root.eval(values));
+    }
+
+    /** Recursive descent parser, following the precedence of JavaScript operators */
+    private static class Parser
+    {
+        private final String text;
+        private final List<Variable> variables;
+        private int pos = 0;
+
+        Parser(final String text, final List<Variable> variables)
+        {
+            this.text = text;
+            this.variables = variables;
+        }
+
+        Node parse()
+        {
+            final Node node = parseConditional();
+            skipSpace();
+            if (pos < text.length())
+                throw unsupported("Unexpected '" + text.substring(pos) + "'");
+            return node;
+        }
+
+        private UnsupportedOperationException unsupported(final String message)
+        {
+            return new UnsupportedOperationException(message + " in rule expression '" + text + "'");
+        }
+
+        private void skipSpace()
+        {
+            while (pos < text.length()  &&  Character.isWhitespace(text.charAt(pos)))
+                ++pos;
+        }
+
+        /** @param operator Operator to check
+         *  @return <code>true</code> if the operator is next, and it was consumed
+         */
+        private boolean accept(final String operator)
+        {
+            skipSpace();
+            if (! text.startsWith(operator, pos))
+                return false;
+            // Don't take '<' from '<=', '+' from '++' or '+=', ..
+            final int end = pos + operator.length();
+            if (end < text.length()  &&  operator.length() == 1  &&  "<>!+-*/%".indexOf(operator.charAt(0)) >= 0)
+            {
+                final char next = text.charAt(end);
+                if (next == '='  ||  (next == operator.charAt(0)  &&  (next == '+'  ||  next == '-')))
+                    return false;
+            }
+            pos = end;
+            return true;
+        }
+
+        private void checkCondition(final Node node)
+        {
+            if (node.wrapped)
+                throw unsupported("Java object used as condition");
+        }
+
+        private Node parseConditional()
+        {
+            final Node condition = parseOr();
+            if (! accept("?"))
+                return condition;
+            checkCondition(condition);
+            final Node yes = parseConditional();
+            if (! accept(":"))
+                throw unsupported("Missing ':'");
+            final Node no = parseConditional();
+            if (yes.type != no.type)
+                throw unsupported("Mixed types");
+            return new Conditional(condition, yes, no);
+        }
+
+        private Node parseOr()
+        {
+            Node node = parseAnd();
+            while (accept("||"))
+                node = createLogical(node, parseAnd(), false);
+            return node;
+        }
+
+        private Node parseAnd()
+        {
+            Node node = parseEquality();
+            while (accept("&&"))
+                node = createLogical(node, parseEquality(), true);
+            return node;
+        }
+
+        private Node createLogical(final Node left, final Node right, final boolean and)
+        {
+            checkCondition(left);
+            checkCondition(right);
+            if (left.type != right.type)
+                throw unsupported("Mixed types");
+            return new Logical(left, right, and);
+        }
+
+        private Node parseEquality()
+        {
+            Node node = parseComparison();
+            while (true)
+            {
+                skipSpace();
+                if (text.startsWith("===", pos)  ||  text.startsWith("!==", pos))
+                    throw unsupported("Strict equality");
+                final boolean equal;
+                if (accept("=="))
+                    equal = true;
+                else if (accept("!="))
+                    equal = false;
+                else
+                    return node;
+                final Node right = parseComparison();
+                if (node.wrapped  &&  right.wrapped)
+                    throw unsupported("Comparison of Java objects");
+                node = new Equality(node, right, equal);
+            }
+        }
+
+        private Node parseComparison()
+        {
+            Node node = parseAdditive();
+            while (true)
+            {
+                final Order order;
+                if (accept("<="))
+                    order = cmp -> cmp <= 0;
+                else if (accept(">="))
+                    order = cmp -> cmp >= 0;
+                else if (accept("<"))
+                    order = cmp -> cmp < 0;
+                else if (accept(">"))
+                    order = cmp -> cmp > 0;
+                else
+                    return node;
+                node = new Comparison(node, parseAdditive(), order);
+            }
+        }
+
+        private Node parseAdditive()
+        {
+            Node node = parseMultiplicative();
+            while (true)
+            {
+                if (accept("+"))
+                {
+                    final Node right = parseMultiplicative();
+                    if (node.type == Type.STRING  &&  right.type == Type.STRING)
+                        node = new Concatenation(node, right);
+                    else if (node.type == Type.STRING  ||  right.type == Type.STRING)
+                        throw unsupported("Mixed string concatenation");
+                    else
+                        node = new Arithmetic(node, right, (a, b) -> a + b);
+                }
+                else if (accept("-"))
+                    node = new Arithmetic(node, parseMultiplicative(), (a, b) -> a - b);
+                else
+                    return node;
+            }
+        }
+
+        private Node parseMultiplicative()
+        {
+            Node node = parseUnary();
+            while (true)
+            {
+                if (accept("*"))
+                    node = new Arithmetic(node, parseUnary(), (a, b) -> a * b);
+                else if (accept("/"))
+                    node = new Arithmetic(node, parseUnary(), (a, b) -> a / b);
+                else if (accept("%"))
+                    node = new Arithmetic(node, parseUnary(), (a, b) -> a % b);
+                else
+                    return node;
+            }
+        }
+
+        private Node parseUnary()
+        {
+            if (accept("!"))
+            {
+                final Node operand = parseUnary();
+                checkCondition(operand);
+                return new Not(operand);
+            }
+            if (accept("-"))
+                return new Negation(parseUnary());
+            if (accept("+"))
+                return new Arithmetic(parseUnary(), new Constant(Type.NUMBER, 0.0), (a, b) -> a);
+            return parsePrimary();
+        }
+
+        private Node parsePrimary()
+        {
+            skipSpace();
+            if (pos >= text.length())
+                throw unsupported("Missing operand");
+            final char c = text.charAt(pos);
+            if (c == '(')
+            {
+                ++pos;
+                final Node node = parseConditional();
+                if (! accept(")"))
+                    throw unsupported("Missing ')'");
+                return node;
+            }
+            if (c == '"'  ||  c == '\'')
+                return new Constant(Type.STRING, parseString(c));
+            if (Character.isDigit(c)  ||  c == '.')
+                return new Constant(Type.NUMBER, parseNumber());
+            if (Character.isJavaIdentifierStart(c))
+            {
+                final int start = pos;
+                while (pos < text.length()  &&  Character.isJavaIdentifierPart(text.charAt(pos)))
+                    ++pos;
+                final String name = text.substring(start, pos);
+                if (name.equals("true"))
+                    return new Constant(Type.BOOLEAN, Boolean.TRUE);
+                if (name.equals("false"))
+                    return new Constant(Type.BOOLEAN, Boolean.FALSE);
+                final Matcher matcher = VARIABLE.matcher(name);
+                if (! matcher.matches())
+                    throw unsupported("Unknown '" + name + "'");
+                final String prefix = "pv" + (matcher.group(1) == null ? "" : matcher.group(1));
+                Kind kind = null;
+                for (Kind k : Kind.values())
+                    if (k.prefix.equals(prefix))
+                        kind = k;
+                return new VariableNode(kind, getSlot(kind, Integer.parseInt(matcher.group(2))));
+            }
+            throw unsupported("Unexpected '" + c + "'");
+        }
+
+        private int getSlot(final Kind kind, final int index)
+        {
+            for (int i=0; i<variables.size(); ++i)
+            {
+                final Variable variable = variables.get(i);
+                if (variable.kind == kind  &&  variable.index == index)
+                    return i;
+            }
+            variables.add(new Variable(kind, index));
+            return variables.size() - 1;
+        }
+
+        private String parseString(final char quote)
+        {
+            final StringBuilder buf = new StringBuilder();
+            ++pos;
+            while (pos < text.length())
+            {
+                char c = text.charAt(pos++);
+                if (c == quote)
+                    return buf.toString();
+                if (c == '\\')
+                {
+                    if (pos >= text.length())
+                        break;
+                    c = text.charAt(pos++);
+                    switch (c)
+                    {
+                    case 'n':  buf.append('\n'); break;
+                    case 't':  buf.append('\t'); break;
+                    case 'r':  buf.append('\r'); break;
+                    case '\\':
+                    case '"':
+                    case '\'': buf.append(c); break;
+                    default:   throw unsupported("Escape sequence '\\" + c + "'");
+                    }
+                }
+                else
+                    buf.append(c);
+            }
+            throw unsupported("Unterminated string");
+        }
+
+        private double parseNumber()
+        {
+            final int start = pos;
+            if (text.startsWith("0x", pos)  ||  text.startsWith("0X", pos))
+            {
+                pos += 2;
+                while (pos < text.length()  &&  Character.digit(text.charAt(pos), 16) >= 0)
+                    ++pos;
+            }
+            else
+            {
+                while (pos < text.length()  &&  (Character.isDigit(text.charAt(pos))  ||  text.charAt(pos) == '.'))
+                    ++pos;
+                if (pos < text.length()  &&  (text.charAt(pos) == 'e'  ||  text.charAt(pos) == 'E'))
+                {
+                    ++pos;
+                    if (pos < text.length()  &&  (text.charAt(pos) == '+'  ||  text.charAt(pos) == '-'))
+                        ++pos;
+                    while (pos < text.length()  &&  Character.isDigit(text.charAt(pos)))
+                        ++pos;
+                }
+            }
+            if (pos < text.length()  &&  Character.isJavaIdentifierPart(text.charAt(pos)))
+                throw unsupported("Invalid number");
+            final String number = text.substring(start, pos);
+            // Octal '010' is 8 for some engines, 10 for others
+            if (number.length() > 1  &&  number.charAt(0) == '0'  &&  Character.isDigit(number.charAt(1)))
+                throw unsupported("Octal number");
+            if (! (DECIMAL.matcher(number).matches()  ||  HEX.matcher(number).matches()))
+                throw unsupported("Invalid number");
+            return toNumber(number);
+        }
+    }
+}
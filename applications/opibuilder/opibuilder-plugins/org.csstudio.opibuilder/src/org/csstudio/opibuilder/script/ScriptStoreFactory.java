@@ -167,6 +167,12 @@ public class ScriptStoreFactory {
         if(!scriptData.isEmbedded() &&
                 (scriptData.getPath() == null || scriptData.getPath().getFileExtension() == null)){
             if(scriptData instanceof RuleScriptData){
+                if(PreferencesHelper.isNativeRules()){
+                    final RuleScriptData ruleData = (RuleScriptData)scriptData;
+                    final Optional<NativeRule> rule = NativeRule.compile(ruleData.getRuleData(), pvArray.length);
+                    if(rule.isPresent())
+                        return new NativeRuleStore(ruleData, editpart, pvArray, rule.get());
+                }
                 return getJavaScriptStore(scriptData, editpart, pvArray);
             }
             else
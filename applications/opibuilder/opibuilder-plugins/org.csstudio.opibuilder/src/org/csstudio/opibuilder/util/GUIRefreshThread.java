@@ -212,6 +212,13 @@ public final class GUIRefreshThread implements Runnable {
 
     }
 
+    /**
+     * @return the number of tasks waiting for the next GUI refresh cycle.
+     */
+    public synchronized int getQueueSize() {
+        return tasksQueue.size();
+    }
+
 
 
 